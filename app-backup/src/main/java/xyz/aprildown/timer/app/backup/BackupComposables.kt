@@ -43,6 +43,7 @@ internal fun Backup(
     backupErrorHint: String,
     modifier: Modifier = Modifier,
     extraOptions: @Composable () -> Unit = {},
+    ongoingContent: @Composable () -> Unit = {},
 ) {
     Column(
         modifier = modifier
@@ -107,7 +108,7 @@ internal fun Backup(
     }
 
     if (screen.backupOngoing) {
-        BackupOngoingDialog()
+        BackupOngoingDialog(content = ongoingContent)
     }
 }
 
@@ -241,10 +242,17 @@ private fun BackupError(
 }
 
 @Composable
-private fun BackupOngoingDialog() {
+private fun BackupOngoingDialog(content: @Composable () -> Unit) {
     Dialog(onDismissRequest = {}) {
         Surface(shape = MaterialTheme.shapes.medium) {
-            CircularProgressIndicator(modifier = Modifier.padding(24.dp))
+            Column(
+                modifier = Modifier.padding(24.dp),
+                horizontalAlignment = Alignment.CenterHorizontally,
+                verticalArrangement = Arrangement.spacedBy(16.dp),
+            ) {
+                CircularProgressIndicator()
+                content()
+            }
         }
     }
 }
@@ -56,6 +56,10 @@ internal abstract class BaseBackupViewModel<ContentType : BaseBackupViewModel.Sc
         _screen.update { it.copy(content = content, contentName = name) }
     }
 
+    protected fun clearContent() {
+        _screen.update { it.copy(content = null, contentName = null) }
+    }
+
     private fun onTimersChange(include: Boolean) {
         _screen.update {
             it.copy(
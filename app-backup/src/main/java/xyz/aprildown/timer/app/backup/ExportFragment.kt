@@ -10,6 +10,12 @@ import android.view.View
 import android.view.ViewGroup
 import androidx.activity.result.contract.ActivityResultContracts
 import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
+import androidx.compose.foundation.selection.toggleable
+import androidx.compose.material3.Icon
+import androidx.compose.material3.ListItem
+import androidx.compose.material3.Switch
+import androidx.compose.material3.Text
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.collectAsState
@@ -17,7 +23,9 @@ import androidx.compose.runtime.getValue
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.ComposeView
 import androidx.compose.ui.platform.ViewCompositionStrategy
+import androidx.compose.ui.res.painterResource
 import androidx.compose.ui.res.stringResource
+import androidx.compose.ui.semantics.Role
 import androidx.documentfile.provider.DocumentFile
 import androidx.fragment.app.Fragment
 import androidx.fragment.app.viewModels
@@ -83,6 +91,7 @@ class ExportFragment : Fragment() {
             }
             Export(
                 screen = screen,
+                exportScreen = viewModel.exportScreen.collectAsState().value,
                 onLocationChange = ::onLocationChange,
                 modifier = Modifier.fillMaxSize(),
             )
@@ -92,7 +101,8 @@ class ExportFragment : Fragment() {
     private fun onLocationChange() {
         val date = Date()
         val timeString = SimpleDateFormat("yyyy-MM-dd-kk-mm", Locale.getDefault()).format(date)
-        val initialFilename = "timer-machine-$timeString.json"
+        val extension = if (viewModel.exportScreen.value.binary) "tmd" else "json"
+        val initialFilename = "timer-machine-$timeString.$extension"
         SafIntentSafeBelt(
             context = requireContext(),
             appTracker = appTracker,
@@ -132,6 +142,7 @@ class ExportFragment : Fragment() {
 @Composable
 private fun Export(
     screen: BaseBackupViewModel.Screen<*>,
+    exportScreen: ExportViewModel.ExportScreen,
     onLocationChange: () -> Unit,
     modifier: Modifier = Modifier,
 ) {
@@ -144,6 +155,32 @@ private fun Export(
             backupButtonText = stringResource(id = RBase.string.export_action),
             backupErrorHint = stringResource(id = RBase.string.export_error),
             modifier = modifier,
+            extraOptions = {
+                ListItem(
+                    headlineContent = {
+                        Text(text = stringResource(id = RBase.string.export_binary))
+                    },
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .toggleable(
+                            value = exportScreen.binary,
+                            role = Role.Switch,
+                            onValueChange = exportScreen.onBinaryChange,
+                        ),
+                    supportingContent = {
+                        Text(text = stringResource(id = RBase.string.export_binary_desp))
+                    },
+                    leadingContent = {
+                        Icon(
+                            painter = painterResource(id = RBase.drawable.ic_backup),
+                            contentDescription = null,
+                        )
+                    },
+                    trailingContent = {
+                        Switch(checked = exportScreen.binary, onCheckedChange = null)
+                    },
+                )
+            },
         )
     }
 }
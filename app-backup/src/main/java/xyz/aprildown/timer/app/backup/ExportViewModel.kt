@@ -4,6 +4,10 @@ import androidx.annotation.VisibleForTesting
 import androidx.lifecycle.SavedStateHandle
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
 import okio.Sink
 import okio.buffer
 import xyz.aprildown.timer.domain.di.MainDispatcher
@@ -16,25 +20,52 @@ internal class ExportViewModel @Inject constructor(
     private val savedStateHandle: SavedStateHandle,
     private val exportAppData: ExportAppData,
 ) : BaseBackupViewModel<ExportViewModel.WritableContent>(mainDispatcher) {
+    data class ExportScreen(
+        val binary: Boolean = false,
+        val onBinaryChange: (Boolean) -> Unit,
+    )
+
     class WritableContent(
         val getSink: () -> Sink,
         val delete: () -> Unit,
     ) : Screen.Content
 
+    private val _exportScreen: MutableStateFlow<ExportScreen> = MutableStateFlow(
+        ExportScreen(
+            onBinaryChange = ::onBinaryChange,
+        )
+    )
+    val exportScreen: StateFlow<ExportScreen> = _exportScreen.asStateFlow()
+
+    /**
+     * The location is picked with the extension of the format, so it's dropped if the format
+     * changes afterwards and has to be picked again.
+     */
+    private fun onBinaryChange(binary: Boolean) {
+        if (binary == _exportScreen.value.binary) return
+        _exportScreen.update { it.copy(binary = binary) }
+        if (savedStateHandle.get<Boolean>(KEY_HAS_EXPORTED) == true) return
+        val content = screen.value.content ?: return
+        try {
+            content.delete()
+        } catch (_: Exception) {
+            // Ignore
+        }
+        clearContent()
+    }
+
     override suspend fun backup(screen: Screen<WritableContent>) {
-        val string = exportAppData(
-            ExportAppData.Params(
-                exportTimers = screen.includeTimers,
-                exportTimerStamps = screen.includeRecords,
-                exportSchedulers = screen.includeSchedulers,
-                exportPreferences = screen.includeSettings,
+        checkNotNull(screen.content).getSink().buffer().use {
+            exportAppData(
+                ExportAppData.Params(
+                    sink = it,
+                    exportTimers = screen.includeTimers,
+                    exportTimerStamps = screen.includeRecords,
+                    exportSchedulers = screen.includeSchedulers,
+                    exportPreferences = screen.includeSettings,
+                    binary = _exportScreen.value.binary,
+                )
             )
-        )
-        checkNotNull(screen.content).getSink().use {
-            it.buffer().run {
-                writeUtf8(string)
-                flush()
-            }
         }
         savedStateHandle[KEY_HAS_EXPORTED] = true
     }
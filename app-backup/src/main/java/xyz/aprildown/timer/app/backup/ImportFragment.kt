@@ -5,6 +5,7 @@ import android.content.Context
 import android.content.Intent
 import android.net.Uri
 import android.os.Bundle
+import android.text.format.Formatter
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
@@ -25,10 +26,12 @@ import androidx.compose.runtime.remember
 import androidx.compose.runtime.setValue
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.ComposeView
+import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.platform.ViewCompositionStrategy
 import androidx.compose.ui.res.painterResource
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.semantics.Role
+import androidx.compose.ui.text.style.TextAlign
 import androidx.documentfile.provider.DocumentFile
 import androidx.fragment.app.Fragment
 import androidx.fragment.app.viewModels
@@ -154,6 +157,19 @@ private fun Import(
                     modifier = Modifier.fillMaxSize(),
                 )
             },
+            ongoingContent = {
+                val progress = importScreen.progress
+                if (progress != null) {
+                    Text(
+                        text = stringResource(
+                            id = RBase.string.import_progress,
+                            Formatter.formatShortFileSize(LocalContext.current, progress.bytesRead),
+                            progress.rowsInserted,
+                        ),
+                        textAlign = TextAlign.Center,
+                    )
+                }
+            },
         )
     }
 }
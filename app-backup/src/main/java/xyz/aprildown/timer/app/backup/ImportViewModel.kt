@@ -7,8 +7,8 @@ import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.update
 import okio.Source
-import okio.buffer
 import xyz.aprildown.timer.domain.di.MainDispatcher
+import xyz.aprildown.timer.domain.entities.ImportProgressEntity
 import xyz.aprildown.timer.domain.usecases.data.ImportAppData
 import xyz.aprildown.timer.domain.usecases.data.NotifyDataChanged
 import javax.inject.Inject
@@ -22,6 +22,7 @@ internal class ImportViewModel @Inject constructor(
     data class ImportScreen(
         val wipe: Boolean = false,
         val onWipeChange: (Boolean) -> Unit,
+        val progress: ImportProgressEntity? = null,
     )
 
     class ReadableContent(val getSource: () -> Source) : Screen.Content
@@ -37,17 +38,25 @@ internal class ImportViewModel @Inject constructor(
         _importScreen.update { it.copy(wipe = wipe) }
     }
 
+    private fun onProgress(progress: ImportProgressEntity) {
+        _importScreen.update { it.copy(progress = progress) }
+    }
+
     override suspend fun backup(screen: Screen<ReadableContent>) {
-        importAppData(
-            ImportAppData.Params(
-                data = checkNotNull(screen.content).getSource().use { it.buffer().readUtf8() },
-                wipeFirst = _importScreen.value.wipe,
-                importTimers = screen.includeTimers,
-                importTimerStamps = screen.includeRecords,
-                importSchedulers = screen.includeSchedulers,
-                importPreferences = screen.includeSettings,
+        _importScreen.update { it.copy(progress = null) }
+        checkNotNull(screen.content).getSource().use { source ->
+            importAppData(
+                ImportAppData.Params(
+                    source = source,
+                    wipeFirst = _importScreen.value.wipe,
+                    importTimers = screen.includeTimers,
+                    importTimerStamps = screen.includeRecords,
+                    importSchedulers = screen.includeSchedulers,
+                    importPreferences = screen.includeSettings,
+                    onProgress = ::onProgress,
+                )
             )
-        )
+        }
         notifyDataChanged()
     }
 }
@@ -8,11 +8,13 @@ import okio.Buffer
 import org.junit.After
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
 import org.junit.Assert.assertNull
 import org.junit.Assert.assertSame
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.mockito.kotlin.any
+import org.mockito.kotlin.check
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.verify
 import org.mockito.kotlin.verifyNoMoreInteractions
@@ -49,6 +51,36 @@ internal class ExportViewModelTest : BaseBackupViewModelTest() {
         assertNull(viewModel.screen.value.backupResult)
     }
 
+    @Test
+    fun `check onBinaryChange`() = runTest {
+        val viewModel = createViewModel()
+        assertFalse(viewModel.exportScreen.value.binary)
+        viewModel.exportScreen.value.onBinaryChange(true)
+        assertTrue(viewModel.exportScreen.value.binary)
+    }
+
+    @Test
+    fun `onBinaryChange drops the location`() = runTest {
+        val viewModel = createViewModel()
+        var deleted = false
+        viewModel.changeContent(
+            content = ExportViewModel.WritableContent(
+                getSink = { error("error") },
+                delete = { deleted = true },
+            ),
+            name = randomString(),
+        )
+
+        viewModel.exportScreen.value.onBinaryChange(false)
+        assertFalse(deleted)
+        assertNotNull(viewModel.screen.value.content)
+
+        viewModel.exportScreen.value.onBinaryChange(true)
+        assertTrue(deleted)
+        assertNull(viewModel.screen.value.content)
+        assertNull(viewModel.screen.value.contentName)
+    }
+
     @Test
     fun `backUp without content`() = runTest {
         val viewModel = createViewModel()
@@ -75,7 +107,9 @@ internal class ExportViewModelTest : BaseBackupViewModelTest() {
     fun backUp() = runTest {
         val viewModel = createViewModel()
         val data = randomString()
-        whenever(exportAppData.invoke(any())).thenReturn(data)
+        whenever(exportAppData.invoke(any())).thenAnswer {
+            it.getArgument<ExportAppData.Params>(0).sink.writeUtf8(data)
+        }
         val buffer = Buffer()
         viewModel.changeContent(
             content = ExportViewModel.WritableContent(getSink = { buffer }, delete = {}),
@@ -88,12 +122,13 @@ internal class ExportViewModelTest : BaseBackupViewModelTest() {
         assertEquals(data, buffer.readUtf8())
 
         verify(exportAppData).invoke(
-            ExportAppData.Params(
-                exportTimers = viewModel.screen.value.includeTimers,
-                exportTimerStamps = viewModel.screen.value.includeRecords,
-                exportSchedulers = viewModel.screen.value.includeSchedulers,
-                exportPreferences = viewModel.screen.value.includeSettings,
-            )
+            check {
+                assertEquals(viewModel.screen.value.includeTimers, it.exportTimers)
+                assertEquals(viewModel.screen.value.includeRecords, it.exportTimerStamps)
+                assertEquals(viewModel.screen.value.includeSchedulers, it.exportSchedulers)
+                assertEquals(viewModel.screen.value.includeSettings, it.exportPreferences)
+                assertEquals(viewModel.exportScreen.value.binary, it.binary)
+            }
         )
         verifyNoMoreInteractions(exportAppData)
     }
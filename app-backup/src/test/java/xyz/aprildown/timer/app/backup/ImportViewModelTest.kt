@@ -5,14 +5,17 @@ import kotlinx.coroutines.test.TestScope
 import kotlinx.coroutines.test.runTest
 import okio.Buffer
 import org.junit.After
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNull
 import org.junit.Assert.assertSame
 import org.junit.Assert.assertTrue
 import org.junit.Test
+import org.mockito.kotlin.check
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.verify
 import org.mockito.kotlin.verifyNoMoreInteractions
+import xyz.aprildown.timer.domain.entities.ImportProgressEntity
 import xyz.aprildown.timer.domain.usecases.Fruit
 import xyz.aprildown.timer.domain.usecases.data.ImportAppData
 import xyz.aprildown.timer.domain.usecases.data.NotifyDataChanged
@@ -64,8 +67,7 @@ internal class ImportViewModelTest : BaseBackupViewModelTest() {
     fun backUp() = runTest {
         val viewModel = createViewModel()
         val buffer = Buffer()
-        val data = randomString()
-        buffer.writeUtf8(data)
+        buffer.writeUtf8(randomString())
         viewModel.changeContent(
             content = ImportViewModel.ReadableContent(getSource = { buffer }),
             name = randomString(),
@@ -75,14 +77,18 @@ internal class ImportViewModelTest : BaseBackupViewModelTest() {
 
         assertTrue(viewModel.screen.value.backupResult is Fruit.Ripe<*>)
         verify(importAppData).invoke(
-            ImportAppData.Params(
-                data = data,
-                wipeFirst = viewModel.importScreen.value.wipe,
-                importTimers = viewModel.screen.value.includeTimers,
-                importTimerStamps = viewModel.screen.value.includeRecords,
-                importSchedulers = viewModel.screen.value.includeSchedulers,
-                importPreferences = viewModel.screen.value.includeSettings,
-            )
+            check {
+                assertSame(buffer, it.source)
+                assertEquals(viewModel.importScreen.value.wipe, it.wipeFirst)
+                assertEquals(viewModel.screen.value.includeTimers, it.importTimers)
+                assertEquals(viewModel.screen.value.includeRecords, it.importTimerStamps)
+                assertEquals(viewModel.screen.value.includeSchedulers, it.importSchedulers)
+                assertEquals(viewModel.screen.value.includeSettings, it.importPreferences)
+
+                val progress = ImportProgressEntity(bytesRead = 1L, rowsInserted = 2)
+                it.onProgress(progress)
+                assertEquals(progress, viewModel.importScreen.value.progress)
+            }
         )
         verifyNoMoreInteractions(importAppData)
         verify(notifyDataChanged).invoke()
@@ -71,6 +71,30 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
         postMessage(EVENT_STOP, null, 0, false, 0, 0, 0)
     }
 
+    /**
+     * Prepare [ringtoneUri] ahead for [key], so a later [play] of it only has to start.
+     * Every [key] keeps its own player. A null [ringtoneUri] releases the one of [key].
+     */
+    fun prepare(key: Int, ringtoneUri: Uri?, streamType: Int) {
+        synchronized(this) {
+            val message = if (ringtoneUri == null) {
+                mHandler.obtainMessage(EVENT_RELEASE_PREPARED, key, 0)
+            } else {
+                mHandler.obtainMessage(EVENT_PREPARE, key, 0).apply {
+                    data = bundleOf(RINGTONE_URI_KEY to ringtoneUri, STREAM_TYPE to streamType)
+                }
+            }
+            mHandler.sendMessage(message)
+        }
+    }
+
+    /**
+     * Release the players of every key.
+     */
+    fun releasePrepared() {
+        postMessage(EVENT_RELEASE_ALL_PREPARED, null, 0, false, 0, 0, 0)
+    }
+
     /** Schedules an adjustment of the playback volume 50ms in the future.  */
     private fun scheduleVolumeAdjustment() {
         // Ensure we never have more than one volume adjustment queued.
@@ -136,6 +160,9 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
 
         private var becomeNoisyReceiver: BecomeNoisyReceiver? = null
 
+        /** Players prepared by [prepare] and waiting for [play], by their keys.  */
+        private val mPreparedPlayers = mutableMapOf<Int, PreparedPlayer>()
+
         /**
          * Starts the actual playback of the ringtone. Executes on ringtone-thread.
          */
@@ -164,6 +191,21 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
                 alarmNoise = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM)
             }
 
+            val preparedPlayer = takePrepared(alarmNoise, streamType)
+            if (preparedPlayer != null) {
+                mMediaPlayer = preparedPlayer
+                preparedPlayer.setOnErrorListener { _, _, _ ->
+                    this@AsyncRingtonePlayer.stop()
+                    true
+                }
+                try {
+                    return startPlayback(inTelephoneCall, isPrepared = true)
+                } catch (_: Throwable) {
+                    // Prepare it again below.
+                    preparedPlayer.release()
+                }
+            }
+
             mMediaPlayer = MediaPlayer()
             mMediaPlayer?.setOnErrorListener { _, _, _ ->
                 this@AsyncRingtonePlayer.stop()
@@ -197,16 +239,16 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
          * playback.
          *
          * @param inTelephoneCall `true` if there is currently an active telephone call
+         * @param isPrepared `true` if the MediaPlayer comes from [prepare]
          * @return `true` if a crescendo has started and future volume adjustments are
          * required to advance the crescendo effect
          */
         @Throws(IOException::class)
-        private fun startPlayback(inTelephoneCall: Boolean): Boolean {
-            // Indicate the ringtone should be played via the alarm stream.
-            val audioAttributes = AudioAttributes.Builder()
-                .setLegacyStreamType(mStreamType)
-                .build()
-            mMediaPlayer?.setAudioAttributes(audioAttributes)
+        private fun startPlayback(inTelephoneCall: Boolean, isPrepared: Boolean = false): Boolean {
+            if (!isPrepared) {
+                // Indicate the ringtone should be played via the alarm stream.
+                mMediaPlayer?.setAudioAttributes(buildAudioAttributes(mStreamType))
+            }
 
             // Check if we are in a call. If we are, use the in-call alarm resource at a low volume
             // to not disrupt the call.
@@ -228,7 +270,9 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
                         this@AsyncRingtonePlayer.stop()
                     }
                 }
-                prepare()
+                if (!isPrepared) {
+                    prepare()
+                }
 
                 mAudioManager?.let {
                     if (mAudioFocusType <= 0) return@let
@@ -252,6 +296,61 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
             return scheduleVolumeAdjustment
         }
 
+        /**
+         * Prepares [ringtoneUri] and keeps it for [play] under [key], replacing what [key] had.
+         * Executes on the ringtone-thread.
+         */
+        fun prepare(context: Context, key: Int, ringtoneUri: Uri, streamType: Int) {
+            checkAsyncRingtonePlayerThread()
+            val prepared = mPreparedPlayers[key]
+            if (prepared != null &&
+                prepared.uri == ringtoneUri &&
+                prepared.streamType == streamType
+            ) {
+                return
+            }
+            releasePrepared(key)
+
+            val player = MediaPlayer()
+            try {
+                player.setAudioAttributes(buildAudioAttributes(streamType))
+                player.setDataSource(context, ringtoneUri)
+                player.prepare()
+            } catch (_: Throwable) {
+                // play will try it again and fall back if it still fails.
+                player.release()
+                return
+            }
+            mPreparedPlayers[key] = PreparedPlayer(player, ringtoneUri, streamType)
+        }
+
+        /**
+         * Releases the player of [key] waiting for [play]. Executes on the ringtone-thread.
+         */
+        fun releasePrepared(key: Int) {
+            checkAsyncRingtonePlayerThread()
+            mPreparedPlayers.remove(key)?.player?.release()
+        }
+
+        /**
+         * Releases all players waiting for [play]. Executes on the ringtone-thread.
+         */
+        fun releaseAllPrepared() {
+            checkAsyncRingtonePlayerThread()
+            mPreparedPlayers.values.forEach { it.player.release() }
+            mPreparedPlayers.clear()
+        }
+
+        /**
+         * @return A prepared player for [ringtoneUri] and [streamType] of any key.
+         */
+        private fun takePrepared(ringtoneUri: Uri?, streamType: Int): MediaPlayer? {
+            val key = mPreparedPlayers.entries.firstOrNull { (_, prepared) ->
+                prepared.uri == ringtoneUri && prepared.streamType == streamType
+            }?.key ?: return null
+            return mPreparedPlayers.remove(key)?.player
+        }
+
         override fun onAudioFocusChange(focusChange: Int) {
             when (focusChange) {
                 AudioManager.AUDIOFOCUS_LOSS -> {
@@ -365,6 +464,21 @@ internal class AsyncRingtonePlayer(private val mContext: Context) {
                         }
                     }
                     EVENT_STOP -> mPlaybackDelegate.stop()
+                    EVENT_PREPARE -> {
+                        val data = msg.data
+                        val ringtoneUri =
+                            BundleCompat.getParcelable(data, RINGTONE_URI_KEY, Uri::class.java)
+                        if (ringtoneUri != null) {
+                            mPlaybackDelegate.prepare(
+                                context = mContext,
+                                key = msg.arg1,
+                                ringtoneUri = ringtoneUri,
+                                streamType = data.getInt(STREAM_TYPE)
+                            )
+                        }
+                    }
+                    EVENT_RELEASE_PREPARED -> mPlaybackDelegate.releasePrepared(msg.arg1)
+                    EVENT_RELEASE_ALL_PREPARED -> mPlaybackDelegate.releaseAllPrepared()
                     EVENT_VOLUME -> if (mPlaybackDelegate.adjustVolume()) {
                         scheduleVolumeAdjustment()
                     }
@@ -387,6 +501,9 @@ private const val IN_CALL_VOLUME = 0.125f
 private const val EVENT_PLAY = 1
 private const val EVENT_STOP = 2
 private const val EVENT_VOLUME = 3
+private const val EVENT_PREPARE = 4
+private const val EVENT_RELEASE_PREPARED = 5
+private const val EVENT_RELEASE_ALL_PREPARED = 6
 
 private const val RINGTONE_URI_KEY = "RINGTONE_URI_KEY"
 private const val CRESCENDO_DURATION_KEY = "CRESCENDO_DURATION_KEY"
@@ -394,6 +511,14 @@ private const val LOOP = "LOOP"
 private const val AUDIO_FOCUS_TYPE = "AUDIO_FOCUS_TYPE"
 private const val STREAM_TYPE = "STREAM_TYPE"
 
+private class PreparedPlayer(val player: MediaPlayer, val uri: Uri, val streamType: Int)
+
+internal fun buildAudioAttributes(streamType: Int): AudioAttributes {
+    return AudioAttributes.Builder()
+        .setLegacyStreamType(streamType)
+        .build()
+}
+
 /**
  * @return `true` iff the device is currently in a telephone call
  */
@@ -1,11 +1,22 @@
 package xyz.aprildown.timer.app.base.media
 
 import android.content.Context
+import android.media.AudioFormat
 import android.media.AudioManager
-import android.media.ToneGenerator
+import android.media.AudioTrack
+import android.os.Build
 import android.os.SystemClock
+import android.util.SparseArray
 import androidx.core.content.getSystemService
-
+import kotlin.math.PI
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sin
+
+/**
+ * Timers beep from the timing thread while audio focus changes arrive on the main thread,
+ * so everything touching the [TonePlayer] holds the lock of this object.
+ */
 object Beeper : AudioManager.OnAudioFocusChangeListener {
 
     class Settings(
@@ -21,31 +32,37 @@ object Beeper : AudioManager.OnAudioFocusChangeListener {
     }
 
     private var audioManager: AudioManager? = null
-    private var toneGenerator: CustomToneGenerator? = null
+    private var tonePlayer: TonePlayer? = null
     private var toneSettings: Settings? = null
+    @Volatile
     var isLoaded: Boolean = false
         private set
 
+    @Synchronized
     fun load(settings: Settings, debounce: Boolean = true) {
         tearDown()
         toneSettings = settings
-        toneGenerator = if (debounce) {
-            DebounceToneGenerator(settings.streamType)
-        } else {
-            NormalToneGenerator(settings.streamType)
+        tonePlayer = TonePlayer(settings.streamType, debounce).apply {
+            render(settings.sound)
         }
         isLoaded = true
     }
 
+    /**
+     * @param delay How long to wait before the tone starts. It keeps beeps on the second
+     * when they are requested a bit early.
+     */
+    @Synchronized
     fun play(
         context: Context,
-        newTone: Int = 0
+        newTone: Int = 0,
+        delay: Long = 0L
     ) {
         if (!isLoaded) return
 
         val settings = toneSettings
-        val generator = toneGenerator
-        if (settings == null || generator == null) {
+        val player = tonePlayer
+        if (settings == null || player == null) {
             tearDown()
             return
         }
@@ -59,7 +76,7 @@ object Beeper : AudioManager.OnAudioFocusChangeListener {
         }
 
         if (settings.count > 0) {
-            if (generator.play(if (newTone == 0) settings.sound else newTone)) {
+            if (player.play(if (newTone == 0) settings.sound else newTone, delay)) {
                 --settings.count
             }
         } else {
@@ -67,6 +84,7 @@ object Beeper : AudioManager.OnAudioFocusChangeListener {
         }
     }
 
+    @Synchronized
     override fun onAudioFocusChange(focusChange: Int) {
         when (focusChange) {
             AudioManager.AUDIOFOCUS_LOSS,
@@ -77,6 +95,7 @@ object Beeper : AudioManager.OnAudioFocusChangeListener {
         }
     }
 
+    @Synchronized
     fun tearDown() {
         audioManager?.let {
             // If it isn't null, it means we must respect others.
@@ -84,9 +103,9 @@ object Beeper : AudioManager.OnAudioFocusChangeListener {
             audioManager = null
         }
 
-        toneGenerator?.run {
+        tonePlayer?.run {
             destroy()
-            toneGenerator = null
+            tonePlayer = null
         }
 
         toneSettings = null
@@ -112,45 +131,118 @@ object Beeper : AudioManager.OnAudioFocusChangeListener {
         )
     }
 
-    private abstract class CustomToneGenerator(streamType: Int) {
-        private val toneGenerator = ToneGenerator(streamType, 100)
+    /**
+     * Plays pre-rendered DTMF tones through a low latency [AudioTrack]. A beep is padded with
+     * silence so it starts when it's due instead of whenever the tick arrives.
+     */
+    private class TonePlayer(streamType: Int, private val debounce: Boolean) {
+        private val sampleRate = AudioTrack.getNativeOutputSampleRate(streamType)
+        private val silence = ShortArray(samplesOf(MAX_DELAY))
+        private val track = AudioTrack.Builder()
+            .setAudioAttributes(buildAudioAttributes(streamType))
+            .setAudioFormat(
+                AudioFormat.Builder()
+                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                    .setSampleRate(sampleRate)
+                    .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                    .build()
+            )
+            .setBufferSizeInBytes(
+                max(
+                    AudioTrack.getMinBufferSize(
+                        sampleRate,
+                        AudioFormat.CHANNEL_OUT_MONO,
+                        AudioFormat.ENCODING_PCM_16BIT
+                    ),
+                    samplesOf(MAX_DELAY + TONE_DURATION) * Short.SIZE_BYTES
+                )
+            )
+            .setTransferMode(AudioTrack.MODE_STREAM)
+            .apply {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                }
+            }
+            .build()
 
-        protected fun playTone(tone: Int) {
-            toneGenerator.startTone(tone, 100)
-        }
+        private val renderedTones = SparseArray<ShortArray>()
+        private var lastToneTime = 0L
 
         /**
-         * @return If the toneGenerator played
+         * @return If the tone is played
          */
-        abstract fun play(tone: Int): Boolean
+        fun play(tone: Int, delay: Long): Boolean {
+            val pcm = render(tone) ?: return false
+            val silenceDuration = delay.coerceIn(0L, MAX_DELAY)
+            val toneTime = SystemClock.elapsedRealtime() + silenceDuration
+            if (debounce && toneTime - lastToneTime < 750L) return false
+            lastToneTime = toneTime
+
+            // Cut the last tone if it's still playing, like ToneGenerator does.
+            track.pause()
+            track.flush()
+            track.write(silence, 0, samplesOf(silenceDuration), AudioTrack.WRITE_NON_BLOCKING)
+            track.write(pcm, 0, pcm.size, AudioTrack.WRITE_NON_BLOCKING)
+            track.play()
+            return true
+        }
 
-        fun destroy() {
-            toneGenerator.run {
-                stopTone()
-                release()
+        /**
+         * Renders [tone] once and keeps it for later beeps.
+         */
+        fun render(tone: Int): ShortArray? {
+            renderedTones[tone]?.let { return it }
+            val (low, high) = DTMF_FREQUENCIES.getOrNull(tone) ?: return null
+            val count = samplesOf(TONE_DURATION)
+            val fadeCount = samplesOf(FADE_DURATION)
+            val pcm = ShortArray(count) { i ->
+                val t = i.toDouble() / sampleRate
+                val wave = sin(2 * PI * low * t) + sin(2 * PI * high * t)
+                // Fade in and out to avoid clicks.
+                val envelope = min(1.0, min(i, count - 1 - i).toDouble() / fadeCount)
+                (wave * TONE_AMPLITUDE * envelope * Short.MAX_VALUE).toInt().toShort()
             }
+            renderedTones.put(tone, pcm)
+            return pcm
         }
-    }
 
-    private class NormalToneGenerator(streamType: Int) : CustomToneGenerator(streamType) {
-        override fun play(tone: Int): Boolean {
-            playTone(tone)
-            return true
+        fun destroy() {
+            track.pause()
+            track.flush()
+            track.release()
         }
-    }
 
-    private class DebounceToneGenerator(streamType: Int) : CustomToneGenerator(streamType) {
-        private var lastToneTime = 0L
-
-        override fun play(tone: Int): Boolean {
-            val now = SystemClock.elapsedRealtime()
-            val elapsed = now - lastToneTime
-            if (elapsed >= 750L) {
-                lastToneTime = now
-                playTone(tone)
-                return true
-            }
-            return false
-        }
+        private fun samplesOf(duration: Long): Int = (sampleRate * duration / 1000).toInt()
     }
 }
+
+private const val TONE_DURATION = 100L
+private const val FADE_DURATION = 5L
+private const val TONE_AMPLITUDE = 0.45
+
+/**
+ * Beeps due later than this start a bit early.
+ */
+private const val MAX_DELAY = 250L
+
+/**
+ * Low and high frequencies of DTMF 0-9, *, #, A-D.
+ */
+private val DTMF_FREQUENCIES = arrayOf(
+    941 to 1336,
+    697 to 1209,
+    697 to 1336,
+    697 to 1477,
+    770 to 1209,
+    770 to 1336,
+    770 to 1477,
+    852 to 1209,
+    852 to 1336,
+    852 to 1477,
+    941 to 1209,
+    941 to 1477,
+    697 to 1633,
+    770 to 1633,
+    852 to 1633,
+    941 to 1633,
+)
@@ -47,6 +47,21 @@ object RingtonePreviewKlaxon {
         )
     }
 
+    /**
+     * Prepare [uri] for [key] before it's started. A null [uri] only releases what [key] has.
+     */
+    fun prepare(context: Context, key: Int, uri: Uri?, streamType: Int) {
+        getAsyncRingtonePlayer(context).prepare(
+            key = key,
+            ringtoneUri = uri,
+            streamType = streamType
+        )
+    }
+
+    fun releasePrepared(context: Context) {
+        getAsyncRingtonePlayer(context).releasePrepared()
+    }
+
     @Synchronized
     private fun getAsyncRingtonePlayer(context: Context): AsyncRingtonePlayer {
         if (!::sAsyncRingtonePlayer.isInitialized) {
@@ -29,6 +29,7 @@ import androidx.core.widget.doAfterTextChanged
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
+import com.github.deweyreed.timer.component.tts.TtsBakery
 import com.github.deweyreed.tools.anko.dp
 import com.github.deweyreed.tools.anko.snackbar
 import com.github.deweyreed.tools.arch.observeEvent
@@ -589,6 +590,9 @@ class EditActivity :
 
     private fun subscribeToChanges() {
         viewModel.updatedEvent.observe(this) { update ->
+            if (update == EditViewModel.UPDATE_CREATE || update == EditViewModel.UPDATE_UPDATE) {
+                viewModel.savedTimer?.let { TtsBakery.bakeTimer(this, it) }
+            }
             when (update) {
                 EditViewModel.UPDATE_UPDATE -> {
                     ShortcutHelper.updateTimerShortcutName(
@@ -1,5 +1,8 @@
 package xyz.aprildown.timer.app.timer.list
 
+import android.util.SparseIntArray
+import android.util.SparseLongArray
+import android.view.Choreographer
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
@@ -59,6 +62,17 @@ internal class TimerAdapter(
 
     private var expandedLayoutRes = R.layout.list_item_timer_expanded
 
+    /**
+     * Timer ids to their positions in [getCurrentList].
+     */
+    private val positions = SparseIntArray()
+
+    /**
+     * The latest time of each timer, posted once per frame.
+     */
+    private val pendingTimes = SparseLongArray()
+    private val postTimesCallback = Choreographer.FrameCallback { postPendingTimes() }
+
     init {
         setHasStableIds(true)
     }
@@ -115,6 +129,16 @@ internal class TimerAdapter(
 
     fun getItemAt(position: Int): MutableTimerItem = getItem(position)
 
+    override fun onCurrentListChanged(
+        previousList: List<MutableTimerItem>,
+        currentList: List<MutableTimerItem>
+    ) {
+        positions.clear()
+        currentList.forEachIndexed { index, timerItem -> positions.put(timerItem.timerId, index) }
+    }
+
+    private fun positionOf(timerId: Int): Int = positions.get(timerId, RecyclerView.NO_POSITION)
+
     /**
      * items => presenter, refresh
      * presenter => items, refresh
@@ -174,6 +198,21 @@ internal class TimerAdapter(
     fun dropPresenter() {
         presenter?.removeAllListener(this)
         presenter = null
+        pendingTimes.clear()
+        Choreographer.getInstance().removeFrameCallback(postTimesCallback)
+    }
+
+    private fun postPendingTimes() {
+        for (i in 0 until pendingTimes.size()) {
+            val position = positionOf(pendingTimes.keyAt(i))
+            if (position != RecyclerView.NO_POSITION) {
+                notifyItemChanged(
+                    position,
+                    ExpandedViewHolder.MutableTimerEvent.Timing(pendingTimes.valueAt(i))
+                )
+            }
+        }
+        pendingTimes.clear()
     }
 
     // region stream callbacks
@@ -181,41 +220,36 @@ internal class TimerAdapter(
     override fun begin(timerId: Int) = Unit
 
     override fun started(timerId: Int, index: TimerIndex) {
-        currentList.forEachIndexed { i, timer ->
-            if (timer.timerId == timerId) {
-                expand(i)
-                timer.state = StreamState.RUNNING
-                notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.State)
-                notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.Index(index))
-            }
-        }
+        val i = positionOf(timerId)
+        if (i == RecyclerView.NO_POSITION) return
+        expand(i)
+        getItemAt(i).state = StreamState.RUNNING
+        notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.State)
+        notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.Index(index))
     }
 
     override fun paused(timerId: Int) {
-        currentList.forEachIndexed { i, timer ->
-            if (timer.timerId == timerId) {
-                timer.state = StreamState.PAUSED
-                notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.State)
-            }
-        }
+        val i = positionOf(timerId)
+        if (i == RecyclerView.NO_POSITION) return
+        getItemAt(i).state = StreamState.PAUSED
+        notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.State)
     }
 
     override fun updated(timerId: Int, time: Long) {
-        currentList.forEachIndexed { i, timer ->
-            if (timer.timerId == timerId) {
-                notifyItemChanged(i, ExpandedViewHolder.MutableTimerEvent.Timing(time))
-            }
+        if (positionOf(timerId) == RecyclerView.NO_POSITION) return
+        if (pendingTimes.size() == 0) {
+            Choreographer.getInstance().postFrameCallback(postTimesCallback)
         }
+        pendingTimes.put(timerId, time)
     }
 
     override fun finished(timerId: Int) = Unit
 
     override fun end(timerId: Int, forced: Boolean) {
-        currentList.forEachIndexed { i, timer ->
-            if (timer.timerId == timerId) {
-                collapse(i)
-            }
-        }
+        pendingTimes.delete(timerId)
+        val i = positionOf(timerId)
+        if (i == RecyclerView.NO_POSITION) return
+        collapse(i)
     }
 
     // endregion stream callbacks
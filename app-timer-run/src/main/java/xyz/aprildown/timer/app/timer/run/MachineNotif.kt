@@ -1,13 +1,17 @@
 package xyz.aprildown.timer.app.timer.run
 
 import android.content.Context
+import android.os.Build
+import android.os.SystemClock
 import androidx.core.app.NotificationCompat.Builder
 import xyz.aprildown.timer.app.base.ui.AppNavigator
 import xyz.aprildown.timer.app.base.utils.produceTime
+import xyz.aprildown.timer.domain.entities.BehaviourType
 import xyz.aprildown.timer.domain.entities.TimerEntity
 import xyz.aprildown.timer.presentation.stream.StreamState
 import xyz.aprildown.timer.presentation.stream.TimerIndex
 import xyz.aprildown.timer.presentation.stream.getStep
+import kotlin.math.abs
 import xyz.aprildown.timer.app.base.R as RBase
 
 internal abstract class MachineNotif(protected val context: Context) {
@@ -34,14 +38,29 @@ internal abstract class MachineNotif(protected val context: Context) {
 
     protected abstract fun withPauseEvent(b: Builder): Builder
 
-    fun update(remaining: Long): Builder {
-        builder = withUpdateEvent(builder, remaining)
-        return builder
+    /**
+     * @param remaining The whole second to show.
+     * @param exactRemaining The unrounded time at [realtime], an elapsedRealtime.
+     * @return null if the notification doesn't have to be posted again.
+     */
+    fun update(remaining: Long, exactRemaining: Long, realtime: Long): Builder? {
+        return withUpdateEvent(builder, remaining, exactRemaining, realtime)
+            ?.also { builder = it }
     }
 
-    protected abstract fun withUpdateEvent(b: Builder, remaining: Long): Builder
+    protected abstract fun withUpdateEvent(
+        b: Builder,
+        remaining: Long,
+        exactRemaining: Long,
+        realtime: Long
+    ): Builder?
 }
 
+/**
+ * Since N, the remaining time is a chronometer counting on its own, so the notification is only
+ * posted again when the step changes, the time is adjusted or the progress moves a bucket.
+ * Before N, a chronometer can't count down and the time is updated on every tick.
+ */
 internal class TimerNotif(
     context: Context,
     private val appNavigator: AppNavigator,
@@ -49,23 +68,13 @@ internal class TimerNotif(
 ) : MachineNotif(context) {
 
     private var currentTotalLength: Long = 0L
+    private var isCountingUp: Boolean = false
 
-    private val updateTimeFunc: (Builder, Long) -> Builder = if (timer.more.notifCount) {
-        { b, time ->
-            b.apply {
-                setContentText(time.produceTime())
-                if (currentTotalLength > 0) {
-                    setProgress(
-                        100,
-                        ((time.toFloat() / currentTotalLength.toFloat() * 100).toInt()),
-                        false
-                    )
-                }
-            }
-        }
-    } else {
-        { b, _ -> b }
-    }
+    private var lastTime: Long = 0L
+    private var shownWhen: Long = 0L
+    private var shownProgress: Int = -1
+
+    private val useChronometer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
 
     override fun stub(): Builder {
         return context.buildTimerNotificationBuilder(
@@ -77,12 +86,16 @@ internal class TimerNotif(
     }
 
     override fun withStartEvent(b: Builder, index: TimerIndex): Builder {
-        currentTotalLength = timer.getStep(index)?.length ?: 0L
+        val step = timer.getStep(index)
+        currentTotalLength = step?.length ?: 0L
+        isCountingUp = step?.behaviour?.any { it.type == BehaviourType.HALT } == true
+        shownWhen = 0L
+        shownProgress = -1
         return context.buildTimerNotificationBuilder(
             appNavigator = appNavigator,
             timer = timer,
             state = StreamState.RUNNING,
-            currentStepName = timer.getStep(index)?.label ?: ""
+            currentStepName = step?.label ?: ""
         )
     }
 
@@ -90,10 +103,66 @@ internal class TimerNotif(
         return builder.apply {
             setContentTitle(context.getString(RBase.string.notif_timer_paused, timer.name))
             updateStateToPaused(context, timer.id)
+            if (timer.more.notifCount && useChronometer) {
+                setUsesChronometer(false)
+                setShowWhen(false)
+                setContentText(lastTime.produceTime())
+            }
+        }
+    }
+
+    override fun withUpdateEvent(
+        b: Builder,
+        remaining: Long,
+        exactRemaining: Long,
+        realtime: Long
+    ): Builder? {
+        if (!timer.more.notifCount) return null
+        lastTime = remaining
+
+        val progress = if (currentTotalLength > 0) {
+            (remaining.toFloat() / currentTotalLength.toFloat() * 100).toInt()
+        } else {
+            -1
+        }
+        if (!useChronometer) {
+            return b.apply {
+                setContentText(remaining.produceTime())
+                if (progress != -1) setProgress(100, progress, false)
+            }
+        }
+
+        // Based on the unrounded time, so early or late ticks show the same deadline.
+        val passed = SystemClock.elapsedRealtime() - realtime
+        val now = System.currentTimeMillis()
+        val base = if (isCountingUp) {
+            now - (exactRemaining + passed)
+        } else {
+            now + (exactRemaining - passed)
+        }
+        if (abs(base - shownWhen) < CHRONOMETER_TOLERANCE &&
+            progress / PROGRESS_BUCKET == shownProgress / PROGRESS_BUCKET
+        ) {
+            return null
+        }
+        shownWhen = base
+        shownProgress = progress
+        return b.apply {
+            setContentText(null)
+            setShowWhen(true)
+            setWhen(base)
+            setUsesChronometer(true)
+            setChronometerCountDown(!isCountingUp)
+            if (progress != -1) setProgress(100, progress, false)
         }
     }
 
-    override fun withUpdateEvent(b: Builder, remaining: Long): Builder {
-        return updateTimeFunc.invoke(b, remaining)
+    companion object {
+        /**
+         * Ticks are a little late or early. Differences larger than this are adjustments.
+         */
+        private const val CHRONOMETER_TOLERANCE = 500L
+
+        private const val PROGRESS_BUCKET = 5
     }
 }
@@ -11,18 +11,15 @@ import android.os.Build
 import android.os.Handler
 import android.os.IBinder
 import android.os.Looper
-import android.text.Spanned
-import android.text.format.DateUtils
-import android.text.style.TtsSpan
 import android.util.SparseArray
 import androidx.core.app.NotificationCompat
 import androidx.core.app.ServiceCompat
 import androidx.core.os.postDelayed
-import androidx.core.text.buildSpannedString
+import com.github.deweyreed.timer.component.tts.SpeechFormatter
+import com.github.deweyreed.timer.component.tts.TtsBakery
 import com.github.deweyreed.timer.component.tts.TtsSpeaker
 import com.github.deweyreed.tools.anko.newTask
 import com.github.deweyreed.tools.helper.HandlerHelper
-import com.github.deweyreed.tools.helper.getNumberFormattedQuantityString
 import dagger.hilt.android.AndroidEntryPoint
 import timber.log.Timber
 import xyz.aprildown.timer.app.base.data.PreferenceData.disablePhoneCallBehavior
@@ -37,7 +34,6 @@ import xyz.aprildown.timer.app.base.media.Torch
 import xyz.aprildown.timer.app.base.media.VibrateHelper
 import xyz.aprildown.timer.app.base.ui.AppNavigator
 import xyz.aprildown.timer.app.base.utils.ScreenWakeLock
-import xyz.aprildown.timer.app.base.utils.produceHms
 import xyz.aprildown.timer.app.timer.run.receiver.SchedulerReceiver
 import xyz.aprildown.timer.app.timer.run.screen.ScreenActivity
 import xyz.aprildown.timer.domain.entities.FlashlightAction
@@ -49,9 +45,6 @@ import xyz.aprildown.timer.presentation.stream.MachineContract
 import xyz.aprildown.timer.presentation.stream.TimerIndex
 import xyz.aprildown.timer.presentation.stream.getTimerIndex
 import xyz.aprildown.timer.presentation.stream.putTimerIndex
-import java.time.Instant
-import java.time.LocalDateTime
-import java.time.ZoneId
 import javax.inject.Inject
 import xyz.aprildown.timer.app.base.R as RBase
 
@@ -86,6 +79,7 @@ class MachineService :
     lateinit var appTracker: AppTracker
 
     private lateinit var notificationManager: NotificationManager
+    private lateinit var notificationDispatcher: NotificationDispatcher
 
     private var foregroundNotifId: Int = 0
     private var foregroundNotifBuilder: NotificationCompat.Builder? = null
@@ -94,6 +88,8 @@ class MachineService :
     private var phoneCallReceiver: PhoneCallReceiver? = null
     private var phoneCallPausedTimerIds: List<Int>? = null
 
+    private var hasRestoredTimers = false
+
     private var toForegroundHandler: Handler = Handler(Looper.getMainLooper())
     private var foregroundNotifHandler: Handler? = null
 
@@ -104,14 +100,23 @@ class MachineService :
         presenter.addAllListener(this)
         notificationManager = getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
         notificationManager.buildChannelIfNecessary(this)
+        notificationDispatcher = NotificationDispatcher(
+            notificationManager = notificationManager,
+            onError = appTracker::trackError
+        )
     }
 
     override fun onBind(intent: Intent): IBinder? = binder
 
     override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
-        val timerId = intent?.getIntExtra(EXTRA_TIMER_ID, TimerEntity.NULL_ID)
-            ?: TimerEntity.NULL_ID
-        when (intent?.action) {
+        if (!hasRestoredTimers) {
+            hasRestoredTimers = true
+            // A null intent means the system restarted us after the process died.
+            presenter.restoreTimers(stopIfNone = intent == null)
+        }
+        if (intent == null) return START_STICKY
+        val timerId = intent.getIntExtra(EXTRA_TIMER_ID, TimerEntity.NULL_ID)
+        when (intent.action) {
             ACTION_START -> presenter.startTimer(
                 timerId,
                 intent.getTimerIndex()
@@ -133,20 +138,20 @@ class MachineService :
             ACTION_PAUSE_ALL -> presenter.pauseAll()
             ACTION_STOP_ALL -> presenter.stopAll()
 
-            ACTION_TIMER_SCHEDULE_START -> presenter.scheduleStart(timerId)
-            ACTION_TIMER_SCHEDULE_END -> presenter.scheduleEnd(timerId)
+            ACTION_TIMER_SCHEDULE_START -> intent.getScheduledTimerIds().forEach {
+                presenter.scheduleStart(it)
+            }
+            ACTION_TIMER_SCHEDULE_END -> intent.getScheduledTimerIds().forEach {
+                presenter.scheduleEnd(it)
+            }
 
             else -> {
                 // Handle legacy requests
-                val schedulerId = intent?.getIntExtra(EXTRA_SCHEDULER_ID, SchedulerEntity.NULL_ID)
-                if (schedulerId != null && schedulerId != SchedulerEntity.NULL_ID) {
-                    when (intent.action) {
-                        ACTION_SCHEDULER_START -> SchedulerEntity.ACTION_START
-                        ACTION_SCHEDULER_END -> SchedulerEntity.ACTION_END
-                        else -> null
-                    }?.let {
-                        sendBroadcast(SchedulerReceiver.intent(this, schedulerId, it))
-                    }
+                val schedulerId = intent.getIntExtra(EXTRA_SCHEDULER_ID, SchedulerEntity.NULL_ID)
+                val isSchedulerAction = intent.action == ACTION_SCHEDULER_START ||
+                    intent.action == ACTION_SCHEDULER_END
+                if (schedulerId != SchedulerEntity.NULL_ID && isSchedulerAction) {
+                    sendBroadcast(SchedulerReceiver.intent(this, schedulerId))
                 }
             }
         }
@@ -159,7 +164,12 @@ class MachineService :
     override fun finish() {
         toForegroundHandler.removeCallbacksAndMessages(null)
         ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE)
-        notificationManager.cancelAll()
+        notificationDispatcher.cancelAll()
+        Timber.i(
+            "Notifications posted: %d, coalesced: %d",
+            notificationDispatcher.postedCount,
+            notificationDispatcher.coalescedCount
+        )
         updaterMap.clear()
         stopSelf()
     }
@@ -224,6 +234,8 @@ class MachineService :
         phoneCallReceiver?.unregister()
         phoneCallReceiver = null
         phoneCallPausedTimerIds = null
+        TtsSpeaker.releaseClips()
+        RingtonePreviewKlaxon.releasePrepared(this)
     }
 
     override fun createForegroundNotif() {
@@ -256,7 +268,11 @@ class MachineService :
                 theOnlyTimerName = theOnlyTimerName
             )
             foregroundNotifBuilder = builder
-            notificationManager.notify(foregroundNotifId, builder.build())
+            notificationDispatcher.post(
+                foregroundNotifId,
+                builder.build(),
+                NotificationDispatcher.Priority.State
+            )
         }
     }
 
@@ -288,8 +304,14 @@ class MachineService :
         }
     }
 
+    override fun updateTimerNotification(id: Int, time: Long, exactTime: Long, realtime: Long) {
+        updaterMap[id]?.update(time, exactTime, realtime)?.build()?.let {
+            notificationDispatcher.post(id, it, NotificationDispatcher.Priority.Progress)
+        }
+    }
+
     override fun cancelTimerNotification(id: Int) {
-        notificationManager.cancel(id)
+        notificationDispatcher.cancel(id)
         updaterMap.remove(id)
     }
 
@@ -303,26 +325,17 @@ class MachineService :
 
     override fun started(timerId: Int, index: TimerIndex) {
         updaterMap[timerId]?.start(index)?.build()?.let {
-            notificationManager.notify(timerId, it)
+            notificationDispatcher.post(timerId, it, NotificationDispatcher.Priority.State)
         }
     }
 
     override fun paused(timerId: Int) {
         updaterMap[timerId]?.pause()?.build()?.let {
-            notificationManager.notify(timerId, it)
+            notificationDispatcher.post(timerId, it, NotificationDispatcher.Priority.State)
         }
     }
 
-    override fun updated(timerId: Int, time: Long) {
-        // https://stackoverflow.com/a/43385751/5507158
-        try {
-            updaterMap[timerId]?.update(time)?.build()?.let {
-                notificationManager.notify(timerId, it)
-            }
-        } catch (e: Exception) {
-            appTracker.trackError(e)
-        }
-    }
+    override fun updated(timerId: Int, time: Long) = Unit
 
     override fun finished(timerId: Int) = Unit
 
@@ -345,6 +358,15 @@ class MachineService :
         )
     }
 
+    override fun prepareMusic(timerId: Int, uri: Uri?) {
+        RingtonePreviewKlaxon.prepare(
+            context = this,
+            key = timerId,
+            uri = uri,
+            streamType = storedAudioTypeValue
+        )
+    }
+
     override fun stopMusic() {
         RingtonePreviewKlaxon.stop(this)
     }
@@ -363,15 +385,16 @@ class MachineService :
             // this option becomes unpredictable. We'll have to rely on full-screen intent.
             startActivity(ScreenActivity.intent(this, timerItem.id).newTask())
         } else {
-            notificationManager.notify(
+            notificationDispatcher.post(
                 Constants.NOTIF_ID_SCREEN,
-                buildScreenNotificationBuilder(timerItem, currentStepName).build()
+                buildScreenNotificationBuilder(timerItem, currentStepName).build(),
+                NotificationDispatcher.Priority.State
             )
         }
     }
 
     override fun closeScreen() {
-        notificationManager.cancel(Constants.NOTIF_ID_SCREEN)
+        notificationDispatcher.cancel(Constants.NOTIF_ID_SCREEN)
         ScreenActivity.screen?.finish()
     }
 
@@ -390,39 +413,16 @@ class MachineService :
     }
 
     override fun formatDuration(duration: Long): CharSequence {
-        val (hours, minutes, seconds) = duration.produceHms()
-        return buildString {
-            if (hours > 0) {
-                append(getNumberFormattedQuantityString(RBase.plurals.hours, hours))
-            }
-            if (minutes > 0) {
-                if (isNotEmpty()) {
-                    append(", ")
-                }
-                append(getNumberFormattedQuantityString(RBase.plurals.minutes, minutes))
-            }
-            if (seconds > 0) {
-                if (isNotEmpty()) {
-                    append(", ")
-                }
-                append(getNumberFormattedQuantityString(RBase.plurals.seconds, seconds))
-            }
-            if (isEmpty()) {
-                append(getString(RBase.string.seconds_0))
-            }
-        }
+        return SpeechFormatter.formatDuration(this, duration)
     }
 
     override fun formatTime(time: Long): CharSequence {
-        val localTime =
-            LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())
-        return buildSpannedString {
-            append(
-                DateUtils.formatDateTime(this@MachineService, time, DateUtils.FORMAT_SHOW_TIME),
-                TtsSpan.TimeBuilder(localTime.hour, localTime.minute).build(),
-                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
-            )
-        }
+        return SpeechFormatter.formatTime(this, time)
+    }
+
+    override fun prepareSpeech(timer: TimerEntity) {
+        TtsBakery.bakeTimer(this, timer)
+        TtsSpeaker.prepareClips(this, timer)
     }
 
     override fun stopReading() {
@@ -454,9 +454,9 @@ class MachineService :
         }
     }
 
-    override fun playTone() {
+    override fun playTone(delay: Long) {
         if (Beeper.isLoaded) {
-            Beeper.play(this)
+            Beeper.play(this, delay = delay)
         }
     }
 
@@ -466,7 +466,7 @@ class MachineService :
 
     override fun showBehaviourNotification(timer: TimerEntity, index: TimerIndex, duration: Int) {
         dismissBehaviourNotification()
-        notificationManager.notify(
+        notificationDispatcher.post(
             Constants.NOTIF_ID_NOTIFICATION,
             buildBehaviourNotification(
                 appNavigator = appNavigator,
@@ -474,7 +474,8 @@ class MachineService :
                 timer = timer,
                 index = index,
                 duration = duration
-            ).build()
+            ).build(),
+            NotificationDispatcher.Priority.State
         )
     }
 
@@ -487,7 +488,7 @@ class MachineService :
     }
 
     override fun dismissBehaviourNotification() {
-        notificationManager.cancel(Constants.NOTIF_ID_NOTIFICATION)
+        notificationDispatcher.cancel(Constants.NOTIF_ID_NOTIFICATION)
     }
 
     companion object {
@@ -514,6 +515,7 @@ class MachineService :
         private const val EXTRA_AMOUNT = "${EXTRA_PREFIX}AMOUNT"
 
         private const val EXTRA_SCHEDULER_ID = "${EXTRA_PREFIX}SCHEDULER_ID"
+        private const val EXTRA_TIMER_IDS = "${EXTRA_PREFIX}IDS"
 
         private fun pureIntent(context: Context): Intent =
             Intent(context, MachineService::class.java)
@@ -562,13 +564,21 @@ class MachineService :
         fun stopAllIntent(context: Context): Intent =
             pureIntent(context).setAction(ACTION_STOP_ALL)
 
-        fun scheduleTimerStartIntent(context: Context, timerId: Int): Intent =
+        fun scheduleTimerStartIntent(context: Context, vararg timerIds: Int): Intent =
             pureIntent(context).setAction(ACTION_TIMER_SCHEDULE_START)
-                .putExtra(EXTRA_TIMER_ID, timerId)
+                .putExtra(EXTRA_TIMER_IDS, timerIds)
 
-        fun scheduleTimerEndIntent(context: Context, timerId: Int): Intent =
+        fun scheduleTimerEndIntent(context: Context, vararg timerIds: Int): Intent =
             pureIntent(context).setAction(ACTION_TIMER_SCHEDULE_END)
-                .putExtra(EXTRA_TIMER_ID, timerId)
+                .putExtra(EXTRA_TIMER_IDS, timerIds)
+
+        /**
+         * Intents before [EXTRA_TIMER_IDS] have one [EXTRA_TIMER_ID].
+         */
+        private fun Intent.getScheduledTimerIds(): IntArray {
+            return getIntArrayExtra(EXTRA_TIMER_IDS)
+                ?: intArrayOf(getIntExtra(EXTRA_TIMER_ID, TimerEntity.NULL_ID))
+        }
 
         fun bindIntent(context: Context) = pureIntent(context)
     }
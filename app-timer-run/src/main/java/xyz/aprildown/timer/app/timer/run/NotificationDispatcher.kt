@@ -0,0 +1,112 @@
+package xyz.aprildown.timer.app.timer.run
+
+import android.app.Notification
+import android.app.NotificationManager
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import kotlin.math.min
+
+/**
+ * Posts notifications within [postsPerSecond], which should stay under the system's limit
+ * so that no update is dropped. Updates waiting for the budget are coalesced by id
+ * and state changes are posted before progress.
+ *
+ * Call it from the main thread.
+ */
+internal class NotificationDispatcher(
+    private val notificationManager: NotificationManager,
+    private val onError: (Exception) -> Unit,
+    private val postsPerSecond: Int = DEFAULT_POSTS_PER_SECOND,
+    private val handler: Handler = Handler(Looper.getMainLooper()),
+    private val clock: () -> Long = SystemClock::elapsedRealtime,
+) {
+    enum class Priority {
+        /** Starts, pauses, alerts and the service summary. */
+        State,
+
+        /** Remaining time and progress. */
+        Progress,
+    }
+
+    private class Pending(val notification: Notification, val priority: Priority)
+
+    private val pending = LinkedHashMap<Int, Pending>()
+
+    private var tokens = postsPerSecond.toDouble()
+    private var lastRefill = clock()
+
+    private val flushRunnable = Runnable { flush() }
+
+    /**
+     * Notifications passed to the system.
+     */
+    var postedCount: Int = 0
+        private set
+
+    /**
+     * Notifications replaced by a newer one before they were posted.
+     */
+    var coalescedCount: Int = 0
+        private set
+
+    fun post(id: Int, notification: Notification, priority: Priority) {
+        val last = pending.remove(id)
+        if (last != null) {
+            ++coalescedCount
+        }
+        pending[id] = Pending(
+            notification = notification,
+            // A pending state change shouldn't wait like a progress update.
+            priority = if (last != null && last.priority < priority) last.priority else priority
+        )
+        flush()
+    }
+
+    fun cancel(id: Int) {
+        pending.remove(id)
+        notificationManager.cancel(id)
+    }
+
+    fun cancelAll() {
+        pending.clear()
+        handler.removeCallbacks(flushRunnable)
+        notificationManager.cancelAll()
+    }
+
+    private fun flush() {
+        handler.removeCallbacks(flushRunnable)
+        refill()
+        while (tokens >= 1 && pending.isNotEmpty()) {
+            val id = pending.entries.minBy { it.value.priority }.key
+            val next = pending.remove(id) ?: break
+            tokens -= 1
+            try {
+                notificationManager.notify(id, next.notification)
+                ++postedCount
+            } catch (e: Exception) {
+                // https://stackoverflow.com/a/43385751/5507158
+                onError(e)
+            }
+        }
+        if (pending.isNotEmpty()) {
+            handler.postDelayed(flushRunnable, ((1 - tokens) * 1_000 / postsPerSecond).toLong() + 1)
+        }
+    }
+
+    private fun refill() {
+        val now = clock()
+        tokens = min(
+            postsPerSecond.toDouble(),
+            tokens + (now - lastRefill) * postsPerSecond / 1_000.0
+        )
+        lastRefill = now
+    }
+
+    companion object {
+        /**
+         * The system drops updates beyond 5 per second for an app.
+         */
+        private const val DEFAULT_POSTS_PER_SECOND = 4
+    }
+}
@@ -9,19 +9,26 @@ import androidx.core.content.ContextCompat
 import androidx.core.content.getSystemService
 import com.github.deweyreed.tools.helper.HandlerHelper
 import dagger.hilt.android.AndroidEntryPoint
-import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeoutOrNull
 import xyz.aprildown.timer.app.timer.run.MachineService
-import xyz.aprildown.timer.data.job.SchedulerJob
-import xyz.aprildown.timer.data.job.SchedulerJob.Companion.EXTRA_ACTION
-import xyz.aprildown.timer.data.job.SchedulerJob.Companion.EXTRA_ID
-import xyz.aprildown.timer.data.job.SchedulerJob.Companion.RECEIVE_JOB_ACTION
+import xyz.aprildown.timer.data.job.SchedulerAlarms
+import xyz.aprildown.timer.data.job.SchedulerAlarms.Companion.EXTRA_ID
+import xyz.aprildown.timer.data.job.SchedulerAlarms.Companion.RECEIVE_JOB_ACTION
 import xyz.aprildown.timer.domain.entities.SchedulerEntity
-import xyz.aprildown.timer.domain.entities.TimerEntity
 import xyz.aprildown.timer.presentation.scheduler.SchedulerReceiverPresenter
 import javax.inject.Inject
 
 /**
- * This package's name is used in the [SchedulerJob].
+ * This package's name is used in the [SchedulerAlarms].
+ *
+ * Broadcasts are handled on an IO thread with [goAsync] one after another,
+ * so neither the database nor the saved alarms are read on the main thread.
  */
 @AndroidEntryPoint
 class SchedulerReceiver : BroadcastReceiver() {
@@ -29,56 +36,104 @@ class SchedulerReceiver : BroadcastReceiver() {
     @Inject
     lateinit var presenter: SchedulerReceiverPresenter
 
+    @Inject
+    lateinit var schedulerAlarms: SchedulerAlarms
+
     override fun onReceive(context: Context, intent: Intent) {
-        if (intent.action != RECEIVE_JOB_ACTION) return
-        val schedulerId = intent.getIntExtra(EXTRA_ID, SchedulerEntity.NULL_ID)
-        when (intent.getIntExtra(EXTRA_ACTION, -1)) {
-            SchedulerEntity.ACTION_START -> {
-                val timerId = runBlocking { presenter.handleFiredScheduler(schedulerId) }
-                if (timerId != TimerEntity.NULL_ID &&
-                    runBlocking { presenter.isValidTimerId(timerId) }
-                ) {
-                    // https://proandroiddev.com/when-your-app-makes-android-foreground-services-misbehave-8dbcc57dd99c
-                    HandlerHelper.post {
-                        ContextCompat.startForegroundService(
-                            context,
-                            MachineService.scheduleTimerStartIntent(context, timerId)
-                        )
+        val action = intent.action
+        if (action != RECEIVE_JOB_ACTION && action !in RESCHEDULE_ACTIONS) return
+        val appContext = context.applicationContext
+        val pendingResult = goAsync()
+        scope.launch {
+            try {
+                val isDone = withTimeoutOrNull(TIMEOUT) {
+                    mutex.withLock {
+                        if (action == RECEIVE_JOB_ACTION) {
+                            if (intent.hasExtra(EXTRA_ID)) {
+                                handleSchedulers(
+                                    appContext,
+                                    listOf(intent.getIntExtra(EXTRA_ID, SchedulerEntity.NULL_ID))
+                                )
+                            } else {
+                                // The alarm of SchedulerAlarms, which can be due for many.
+                                // They're only removed once they're handled.
+                                val due = schedulerAlarms.getDue()
+                                handleSchedulers(appContext, due.map { it.schedulerId })
+                                schedulerAlarms.removeDue(due)
+                            }
+                        } else {
+                            presenter.rescheduleAll()
+                        }
                     }
                 }
+                if (isDone == null && action == RECEIVE_JOB_ACTION) {
+                    // Try the ones left due again.
+                    schedulerAlarms.rearm()
+                }
+            } finally {
+                pendingResult.finish()
             }
-            SchedulerEntity.ACTION_END -> {
-                val timerId = runBlocking { presenter.handleFiredScheduler(schedulerId) }
-                if (timerId != TimerEntity.NULL_ID &&
-                    runBlocking { presenter.isValidTimerId(timerId) }
-                ) {
-                    fun sendStopIntent() {
-                        HandlerHelper.post {
-                            ContextCompat.startForegroundService(
-                                context,
-                                MachineService.scheduleTimerEndIntent(context, timerId)
-                            )
-                        }
-                    }
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                        context.getSystemService<NotificationManager>()?.let {
-                            if (it.activeNotifications.isNotEmpty()) {
-                                sendStopIntent()
-                            }
-                        }
-                    } else {
+        }
+    }
+
+    private suspend fun handleSchedulers(context: Context, schedulerIds: List<Int>) {
+        val fired = presenter.handleFiredSchedulers(schedulerIds)
+        val startTimerIds = fired.filter { it.action == SchedulerEntity.ACTION_START }
+            .map { it.timerId }
+            .distinct()
+        val endTimerIds = fired.filter { it.action == SchedulerEntity.ACTION_END }
+            .map { it.timerId }
+            .distinct()
+
+        if (startTimerIds.isNotEmpty()) {
+            // https://proandroiddev.com/when-your-app-makes-android-foreground-services-misbehave-8dbcc57dd99c
+            HandlerHelper.post {
+                ContextCompat.startForegroundService(
+                    context,
+                    MachineService.scheduleTimerStartIntent(context, *startTimerIds.toIntArray())
+                )
+            }
+        }
+        if (endTimerIds.isNotEmpty()) {
+            fun sendStopIntent() {
+                HandlerHelper.post {
+                    ContextCompat.startForegroundService(
+                        context,
+                        MachineService.scheduleTimerEndIntent(context, *endTimerIds.toIntArray())
+                    )
+                }
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.getSystemService<NotificationManager>()?.let {
+                    if (it.activeNotifications.isNotEmpty()) {
                         sendStopIntent()
                     }
                 }
+            } else {
+                sendStopIntent()
             }
         }
     }
 
     companion object {
-        fun intent(context: Context, schedulerId: Int, action: Int): Intent =
+        private val RESCHEDULE_ACTIONS = listOf(
+            Intent.ACTION_BOOT_COMPLETED,
+            Intent.ACTION_MY_PACKAGE_REPLACED,
+            Intent.ACTION_TIME_CHANGED,
+            Intent.ACTION_TIMEZONE_CHANGED,
+        )
+
+        /**
+         * Stay under the 10 seconds a receiver has after [goAsync].
+         */
+        private const val TIMEOUT = 9_000L
+
+        private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        private val mutex = Mutex()
+
+        fun intent(context: Context, schedulerId: Int): Intent =
             Intent(context, SchedulerReceiver::class.java)
                 .setAction(RECEIVE_JOB_ACTION)
                 .putExtra(EXTRA_ID, schedulerId)
-                .putExtra(EXTRA_ACTION, action)
     }
 }
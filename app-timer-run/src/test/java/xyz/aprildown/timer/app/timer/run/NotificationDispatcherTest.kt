@@ -0,0 +1,135 @@
+package xyz.aprildown.timer.app.timer.run
+
+import android.app.Notification
+import android.app.NotificationManager
+import android.os.Handler
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.verify
+
+internal class NotificationDispatcherTest {
+
+    private val notificationManager: NotificationManager = mock()
+    private var now = 0L
+
+    /**
+     * The last flush [handler] was asked to run.
+     */
+    private var scheduledFlush: Runnable? = null
+    private val handler: Handler = mock {
+        on { postDelayed(any(), any()) } doAnswer {
+            scheduledFlush = it.getArgument(0)
+            true
+        }
+        on { removeCallbacks(anyOrNull()) } doAnswer {
+            if (it.getArgument<Runnable?>(0) === scheduledFlush) {
+                scheduledFlush = null
+            }
+        }
+    }
+
+    private val dispatcher = NotificationDispatcher(
+        notificationManager = notificationManager,
+        onError = { throw it },
+        postsPerSecond = 2,
+        handler = handler,
+        clock = { now },
+    )
+
+    private fun advanceBy(millis: Long) {
+        now += millis
+        scheduledFlush?.run()
+    }
+
+    /**
+     * Uses up the budget of [NotificationDispatcher] with ids below 0.
+     */
+    private fun useUpTokens() {
+        dispatcher.post(-1, mock(), NotificationDispatcher.Priority.State)
+        dispatcher.post(-2, mock(), NotificationDispatcher.Priority.State)
+        assertEquals(2, dispatcher.postedCount)
+    }
+
+    @Test
+    fun refillTokens() {
+        useUpTokens()
+
+        val notification: Notification = mock()
+        dispatcher.post(1, notification, NotificationDispatcher.Priority.Progress)
+        verify(notificationManager, never()).notify(eq(1), any())
+        verify(handler).postDelayed(any(), eq(501L))
+
+        advanceBy(499)
+        verify(notificationManager, never()).notify(eq(1), any())
+
+        advanceBy(2)
+        verify(notificationManager).notify(1, notification)
+        assertEquals(3, dispatcher.postedCount)
+    }
+
+    @Test
+    fun coalesceById() {
+        useUpTokens()
+
+        val first: Notification = mock()
+        val second: Notification = mock()
+        dispatcher.post(1, first, NotificationDispatcher.Priority.Progress)
+        dispatcher.post(1, second, NotificationDispatcher.Priority.Progress)
+        assertEquals(1, dispatcher.coalescedCount)
+
+        advanceBy(1_000)
+        verify(notificationManager, never()).notify(1, first)
+        verify(notificationManager).notify(1, second)
+        assertEquals(3, dispatcher.postedCount)
+    }
+
+    @Test
+    fun flushStateBeforeProgress() {
+        useUpTokens()
+
+        val progress: Notification = mock()
+        val state: Notification = mock()
+        dispatcher.post(1, progress, NotificationDispatcher.Priority.Progress)
+        dispatcher.post(2, state, NotificationDispatcher.Priority.State)
+
+        advanceBy(501)
+        verify(notificationManager).notify(2, state)
+        verify(notificationManager, never()).notify(1, progress)
+
+        advanceBy(500)
+        verify(notificationManager).notify(1, progress)
+    }
+
+    @Test
+    fun keepStatePriorityWhenCoalesced() {
+        useUpTokens()
+
+        val progress: Notification = mock()
+        dispatcher.post(1, mock(), NotificationDispatcher.Priority.Progress)
+        dispatcher.post(2, mock(), NotificationDispatcher.Priority.State)
+        dispatcher.post(2, progress, NotificationDispatcher.Priority.Progress)
+
+        advanceBy(501)
+        verify(notificationManager).notify(2, progress)
+        verify(notificationManager, never()).notify(eq(1), any())
+    }
+
+    @Test
+    fun cancelDropsPendingUpdate() {
+        useUpTokens()
+
+        dispatcher.post(1, mock(), NotificationDispatcher.Priority.Progress)
+        dispatcher.cancel(1)
+        verify(notificationManager).cancel(1)
+
+        advanceBy(1_000)
+        verify(notificationManager, never()).notify(eq(1), any())
+        assertEquals(2, dispatcher.postedCount)
+    }
+}
@@ -19,7 +19,6 @@ import com.github.deweyreed.tools.helper.hasPermissions
 import dagger.Lazy
 import dagger.hilt.android.HiltAndroidApp
 import io.github.deweyreed.timer.utils.DynamicThemeDelegate
-import kotlinx.coroutines.runBlocking
 import timber.log.Timber
 import xyz.aprildown.theme.Theme
 import xyz.aprildown.timer.app.base.data.DarkTheme
@@ -30,9 +29,6 @@ import xyz.aprildown.timer.app.base.data.PreferenceData.useVoiceContent2
 import xyz.aprildown.timer.app.base.utils.AppThemeUtils
 import xyz.aprildown.timer.app.base.utils.LogToFileTree
 import xyz.aprildown.timer.component.key.ImageActionMapper
-import xyz.aprildown.timer.data.job.initJob
-import xyz.aprildown.timer.domain.repositories.PreferencesRepository
-import xyz.aprildown.timer.domain.usecases.home.TipManager
 import xyz.aprildown.timer.domain.utils.AppConfig
 import xyz.aprildown.timer.domain.utils.AppTracker
 import xyz.aprildown.timer.domain.utils.Constants
@@ -46,18 +42,12 @@ class App : Application(), WorkManagerConfiguration.Provider, ImageLoaderFactory
     @Inject
     lateinit var sharedPreferences: SharedPreferences
 
-    @Inject
-    lateinit var prefRepo: PreferencesRepository
-
     @Inject
     lateinit var workerFactory: Lazy<HiltWorkerFactory>
 
     @Inject
     lateinit var appTracker: AppTracker
 
-    @Inject
-    lateinit var tipManager: TipManager
-
     override fun onCreate() {
         super.onCreate()
 
@@ -65,10 +55,8 @@ class App : Application(), WorkManagerConfiguration.Provider, ImageLoaderFactory
 
         setUpAnalytics()
         setUpLogger()
-        setUpAndroidJob()
         setUpTheme()
         setUpForFirstStart()
-        setUpMissedTimerTip()
     }
 
     override fun onConfigurationChanged(newConfig: Configuration) {
@@ -87,10 +75,6 @@ class App : Application(), WorkManagerConfiguration.Provider, ImageLoaderFactory
         Timber.plant(LogToFileTree(this))
     }
 
-    private fun setUpAndroidJob() {
-        initJob()
-    }
-
     private fun setUpTheme() {
         DarkTheme(this).applyAppCompatDelegate()
         Theme.init(
@@ -177,15 +161,6 @@ class App : Application(), WorkManagerConfiguration.Provider, ImageLoaderFactory
         }
     }
 
-    private fun setUpMissedTimerTip() {
-        runBlocking {
-            if (prefRepo.getBoolean(Constants.PREF_HAS_RUNNING_TIMERS, false)) {
-                prefRepo.setBoolean(Constants.PREF_HAS_RUNNING_TIMERS, false)
-                tipManager.setTip(TipManager.TIP_MISSED_TIMER)
-            }
-        }
-    }
-
     override val workManagerConfiguration: WorkManagerConfiguration
         get() {
             return WorkManagerConfiguration.Builder()
@@ -0,0 +1,87 @@
+package com.github.deweyreed.timer.component.tts
+
+import android.media.AudioAttributes
+import android.media.SoundPool
+import java.io.File
+
+/**
+ * Plays short speeches decoded ahead in a [SoundPool], so a count starts right away
+ * instead of waiting for a new MediaPlayer to prepare every second.
+ *
+ * Call it from [SpeechThread].
+ */
+internal object ClipPlayer {
+
+    /**
+     * A SoundPool sample must stay under about 1MB after decoding.
+     */
+    const val MAX_CLIP_DURATION = 3_000L
+
+    private const val MAX_STREAMS = 2
+
+    private var soundPool: SoundPool? = null
+    private var streamType: Int = 0
+
+    private val sampleIds = HashMap<File, Int>()
+    private val loadedSampleIds = HashSet<Int>()
+    private var lastStreamId = 0
+
+    /**
+     * Decode [files] in the background. Clips loaded before are kept.
+     */
+    fun preload(files: Collection<File>, streamType: Int) {
+        var pool = soundPool
+        if (pool == null || this.streamType != streamType) {
+            release()
+            pool = SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(
+                    AudioAttributes.Builder()
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .setLegacyStreamType(streamType)
+                        .build()
+                )
+                .build()
+            pool.setOnLoadCompleteListener { _, sampleId, status ->
+                if (status == 0) {
+                    loadedSampleIds += sampleId
+                }
+            }
+            soundPool = pool
+            this.streamType = streamType
+        }
+        files.forEach { file ->
+            if (file !in sampleIds) {
+                sampleIds[file] = pool.load(file.path, 1)
+            }
+        }
+    }
+
+    /**
+     * @return false if [file] isn't ready, and the caller should play it another way.
+     */
+    fun play(file: File, streamType: Int): Boolean {
+        val pool = soundPool ?: return false
+        if (streamType != this.streamType) return false
+        val sampleId = sampleIds[file] ?: return false
+        if (sampleId !in loadedSampleIds) return false
+        stop()
+        lastStreamId = pool.play(sampleId, 1f, 1f, 1, 0, 1f)
+        return lastStreamId != 0
+    }
+
+    fun stop() {
+        if (lastStreamId != 0) {
+            soundPool?.stop(lastStreamId)
+            lastStreamId = 0
+        }
+    }
+
+    fun release() {
+        soundPool?.release()
+        soundPool = null
+        sampleIds.clear()
+        loadedSampleIds.clear()
+        lastStreamId = 0
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.deweyreed.timer.component.tts
+
+import android.content.Context
+import android.text.Spanned
+import android.text.format.DateUtils
+import android.text.style.TtsSpan
+import androidx.core.text.buildSpannedString
+import com.github.deweyreed.tools.helper.getNumberFormattedQuantityString
+import xyz.aprildown.timer.app.base.R
+import xyz.aprildown.timer.app.base.utils.produceHms
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+
+/**
+ * How durations and times are spoken. [TtsBakery] uses it too, so baked lines match.
+ */
+object SpeechFormatter {
+    fun formatDuration(context: Context, duration: Long): CharSequence {
+        val (hours, minutes, seconds) = duration.produceHms()
+        return buildString {
+            if (hours > 0) {
+                append(context.getNumberFormattedQuantityString(R.plurals.hours, hours))
+            }
+            if (minutes > 0) {
+                if (isNotEmpty()) {
+                    append(", ")
+                }
+                append(context.getNumberFormattedQuantityString(R.plurals.minutes, minutes))
+            }
+            if (seconds > 0) {
+                if (isNotEmpty()) {
+                    append(", ")
+                }
+                append(context.getNumberFormattedQuantityString(R.plurals.seconds, seconds))
+            }
+            if (isEmpty()) {
+                append(context.getString(R.string.seconds_0))
+            }
+        }
+    }
+
+    fun formatTime(context: Context, time: Long): CharSequence {
+        val localTime =
+            LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())
+        return buildSpannedString {
+            append(
+                DateUtils.formatDateTime(context, time, DateUtils.FORMAT_SHOW_TIME),
+                TtsSpan.TimeBuilder(localTime.hour, localTime.minute).build(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+            )
+        }
+    }
+}
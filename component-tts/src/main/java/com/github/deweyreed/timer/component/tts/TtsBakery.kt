@@ -2,34 +2,98 @@ package com.github.deweyreed.timer.component.tts
 
 import android.content.Context
 import androidx.work.Constraints
-import androidx.work.NetworkType
+import androidx.work.ExistingWorkPolicy
 import androidx.work.OneTimeWorkRequest
 import androidx.work.WorkManager
-import java.io.File
+import kotlinx.coroutines.Dispatchers
+import xyz.aprildown.timer.app.base.R
+import xyz.aprildown.timer.app.base.data.PreferenceData.isTtsBakeryOpen
+import xyz.aprildown.timer.domain.entities.TimerEntity
+import xyz.aprildown.timer.domain.utils.fireAndForget
+import xyz.aprildown.timer.presentation.stream.collectVoiceLines
+import xyz.aprildown.tools.helper.safeSharedPreference
 
 object TtsBakery {
-    fun getSpeechFile(context: Context, text: String): File? {
+    internal fun getSpeech(context: Context, text: String): BakedSpeech? {
         return TtsBakeryDiskCache.get(context, text)
     }
 
     fun scheduleBaking(context: Context, text: String) {
-        if (text.isBlank()) return
+        scheduleBaking(context, listOf(text))
+    }
+
+    /**
+     * Synthesize [texts] that aren't baked yet. Batches run one after another
+     * and each uses a single TextToSpeech.
+     */
+    fun scheduleBaking(context: Context, texts: Collection<String>) {
+        val batches = texts.filter { it.isNotBlank() }.distinct().chunkedForData()
+        if (batches.isEmpty()) return
         WorkManager.getInstance(context)
-            .enqueue(
-                OneTimeWorkRequest.Builder(TtsBakeryWorker::class.java)
-                    .setInputData(TtsBakeryWorker.getData(text))
-                    .setConstraints(
-                        Constraints(
-                            requiredNetworkType = NetworkType.CONNECTED,
-                            requiresBatteryNotLow = true,
-                            requiresStorageNotLow = true,
-                        )
-                    )
-                    .build()
+            .enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                batches.map { batch ->
+                    OneTimeWorkRequest.Builder(TtsBakeryWorker::class.java)
+                        .setInputData(TtsBakeryWorker.getData(batch))
+                        // The engine may synthesize offline, so the network isn't required.
+                        .setConstraints(Constraints(requiresStorageNotLow = true))
+                        .build()
+                }
+            )
+    }
+
+    /**
+     * Bake what [timer] says when it's saved or started,
+     * so even its first run doesn't wait for the engine.
+     */
+    fun bakeTimer(context: Context, timer: TimerEntity) {
+        val appContext = context.applicationContext
+        if (!appContext.safeSharedPreference.isTtsBakeryOpen) return
+        fireAndForget(Dispatchers.Default) {
+            val lines = timer.collectVoiceLines(
+                durationFormatter = { SpeechFormatter.formatDuration(appContext, it) },
+                halfContent = appContext.getString(R.string.half_content),
             )
+            scheduleBaking(
+                appContext,
+                lines.filter { getBakedCountFile(context = appContext, content = it) == null }
+            )
+        }
     }
 
     fun tearDown(context: Context) {
         TtsBakeryDiskCache.deleteAll(context)
     }
+
+    /**
+     * Keep each batch under the size limit of WorkManager's Data.
+     */
+    private fun List<String>.chunkedForData(): List<List<String>> {
+        val result = mutableListOf<List<String>>()
+        var batch = mutableListOf<String>()
+        var batchBytes = 0
+        forEach { text ->
+            val bytes = text.encodeToByteArray().size
+            if (bytes > MAX_BATCH_BYTES) return@forEach
+            if (batchBytes + bytes > MAX_BATCH_BYTES) {
+                result += batch
+                batch = mutableListOf()
+                batchBytes = 0
+            }
+            batch += text
+            batchBytes += bytes
+        }
+        if (batch.isNotEmpty()) {
+            result += batch
+        }
+        return result
+    }
+
+    private const val UNIQUE_WORK_NAME = "tts_bakery"
+
+    /**
+     * Data holds 10KB at most and keys take some of it.
+     */
+    private const val MAX_BATCH_BYTES = 8 * 1024
 }
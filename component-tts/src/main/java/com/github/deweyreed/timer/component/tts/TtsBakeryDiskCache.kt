@@ -2,77 +2,143 @@ package com.github.deweyreed.timer.component.tts
 
 import android.content.Context
 import android.media.MediaMetadataRetriever
+import android.os.Build
 import com.bumptech.glide.disklrucache.DiskLruCache
 import timber.log.Timber
 import java.io.File
 import java.io.IOException
 import java.security.MessageDigest
 
+/**
+ * A baked speech and how long it plays.
+ */
+internal class BakedSpeech(val file: File, val duration: Long)
+
+/**
+ * Speeches are validated and measured once when they're put, so a lookup before speaking
+ * only reads [index] or, for the first time after the process starts, the disk cache.
+ * Index hits still touch the disk cache to keep its LRU order.
+ */
 internal object TtsBakeryDiskCache {
+    /**
+     * Version 2 stores durations in [VALUE_DURATION].
+     */
+    private const val CACHE_VERSION = 2
+    private const val VALUE_SPEECH = 0
+    private const val VALUE_DURATION = 1
+
     private var diskLruCache: DiskLruCache? = null
 
+    /**
+     * Texts to their speeches. A text missing here may still be on the disk.
+     */
+    private val index = HashMap<String, BakedSpeech>()
+
     private fun getDiskLruCache(context: Context): DiskLruCache {
         if (diskLruCache == null) {
             diskLruCache = DiskLruCache.open(
                 File(context.cacheDir, "tts-bakery"),
-                1,
-                1,
+                CACHE_VERSION,
+                2,
                 100 * 1024 * 1024
             )
         }
         return checkNotNull(diskLruCache)
     }
 
-    fun get(context: Context, text: String): File? {
+    fun get(context: Context, text: String): BakedSpeech? = synchronized(this) {
         val key = getSpeechKey(text)
-        var result: File? = null
         try {
-            result = getDiskLruCache(context).get(key)?.getFile(0)
+            // Always ask the disk cache so it sees the use and doesn't evict the speech first.
+            val value = getDiskLruCache(context).get(key)
+            if (value == null) {
+                // The disk cache may have evicted it.
+                index.remove(text)
+                return null
+            }
+            index[text]?.let { return it }
+
+            val duration = value.getString(VALUE_DURATION).toLongOrNull()
+            if (duration == null || duration <= 0L) {
+                delete(context, text)
+                return null
+            }
+            return BakedSpeech(file = value.getFile(VALUE_SPEECH), duration = duration)
+                .also { index[text] = it }
         } catch (e: IOException) {
             Timber.e(e)
+            return null
         }
-        if (result != null && !isValidTtsFile(result)) {
-            delete(context, text)
-            result = null
-        }
-        return result
     }
 
-    private fun isValidTtsFile(file: File): Boolean {
+    /**
+     * @return The duration of a valid speech or null.
+     */
+    private fun measureTtsFile(file: File): Long? {
+        var retriever: MediaMetadataRetriever? = null
         return try {
-            val retriever = MediaMetadataRetriever()
+            retriever = MediaMetadataRetriever()
             retriever.setDataSource(file.canonicalPath)
-            retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_HAS_AUDIO) != null
+            if (retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_HAS_AUDIO) == null) {
+                null
+            } else {
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)
+                    ?.toLongOrNull()
+                    ?.takeIf { it > 0L }
+            }
         } catch (_: Exception) {
-            false
+            null
+        } finally {
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    retriever?.close()
+                } else {
+                    retriever?.release()
+                }
+            } catch (_: Exception) {
+                // Ignore
+            }
         }
     }
 
-    fun put(context: Context, text: String, file: File): Unit = synchronized(this) {
-        if (!isValidTtsFile(file)) {
+    /**
+     * Measuring and copying [file] happen outside the lock so [get] isn't blocked by them.
+     * [DiskLruCache] guards its own edits.
+     */
+    fun put(context: Context, text: String, file: File) {
+        val duration = measureTtsFile(file)
+        if (duration == null) {
             file.delete()
             error("Invalid TTS file")
         }
 
         val key = getSpeechKey(text)
         try {
-            val editor = getDiskLruCache(context).edit(key)
+            val editor = synchronized(this) { getDiskLruCache(context) }.edit(key)
                 ?: error("Null editor")
             try {
-                val cacheFile = editor.getFile(0)
-                file.copyTo(cacheFile)
-                editor.commit()
+                val cacheFile = editor.getFile(VALUE_SPEECH)
+                file.copyTo(cacheFile, overwrite = true)
+                editor.set(VALUE_DURATION, duration.toString())
+                synchronized(this) {
+                    editor.commit()
+                    index[text] = BakedSpeech(file = cacheFile, duration = duration)
+                }
             } finally {
                 editor.abortUnlessCommitted()
             }
         } catch (e: IOException) {
             Timber.e(e)
+        } catch (e: IllegalStateException) {
+            // deleteAll closed the cache during the edit.
+            Timber.e(e)
         } finally {
             file.delete()
         }
     }
 
     private fun delete(context: Context, text: String) {
+        index.remove(text)
         val key = getSpeechKey(text)
         try {
             getDiskLruCache(context).remove(key)
@@ -81,7 +147,8 @@ internal object TtsBakeryDiskCache {
         }
     }
 
-    fun deleteAll(context: Context) {
+    fun deleteAll(context: Context): Unit = synchronized(this) {
+        index.clear()
         try {
             getDiskLruCache(context).delete()
             diskLruCache = null
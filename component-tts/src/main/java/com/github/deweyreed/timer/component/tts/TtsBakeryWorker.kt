@@ -50,24 +50,34 @@ internal class TtsBakeryWorker @AssistedInject constructor(
     }
 
     override suspend fun doWork(): Result {
-        val data = inputData
-        val text =
-            data.getString(EXTRA_TEXT)?.takeIf { it.isNotBlank() } ?: return Result.success()
-        if (TtsBakeryDiskCache.get(applicationContext, text) != null) return Result.success()
-        return try {
-            synthesize(text)
-            Result.success()
-        } catch (e: CancellationException) {
-            throw e
-        } catch (e: Exception) {
-            Timber.e(e)
-            Result.retry()
+        val texts = inputData.getStringArray(EXTRA_TEXTS)
+            ?.filter { it.isNotBlank() }
+            ?.takeIf { it.isNotEmpty() }
+            ?: return Result.success()
+        var hasFailure = false
+        try {
+            texts.forEach { text ->
+                if (TtsBakeryDiskCache.get(applicationContext, text) != null) return@forEach
+                try {
+                    synthesize(text)
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Timber.e(e)
+                    hasFailure = true
+                }
+            }
         } finally {
             textToSpeech?.run {
                 stop()
                 shutdown()
             }
         }
+        return if (hasFailure && runAttemptCount < MAX_ATTEMPTS) {
+            Result.retry()
+        } else {
+            Result.success()
+        }
     }
 
     private suspend fun synthesize(text: String): Unit = withContext(ioDispatcher) {
@@ -82,11 +92,16 @@ internal class TtsBakeryWorker @AssistedInject constructor(
     }
 
     companion object {
-        private const val EXTRA_TEXT = "text"
+        private const val EXTRA_TEXTS = "texts"
+
+        /**
+         * Texts baked in a retry are skipped, so a few more attempts are cheap.
+         */
+        private const val MAX_ATTEMPTS = 3
 
-        fun getData(text: String): Data {
+        fun getData(texts: List<String>): Data {
             return Data.Builder()
-                .putString(EXTRA_TEXT, text)
+                .putStringArray(EXTRA_TEXTS, texts.toTypedArray())
                 .build()
         }
 
@@ -3,9 +3,10 @@ package com.github.deweyreed.timer.component.tts
 import android.app.Application
 import android.content.Context
 import android.media.AudioManager
-import android.net.Uri
 import android.os.Handler
+import android.os.HandlerThread
 import android.os.Looper
+import android.os.Process
 import android.speech.tts.TextToSpeech
 import android.speech.tts.UtteranceProgressListener
 import android.text.format.DateUtils
@@ -17,6 +18,7 @@ import com.github.deweyreed.timer.component.tts.TtsSpeaker.onDone
 import com.github.deweyreed.tools.anko.longToast
 import com.github.deweyreed.tools.helper.HandlerHelper
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.android.asCoroutineDispatcher
 import kotlinx.coroutines.withContext
 import xyz.aprildown.timer.app.base.R
 import xyz.aprildown.timer.app.base.data.PreferenceData
@@ -27,10 +29,20 @@ import xyz.aprildown.timer.app.base.data.PreferenceData.useBakedCount
 import xyz.aprildown.timer.app.base.media.AudioFocusManager
 import xyz.aprildown.timer.app.base.media.RingtonePreviewKlaxon
 import xyz.aprildown.timer.app.base.media.getMediaDuration
+import xyz.aprildown.timer.domain.entities.BehaviourType
+import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.domain.entities.TimerEntity
+import xyz.aprildown.timer.domain.entities.toCountAction
 import xyz.aprildown.timer.domain.utils.fireAndForget
+import xyz.aprildown.timer.presentation.stream.collectVoiceLines
 import xyz.aprildown.tools.helper.safeSharedPreference
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * Call it from any thread. Everything runs on [SpeechThread], so spoken counts don't wait for
+ * a busy main thread.
+ */
 object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusChangeListener {
 
     private var application: Application? = null
@@ -41,18 +53,12 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
     private var onDone: (() -> Unit)? = null
 
     private var audioManager: AudioManager? = null
-    private var audioManagerCleanHandler: Handler? = null
-
-    private var nullableCleanHandler: Handler? = null
-    private val cleanHandler: Handler
-        get() {
-            var nch = nullableCleanHandler
-            if (nch == null) {
-                nch = Handler(Looper.getMainLooper())
-                nullableCleanHandler = nch
-            }
-            return nch
-        }
+
+    /**
+     * Tokens of delayed actions on [SpeechThread.handler].
+     */
+    private val cleanToken = Any()
+    private val abandonFocusToken = Any()
 
     private fun warmUp(context: Context) {
         var application = application
@@ -75,7 +81,7 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
         text: CharSequence,
         oneShot: Boolean,
         onDone: (() -> Unit)? = null
-    ) {
+    ) = SpeechThread.run {
         warmUp(context)
 
         if (text.isNotBlank()) {
@@ -86,7 +92,7 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
         }
     }
 
-    fun stopCurrentSpeaking() {
+    fun stopCurrentSpeaking() = SpeechThread.run {
         textToSpeech?.stop()
 
         oneShot = false
@@ -98,8 +104,12 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
     }
 
     override fun onError(errorCode: Int) {
-        application?.run {
-            longToast(getString(R.string.tts_error_template, errorCode.toString()))
+        application?.let { context ->
+            HandlerHelper.runOnUiThread {
+                context.longToast(
+                    context.getString(R.string.tts_error_template, errorCode.toString())
+                )
+            }
         }
         onDone?.invoke()
 
@@ -152,8 +162,7 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
             am = context.getSystemService() ?: return
             audioManager = am
         }
-        audioManagerCleanHandler?.removeCallbacksAndMessages(null)
-        audioManagerCleanHandler = null
+        SpeechThread.handler.removeCallbacksAndMessages(abandonFocusToken)
         AudioFocusManager.requestAudioFocus(
             audioManager = am,
             focusGain = audioFocusType,
@@ -163,15 +172,8 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
     }
 
     private fun abandonAudioFocus() {
-        var handler = audioManagerCleanHandler
-        if (handler == null) {
-            handler = Handler(Looper.getMainLooper())
-            audioManagerCleanHandler = handler
-        } else {
-            handler.removeCallbacksAndMessages(null)
-        }
-
-        handler.postDelayed(500) {
+        SpeechThread.handler.removeCallbacksAndMessages(abandonFocusToken)
+        SpeechThread.handler.postDelayed(500, abandonFocusToken) {
             val am = audioManager ?: return@postDelayed
             AudioFocusManager.abandonAudioFocus(audioManager = am, listener = this)
             audioManager = null
@@ -182,7 +184,7 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
         when (focusChange) {
             AudioManager.AUDIOFOCUS_LOSS,
             AudioManager.AUDIOFOCUS_LOSS_TRANSIENT,
-            AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK -> {
+            AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK -> SpeechThread.run {
                 textToSpeech?.stop()
             }
         }
@@ -191,12 +193,12 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
     private fun scheduleClean() {
         if (textToSpeech == null && onDone == null && audioManager == null) return
         cancelScheduledClean()
-        cleanHandler.postDelayed(DateUtils.MINUTE_IN_MILLIS) {
+        SpeechThread.handler.postDelayed(DateUtils.MINUTE_IN_MILLIS, cleanToken) {
             clean()
         }
     }
 
-    fun clean() {
+    fun clean() = SpeechThread.run {
         cancelScheduledClean()
 
         textToSpeech?.run {
@@ -209,13 +211,62 @@ object TtsSpeaker : WelcomingTextToSpeech.Listener, AudioManager.OnAudioFocusCha
         application = null
 
         abandonAudioFocus()
+    }
 
-        nullableCleanHandler = null
+    /**
+     * Decode short baked speeches of [timer] ahead if it counts aloud.
+     */
+    fun prepareClips(context: Context, timer: TimerEntity) {
+        if (!timer.countsAloud()) return
+        val application = context.applicationContext
+        fireAndForget(SpeechThread.dispatcher) {
+            val files = withContext(Dispatchers.IO) {
+                val isTtsBakeryOpen = application.safeSharedPreference.isTtsBakeryOpen
+                timer.collectVoiceLines(
+                    durationFormatter = { SpeechFormatter.formatDuration(application, it) },
+                    halfContent = application.getString(R.string.half_content),
+                ).mapNotNull { line ->
+                    val speech = getBakedCount(context = application, content = line)
+                        ?: if (isTtsBakeryOpen) TtsBakery.getSpeech(application, line) else null
+                    speech?.takeIf { it.duration <= ClipPlayer.MAX_CLIP_DURATION }?.file
+                }
+            }
+            if (files.isNotEmpty()) {
+                ClipPlayer.preload(files, application.storedAudioTypeValue)
+            }
+        }
+    }
+
+    fun releaseClips() = SpeechThread.run {
+        ClipPlayer.release()
     }
 
     private fun cancelScheduledClean() {
-        if (nullableCleanHandler == null) return
-        cleanHandler.removeCallbacksAndMessages(null)
+        SpeechThread.handler.removeCallbacksAndMessages(cleanToken)
+    }
+}
+
+/**
+ * The thread [TtsSpeaker], [WelcomingTextToSpeech] and [ClipPlayer] live on.
+ */
+internal object SpeechThread {
+    private val thread = HandlerThread("TtsSpeaker", Process.THREAD_PRIORITY_AUDIO).apply {
+        start()
+    }
+
+    val handler = Handler(thread.looper)
+
+    val dispatcher = handler.asCoroutineDispatcher().immediate
+
+    /**
+     * Run [action] now if we're on the thread, or post it otherwise.
+     */
+    fun run(action: () -> Unit) {
+        if (Looper.myLooper() === thread.looper) {
+            action()
+        } else {
+            handler.post(action)
+        }
     }
 }
 
@@ -230,15 +281,20 @@ private class WelcomingTextToSpeech(
         fun onDone()
     }
 
+    /**
+     * The token of the delayed [Listener.onDone] after a baked speech.
+     */
+    private val doneToken = Any()
+
     private val textToSpeech = TextToSpeech(application, this).also { tts ->
         tts.setOnUtteranceProgressListener(
             object : UtteranceProgressListener() {
                 override fun onStart(utteranceId: String?) {
-                    HandlerHelper.runOnUiThread(listener::onStart)
+                    SpeechThread.handler.post(listener::onStart)
                 }
 
                 override fun onDone(utteranceId: String?) {
-                    HandlerHelper.runOnUiThread(listener::onDone)
+                    SpeechThread.handler.post(listener::onDone)
                 }
 
                 @Suppress("OVERRIDE_DEPRECATION")
@@ -251,7 +307,7 @@ private class WelcomingTextToSpeech(
                 }
 
                 private fun onErrorCompat(errorCode: Int) {
-                    HandlerHelper.runOnUiThread {
+                    SpeechThread.handler.post {
                         listener.onError(errorCode)
                     }
                 }
@@ -263,58 +319,63 @@ private class WelcomingTextToSpeech(
     private var pendingText: CharSequence? = null
 
     override fun onInit(status: Int) {
-        if (status != TextToSpeech.SUCCESS) {
-            // onInit may be called in the constructor of TextToSpeech
-            HandlerHelper.post {
+        // onInit may be called in the constructor of TextToSpeech
+        SpeechThread.handler.post {
+            if (status != TextToSpeech.SUCCESS) {
                 stop()
                 listener.onError(status)
+                return@post
             }
-            return
-        }
-        initialized = true
+            initialized = true
 
-        val currentPendingText = pendingText
-        if (currentPendingText != null) {
-            speak(currentPendingText)
+            val currentPendingText = pendingText
+            if (currentPendingText != null) {
+                speak(currentPendingText)
+            }
         }
     }
 
     fun speak(text: CharSequence, streamType: Int = AudioManager.STREAM_MUSIC) {
         if (text.isBlank()) return
 
-        fireAndForget(Dispatchers.Main.immediate) {
+        fireAndForget(SpeechThread.dispatcher) {
             val isTtsBakeryOpen = application.safeSharedPreference.isTtsBakeryOpen
 
-            val speechUri = withContext(Dispatchers.IO) {
-                getBakedCountUri(context = application, content = text)
+            val speech = withContext(Dispatchers.IO) {
+                getBakedCount(context = application, content = text)
                     ?: if (isTtsBakeryOpen) {
-                        TtsBakery.getSpeechFile(application, text.toString())?.toUri()
+                        TtsBakery.getSpeech(application, text.toString())
                     } else {
                         null
                     }
             }
-            if (speechUri != null) {
+            if (speech != null) {
                 if (initialized) {
                     if (textToSpeech.isSpeaking) {
                         textToSpeech.stop()
                     }
                 }
 
-                RingtonePreviewKlaxon.start(
-                    context = application,
-                    uri = speechUri,
-                    crescendoDuration = 0L,
-                    loop = false,
-                    audioFocusType = 0, // AudioManager.AUDIOFOCUS_NONE
-                    streamType = streamType
-                )
+                // Stop the last speech first, whichever of them played it.
+                RingtonePreviewKlaxon.stop(application)
+                if (!ClipPlayer.play(speech.file, streamType)) {
+                    ClipPlayer.stop()
+                    RingtonePreviewKlaxon.start(
+                        context = application,
+                        uri = speech.file.toUri(),
+                        crescendoDuration = 0L,
+                        loop = false,
+                        audioFocusType = 0, // AudioManager.AUDIOFOCUS_NONE
+                        streamType = streamType
+                    )
+                }
 
                 listener.onStart()
 
-                HandlerHelper.postDelayed(
-                    speechUri.getMediaDuration(application) + 100L,
-                    listener::onDone
-                )
+                SpeechThread.handler.removeCallbacksAndMessages(doneToken)
+                SpeechThread.handler.postDelayed(speech.duration + 100L, doneToken) {
+                    listener.onDone()
+                }
 
                 return@fireAndForget
             }
@@ -340,16 +401,38 @@ private class WelcomingTextToSpeech(
 
     fun stop() {
         textToSpeech.stop()
-        HandlerHelper.remove(listener::onDone)
+        ClipPlayer.stop()
+        SpeechThread.handler.removeCallbacksAndMessages(doneToken)
     }
 
     fun shutdown() {
         textToSpeech.shutdown()
-        HandlerHelper.remove(listener::onDone)
+        SpeechThread.handler.removeCallbacksAndMessages(doneToken)
     }
 }
 
-private fun getBakedCountUri(context: Context, content: CharSequence): Uri? {
+private fun TimerEntity.countsAloud(): Boolean {
+    return (steps.flatMap { if (it is StepEntity.Group) it.steps else listOf(it) } +
+        listOfNotNull(startStep, endStep))
+        .any { step ->
+            (step as? StepEntity.Step)?.behaviour?.any {
+                it.type == BehaviourType.COUNT && !it.toCountAction().beep
+            } == true
+        }
+}
+
+/**
+ * Durations of baked count files, which don't change once they're downloaded.
+ */
+private val bakedCountDurations = ConcurrentHashMap<File, Long>()
+
+private fun getBakedCount(context: Context, content: CharSequence): BakedSpeech? {
+    val file = getBakedCountFile(context, content) ?: return null
+    val duration = bakedCountDurations.getOrPut(file) { file.getMediaDuration() }
+    return BakedSpeech(file = file, duration = duration)
+}
+
+internal fun getBakedCountFile(context: Context, content: CharSequence): File? {
     if (content.length > 2) return null
     if ((content.toString().toIntOrNull() ?: -1) !in 0..20) return null
     if (!context.safeSharedPreference.useBakedCount) return null
@@ -358,5 +441,5 @@ private fun getBakedCountUri(context: Context, content: CharSequence): Uri? {
     val file = File(folder, "$content.mp3")
     if (!file.exists()) return null
 
-    return file.toUri()
+    return file
 }
@@ -1,13 +1,25 @@
 package xyz.aprildown.timer.data.db
 
+import android.database.sqlite.SQLiteDatabase
+import androidx.core.content.contentValuesOf
 import androidx.room.testing.MigrationTestHelper
 import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.filters.SmallTest
 import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
 import org.junit.Rule
 import org.junit.Test
 import org.junit.runner.RunWith
+import xyz.aprildown.timer.data.datas.BehaviourData
+import xyz.aprildown.timer.data.datas.StepData
+import xyz.aprildown.timer.data.datas.TimerStampDailyData
+import xyz.aprildown.timer.domain.TimeUtils.toEpochMilli
+import xyz.aprildown.timer.domain.entities.BehaviourType
+import xyz.aprildown.timer.domain.entities.StepType
+import java.time.LocalDate
 
 @RunWith(AndroidJUnit4::class)
 @SmallTest
@@ -31,6 +43,93 @@ class MachineDatabaseMigratingTest {
         }
     }
 
+    @Test
+    fun backfillTimerStampDaily() {
+        val day = TimerStampDailyData.dayOf(System.currentTimeMillis())
+        val dayStart = LocalDate.ofEpochDay(day).atStartOfDay().toEpochMilli()
+        testHelper.createDatabase(MachineDatabase.DB_NAME, 8).use { db ->
+            db.execSQL(
+                "INSERT INTO TimerItem (id, name, loop, steps, more, folderId) " +
+                    "VALUES (1, '', 1, '[]', '', 1)"
+            )
+            db.execSQL("INSERT INTO TimerStamp (timerId, start, date) VALUES (1, 0, $dayStart)")
+            db.execSQL(
+                "INSERT INTO TimerStamp (timerId, start, date) " +
+                    "VALUES (1, $dayStart, ${dayStart + 1_000})"
+            )
+        }
+        testHelper.runMigrationsAndValidate(
+            MachineDatabase.DB_NAME,
+            9,
+            true,
+            MachineDatabase.getMigration8to9(),
+        ).use { db ->
+            db.query("SELECT timerId, day, duration, count FROM TimerStampDaily").use { cursor ->
+                assertTrue(cursor.moveToFirst())
+                assertEquals(1, cursor.getInt(0))
+                assertEquals(day, cursor.getLong(1))
+                assertEquals(1_000L, cursor.getLong(2))
+                assertEquals(2, cursor.getInt(3))
+                assertFalse(cursor.moveToNext())
+            }
+        }
+    }
+
+    @Test
+    fun moveStepsToTables() {
+        val converters = StepConverters()
+        val behaviour = BehaviourData(type = BehaviourType.MUSIC, label = "a", content = "b")
+        val steps = listOf(
+            StepData.Step(label = "1", length = 1_000, behaviour = listOf(behaviour)),
+            StepData.Group(
+                name = "g",
+                loop = 2,
+                steps = listOf(StepData.Step(label = "2", length = 2_000, type = StepType.NOTIFIER))
+            ),
+        )
+        val endStep = StepData.Step(label = "end", length = 3_000)
+        testHelper.createDatabase(MachineDatabase.DB_NAME, 10).use { db ->
+            db.insert(
+                "TimerItem",
+                SQLiteDatabase.CONFLICT_ABORT,
+                contentValuesOf(
+                    "id" to 1,
+                    "name" to "t",
+                    "loop" to 3,
+                    "steps" to converters.stepsToJson(steps),
+                    "startStep" to "",
+                    "endStep" to converters.stepToJson(endStep),
+                    "more" to "",
+                    "folderId" to 1,
+                )
+            )
+        }
+        testHelper.runMigrationsAndValidate(
+            MachineDatabase.DB_NAME,
+            11,
+            true,
+            MachineDatabase.getMigration10to11(),
+        ).use { db ->
+            db.query("SELECT parentId, ordinal, isGroup, label FROM Step ORDER BY id").use { cursor ->
+                assertEquals(4, cursor.count)
+                val rows = generateSequence { if (cursor.moveToNext()) cursor else null }
+                    .map { "${it.isNull(0)} ${it.getInt(1)} ${it.getInt(2)} ${it.getString(3)}" }
+                    .toList()
+                assertEquals(
+                    listOf("true 0 0 1", "true 1 1 g", "true -2 0 end", "false 0 0 2"),
+                    rows
+                )
+            }
+            db.query("SELECT type, label, content FROM Behaviour").use { cursor ->
+                assertTrue(cursor.moveToFirst())
+                assertEquals(BehaviourType.MUSIC.name, cursor.getString(0))
+                assertEquals("a", cursor.getString(1))
+                assertEquals("b", cursor.getString(2))
+                assertFalse(cursor.moveToNext())
+            }
+        }
+    }
+
     private fun migrationTest(fromNth: Int, toNth: Int) {
         val db = testHelper.createDatabase(MachineDatabase.DB_NAME, fromNth)
         testHelper.runMigrationsAndValidate(
@@ -44,6 +143,10 @@ class MachineDatabaseMigratingTest {
             MachineDatabase.getMigration5to6(),
             MachineDatabase.getMigration6to7(),
             MachineDatabase.getMigration7to8(),
+            MachineDatabase.getMigration8to9(),
+            MachineDatabase.getMigration9to10(),
+            MachineDatabase.getMigration10to11(),
+            MachineDatabase.getMigration11to12(),
         )
         testHelper.closeWhenFinished(db)
     }
@@ -1,11 +1,19 @@
 package xyz.aprildown.timer.data.repositories
 
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.filters.SmallTest
+import com.squareup.moshi.JsonReader
 import kotlinx.coroutines.test.runTest
+import okio.Buffer
+import org.junit.After
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.junit.runner.RunWith
+import xyz.aprildown.timer.data.datas.TimerStampData
+import xyz.aprildown.timer.data.db.MachineDatabase
 import xyz.aprildown.timer.data.mappers.AppDataMapper
 import xyz.aprildown.timer.data.mappers.BehaviourMapper
 import xyz.aprildown.timer.data.mappers.FolderMapper
@@ -16,12 +24,16 @@ import xyz.aprildown.timer.data.mappers.TimerMapper
 import xyz.aprildown.timer.data.mappers.TimerMoreMapper
 import xyz.aprildown.timer.data.mappers.TimerStampMapper
 import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.entities.AppDataEntity
+import xyz.aprildown.timer.domain.entities.ImportProgressEntity
 import java.util.Optional
 
 @RunWith(AndroidJUnit4::class)
 @SmallTest
 class AppDataRepositoryImplTest {
 
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val database = MachineDatabase.createInMemoryDatabase(context)
     private val appDataRepository = AppDataRepositoryImpl(
         backupRepository = Optional.empty(),
         mapper = AppDataMapper(
@@ -29,13 +41,229 @@ class AppDataRepositoryImplTest {
             TimerMapper(StepMapper(StepOnlyMapper(BehaviourMapper())), TimerMoreMapper()),
             TimerStampMapper(),
             SchedulerMapper()
-        )
+        ),
+        database = database,
+        folderDao = database.folderDao(),
+        timerDao = database.timerDao(),
+        schedulerDao = database.schedulerDao(),
+        timerStampDao = database.timerStampDao(),
     )
 
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
     @Test
     fun test() = runTest {
         val ad = TestData.fakeAppData
         val json = appDataRepository.collectData(ad)
         assertEquals(ad, appDataRepository.unParcelData(json))
     }
+
+    private suspend fun readData(
+        appData: AppDataEntity,
+        wipeFirst: Boolean,
+        onProgress: (ImportProgressEntity) -> Unit = {}
+    ): AppDataEntity {
+        return appDataRepository.readData(
+            source = Buffer().writeUtf8(appDataRepository.collectData(appData)),
+            wipeFirst = wipeFirst,
+            includeTimers = true,
+            includeTimerStamps = true,
+            includeSchedulers = true,
+            onProgress = onProgress
+        )
+    }
+
+    @Test
+    fun readData() = runTest {
+        val ad = TestData.fakeAppData
+        readData(ad, wipeFirst = false)
+        var progress: ImportProgressEntity? = null
+        val result = readData(ad, wipeFirst = true, onProgress = { progress = it })
+
+        assertEquals(ad.notifier, result.notifier)
+        assertEquals(ad.prefs, result.prefs)
+        assertEquals(
+            // Default and trash folders aren't added.
+            1 + ad.timers.size + ad.timerStamps.size + ad.schedulers.size,
+            progress?.rowsInserted
+        )
+
+        val timers = database.timerDao().getTimers()
+        assertEquals(ad.timers.size, timers.size)
+        val timerIds = ad.timers.map { it.id }.zip(timers.map { it.id }).toMap()
+        assertEquals(
+            ad.timers.map { it.name to it.steps.size },
+            timers.map { it.name to it.steps.size }
+        )
+        assertEquals(
+            ad.timerStamps.map { timerIds.getValue(it.timerId) to it.end },
+            database.timerStampDao().getTimerStamps().map { it.timerId to it.end }
+        )
+        assertEquals(
+            ad.schedulers.map { timerIds.getValue(it.timerId) to it.label },
+            database.schedulerDao().getSchedulers().map { it.timerId to it.label }
+        )
+        assertEquals(
+            ad.folders.count { !it.isDefault && !it.isTrash } + 2,
+            database.folderDao().getFolders().size
+        )
+    }
+
+    @Test
+    fun readDataWithTimersLast() = runTest {
+        val ad = TestData.fakeAppData
+        val values = linkedMapOf<String, String>()
+        val reader = JsonReader.of(Buffer().writeUtf8(appDataRepository.collectData(ad)))
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val name = reader.nextName()
+            values[name] = reader.nextSource().use { it.readUtf8() }
+        }
+        reader.endObject()
+        val timers = checkNotNull(values.remove("timers"))
+        values["timers"] = timers
+        val json = values.entries.joinToString(prefix = "{", postfix = "}") { (name, value) ->
+            "\"$name\":$value"
+        }
+
+        appDataRepository.readData(
+            source = Buffer().writeUtf8(json),
+            wipeFirst = true,
+            includeTimers = true,
+            includeTimerStamps = true,
+            includeSchedulers = true,
+            onProgress = {}
+        )
+
+        assertEquals(ad.timers.size, database.timerDao().getTimers().size)
+        assertEquals(ad.timerStamps.size, database.timerStampDao().getTimerStamps().size)
+        assertEquals(ad.schedulers.size, database.schedulerDao().getSchedulers().size)
+    }
+
+    @Test
+    fun writeData() = runTest {
+        val ad = TestData.fakeAppData
+        readData(ad, wipeFirst = false)
+
+        val buffer = Buffer()
+        appDataRepository.writeData(
+            sink = buffer,
+            includeTimers = true,
+            includeTimerStamps = true,
+            includeSchedulers = true,
+            notifier = ad.notifier,
+            prefs = ad.prefs,
+            binary = false
+        )
+        val result = checkNotNull(appDataRepository.unParcelData(buffer.readUtf8()))
+
+        assertEquals(ad.folders.size, result.folders.size)
+        assertEquals(ad.timers.map { it.copy(id = 0) }, result.timers.map { it.copy(id = 0) })
+        assertEquals(ad.notifier, result.notifier)
+        assertEquals(ad.timerStamps.map { it.end }, result.timerStamps.map { it.end })
+        assertEquals(
+            ad.schedulers.map { it.copy(id = 0, timerId = 0, enable = 0) },
+            result.schedulers.map { it.copy(id = 0, timerId = 0) }
+        )
+        assertEquals(ad.prefs, result.prefs)
+    }
+
+    @Test
+    fun writeBinaryData() = runTest {
+        val ad = TestData.fakeAppData
+        readData(ad, wipeFirst = false)
+
+        suspend fun writeData(binary: Boolean): Buffer = Buffer().also {
+            appDataRepository.writeData(
+                sink = it,
+                includeTimers = true,
+                includeTimerStamps = true,
+                includeSchedulers = true,
+                notifier = ad.notifier,
+                prefs = ad.prefs,
+                binary = binary
+            )
+        }
+
+        val binary = writeData(binary = true)
+        assertTrue(binary.size < writeData(binary = false).size)
+
+        val stamps = database.timerStampDao().getTimerStamps()
+        val result = appDataRepository.readData(
+            source = binary,
+            wipeFirst = true,
+            includeTimers = true,
+            includeTimerStamps = true,
+            includeSchedulers = true,
+            onProgress = {}
+        )
+
+        assertEquals(ad.notifier, result.notifier)
+        assertEquals(ad.prefs, result.prefs)
+        assertEquals(
+            ad.timers.map { it.name to it.steps.size },
+            database.timerDao().getTimers().map { it.name to it.steps.size }
+        )
+        assertEquals(
+            stamps.map { it.start to it.end }.sortedBy { it.second },
+            database.timerStampDao().getTimerStamps()
+                .map { it.start to it.end }
+                .sortedBy { it.second }
+        )
+        assertEquals(
+            ad.schedulers.size,
+            database.schedulerDao().getSchedulers().size
+        )
+    }
+
+    @Test
+    fun writeDelta() = runTest {
+        val ad = TestData.fakeAppData
+        readData(ad, wipeFirst = false)
+
+        suspend fun writeDelta(lastDigests: Buffer?, digests: Buffer, sink: Buffer): Int {
+            return appDataRepository.writeDelta(
+                sink = sink,
+                lastDigests = lastDigests,
+                digests = digests,
+                notifier = ad.notifier,
+                prefs = ad.prefs
+            )
+        }
+
+        val base = Buffer()
+        val baseDigests = Buffer()
+        writeDelta(lastDigests = null, digests = baseDigests, sink = base)
+        assertEquals(
+            0,
+            writeDelta(lastDigests = baseDigests.copy(), digests = Buffer(), sink = Buffer())
+        )
+
+        val timerDao = database.timerDao()
+        val timers = timerDao.getTimers()
+        val deletedId = timers.first().id
+        database.schedulerDao().getSchedulersByTimerId(deletedId).forEach {
+            database.schedulerDao().deleteScheduler(it.id)
+        }
+        database.timerStampDao().deleteWithTimerId(deletedId)
+        timerDao.deleteTimer(deletedId)
+        timerDao.updateTimer(timers.last().copy(name = "New Name"))
+        database.timerStampDao().add(TimerStampData(id = 0, timerId = timers.last().id, end = 1))
+
+        val delta = Buffer()
+        assertTrue(writeDelta(lastDigests = baseDigests, digests = Buffer(), sink = delta) > 0)
+        assertTrue(delta.size < base.size)
+
+        val merged = Buffer()
+        appDataRepository.mergeDelta(base = base, delta = delta, sink = merged)
+        val full = Buffer()
+        writeDelta(lastDigests = null, digests = Buffer(), sink = full)
+        assertEquals(
+            appDataRepository.unParcelData(full.readUtf8()),
+            appDataRepository.unParcelData(merged.readUtf8())
+        )
+    }
 }
@@ -74,6 +74,18 @@ class SchedulerRepositoryImplTest {
         assertEquals(item, list[0])
     }
 
+    @Test
+    fun itemsWithTimers() = runTest {
+        val id = schedulerRepository.add(TestData.fakeSchedulerA.copy(timerId = timerId))
+        schedulerRepository.add(TestData.fakeSchedulerB.copy(timerId = timerId))
+
+        assertEquals(
+            listOf(TestData.fakeSchedulerA.copy(id = id, timerId = timerId)),
+            schedulerRepository.itemsWithTimers(listOf(id, id + 100))
+        )
+        assertTrue(schedulerRepository.itemsWithTimers(emptyList()).isEmpty())
+    }
+
     @Test
     fun save() = runTest {
         val id = schedulerRepository.add(TestData.fakeSchedulerA.copy(timerId = timerId))
@@ -16,6 +16,7 @@ import xyz.aprildown.timer.data.mappers.TimerInfoMapper
 import xyz.aprildown.timer.data.mappers.TimerMapper
 import xyz.aprildown.timer.data.mappers.TimerMoreMapper
 import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.entities.StepEntity
 import xyz.aprildown.timer.domain.entities.TimerEntity
 import xyz.aprildown.timer.domain.repositories.TimerRepository
 
@@ -73,6 +74,22 @@ class TimerRepositoryImplTest {
         assertEquals(TestData.fakeTimerAdvanced.copy(id = id), new)
     }
 
+    @Test
+    fun save_keepsUnchangedRows() = runTest {
+        val timer = TestData.fakeTimerAdvanced
+        val id = timerRepository.add(timer)
+        val oldRows = database.timerDao().getStepRows(id)
+
+        val steps = timer.steps.toMutableList()
+        steps[2] = (steps[2] as StepEntity.Step).copy(label = "Changed")
+        assertTrue(timerRepository.save(timer.copy(id = id, steps = steps)))
+
+        val newRows = database.timerDao().getStepRows(id)
+        assertEquals(oldRows.map { it.id }, newRows.map { it.id })
+        assertEquals(listOf("Changed"), (newRows - oldRows.toSet()).map { it.label })
+        assertEquals(timer.copy(id = id, steps = steps), timerRepository.item(id))
+    }
+
     @Test
     fun delete() = runTest {
         val id = timerRepository.add(TestData.fakeTimerSimpleA)
@@ -14,8 +14,13 @@ import xyz.aprildown.timer.data.mappers.TimerMapper
 import xyz.aprildown.timer.data.mappers.TimerMoreMapper
 import xyz.aprildown.timer.data.mappers.TimerStampMapper
 import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.TimeUtils
+import xyz.aprildown.timer.domain.entities.TimerStampBucketEntity
 import xyz.aprildown.timer.domain.entities.TimerStampEntity
 import xyz.aprildown.timer.domain.repositories.TimerStampRepository
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.util.TimeZone
 
 class TimerStampRepositoryImplTest {
 
@@ -54,4 +59,103 @@ class TimerStampRepositoryImplTest {
         assertEquals(listOf<TimerStampEntity>(), repo.getAll())
         assertEquals(listOf<TimerStampEntity>(), repo.getRaw(listOf(timerId), 0, now))
     }
+
+    @Test
+    fun buckets() = runTest {
+        val dayStart = TimeUtils.getDayStart(System.currentTimeMillis())
+        val yesterdayStart = TimeUtils.getDayStart(dayStart - 1)
+        val stamps = listOf(
+            TimerStampEntity(TimerStampEntity.NEW_ID, timerId, dayStart + 1_000, dayStart + 3_000),
+            TimerStampEntity(TimerStampEntity.NEW_ID, timerId, dayStart + 5_000, dayStart + 6_000),
+            TimerStampEntity(TimerStampEntity.NEW_ID, timerId, dayStart - 2_000, dayStart + 1_000),
+            TimerStampEntity(TimerStampEntity.NEW_ID, timerId, yesterdayStart, yesterdayStart + 10),
+        )
+        stamps.forEach { repo.add(it) }
+
+        val end = TimeUtils.getDayEnd(dayStart)
+        val days = listOf(
+            TimerStampBucketEntity(yesterdayStart, 10, 1),
+            TimerStampBucketEntity(dayStart, 6_000, 3),
+        )
+        // From the daily rollup
+        assertEquals(
+            days,
+            repo.getBuckets(listOf(timerId), yesterdayStart, end, TimerStampBucketEntity.Span.DAY)
+        )
+        // From raw stamps
+        assertEquals(
+            days,
+            repo.getBuckets(listOf(timerId), 0, end, TimerStampBucketEntity.Span.DAY)
+        )
+        assertEquals(
+            listOf(TimerStampBucketEntity(dayStart, 6_000, 3)),
+            repo.getBuckets(listOf(timerId), dayStart, end, TimerStampBucketEntity.Span.HOUR)
+        )
+        assertEquals(
+            listOf<TimerStampBucketEntity>(),
+            repo.getBuckets(listOf(timerId + 1), 0, end, TimerStampBucketEntity.Span.DAY)
+        )
+
+        assertEquals(
+            TimerStampBucketEntity(yesterdayStart, 6_010, 4),
+            repo.getTotalsGroupedByTimer(listOf(timerId), yesterdayStart, end)[timerId]
+        )
+        assertEquals(
+            TimerStampBucketEntity(0, 6_010, 4),
+            repo.getTotalsGroupedByTimer(listOf(timerId), 0, end)[timerId]
+        )
+
+        repo.delete(repo.getRaw(listOf(timerId), yesterdayStart, dayStart - 1).single().id)
+        assertEquals(
+            days.drop(1),
+            repo.getBuckets(listOf(timerId), yesterdayStart, end, TimerStampBucketEntity.Span.DAY)
+        )
+        repo.deleteWithTimerId(timerId)
+        assertEquals(
+            listOf<TimerStampBucketEntity>(),
+            repo.getBuckets(listOf(timerId), yesterdayStart, end, TimerStampBucketEntity.Span.DAY)
+        )
+    }
+    @Test
+    fun buckets_after_time_zone_changes() = runTest {
+        val defaultTimeZone = TimeZone.getDefault()
+        try {
+            // 20:00 UTC is the next day in Tokyo but the same day in Los Angeles.
+            val end = LocalDateTime.of(2024, 1, 1, 20, 0).toInstant(ZoneOffset.UTC).toEpochMilli()
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"))
+            repo.add(TimerStampEntity(TimerStampEntity.NEW_ID, timerId, end - 1_000, end))
+
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"))
+            val dayStart = TimeUtils.getDayStart(end)
+            val dayEnd = TimeUtils.getDayEnd(end)
+            val days = listOf(TimerStampBucketEntity(dayStart, 1_000, 1))
+            // From the daily rollup
+            assertEquals(
+                days,
+                repo.getBuckets(listOf(timerId), dayStart, dayEnd, TimerStampBucketEntity.Span.DAY)
+            )
+            // From raw stamps
+            assertEquals(
+                days,
+                repo.getBuckets(
+                    listOf(timerId),
+                    dayStart,
+                    dayEnd - 1,
+                    TimerStampBucketEntity.Span.DAY
+                )
+            )
+            assertEquals(
+                TimerStampBucketEntity(dayStart, 1_000, 1),
+                repo.getTotalsGroupedByTimer(listOf(timerId), dayStart, dayEnd)[timerId]
+            )
+
+            repo.delete(repo.getAll().single().id)
+            assertEquals(
+                listOf<TimerStampBucketEntity>(),
+                repo.getBuckets(listOf(timerId), dayStart, dayEnd, TimerStampBucketEntity.Span.DAY)
+            )
+        } finally {
+            TimeZone.setDefault(defaultTimeZone)
+        }
+    }
 }
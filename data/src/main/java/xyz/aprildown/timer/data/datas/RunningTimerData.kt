@@ -0,0 +1,33 @@
+package xyz.aprildown.timer.data.datas
+
+import androidx.annotation.Keep
+import com.squareup.moshi.Json
+import com.squareup.moshi.JsonClass
+
+@Keep
+@JsonClass(generateAdapter = true)
+internal data class RunningTimerData(
+    @Json(name = "timer")
+    val timer: TimerData,
+
+    @Json(name = "index")
+    val index: List<Int>,
+
+    @Json(name = "isRunning")
+    val isRunning: Boolean,
+
+    @Json(name = "time")
+    val time: Long,
+
+    @Json(name = "realtime")
+    val realtime: Long,
+
+    @Json(name = "beginTime")
+    val beginTime: Long,
+
+    /**
+     * Settings.Global.BOOT_COUNT when it's written. Null if it isn't available.
+     */
+    @Json(name = "bootCount")
+    val bootCount: Int? = null,
+)
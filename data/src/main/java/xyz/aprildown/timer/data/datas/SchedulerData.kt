@@ -17,7 +17,7 @@ import xyz.aprildown.timer.domain.entities.SchedulerRepeatMode
     indices = [(Index("timerId"))],
     foreignKeys = [
         ForeignKey(
-            entity = TimerData::class,
+            entity = TimerRowData::class,
             parentColumns = ["id"],
             childColumns = ["timerId"]
         )
@@ -0,0 +1,115 @@
+package xyz.aprildown.timer.data.datas
+
+import androidx.annotation.Keep
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * A [StepData] of a timer. Steps in a group point to the group with [parentId].
+ */
+@Keep
+@Entity(
+    tableName = "Step",
+    indices = [Index("timerId"), Index("parentId")],
+    foreignKeys = [
+        ForeignKey(
+            entity = TimerRowData::class,
+            parentColumns = ["id"],
+            childColumns = ["timerId"],
+            onDelete = ForeignKey.CASCADE
+        ),
+        ForeignKey(
+            entity = StepRowData::class,
+            parentColumns = ["id"],
+            childColumns = ["parentId"],
+            onDelete = ForeignKey.CASCADE
+        ),
+    ]
+)
+internal data class StepRowData(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    val id: Long = 0,
+
+    @ColumnInfo(name = "timerId")
+    val timerId: Int,
+
+    @ColumnInfo(name = "parentId")
+    val parentId: Long? = null,
+
+    /**
+     * The position in [TimerData.steps] or the group,
+     * or [ORDINAL_START_STEP] and [ORDINAL_END_STEP].
+     */
+    @ColumnInfo(name = "ordinal")
+    val ordinal: Int,
+
+    @ColumnInfo(name = "isGroup")
+    val isGroup: Boolean,
+
+    /**
+     * [StepData.Step.label] or [StepData.Group.name].
+     */
+    @ColumnInfo(name = "label")
+    val label: String,
+
+    @ColumnInfo(name = "length")
+    val length: Long = 0,
+
+    /**
+     * [StepData.Step.type]. Null for groups.
+     */
+    @ColumnInfo(name = "type")
+    val type: String? = null,
+
+    /**
+     * [StepData.Group.loop]
+     */
+    @ColumnInfo(name = "loop")
+    val loop: Int = 0,
+) {
+    companion object {
+        const val ORDINAL_START_STEP = -1
+        const val ORDINAL_END_STEP = -2
+    }
+}
+
+@Keep
+@Entity(
+    tableName = "Behaviour",
+    indices = [Index("stepId")],
+    foreignKeys = [
+        ForeignKey(
+            entity = StepRowData::class,
+            parentColumns = ["id"],
+            childColumns = ["stepId"],
+            onDelete = ForeignKey.CASCADE
+        ),
+    ]
+)
+internal data class BehaviourRowData(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    val id: Long = 0,
+
+    @ColumnInfo(name = "stepId")
+    val stepId: Long,
+
+    @ColumnInfo(name = "ordinal")
+    val ordinal: Int,
+
+    @ColumnInfo(name = "type")
+    val type: String,
+
+    @ColumnInfo(name = "label")
+    val label: String,
+
+    @ColumnInfo(name = "content")
+    val content: String,
+
+    @ColumnInfo(name = "loop")
+    val loop: Boolean,
+)
@@ -8,40 +8,53 @@ import com.squareup.moshi.Json
 import com.squareup.moshi.JsonClass
 import xyz.aprildown.timer.domain.entities.FolderEntity
 
+/**
+ * A whole timer. Stored as a [TimerRowData] and its [StepRowData]s.
+ */
 @Keep
 @JsonClass(generateAdapter = true)
-@Entity(tableName = "TimerItem")
 internal data class TimerData(
     @Json(name = "id")
-    @PrimaryKey(autoGenerate = true)
-    @ColumnInfo(name = "id")
     val id: Int,
 
     @Json(name = "name")
-    @ColumnInfo(name = "name")
     val name: String,
 
     @Json(name = "loop")
-    @ColumnInfo(name = "loop")
     val loop: Int,
 
     @Json(name = "steps")
-    @ColumnInfo(name = "steps")
     val steps: List<StepData>,
 
     @Json(name = "startStep")
-    @ColumnInfo(name = "startStep")
     val startStep: StepData.Step? = null,
 
     @Json(name = "endStep")
-    @ColumnInfo(name = "endStep")
     val endStep: StepData.Step? = null,
 
     @Json(name = "more")
-    @ColumnInfo(name = "more")
     val more: TimerMoreData = TimerMoreData(),
 
     @Json(name = "folderId")
+    val folderId: Long = FolderEntity.FOLDER_DEFAULT,
+)
+
+@Keep
+@Entity(tableName = "TimerItem")
+internal data class TimerRowData(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    val id: Int,
+
+    @ColumnInfo(name = "name")
+    val name: String,
+
+    @ColumnInfo(name = "loop")
+    val loop: Int,
+
+    @ColumnInfo(name = "more")
+    val more: TimerMoreData = TimerMoreData(),
+
     @ColumnInfo(name = "folderId")
     val folderId: Long = FolderEntity.FOLDER_DEFAULT,
 )
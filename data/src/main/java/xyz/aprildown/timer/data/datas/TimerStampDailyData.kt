@@ -0,0 +1,89 @@
+package xyz.aprildown.timer.data.datas
+
+import androidx.annotation.Keep
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import java.time.Instant
+import java.time.ZoneId
+
+/**
+ * A rollup of [TimerStampData] per timer per local day.
+ * It's maintained by [xyz.aprildown.timer.data.db.TimerStampDao] so statistics don't scan stamps.
+ */
+@Keep
+@Entity(
+    tableName = "TimerStampDaily",
+    primaryKeys = ["timerId", "day"]
+)
+internal data class TimerStampDailyData(
+    @ColumnInfo(name = "timerId")
+    val timerId: Int,
+
+    /**
+     * [java.time.LocalDate.toEpochDay] of the day when stamps ended.
+     */
+    @ColumnInfo(name = "day")
+    val day: Long,
+
+    @ColumnInfo(name = "duration")
+    val duration: Long,
+
+    @ColumnInfo(name = "count")
+    val count: Int,
+
+    /**
+     * [ZoneId.getId] of the zone [day] is in. Rows from another zone make the rollup rebuild.
+     */
+    @ColumnInfo(name = "zone", defaultValue = "")
+    val zone: String = ""
+) {
+    companion object {
+        fun dayOf(time: Long, zone: ZoneId = ZoneId.systemDefault()): Long {
+            return Instant.ofEpochMilli(time).atZone(zone).toLocalDate().toEpochDay()
+        }
+
+        /**
+         * Adds [stamps] to [dailies] keyed by (timerId, day).
+         */
+        fun rollUp(
+            stamps: List<TimerStampData>,
+            zone: ZoneId,
+            dailies: MutableMap<Pair<Int, Long>, TimerStampDailyData>
+        ) {
+            stamps.forEach { stamp ->
+                val day = dayOf(stamp.end, zone)
+                val key = stamp.timerId to day
+                val daily = dailies[key] ?: TimerStampDailyData(
+                    timerId = stamp.timerId,
+                    day = day,
+                    duration = 0,
+                    count = 0,
+                    zone = zone.id
+                )
+                dailies[key] = daily.copy(
+                    duration = daily.duration + durationOf(stamp.start, stamp.end),
+                    count = daily.count + 1
+                )
+            }
+        }
+
+        /**
+         * The same as [xyz.aprildown.timer.domain.entities.TimerStampEntity.duration].
+         */
+        fun durationOf(start: Long, end: Long): Long = if (start == 0L) 0L else end - start
+    }
+}
+
+@Keep
+internal data class TimerStampTotalData(
+    val timerId: Int,
+    val duration: Long,
+    val count: Int
+)
+
+@Keep
+internal data class TimerStampDailySumData(
+    val day: Long,
+    val duration: Long,
+    val count: Int
+)
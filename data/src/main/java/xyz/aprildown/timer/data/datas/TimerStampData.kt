@@ -13,10 +13,10 @@ import com.squareup.moshi.JsonClass
 @JsonClass(generateAdapter = true)
 @Entity(
     tableName = "TimerStamp",
-    indices = [Index("timerId")],
+    indices = [Index("timerId", "date")],
     foreignKeys = [
         ForeignKey(
-            entity = TimerData::class,
+            entity = TimerRowData::class,
             parentColumns = ["id"],
             childColumns = ["timerId"]
         )
@@ -40,3 +40,27 @@ internal data class TimerStampData(
     @ColumnInfo(name = "date")
     val end: Long
 )
+
+@Keep
+internal data class TimerStampEndData(
+    @ColumnInfo(name = "timerId")
+    val timerId: Int,
+
+    @ColumnInfo(name = "date")
+    val end: Long
+)
+
+/**
+ * Stamps summed up in a [SLOT_MILLIS] long slot since the epoch.
+ * Every time zone offset is a multiple of 15 minutes, so a slot never crosses a local hour.
+ */
+@Keep
+internal data class TimerStampSlotData(
+    val slot: Long,
+    val duration: Long,
+    val count: Int
+) {
+    companion object {
+        const val SLOT_MILLIS = 15 * 60 * 1000L
+    }
+}
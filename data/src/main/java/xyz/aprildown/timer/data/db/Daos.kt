@@ -7,19 +7,87 @@ import androidx.room.Query
 import androidx.room.Transaction
 import androidx.room.Update
 import kotlinx.coroutines.flow.Flow
+import xyz.aprildown.timer.data.datas.BehaviourData
+import xyz.aprildown.timer.data.datas.BehaviourRowData
 import xyz.aprildown.timer.data.datas.FolderData
 import xyz.aprildown.timer.data.datas.SchedulerData
+import xyz.aprildown.timer.data.datas.StepData
+import xyz.aprildown.timer.data.datas.StepRowData
 import xyz.aprildown.timer.data.datas.TimerData
 import xyz.aprildown.timer.data.datas.TimerInfoData
+import xyz.aprildown.timer.data.datas.TimerRowData
+import xyz.aprildown.timer.data.datas.TimerStampDailyData
+import xyz.aprildown.timer.data.datas.TimerStampDailySumData
 import xyz.aprildown.timer.data.datas.TimerStampData
+import xyz.aprildown.timer.data.datas.TimerStampEndData
+import xyz.aprildown.timer.data.datas.TimerStampSlotData
+import xyz.aprildown.timer.data.datas.TimerStampTotalData
+import xyz.aprildown.timer.domain.entities.FolderEntity
+import java.time.ZoneId
 
 @Dao
 internal interface TimerDao {
     @Query("SELECT * FROM TimerItem ORDER BY id")
-    suspend fun getTimers(): List<TimerData>
+    suspend fun getTimerRows(): List<TimerRowData>
 
     @Query("SELECT * FROM TimerItem WHERE id = :id")
-    suspend fun getTimer(id: Int): TimerData?
+    suspend fun getTimerRow(id: Int): TimerRowData?
+
+    @Query("SELECT * FROM Step ORDER BY ordinal")
+    suspend fun getAllStepRows(): List<StepRowData>
+
+    @Query("SELECT * FROM Step WHERE timerId = :timerId ORDER BY ordinal")
+    suspend fun getStepRows(timerId: Int): List<StepRowData>
+
+    @Query("SELECT * FROM Behaviour ORDER BY ordinal")
+    suspend fun getAllBehaviourRows(): List<BehaviourRowData>
+
+    @Query(
+        "SELECT * FROM Behaviour " +
+            "WHERE stepId IN (SELECT id FROM Step WHERE timerId = :timerId) ORDER BY ordinal"
+    )
+    suspend fun getBehaviourRows(timerId: Int): List<BehaviourRowData>
+
+    /**
+     * Three queries for all timers.
+     */
+    @Transaction
+    suspend fun getTimers(): List<TimerData> {
+        val steps = getAllStepRows().groupBy { it.timerId }
+        val behaviours = getAllBehaviourRows().groupBy { it.stepId }
+        return getTimerRows().map { it.toTimerData(steps[it.id].orEmpty(), behaviours) }
+    }
+
+    @Query("SELECT * FROM TimerItem WHERE id > :afterId ORDER BY id LIMIT :limit")
+    suspend fun getTimerRowsAfter(afterId: Int, limit: Int): List<TimerRowData>
+
+    @Query("SELECT * FROM Step WHERE timerId IN (:timerIds) ORDER BY ordinal")
+    suspend fun getStepRowsOf(timerIds: List<Int>): List<StepRowData>
+
+    @Query(
+        "SELECT * FROM Behaviour " +
+            "WHERE stepId IN (SELECT id FROM Step WHERE timerId IN (:timerIds)) ORDER BY ordinal"
+    )
+    suspend fun getBehaviourRowsOf(timerIds: List<Int>): List<BehaviourRowData>
+
+    /**
+     * A page of timers ordered by id. Pass the last id of the previous page as [afterId].
+     */
+    @Transaction
+    suspend fun getTimersAfter(afterId: Int, limit: Int): List<TimerData> {
+        val rows = getTimerRowsAfter(afterId, limit)
+        if (rows.isEmpty()) return emptyList()
+        val ids = rows.map { it.id }
+        val steps = getStepRowsOf(ids).groupBy { it.timerId }
+        val behaviours = getBehaviourRowsOf(ids).groupBy { it.stepId }
+        return rows.map { it.toTimerData(steps[it.id].orEmpty(), behaviours) }
+    }
+
+    @Transaction
+    suspend fun getTimer(id: Int): TimerData? {
+        val row = getTimerRow(id) ?: return null
+        return row.toTimerData(getStepRows(id), getBehaviourRows(id).groupBy { it.stepId })
+    }
 
     @Query("SELECT id, name, folderId FROM TimerItem WHERE id = :timerId")
     suspend fun findTimerInfo(timerId: Int): TimerInfoData?
@@ -31,10 +99,117 @@ internal interface TimerDao {
     fun getTimerInfoFlow(folderId: Long): Flow<List<TimerInfoData>>
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    suspend fun addTimer(timerItem: TimerData): Long
+    suspend fun addTimerRow(row: TimerRowData): Long
 
     @Update(onConflict = OnConflictStrategy.REPLACE)
-    suspend fun updateTimer(timerItem: TimerData): Int
+    suspend fun updateTimerRow(row: TimerRowData): Int
+
+    @Insert
+    suspend fun addStepRows(rows: List<StepRowData>): List<Long>
+
+    @Update
+    suspend fun updateStepRow(row: StepRowData)
+
+    @Query("DELETE FROM Step WHERE id IN (:ids)")
+    suspend fun deleteStepRows(ids: List<Long>)
+
+    @Query("DELETE FROM Step WHERE timerId = :timerId")
+    suspend fun deleteStepRowsOf(timerId: Int)
+
+    @Insert
+    suspend fun addBehaviourRows(rows: List<BehaviourRowData>)
+
+    @Update
+    suspend fun updateBehaviourRow(row: BehaviourRowData)
+
+    @Query("DELETE FROM Behaviour WHERE id IN (:ids)")
+    suspend fun deleteBehaviourRows(ids: List<Long>)
+
+    @Transaction
+    suspend fun addTimer(timerItem: TimerData): Long {
+        val id = addTimerRow(timerItem.toRow())
+        // A replaced timer shouldn't keep any old steps.
+        deleteStepRowsOf(id.toInt())
+        addStepTree(
+            timerId = id.toInt(),
+            parentId = null,
+            items = timerItem.stepItems(),
+            insertSteps = { addStepRows(it) },
+            insertBehaviours = { addBehaviourRows(it) }
+        )
+        return id
+    }
+
+    /**
+     * Only writes rows that changed. Steps are matched by their parent and ordinal.
+     */
+    @Transaction
+    suspend fun updateTimer(timerItem: TimerData): Int {
+        val timerId = timerItem.id
+        val oldTimerRow = getTimerRow(timerId) ?: return 0
+        val timerRow = timerItem.toRow()
+        if (timerRow != oldTimerRow) {
+            updateTimerRow(timerRow)
+        }
+
+        val oldSteps = getStepRows(timerId)
+        val oldChildren = oldSteps.groupBy { it.parentId }
+        val oldBehaviours = getBehaviourRows(timerId).groupBy { it.stepId }
+        val keptStepIds = mutableSetOf<Long>()
+
+        suspend fun updateBehaviours(stepId: Long, behaviours: List<BehaviourData>) {
+            val olds = oldBehaviours[stepId].orEmpty().associateBy { it.ordinal }
+            val added = mutableListOf<BehaviourRowData>()
+            behaviours.forEachIndexed { ordinal, behaviour ->
+                val old = olds[ordinal]
+                if (old == null) {
+                    added += behaviour.toRow(stepId = stepId, ordinal = ordinal)
+                } else {
+                    val row = behaviour.toRow(id = old.id, stepId = stepId, ordinal = ordinal)
+                    if (row != old) updateBehaviourRow(row)
+                }
+            }
+            if (added.isNotEmpty()) addBehaviourRows(added)
+            val removed = olds.values.filter { it.ordinal >= behaviours.size }.map { it.id }
+            if (removed.isNotEmpty()) deleteBehaviourRows(removed)
+        }
+
+        suspend fun updateSteps(parentId: Long?, items: List<Pair<Int, StepData>>) {
+            val olds = oldChildren[parentId].orEmpty().associateBy { it.ordinal }
+            val added = mutableListOf<Pair<Int, StepData>>()
+            items.forEach { item ->
+                val (ordinal, step) = item
+                val old = olds[ordinal]
+                if (old == null) {
+                    added += item
+                    return@forEach
+                }
+                keptStepIds += old.id
+                val row = step.toRow(id = old.id, timerId = timerId, parentId = parentId, ordinal = ordinal)
+                if (row != old) updateStepRow(row)
+                updateBehaviours(old.id, (step as? StepData.Step)?.behaviour.orEmpty())
+                if (step is StepData.Group) {
+                    updateSteps(old.id, step.steps.mapIndexed { index, child -> index to child })
+                }
+            }
+            addStepTree(
+                timerId = timerId,
+                parentId = parentId,
+                items = added,
+                insertSteps = { addStepRows(it) },
+                insertBehaviours = { addBehaviourRows(it) }
+            )
+        }
+
+        updateSteps(parentId = null, items = timerItem.stepItems())
+
+        // Steps in removed groups and behaviours of removed steps go with them.
+        oldSteps.map { it.id }
+            .filter { it !in keptStepIds }
+            .chunked(MAX_IDS_PER_DELETE)
+            .forEach { deleteStepRows(it) }
+        return 1
+    }
 
     @Query("UPDATE TimerItem SET folderId = :folderId WHERE id = :timerId")
     suspend fun changeTimerFolder(timerId: Int, folderId: Long)
@@ -48,8 +223,37 @@ internal interface TimerDao {
 
     @Query("DELETE FROM TimerItem WHERE id = :id")
     suspend fun deleteTimer(id: Int): Int
+
+    @Query("DELETE FROM TimerItem")
+    suspend fun deleteTimers()
+
+    @Insert
+    suspend fun addTimerRows(rows: List<TimerRowData>): List<Long>
+
+    /**
+     * @return New ids in the order of [timers].
+     */
+    @Transaction
+    suspend fun addTimers(timers: List<TimerData>): List<Int> {
+        val ids = addTimerRows(timers.map { it.toRow().copy(id = 0) })
+        timers.forEachIndexed { index, timer ->
+            addStepTree(
+                timerId = ids[index].toInt(),
+                parentId = null,
+                items = timer.stepItems(),
+                insertSteps = { addStepRows(it) },
+                insertBehaviours = { addBehaviourRows(it) }
+            )
+        }
+        return ids.map { it.toInt() }
+    }
 }
 
+/**
+ * Stay below the SQLite host parameter limit.
+ */
+private const val MAX_IDS_PER_DELETE = 900
+
 @Dao
 internal interface FolderDao {
     @Query("SELECT * FROM Folder")
@@ -63,6 +267,15 @@ internal interface FolderDao {
 
     @Query("DELETE FROM Folder WHERE id = :id")
     suspend fun deleteFolder(id: Long): Int
+
+    @Insert
+    suspend fun addFolders(items: List<FolderData>): List<Long>
+
+    @Query(
+        "DELETE FROM Folder WHERE id != ${FolderEntity.FOLDER_DEFAULT} " +
+            "AND id != ${FolderEntity.FOLDER_TRASH}"
+    )
+    suspend fun deleteUserFolders()
 }
 
 @Dao
@@ -76,6 +289,12 @@ internal interface SchedulerDao {
     @Query("SELECT * FROM TimerScheduler WHERE timerId = :id")
     suspend fun getSchedulersByTimerId(id: Int): List<SchedulerData>
 
+    @Query(
+        "SELECT * FROM TimerScheduler " +
+            "WHERE id IN (:ids) AND timerId IN (SELECT id FROM TimerItem)"
+    )
+    suspend fun getSchedulersWithTimers(ids: List<Int>): List<SchedulerData>
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun addScheduler(timerScheduler: SchedulerData): Long
 
@@ -87,6 +306,12 @@ internal interface SchedulerDao {
 
     @Query("DELETE FROM TimerScheduler WHERE id = :id")
     suspend fun deleteScheduler(id: Int): Int
+
+    @Insert
+    suspend fun addSchedulers(items: List<SchedulerData>)
+
+    @Query("DELETE FROM TimerScheduler")
+    suspend fun deleteSchedulers()
 }
 
 @Dao
@@ -95,21 +320,229 @@ internal interface TimerStampDao {
     @Query("SELECT * FROM TimerStamp ORDER BY date")
     suspend fun getTimerStamps(): List<TimerStampData>
 
-    @Query("SELECT * FROM TimerStamp WHERE timerId = :timerId AND date >= :start AND date <= :end ORDER BY date")
-    suspend fun getWithTimerIdAndSpan(timerId: Int, start: Long, end: Long): List<TimerStampData>
+    @Query("SELECT * FROM TimerStamp WHERE id > :afterId ORDER BY id LIMIT :limit")
+    suspend fun getTimerStampsAfter(afterId: Int, limit: Int): List<TimerStampData>
+
+    @Query("SELECT * FROM TimerStamp WHERE timerId IN (:timerIds) AND date >= :start AND date <= :end ORDER BY date")
+    suspend fun getWithTimerIdsAndSpan(
+        timerIds: List<Int>,
+        start: Long,
+        end: Long
+    ): List<TimerStampData>
+
+    @Query(
+        "SELECT date / ${TimerStampSlotData.SLOT_MILLIS} AS slot, " +
+            "SUM(CASE WHEN start = 0 THEN 0 ELSE date - start END) AS duration, " +
+            "COUNT(*) AS count " +
+            "FROM TimerStamp WHERE timerId IN (:timerIds) AND date >= :start AND date <= :end " +
+            "GROUP BY slot ORDER BY slot"
+    )
+    suspend fun getSlots(timerIds: List<Int>, start: Long, end: Long): List<TimerStampSlotData>
 
     @Query("SELECT * FROM TimerStamp WHERE timerId = :timerId ORDER BY date DESC LIMIT 1")
     suspend fun getRecentOne(timerId: Int): TimerStampData?
 
+    @Query(
+        "SELECT timerId, MAX(date) AS date FROM TimerStamp " +
+            "WHERE timerId IN (:timerIds) GROUP BY timerId"
+    )
+    suspend fun getRecentEndTimes(timerIds: List<Int>): List<TimerStampEndData>
+
+    @Query(
+        "SELECT timerId, MAX(date) AS date FROM TimerStamp " +
+            "WHERE timerId IN (SELECT id FROM TimerItem WHERE folderId = :folderId) " +
+            "GROUP BY timerId"
+    )
+    fun getRecentEndTimesFlow(folderId: Long): Flow<List<TimerStampEndData>>
+
     @Query("SELECT * FROM TimerStamp ORDER BY date LIMIT 1")
     suspend fun getEarliestOne(): TimerStampData?
 
+    @Query("SELECT * FROM TimerStamp WHERE id = :id")
+    suspend fun getTimerStamp(id: Int): TimerStampData?
+
+    @Query(
+        "SELECT day, SUM(duration) AS duration, SUM(count) AS count FROM TimerStampDaily " +
+            "WHERE timerId IN (:timerIds) AND day >= :startDay AND day <= :endDay " +
+            "GROUP BY day ORDER BY day"
+    )
+    suspend fun getDailyByDay(
+        timerIds: List<Int>,
+        startDay: Long,
+        endDay: Long
+    ): List<TimerStampDailySumData>
+
+    @Query(
+        "SELECT timerId, SUM(duration) AS duration, SUM(count) AS count FROM TimerStampDaily " +
+            "WHERE timerId IN (:timerIds) AND day >= :startDay AND day <= :endDay " +
+            "GROUP BY timerId"
+    )
+    suspend fun getDailyByTimer(
+        timerIds: List<Int>,
+        startDay: Long,
+        endDay: Long
+    ): List<TimerStampTotalData>
+
+    @Query(
+        "SELECT timerId, SUM(CASE WHEN start = 0 THEN 0 ELSE date - start END) AS duration, " +
+            "COUNT(*) AS count FROM TimerStamp " +
+            "WHERE timerId IN (:timerIds) AND date >= :start AND date <= :end " +
+            "GROUP BY timerId"
+    )
+    suspend fun getTotalsByTimer(
+        timerIds: List<Int>,
+        start: Long,
+        end: Long
+    ): List<TimerStampTotalData>
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    suspend fun add(stamp: TimerStampData): Long
+    suspend fun insert(stamp: TimerStampData): Long
+
+    @Transaction
+    suspend fun add(stamp: TimerStampData): Long {
+        val zone = ZoneId.systemDefault()
+        rebuildDailyIfZoneChanged(zone)
+        // REPLACE overwrites the old stamp so take it out of the rollup first.
+        if (stamp.id != 0) {
+            getTimerStamp(stamp.id)?.let { removeFromDaily(it, zone) }
+        }
+        val id = insert(stamp)
+        addToDaily(stamp, zone)
+        return id
+    }
+
+    @Insert
+    suspend fun insertAll(stamps: List<TimerStampData>)
+
+    /**
+     * Rolls [stamps] up in memory so each touched day is written once.
+     */
+    @Transaction
+    suspend fun addAll(stamps: List<TimerStampData>) {
+        val zone = ZoneId.systemDefault()
+        rebuildDailyIfZoneChanged(zone)
+        insertAll(stamps)
+        val dailies = mutableMapOf<Pair<Int, Long>, TimerStampDailyData>()
+        TimerStampDailyData.rollUp(stamps, zone, dailies)
+        dailies.values.forEach { daily ->
+            ensureDaily(daily.copy(duration = 0, count = 0))
+            changeDaily(
+                timerId = daily.timerId,
+                day = daily.day,
+                duration = daily.duration,
+                count = daily.count
+            )
+        }
+    }
+
+    @Query("DELETE FROM TimerStamp")
+    suspend fun deleteStamps()
+
+    @Query("DELETE FROM TimerStampDaily")
+    suspend fun deleteDailies()
+
+    @Transaction
+    suspend fun deleteAll() {
+        deleteDailies()
+        deleteStamps()
+    }
 
     @Query("DELETE FROM TimerStamp WHERE timerId = :timerId")
-    suspend fun deleteWithTimerId(timerId: Int): Int
+    suspend fun deleteStampsWithTimerId(timerId: Int): Int
+
+    @Transaction
+    suspend fun deleteWithTimerId(timerId: Int): Int {
+        deleteDailyWithTimerId(timerId)
+        return deleteStampsWithTimerId(timerId)
+    }
 
     @Query("DELETE FROM TimerStamp WHERE id = :id")
-    suspend fun deleteTimerStamp(id: Int): Int
+    suspend fun deleteStamp(id: Int): Int
+
+    @Transaction
+    suspend fun deleteTimerStamp(id: Int): Int {
+        val zone = ZoneId.systemDefault()
+        rebuildDailyIfZoneChanged(zone)
+        val stamp = getTimerStamp(id) ?: return 0
+        removeFromDaily(stamp, zone)
+        return deleteStamp(id)
+    }
+
+    // region Daily rollup
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun ensureDaily(daily: TimerStampDailyData)
+
+    @Query(
+        "UPDATE TimerStampDaily SET duration = duration + :duration, count = count + :count " +
+            "WHERE timerId = :timerId AND day = :day"
+    )
+    suspend fun changeDaily(timerId: Int, day: Long, duration: Long, count: Int)
+
+    @Query("DELETE FROM TimerStampDaily WHERE count <= 0")
+    suspend fun deleteEmptyDaily()
+
+    @Query("DELETE FROM TimerStampDaily WHERE timerId = :timerId")
+    suspend fun deleteDailyWithTimerId(timerId: Int)
+
+    @Insert
+    suspend fun insertDailies(dailies: List<TimerStampDailyData>)
+
+    @Query("SELECT EXISTS(SELECT 1 FROM TimerStampDaily WHERE zone != :zone)")
+    suspend fun hasDailyOutsideZone(zone: String): Boolean
+
+    /**
+     * Days depend on the time zone, so the rollup is rebuilt in [zone] after the zone changes.
+     * Otherwise it would disagree with raw stamps bucketed in the new zone.
+     */
+    @Transaction
+    suspend fun rebuildDailyIfZoneChanged(zone: ZoneId) {
+        if (!hasDailyOutsideZone(zone.id)) return
+        deleteDailies()
+        val dailies = mutableMapOf<Pair<Int, Long>, TimerStampDailyData>()
+        var afterId = 0
+        while (true) {
+            val stamps = getTimerStampsAfter(afterId, DAILY_REBUILD_BATCH_SIZE)
+            if (stamps.isEmpty()) break
+            TimerStampDailyData.rollUp(stamps, zone, dailies)
+            afterId = stamps.last().id
+        }
+        insertDailies(dailies.values.toList())
+    }
+
+    suspend fun addToDaily(stamp: TimerStampData, zone: ZoneId) {
+        val day = TimerStampDailyData.dayOf(stamp.end, zone)
+        ensureDaily(
+            TimerStampDailyData(
+                timerId = stamp.timerId,
+                day = day,
+                duration = 0,
+                count = 0,
+                zone = zone.id
+            )
+        )
+        changeDaily(
+            timerId = stamp.timerId,
+            day = day,
+            duration = TimerStampDailyData.durationOf(stamp.start, stamp.end),
+            count = 1
+        )
+    }
+
+    suspend fun removeFromDaily(stamp: TimerStampData, zone: ZoneId) {
+        changeDaily(
+            timerId = stamp.timerId,
+            day = TimerStampDailyData.dayOf(stamp.end, zone),
+            duration = -TimerStampDailyData.durationOf(stamp.start, stamp.end),
+            count = -1
+        )
+        deleteEmptyDaily()
+    }
+
+    // endregion Daily rollup
 }
+
+/**
+ * How many stamps are read at a time to rebuild the daily rollup.
+ */
+private const val DAILY_REBUILD_BATCH_SIZE = 1_000
@@ -11,26 +11,32 @@ import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
 import androidx.room.migration.Migration
 import androidx.sqlite.db.SupportSQLiteDatabase
+import xyz.aprildown.timer.data.datas.BehaviourRowData
 import xyz.aprildown.timer.data.datas.FolderData
 import xyz.aprildown.timer.data.datas.SchedulerData
 import xyz.aprildown.timer.data.datas.StepData
+import xyz.aprildown.timer.data.datas.StepRowData
 import xyz.aprildown.timer.data.datas.TimerData
+import xyz.aprildown.timer.data.datas.TimerRowData
+import xyz.aprildown.timer.data.datas.TimerStampDailyData
 import xyz.aprildown.timer.data.datas.TimerStampData
 import xyz.aprildown.timer.domain.entities.FolderEntity
 import xyz.aprildown.timer.domain.entities.SchedulerRepeatMode
 
 @Database(
     entities = [
-        TimerData::class,
+        TimerRowData::class,
         FolderData::class,
         SchedulerData::class,
         TimerStampData::class,
+        TimerStampDailyData::class,
+        StepRowData::class,
+        BehaviourRowData::class,
     ],
     version = MachineDatabase.DB_VERSION,
     exportSchema = true
 )
 @TypeConverters(
-    StepConverters::class,
     TimerMoreConverters::class,
     BooleanConverters::class,
     SchedulerRepeatModeConverter::class,
@@ -46,7 +52,7 @@ abstract class MachineDatabase : RoomDatabase() {
         @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
         const val DB_NAME = "timer_db"
 
-        const val DB_VERSION = 8
+        const val DB_VERSION = 12
 
         private fun Builder<MachineDatabase>.addMyMigrations(): Builder<MachineDatabase> {
             addMigrations(getMigration1to2())
@@ -56,6 +62,10 @@ abstract class MachineDatabase : RoomDatabase() {
             addMigrations(getMigration5to6())
             addMigrations(getMigration6to7())
             addMigrations(getMigration7to8())
+            addMigrations(getMigration8to9())
+            addMigrations(getMigration9to10())
+            addMigrations(getMigration10to11())
+            addMigrations(getMigration11to12())
             return this
         }
 
@@ -222,5 +232,172 @@ abstract class MachineDatabase : RoomDatabase() {
                 addHostFolders(db)
             }
         }
+
+        /**
+         * Add [TimerStampDailyData] and fill it with existing stamps.
+         */
+        @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+        fun getMigration8to9(): Migration = object : Migration(8, 9) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `TimerStampDaily` " +
+                        "(`timerId` INTEGER NOT NULL, `day` INTEGER NOT NULL, " +
+                        "`duration` INTEGER NOT NULL, `count` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`timerId`, `day`))"
+                )
+                val dailies = mutableMapOf<Pair<Int, Long>, TimerStampDailyData>()
+                db.query("SELECT timerId, start, date FROM TimerStamp").use { cursor ->
+                    while (cursor.moveToNext()) {
+                        val timerId = cursor.getInt(0)
+                        val start = cursor.getLong(1)
+                        val end = cursor.getLong(2)
+                        val day = TimerStampDailyData.dayOf(end)
+                        val key = timerId to day
+                        val daily = dailies[key]
+                            ?: TimerStampDailyData(timerId = timerId, day = day, duration = 0, count = 0)
+                        dailies[key] = daily.copy(
+                            duration = daily.duration + TimerStampDailyData.durationOf(start, end),
+                            count = daily.count + 1
+                        )
+                    }
+                }
+                dailies.values.forEach { daily ->
+                    db.insert(
+                        "TimerStampDaily",
+                        SQLiteDatabase.CONFLICT_REPLACE,
+                        contentValuesOf(
+                            "timerId" to daily.timerId,
+                            "day" to daily.day,
+                            "duration" to daily.duration,
+                            "count" to daily.count,
+                        )
+                    )
+                }
+            }
+        }
+
+        /**
+         * Replace the TimerStamp timerId index with a (timerId, date) one
+         * so the latest stamp of each timer is read from the index.
+         */
+        @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+        fun getMigration9to10(): Migration = object : Migration(9, 10) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("DROP INDEX IF EXISTS `index_TimerStamp_timerId`")
+                db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS `index_TimerStamp_timerId_date` " +
+                        "ON `TimerStamp` (`timerId`, `date`)"
+                )
+            }
+        }
+
+        /**
+         * Move steps out of the JSON columns of TimerItem into [StepRowData] and [BehaviourRowData].
+         */
+        @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+        fun getMigration10to11(): Migration = object : Migration(10, 11) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                val converters = StepConverters()
+                val timerSteps = mutableMapOf<Int, List<Pair<Int, StepData>>>()
+                db.query("SELECT id, steps, startStep, endStep FROM TimerItem").use { cursor ->
+                    while (cursor.moveToNext()) {
+                        timerSteps[cursor.getInt(0)] = stepItemsOf(
+                            steps = converters.jsonToSteps(cursor.getString(1)),
+                            startStep = converters.jsonToStep(cursor.getString(2) ?: ""),
+                            endStep = converters.jsonToStep(cursor.getString(3) ?: "")
+                        )
+                    }
+                }
+
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `TimerItem_new` " +
+                        "(`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL, " +
+                        "`loop` INTEGER NOT NULL, `more` TEXT NOT NULL, `folderId` INTEGER NOT NULL)"
+                )
+                db.execSQL(
+                    "INSERT INTO `TimerItem_new` (id, name, loop, more, folderId) " +
+                        "SELECT id, name, loop, more, folderId FROM TimerItem"
+                )
+                db.execSQL("DROP TABLE TimerItem")
+                db.execSQL("ALTER TABLE `TimerItem_new` RENAME TO `TimerItem`")
+
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `Step` " +
+                        "(`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `timerId` INTEGER NOT NULL, " +
+                        "`parentId` INTEGER, `ordinal` INTEGER NOT NULL, `isGroup` INTEGER NOT NULL, " +
+                        "`label` TEXT NOT NULL, `length` INTEGER NOT NULL, `type` TEXT, " +
+                        "`loop` INTEGER NOT NULL, " +
+                        "FOREIGN KEY(`timerId`) REFERENCES `TimerItem`(`id`) " +
+                        "ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                        "FOREIGN KEY(`parentId`) REFERENCES `Step`(`id`) " +
+                        "ON UPDATE NO ACTION ON DELETE CASCADE )"
+                )
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_Step_timerId` ON `Step` (`timerId`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_Step_parentId` ON `Step` (`parentId`)")
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `Behaviour` " +
+                        "(`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `stepId` INTEGER NOT NULL, " +
+                        "`ordinal` INTEGER NOT NULL, `type` TEXT NOT NULL, `label` TEXT NOT NULL, " +
+                        "`content` TEXT NOT NULL, `loop` INTEGER NOT NULL, " +
+                        "FOREIGN KEY(`stepId`) REFERENCES `Step`(`id`) " +
+                        "ON UPDATE NO ACTION ON DELETE CASCADE )"
+                )
+                db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS `index_Behaviour_stepId` ON `Behaviour` (`stepId`)"
+                )
+
+                timerSteps.forEach { (timerId, items) ->
+                    addStepTree(
+                        timerId = timerId,
+                        parentId = null,
+                        items = items,
+                        insertSteps = { rows ->
+                            rows.map { row ->
+                                db.insert(
+                                    "Step",
+                                    SQLiteDatabase.CONFLICT_ABORT,
+                                    contentValuesOf(
+                                        "timerId" to row.timerId,
+                                        "parentId" to row.parentId,
+                                        "ordinal" to row.ordinal,
+                                        "isGroup" to row.isGroup,
+                                        "label" to row.label,
+                                        "length" to row.length,
+                                        "type" to row.type,
+                                        "loop" to row.loop,
+                                    )
+                                )
+                            }
+                        },
+                        insertBehaviours = { rows ->
+                            rows.forEach { row ->
+                                db.insert(
+                                    "Behaviour",
+                                    SQLiteDatabase.CONFLICT_ABORT,
+                                    contentValuesOf(
+                                        "stepId" to row.stepId,
+                                        "ordinal" to row.ordinal,
+                                        "type" to row.type,
+                                        "label" to row.label,
+                                        "content" to row.content,
+                                        "loop" to row.loop,
+                                    )
+                                )
+                            }
+                        }
+                    )
+                }
+            }
+        }
+
+        /**
+         * Add [TimerStampDailyData.zone]. Existing rows have no zone so the rollup is rebuilt.
+         */
+        @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
+        fun getMigration11to12(): Migration = object : Migration(11, 12) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE TimerStampDaily ADD COLUMN `zone` TEXT NOT NULL DEFAULT ''")
+            }
+        }
     }
 }
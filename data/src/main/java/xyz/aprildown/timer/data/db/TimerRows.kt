@@ -0,0 +1,166 @@
+package xyz.aprildown.timer.data.db
+
+import xyz.aprildown.timer.data.datas.BehaviourData
+import xyz.aprildown.timer.data.datas.BehaviourRowData
+import xyz.aprildown.timer.data.datas.StepData
+import xyz.aprildown.timer.data.datas.StepRowData
+import xyz.aprildown.timer.data.datas.TimerData
+import xyz.aprildown.timer.data.datas.TimerRowData
+import xyz.aprildown.timer.domain.entities.BehaviourType
+import xyz.aprildown.timer.domain.entities.StepType
+
+internal fun TimerData.toRow(): TimerRowData = TimerRowData(
+    id = id,
+    name = name,
+    loop = loop,
+    more = more,
+    folderId = folderId
+)
+
+/**
+ * Top level steps with their [StepRowData.ordinal].
+ */
+internal fun stepItemsOf(
+    steps: List<StepData>,
+    startStep: StepData.Step?,
+    endStep: StepData.Step?
+): List<Pair<Int, StepData>> = buildList {
+    if (startStep != null) add(StepRowData.ORDINAL_START_STEP to startStep)
+    steps.forEachIndexed { index, step -> add(index to step) }
+    if (endStep != null) add(StepRowData.ORDINAL_END_STEP to endStep)
+}
+
+internal fun TimerData.stepItems(): List<Pair<Int, StepData>> =
+    stepItemsOf(steps = steps, startStep = startStep, endStep = endStep)
+
+internal fun StepData.toRow(
+    id: Long = 0,
+    timerId: Int,
+    parentId: Long?,
+    ordinal: Int
+): StepRowData = when (this) {
+    is StepData.Step -> StepRowData(
+        id = id,
+        timerId = timerId,
+        parentId = parentId,
+        ordinal = ordinal,
+        isGroup = false,
+        label = label,
+        length = length,
+        type = type.name
+    )
+    is StepData.Group -> StepRowData(
+        id = id,
+        timerId = timerId,
+        parentId = parentId,
+        ordinal = ordinal,
+        isGroup = true,
+        label = name,
+        loop = loop
+    )
+}
+
+internal fun BehaviourData.toRow(id: Long = 0, stepId: Long, ordinal: Int): BehaviourRowData =
+    BehaviourRowData(
+        id = id,
+        stepId = stepId,
+        ordinal = ordinal,
+        type = type.name,
+        label = label,
+        content = content,
+        loop = loop
+    )
+
+/**
+ * @param steps Steps of this timer ordered by [StepRowData.ordinal].
+ * @param behaviours Behaviours by [BehaviourRowData.stepId] ordered by [BehaviourRowData.ordinal].
+ */
+internal fun TimerRowData.toTimerData(
+    steps: List<StepRowData>,
+    behaviours: Map<Long, List<BehaviourRowData>>
+): TimerData {
+    val children = steps.groupBy { it.parentId }
+
+    fun StepRowData.toStep(): StepData.Step = StepData.Step(
+        label = label,
+        length = length,
+        behaviour = behaviours[id].orEmpty().map { behaviour ->
+            BehaviourData(
+                type = BehaviourType.valueOf(behaviour.type),
+                label = behaviour.label,
+                content = behaviour.content,
+                loop = behaviour.loop
+            )
+        },
+        type = type?.let { StepType.valueOf(it) } ?: StepType.NORMAL
+    )
+
+    fun StepRowData.toData(): StepData = if (isGroup) {
+        StepData.Group(
+            name = label,
+            loop = loop,
+            steps = children[id].orEmpty().map { it.toData() }
+        )
+    } else {
+        toStep()
+    }
+
+    val topLevel = children[null].orEmpty()
+    return TimerData(
+        id = id,
+        name = name,
+        loop = loop,
+        steps = topLevel.filter { it.ordinal >= 0 }.map { it.toData() },
+        startStep = topLevel.find { it.ordinal == StepRowData.ORDINAL_START_STEP }?.toStep(),
+        endStep = topLevel.find { it.ordinal == StepRowData.ORDINAL_END_STEP }?.toStep(),
+        more = more,
+        folderId = folderId
+    )
+}
+
+/**
+ * Insert [items] under [parentId] along with their group steps and behaviours.
+ * It takes three inserts however many steps there are.
+ *
+ * @param insertSteps Returns the ids of the inserted rows in order.
+ */
+internal inline fun addStepTree(
+    timerId: Int,
+    parentId: Long?,
+    items: List<Pair<Int, StepData>>,
+    insertSteps: (List<StepRowData>) -> List<Long>,
+    insertBehaviours: (List<BehaviourRowData>) -> Unit
+) {
+    if (items.isEmpty()) return
+    val ids = insertSteps(
+        items.map { (ordinal, step) ->
+            step.toRow(timerId = timerId, parentId = parentId, ordinal = ordinal)
+        }
+    )
+    val behaviours = mutableListOf<BehaviourRowData>()
+    val childRows = mutableListOf<StepRowData>()
+    val childSteps = mutableListOf<StepData>()
+    items.forEachIndexed { index, (_, step) ->
+        when (step) {
+            is StepData.Step -> step.behaviour.forEachIndexed { ordinal, behaviour ->
+                behaviours += behaviour.toRow(stepId = ids[index], ordinal = ordinal)
+            }
+            is StepData.Group -> step.steps.forEachIndexed { ordinal, child ->
+                childRows += child.toRow(timerId = timerId, parentId = ids[index], ordinal = ordinal)
+                childSteps += child
+            }
+        }
+    }
+    if (childRows.isNotEmpty()) {
+        val childIds = insertSteps(childRows)
+        childSteps.forEachIndexed { index, child ->
+            // There is no group in a group.
+            (child as? StepData.Step)?.behaviour?.forEachIndexed { ordinal, behaviour ->
+                behaviours += behaviour.toRow(stepId = childIds[index], ordinal = ordinal)
+            }
+        }
+    }
+    if (behaviours.isNotEmpty()) {
+        insertBehaviours(behaviours)
+    }
+}
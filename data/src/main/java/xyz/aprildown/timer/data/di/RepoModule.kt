@@ -15,6 +15,7 @@ import xyz.aprildown.timer.data.repositories.AppDataRepositoryImpl
 import xyz.aprildown.timer.data.repositories.FolderRepositoryImpl
 import xyz.aprildown.timer.data.repositories.NotifierRepositoryImpl
 import xyz.aprildown.timer.data.repositories.PreferencesRepoImpl
+import xyz.aprildown.timer.data.repositories.RunningTimerRepositoryImpl
 import xyz.aprildown.timer.data.repositories.SchedulerExecutorImpl
 import xyz.aprildown.timer.data.repositories.SchedulerRepositoryImpl
 import xyz.aprildown.timer.data.repositories.TimerRepositoryImpl
@@ -23,6 +24,7 @@ import xyz.aprildown.timer.domain.repositories.AppDataRepository
 import xyz.aprildown.timer.domain.repositories.FolderRepository
 import xyz.aprildown.timer.domain.repositories.NotifierRepository
 import xyz.aprildown.timer.domain.repositories.PreferencesRepository
+import xyz.aprildown.timer.domain.repositories.RunningTimerRepository
 import xyz.aprildown.timer.domain.repositories.SchedulerExecutor
 import xyz.aprildown.timer.domain.repositories.SchedulerRepository
 import xyz.aprildown.timer.domain.repositories.TimerRepository
@@ -56,6 +58,9 @@ internal abstract class RepoModule {
     @Binds
     abstract fun bindPreferencesRepo(repo: PreferencesRepoImpl): PreferencesRepository
 
+    @Binds
+    abstract fun bindRunningTimerRepo(repo: RunningTimerRepositoryImpl): RunningTimerRepository
+
     companion object {
         @Reusable
         @Provides
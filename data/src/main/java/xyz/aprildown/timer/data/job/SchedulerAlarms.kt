@@ -0,0 +1,168 @@
+package xyz.aprildown.timer.data.job
+
+import android.app.AlarmManager
+import android.app.PendingIntent
+import android.content.Context
+import android.content.Intent
+import androidx.core.app.AlarmManagerCompat
+import androidx.core.content.edit
+import androidx.core.content.getSystemService
+import dagger.hilt.android.qualifiers.ApplicationContext
+import xyz.aprildown.timer.domain.entities.SchedulerEntity
+import java.util.TreeSet
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the next fire time of every enabled scheduler in a queue and arms one exact alarm
+ * for the earliest. The queue is saved, so a process started by the alarm knows what is due.
+ */
+@Singleton
+class SchedulerAlarms @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    data class Alarm(val schedulerId: Int, val time: Long)
+
+    private val sharedPreferences by lazy {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+    }
+
+    private var loadedQueue: TreeSet<Alarm>? = null
+    private val alarms = mutableMapOf<Int, Alarm>()
+
+    private val queue: TreeSet<Alarm>
+        get() = loadedQueue ?: load().also { loadedQueue = it }
+
+    /**
+     * @return The next fire time of [scheduler].
+     */
+    @Synchronized
+    fun schedule(scheduler: SchedulerEntity): Long {
+        val time = scheduler.getNextFireTime().timeInMillis
+        put(Alarm(schedulerId = scheduler.id, time = time))
+        save()
+        arm()
+        return time
+    }
+
+    /**
+     * @return How many alarms are removed.
+     */
+    @Synchronized
+    fun cancel(schedulerId: Int): Int {
+        if (remove(schedulerId) == null) return 0
+        save()
+        arm()
+        return 1
+    }
+
+    /**
+     * Compute fire times again, like after the clock or the time zone changes.
+     */
+    @Synchronized
+    fun replaceAll(schedulers: List<SchedulerEntity>) {
+        queue.clear()
+        alarms.clear()
+        schedulers.forEach {
+            put(Alarm(schedulerId = it.id, time = it.getNextFireTime().timeInMillis))
+        }
+        save()
+        arm()
+    }
+
+    /**
+     * Alarms due at [now]. They stay in the queue until [removeDue], so they aren't lost if
+     * handling them is cut short.
+     */
+    @Synchronized
+    fun getDue(now: Long = System.currentTimeMillis()): List<Alarm> {
+        return queue.takeWhile { it.time <= now }
+    }
+
+    /**
+     * Remove [due] alarms that haven't been scheduled again or canceled since [getDue].
+     * The alarm for the next one is armed.
+     */
+    @Synchronized
+    fun removeDue(due: List<Alarm>) {
+        var isChanged = false
+        due.forEach { alarm ->
+            if (alarms[alarm.schedulerId] == alarm) {
+                remove(alarm.schedulerId)
+                isChanged = true
+            }
+        }
+        if (isChanged) {
+            save()
+        }
+        arm()
+    }
+
+    /**
+     * Arm the alarm for the earliest one again. Alarms left due fire right away.
+     */
+    @Synchronized
+    fun rearm() {
+        arm()
+    }
+
+    private fun put(alarm: Alarm) {
+        remove(alarm.schedulerId)
+        alarms[alarm.schedulerId] = alarm
+        queue += alarm
+    }
+
+    private fun remove(schedulerId: Int): Alarm? {
+        // Load first so that alarms are filled.
+        val queue = queue
+        return alarms.remove(schedulerId)?.also { queue -= it }
+    }
+
+    private fun load(): TreeSet<Alarm> {
+        val result = TreeSet(ALARM_ORDER)
+        sharedPreferences.all.forEach { (key, value) ->
+            val schedulerId = key.toIntOrNull() ?: return@forEach
+            val time = value as? Long ?: return@forEach
+            val alarm = Alarm(schedulerId = schedulerId, time = time)
+            alarms[schedulerId] = alarm
+            result += alarm
+        }
+        return result
+    }
+
+    private fun save() {
+        sharedPreferences.edit {
+            clear()
+            queue.forEach { putLong(it.schedulerId.toString(), it.time) }
+        }
+    }
+
+    private fun arm() {
+        val am = context.getSystemService<AlarmManager>() ?: return
+        val intent = PendingIntent.getBroadcast(
+            context,
+            0,
+            Intent(RECEIVE_JOB_ACTION).setClassName(context.packageName, RECEIVER_CLASS_NAME),
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+        val next = queue.firstOrNull()
+        if (next == null) {
+            am.cancel(intent)
+            return
+        }
+        AlarmManagerCompat.setExactAndAllowWhileIdle(am, AlarmManager.RTC_WAKEUP, next.time, intent)
+    }
+
+    companion object {
+        const val RECEIVE_JOB_ACTION = "xyz.aprildown.timer.data.job.scheduler"
+
+        const val EXTRA_ID = "id"
+
+        private const val RECEIVER_CLASS_NAME =
+            "xyz.aprildown.timer.app.timer.run.receiver.SchedulerReceiver"
+
+        private const val PREFS_NAME = "scheduler_alarms"
+
+        private val ALARM_ORDER = compareBy<Alarm>({ it.time }, { it.schedulerId })
+    }
+}
@@ -14,7 +14,7 @@ internal class AppDataMapper @Inject constructor(
     private val schedulerMapper: SchedulerMapper
 ) : Mapper<AppDataData, AppDataEntity>() {
 
-    private val stepOnlyMapper = timerMapper.stepMapper.stepOnlyMapper
+    val stepOnlyMapper = timerMapper.stepMapper.stepOnlyMapper
 
     override fun mapFrom(from: AppDataData): AppDataEntity {
         return AppDataEntity(
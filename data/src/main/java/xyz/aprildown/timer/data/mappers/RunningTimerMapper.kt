@@ -0,0 +1,34 @@
+package xyz.aprildown.timer.data.mappers
+
+import dagger.Reusable
+import xyz.aprildown.timer.data.datas.RunningTimerData
+import xyz.aprildown.timer.domain.Mapper
+import xyz.aprildown.timer.domain.entities.RunningTimerEntity
+import javax.inject.Inject
+
+@Reusable
+internal class RunningTimerMapper @Inject constructor(
+    private val timerMapper: TimerMapper
+) : Mapper<RunningTimerData, RunningTimerEntity>() {
+    override fun mapFrom(from: RunningTimerData): RunningTimerEntity {
+        return RunningTimerEntity(
+            timer = timerMapper.mapFrom(from.timer),
+            index = from.index,
+            isRunning = from.isRunning,
+            time = from.time,
+            realtime = from.realtime,
+            beginTime = from.beginTime
+        )
+    }
+
+    override fun mapTo(from: RunningTimerEntity): RunningTimerData {
+        return RunningTimerData(
+            timer = timerMapper.mapTo(from.timer),
+            index = from.index,
+            isRunning = from.isRunning,
+            time = from.time,
+            realtime = from.realtime,
+            beginTime = from.beginTime
+        )
+    }
+}
@@ -1,13 +1,36 @@
 package xyz.aprildown.timer.data.repositories
 
+import androidx.room.withTransaction
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
 import com.squareup.moshi.Moshi
+import com.squareup.moshi.Types
 import dagger.Reusable
+import okio.Buffer
+import okio.BufferedSink
+import okio.ForwardingSource
+import okio.Source
+import okio.buffer
 import xyz.aprildown.timer.data.datas.AppDataData
+import xyz.aprildown.timer.data.datas.FolderData
+import xyz.aprildown.timer.data.datas.SchedulerData
+import xyz.aprildown.timer.data.datas.StepData
+import xyz.aprildown.timer.data.datas.TimerData
+import xyz.aprildown.timer.data.datas.TimerStampData
+import xyz.aprildown.timer.data.db.FolderDao
+import xyz.aprildown.timer.data.db.MachineDatabase
+import xyz.aprildown.timer.data.db.SchedulerDao
 import xyz.aprildown.timer.data.db.StepConverters
+import xyz.aprildown.timer.data.db.TimerDao
+import xyz.aprildown.timer.data.db.TimerStampDao
 import xyz.aprildown.timer.data.json.BehaviourDataJsonAdapter
 import xyz.aprildown.timer.data.json.TimerMoreDataJsonAdapter
 import xyz.aprildown.timer.data.mappers.AppDataMapper
 import xyz.aprildown.timer.domain.entities.AppDataEntity
+import xyz.aprildown.timer.domain.entities.FolderEntity
+import xyz.aprildown.timer.domain.entities.ImportProgressEntity
+import xyz.aprildown.timer.domain.entities.StepEntity
 import xyz.aprildown.timer.domain.repositories.AppDataRepository
 import java.util.Optional
 import javax.inject.Inject
@@ -16,15 +39,25 @@ import javax.inject.Inject
 internal class AppDataRepositoryImpl @Inject constructor(
     @AppDataRepository.BackupRepositoryQualifier
     private val backupRepository: Optional<AppDataRepository.BackupRepository>,
-    private val mapper: AppDataMapper
+    private val mapper: AppDataMapper,
+    private val database: MachineDatabase,
+    private val folderDao: FolderDao,
+    private val timerDao: TimerDao,
+    private val schedulerDao: SchedulerDao,
+    private val timerStampDao: TimerStampDao,
 ) : AppDataRepository {
 
-    private val jsonAdapter = Moshi.Builder()
+    private val moshi = Moshi.Builder()
         .add(BehaviourDataJsonAdapter())
         .add(StepConverters.getStepDataJsonAdapter())
         .add(TimerMoreDataJsonAdapter())
         .build()
-        .adapter(AppDataData::class.java)
+
+    private val jsonAdapter = moshi.adapter(AppDataData::class.java)
+
+    private val prefsAdapter = moshi.adapter<Map<String, String>>(
+        Types.newParameterizedType(Map::class.java, String::class.java, String::class.java)
+    )
 
     override suspend fun collectData(appDataEntity: AppDataEntity): String {
         return jsonAdapter.toJson(mapper.mapTo(appDataEntity))
@@ -38,7 +71,535 @@ internal class AppDataRepositoryImpl @Inject constructor(
 
     private fun fromJson(data: String): AppDataData? = jsonAdapter.fromJson(data)
 
+    override suspend fun writeData(
+        sink: BufferedSink,
+        includeTimers: Boolean,
+        includeTimerStamps: Boolean,
+        includeSchedulers: Boolean,
+        notifier: StepEntity.Step?,
+        prefs: Map<String, String>,
+        binary: Boolean
+    ) {
+        if (binary) {
+            writeBinary(
+                sink = sink,
+                includeTimers = includeTimers,
+                includeTimerStamps = includeTimerStamps,
+                includeSchedulers = includeSchedulers,
+                notifier = notifier,
+                prefs = prefs
+            )
+            return
+        }
+
+        val writer = JsonWriter.of(sink)
+        // No transaction, which would block writes like new timer stamps until the export is
+        // done. Pages are keyed by id, so rows added meanwhile only show up in later pages.
+        writer.beginObject()
+
+        writer.name("folders").beginArray()
+        if (includeTimers) {
+            val adapter = moshi.adapter(FolderData::class.java)
+            folderDao.getFolders().forEach { adapter.toJson(writer, it) }
+        }
+        writer.endArray()
+
+        writer.name("timers").beginArray()
+        if (includeTimers) {
+            val adapter = moshi.adapter(TimerData::class.java)
+            writePages(
+                getPage = { afterId -> timerDao.getTimersAfter(afterId, TIMER_PAGE_SIZE) },
+                getId = { it.id },
+                write = { adapter.toJson(writer, it) }
+            )
+        }
+        writer.endArray()
+
+        if (notifier != null) {
+            writer.name("notifier")
+            moshi.adapter(StepData.Step::class.java)
+                .toJson(writer, mapper.stepOnlyMapper.mapTo(notifier))
+        }
+
+        writer.name("timerStamps").beginArray()
+        if (includeTimerStamps) {
+            val adapter = moshi.adapter(TimerStampData::class.java)
+            writePages(
+                getPage = { afterId ->
+                    timerStampDao.getTimerStampsAfter(afterId, TIMER_STAMP_PAGE_SIZE)
+                },
+                getId = { it.id },
+                write = { adapter.toJson(writer, it) }
+            )
+        }
+        writer.endArray()
+
+        writer.name("schedulers").beginArray()
+        if (includeSchedulers) {
+            val adapter = moshi.adapter(SchedulerData::class.java)
+            schedulerDao.getSchedulers().forEach { adapter.toJson(writer, it.copy(enable = 0)) }
+        }
+        writer.endArray()
+
+        writer.name("prefs")
+        prefsAdapter.toJson(writer, prefs)
+
+        writer.endObject()
+        writer.flush()
+    }
+
+    private suspend fun writeBinary(
+        sink: BufferedSink,
+        includeTimers: Boolean,
+        includeTimerStamps: Boolean,
+        includeSchedulers: Boolean,
+        notifier: StepEntity.Step?,
+        prefs: Map<String, String>
+    ) {
+        // No transaction for the same reason as writeData.
+        BinaryBackupWriter(sink).use { binary ->
+            if (includeTimers) {
+                val folderAdapter = moshi.adapter(FolderData::class.java)
+                folderDao.getFolders().forEach { folder ->
+                    binary.writeJson(BinaryBackup.Frame.Folder) {
+                        folderAdapter.toJson(it, folder)
+                    }
+                }
+
+                val timerAdapter = moshi.adapter(TimerData::class.java)
+                writePages(
+                    getPage = { afterId -> timerDao.getTimersAfter(afterId, TIMER_PAGE_SIZE) },
+                    getId = { it.id },
+                    write = { timer ->
+                        binary.writeJson(BinaryBackup.Frame.Timer) {
+                            timerAdapter.toJson(it, timer)
+                        }
+                    }
+                )
+            }
+
+            if (notifier != null) {
+                binary.writeJson(BinaryBackup.Frame.Notifier) {
+                    moshi.adapter(StepData.Step::class.java)
+                        .toJson(it, mapper.stepOnlyMapper.mapTo(notifier))
+                }
+            }
+
+            if (includeTimerStamps) {
+                forEachPage(
+                    getPage = { afterId ->
+                        timerStampDao.getTimerStampsAfter(afterId, TIMER_STAMP_PAGE_SIZE)
+                    },
+                    getId = { it.id },
+                    action = { binary.writeTimerStamps(it) }
+                )
+            }
+
+            if (includeSchedulers) {
+                val schedulerAdapter = moshi.adapter(SchedulerData::class.java)
+                schedulerDao.getSchedulers().forEach { scheduler ->
+                    binary.writeJson(BinaryBackup.Frame.Scheduler) {
+                        schedulerAdapter.toJson(it, scheduler.copy(enable = 0))
+                    }
+                }
+            }
+
+            binary.writeJson(BinaryBackup.Frame.Prefs) { prefsAdapter.toJson(it, prefs) }
+        }
+        sink.flush()
+    }
+
+    /**
+     * Pages are keyed by the last id so each one is an index seek.
+     */
+    private inline fun <T> forEachPage(
+        getPage: (afterId: Int) -> List<T>,
+        getId: (T) -> Int,
+        action: (List<T>) -> Unit
+    ) {
+        var afterId = Int.MIN_VALUE
+        while (true) {
+            val page = getPage(afterId)
+            if (page.isEmpty()) break
+            action(page)
+            afterId = getId(page.last())
+        }
+    }
+
+    private inline fun <T> writePages(
+        getPage: (afterId: Int) -> List<T>,
+        getId: (T) -> Int,
+        write: (T) -> Unit
+    ) {
+        forEachPage(getPage = getPage, getId = getId, action = { it.forEach(write) })
+    }
+
+    override suspend fun readData(
+        source: Source,
+        wipeFirst: Boolean,
+        includeTimers: Boolean,
+        includeTimerStamps: Boolean,
+        includeSchedulers: Boolean,
+        onProgress: (ImportProgressEntity) -> Unit
+    ): AppDataEntity {
+        var bytesRead = 0L
+        val countingSource = object : ForwardingSource(source) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                return super.read(sink, byteCount).also { if (it > 0) bytesRead += it }
+            }
+        }.buffer()
+
+        var rowsInserted = 0
+        val importer = Importer(
+            includeTimers = includeTimers,
+            includeTimerStamps = includeTimerStamps,
+            includeSchedulers = includeSchedulers,
+            onInserted = { count ->
+                rowsInserted += count
+                onProgress(ImportProgressEntity(bytesRead = bytesRead, rowsInserted = rowsInserted))
+            }
+        )
+        database.withTransaction {
+            if (wipeFirst) {
+                timerStampDao.deleteAll()
+                schedulerDao.deleteSchedulers()
+                timerDao.deleteTimers()
+                folderDao.deleteUserFolders()
+            }
+
+            if (BinaryBackup.isBinary(countingSource)) {
+                readBinary(BinaryBackupReader(countingSource), importer)
+            } else {
+                readJson(JsonReader.of(countingSource), importer)
+            }
+        }
+
+        return AppDataEntity(
+            notifier = importer.notifier?.let { mapper.stepOnlyMapper.mapFrom(it) },
+            prefs = importer.prefs.orEmpty()
+        )
+    }
+
+    /**
+     * Adds rows of a backup with new ids and keeps them pointing to each other.
+     * Timer stamps and schedulers are held back until [onTimersRead] so they can be mapped
+     * even if a backup lists them before timers.
+     */
+    private inner class Importer(
+        val includeTimers: Boolean,
+        val includeTimerStamps: Boolean,
+        val includeSchedulers: Boolean,
+        private val onInserted: (count: Int) -> Unit,
+    ) {
+        private val folderIds = hashMapOf(
+            FolderEntity.FOLDER_DEFAULT to FolderEntity.FOLDER_DEFAULT,
+            FolderEntity.FOLDER_TRASH to FolderEntity.FOLDER_TRASH,
+        )
+        private val timerIds = HashMap<Int, Int>()
+
+        private var hasReadTimers = false
+        private val pendingTimerStamps = mutableListOf<TimerStampData>()
+        private val pendingSchedulers = mutableListOf<SchedulerData>()
+
+        var notifier: StepData.Step? = null
+        var prefs: Map<String, String>? = null
+
+        suspend fun addFolders(folders: List<FolderData>) {
+            val newFolders = folders.filter { it.id !in folderIds }
+            folderDao.addFolders(newFolders.map { it.copy(id = FolderEntity.NEW_ID) })
+                .forEachIndexed { index, newId ->
+                    folderIds[newFolders[index].id] = newId
+                }
+            onInserted(newFolders.size)
+        }
+
+        suspend fun addTimers(timers: List<TimerData>) {
+            val newTimerIds = timerDao.addTimers(
+                timers.map {
+                    it.copy(folderId = folderIds[it.folderId] ?: FolderEntity.FOLDER_DEFAULT)
+                }
+            )
+            timers.forEachIndexed { index, timer ->
+                timerIds[timer.id] = newTimerIds[index]
+            }
+            onInserted(timers.size)
+        }
+
+        /**
+         * Called once all timers are added. Rows held back until now are added.
+         */
+        suspend fun onTimersRead() {
+            if (hasReadTimers) return
+            hasReadTimers = true
+            if (pendingTimerStamps.isNotEmpty()) {
+                addTimerStamps(pendingTimerStamps.toList())
+                pendingTimerStamps.clear()
+            }
+            if (pendingSchedulers.isNotEmpty()) {
+                addSchedulers(pendingSchedulers.toList())
+                pendingSchedulers.clear()
+            }
+        }
+
+        suspend fun addTimerStamps(timerStamps: List<TimerStampData>) {
+            if (!hasReadTimers) {
+                pendingTimerStamps += timerStamps
+                return
+            }
+            val stamps = timerStamps.mapNotNull { stamp ->
+                timerIds[stamp.timerId]?.let { stamp.copy(id = 0, timerId = it) }
+            }
+            timerStampDao.addAll(stamps)
+            onInserted(stamps.size)
+        }
+
+        suspend fun addSchedulers(schedulers: List<SchedulerData>) {
+            if (!hasReadTimers) {
+                pendingSchedulers += schedulers
+                return
+            }
+            val newSchedulers = schedulers.mapNotNull { scheduler ->
+                timerIds[scheduler.timerId]?.let {
+                    scheduler.copy(id = 0, timerId = it, enable = 0)
+                }
+            }
+            schedulerDao.addSchedulers(newSchedulers)
+            onInserted(newSchedulers.size)
+        }
+    }
+
+    private suspend fun readJson(reader: JsonReader, importer: Importer) {
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "folders" -> reader.readBatches(
+                    adapter = moshi.adapter(FolderData::class.java),
+                    include = importer.includeTimers,
+                    add = { importer.addFolders(it) }
+                )
+                "timers" -> {
+                    reader.readBatches(
+                        adapter = moshi.adapter(TimerData::class.java),
+                        include = importer.includeTimers,
+                        add = { importer.addTimers(it) }
+                    )
+                    importer.onTimersRead()
+                }
+                "notifier" -> {
+                    importer.notifier = moshi.adapter(StepData.Step::class.java).nullSafe()
+                        .fromJson(reader)
+                }
+                "timerStamps" -> reader.readBatches(
+                    adapter = moshi.adapter(TimerStampData::class.java),
+                    include = importer.includeTimerStamps,
+                    add = { importer.addTimerStamps(it) }
+                )
+                "schedulers" -> reader.readBatches(
+                    adapter = moshi.adapter(SchedulerData::class.java),
+                    include = importer.includeSchedulers,
+                    add = { importer.addSchedulers(it) }
+                )
+                "prefs" -> importer.prefs = prefsAdapter.nullSafe().fromJson(reader)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        // A backup without timers.
+        importer.onTimersRead()
+    }
+
+    /**
+     * Read an array [BATCH_SIZE] items at a time, or skip it if not [include]d.
+     */
+    private inline fun <T> JsonReader.readBatches(
+        adapter: JsonAdapter<T>,
+        include: Boolean,
+        add: (List<T>) -> Unit
+    ) {
+        if (!include || peek() == JsonReader.Token.NULL) {
+            skipValue()
+            return
+        }
+        val batch = ArrayList<T>(BATCH_SIZE)
+        beginArray()
+        while (hasNext()) {
+            batch += adapter.fromJson(this) ?: continue
+            if (batch.size == BATCH_SIZE) {
+                add(batch.toList())
+                batch.clear()
+            }
+        }
+        endArray()
+        if (batch.isNotEmpty()) {
+            add(batch)
+        }
+    }
+
+    /**
+     * Frames of the same kind come together, so they are added in batches
+     * when a different kind of frame starts.
+     */
+    private suspend fun readBinary(reader: BinaryBackupReader, importer: Importer) {
+        val folderAdapter = moshi.adapter(FolderData::class.java)
+        val timerAdapter = moshi.adapter(TimerData::class.java)
+        val schedulerAdapter = moshi.adapter(SchedulerData::class.java)
+
+        val folders = mutableListOf<FolderData>()
+        val timers = mutableListOf<TimerData>()
+        val timerStamps = mutableListOf<TimerStampData>()
+        val schedulers = mutableListOf<SchedulerData>()
+        suspend fun addBatches(minSize: Int) {
+            if (folders.size >= minSize) {
+                importer.addFolders(folders.toList())
+                folders.clear()
+            }
+            if (timers.size >= minSize) {
+                importer.addTimers(timers.toList())
+                timers.clear()
+            }
+            if (timerStamps.size >= minSize) {
+                importer.addTimerStamps(timerStamps.toList())
+                timerStamps.clear()
+            }
+            if (schedulers.size >= minSize) {
+                importer.addSchedulers(schedulers.toList())
+                schedulers.clear()
+            }
+        }
+
+        var lastFrame: BinaryBackup.Frame? = null
+        while (true) {
+            val frame = reader.nextFrame()
+            if (frame != lastFrame) {
+                addBatches(minSize = 1)
+                if (lastFrame == BinaryBackup.Frame.Timer) {
+                    importer.onTimersRead()
+                }
+                lastFrame = frame
+            }
+            when (frame) {
+                BinaryBackup.Frame.End -> {
+                    // A backup without timers.
+                    importer.onTimersRead()
+                    break
+                }
+                BinaryBackup.Frame.Folder -> {
+                    val json = reader.readJson()
+                    if (importer.includeTimers) {
+                        folders += checkNotNull(folderAdapter.fromJson(json))
+                    }
+                }
+                BinaryBackup.Frame.Timer -> {
+                    val json = reader.readJson()
+                    if (importer.includeTimers) {
+                        timers += checkNotNull(timerAdapter.fromJson(json))
+                    }
+                }
+                BinaryBackup.Frame.Notifier -> {
+                    importer.notifier = moshi.adapter(StepData.Step::class.java).nullSafe()
+                        .fromJson(reader.readJson())
+                }
+                BinaryBackup.Frame.TimerStamps -> {
+                    val stamps = reader.readTimerStamps()
+                    if (importer.includeTimerStamps) timerStamps += stamps
+                }
+                BinaryBackup.Frame.Scheduler -> {
+                    val json = reader.readJson()
+                    if (importer.includeSchedulers) {
+                        schedulers += checkNotNull(schedulerAdapter.fromJson(json))
+                    }
+                }
+                BinaryBackup.Frame.Prefs -> {
+                    importer.prefs = prefsAdapter.fromJson(reader.readJson())
+                }
+            }
+            addBatches(minSize = BATCH_SIZE)
+        }
+    }
+
+    override suspend fun writeDelta(
+        sink: BufferedSink,
+        lastDigests: Source?,
+        digests: BufferedSink,
+        notifier: StepEntity.Step?,
+        prefs: Map<String, String>
+    ): Int {
+        val writer = JsonWriter.of(sink)
+        val delta = DeltaWriter(writer, lastDigests?.buffer(), digests)
+        database.withTransaction {
+            writer.beginObject()
+
+            delta.beginTable(BackupTable.Folders)
+            val folderAdapter = moshi.adapter(FolderData::class.java)
+            folderDao.getFolders().sortedBy { it.id }.forEach { folder ->
+                delta.writeRow(BackupTable.Folders, folder.id) { folderAdapter.toJson(it, folder) }
+            }
+            delta.endTable(BackupTable.Folders)
+
+            delta.beginTable(BackupTable.Timers)
+            val timerAdapter = moshi.adapter(TimerData::class.java)
+            writePages(
+                getPage = { afterId -> timerDao.getTimersAfter(afterId, TIMER_PAGE_SIZE) },
+                getId = { it.id },
+                write = { timer ->
+                    delta.writeRow(BackupTable.Timers, timer.id.toLong()) {
+                        timerAdapter.toJson(it, timer)
+                    }
+                }
+            )
+            delta.endTable(BackupTable.Timers)
+
+            delta.writeValue(BackupTable.Notifier) {
+                moshi.adapter(StepData.Step::class.java).nullSafe()
+                    .toJson(it, notifier?.let { step -> mapper.stepOnlyMapper.mapTo(step) })
+            }
+
+            delta.beginTable(BackupTable.TimerStamps)
+            val timerStampAdapter = moshi.adapter(TimerStampData::class.java)
+            writePages(
+                getPage = { afterId ->
+                    timerStampDao.getTimerStampsAfter(afterId, TIMER_STAMP_PAGE_SIZE)
+                },
+                getId = { it.id },
+                write = { stamp ->
+                    delta.writeRow(BackupTable.TimerStamps, stamp.id.toLong()) {
+                        timerStampAdapter.toJson(it, stamp)
+                    }
+                }
+            )
+            delta.endTable(BackupTable.TimerStamps)
+
+            delta.beginTable(BackupTable.Schedulers)
+            val schedulerAdapter = moshi.adapter(SchedulerData::class.java)
+            schedulerDao.getSchedulers().sortedBy { it.id }.forEach { scheduler ->
+                delta.writeRow(BackupTable.Schedulers, scheduler.id.toLong()) {
+                    schedulerAdapter.toJson(it, scheduler.copy(enable = 0))
+                }
+            }
+            delta.endTable(BackupTable.Schedulers)
+
+            delta.writeValue(BackupTable.Prefs) { prefsAdapter.toJson(it, prefs.toSortedMap()) }
+
+            delta.writeDeleted()
+
+            writer.endObject()
+        }
+        writer.flush()
+        digests.flush()
+        return delta.changedRows
+    }
+
+    override suspend fun mergeDelta(base: Source, delta: Source, sink: BufferedSink) {
+        mergeBackupDelta(base = base.buffer(), delta = delta.buffer(), sink = sink)
+    }
+
     override suspend fun notifyDataChanged() {
         backupRepository.orElse(null)?.onAppDataChanged()
     }
+
+    companion object {
+        private const val TIMER_PAGE_SIZE = 100
+        private const val TIMER_STAMP_PAGE_SIZE = 1_000
+        private const val BATCH_SIZE = 500
+    }
 }
@@ -0,0 +1,246 @@
+package xyz.aprildown.timer.data.repositories
+
+import com.squareup.moshi.JsonDataException
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
+import okio.Buffer
+import okio.BufferedSink
+import okio.BufferedSource
+import okio.ByteString
+
+/**
+ * Top level keys of a backup in the order they are written.
+ * The ordinal is the tag of a table in row digests.
+ */
+internal enum class BackupTable(val key: String, val isArray: Boolean) {
+    Folders("folders", isArray = true),
+    Timers("timers", isArray = true),
+    Notifier("notifier", isArray = false),
+    TimerStamps("timerStamps", isArray = true),
+    Schedulers("schedulers", isArray = true),
+    Prefs("prefs", isArray = false);
+
+    companion object {
+        fun of(key: String): BackupTable? = entries.find { it.key == key }
+    }
+}
+
+private const val KEY_DELETED = "deleted"
+
+/**
+ * Writes a backup with only the rows that changed since [lastDigests] and records the digest of
+ * every row to [digests]. Without [lastDigests], every row is written, which makes a full backup.
+ *
+ * Digests are (table, id, hash) records in the order rows are written. Rows come out of the
+ * database in the same order, so the last digests are read alongside instead of being loaded.
+ */
+internal class DeltaWriter(
+    private val writer: JsonWriter,
+    private val lastDigests: BufferedSource?,
+    private val digests: BufferedSink,
+) {
+    private var lastTable = -1
+    private var lastId = 0L
+    private var lastHash = 0L
+
+    private val deleted = mutableMapOf<BackupTable, MutableList<Long>>()
+
+    /**
+     * Rows and values written to the delta.
+     */
+    var changedRows = 0
+        private set
+
+    init {
+        nextLast()
+    }
+
+    private fun nextLast() {
+        if (lastDigests == null || lastDigests.exhausted()) {
+            lastTable = Int.MAX_VALUE
+        } else {
+            lastTable = lastDigests.readByte().toInt()
+            lastId = lastDigests.readLong()
+            lastHash = lastDigests.readLong()
+        }
+    }
+
+    /**
+     * @return If the row differs from its last digest.
+     */
+    private fun putDigest(table: BackupTable, id: Long, row: Buffer): Boolean {
+        val hash = Buffer().write(row.md5(), 0, Long.SIZE_BYTES).readLong()
+        digests.writeByte(table.ordinal).writeLong(id).writeLong(hash)
+        if (lastDigests == null) return true
+
+        skipDeleted(table, id)
+        return if (lastTable == table.ordinal && lastId == id) {
+            (lastHash != hash).also { nextLast() }
+        } else {
+            true
+        }
+    }
+
+    /**
+     * Skip last digests before ([table], [untilId]), which are of deleted rows.
+     */
+    private fun skipDeleted(table: BackupTable, untilId: Long = Long.MAX_VALUE) {
+        while (lastTable < table.ordinal || (lastTable == table.ordinal && lastId < untilId)) {
+            if (lastTable == table.ordinal) {
+                deleted.getOrPut(table) { mutableListOf() } += lastId
+            }
+            nextLast()
+        }
+    }
+
+    private fun writeRaw(row: Buffer) {
+        writer.valueSink().use { it.writeAll(row) }
+        ++changedRows
+    }
+
+    fun beginTable(table: BackupTable) {
+        writer.name(table.key).beginArray()
+    }
+
+    /**
+     * Rows must be written in the order of their ids.
+     */
+    fun writeRow(table: BackupTable, id: Long, write: (BufferedSink) -> Unit) {
+        val row = Buffer().also(write)
+        if (putDigest(table, id, row)) {
+            writeRaw(row)
+        }
+    }
+
+    fun endTable(table: BackupTable) {
+        writer.endArray()
+        skipDeleted(table)
+    }
+
+    fun writeValue(table: BackupTable, write: (BufferedSink) -> Unit) {
+        val value = Buffer().also(write)
+        if (putDigest(table, 0, value)) {
+            writer.name(table.key)
+            writeRaw(value)
+        }
+    }
+
+    fun writeDeleted() {
+        if (deleted.isEmpty()) return
+        writer.name(KEY_DELETED).beginObject()
+        deleted.forEach { (table, ids) ->
+            writer.name(table.key).beginArray()
+            ids.forEach { writer.value(it) }
+            writer.endArray()
+            changedRows += ids.size
+        }
+        writer.endObject()
+    }
+}
+
+/**
+ * Write [base] with [delta] applied to [sink]. Changed rows stay in place
+ * and new ones go to the end of their arrays. Only [delta] is loaded.
+ */
+internal fun mergeBackupDelta(base: BufferedSource, delta: BufferedSource, sink: BufferedSink) {
+    val rows = mutableMapOf<BackupTable, MutableMap<Long, ByteString>>()
+    val values = mutableMapOf<BackupTable, ByteString>()
+    val deleted = mutableMapOf<BackupTable, Set<Long>>()
+    JsonReader.of(delta).run {
+        beginObject()
+        while (hasNext()) {
+            val name = nextName()
+            val table = BackupTable.of(name)
+            when {
+                name == KEY_DELETED -> {
+                    beginObject()
+                    while (hasNext()) {
+                        val deletedTable = BackupTable.of(nextName())
+                        if (deletedTable == null) {
+                            skipValue()
+                            continue
+                        }
+                        val ids = mutableSetOf<Long>()
+                        beginArray()
+                        while (hasNext()) ids += nextLong()
+                        endArray()
+                        deleted[deletedTable] = ids
+                    }
+                    endObject()
+                }
+                table == null -> skipValue()
+                table.isArray -> {
+                    val tableRows = LinkedHashMap<Long, ByteString>()
+                    beginArray()
+                    while (hasNext()) {
+                        tableRows[peekId()] = nextSource().use { it.readByteString() }
+                    }
+                    endArray()
+                    rows[table] = tableRows
+                }
+                else -> values[table] = nextSource().use { it.readByteString() }
+            }
+        }
+        endObject()
+    }
+
+    val reader = JsonReader.of(base)
+    val writer = JsonWriter.of(sink)
+    reader.beginObject()
+    writer.beginObject()
+    while (reader.hasNext()) {
+        val name = reader.nextName()
+        val table = BackupTable.of(name)
+        writer.name(name)
+        when {
+            table != null && table.isArray -> {
+                val tableRows = rows[table] ?: mutableMapOf()
+                val deletedIds = deleted[table].orEmpty()
+                reader.beginArray()
+                writer.beginArray()
+                while (reader.hasNext()) {
+                    val id = reader.peekId()
+                    val row = tableRows.remove(id)
+                    when {
+                        row != null -> {
+                            reader.skipValue()
+                            writer.valueSink().use { it.write(row) }
+                        }
+                        id in deletedIds -> reader.skipValue()
+                        else -> reader.copyValue(writer)
+                    }
+                }
+                tableRows.values.forEach { row -> writer.valueSink().use { it.write(row) } }
+                reader.endArray()
+                writer.endArray()
+            }
+            table != null && table in values -> {
+                reader.skipValue()
+                writer.valueSink().use { it.write(values.getValue(table)) }
+                values.remove(table)
+            }
+            else -> reader.copyValue(writer)
+        }
+    }
+    reader.endObject()
+    // Values the base doesn't have, like a notifier set after it.
+    values.forEach { (table, value) ->
+        writer.name(table.key)
+        writer.valueSink().use { it.write(value) }
+    }
+    writer.endObject()
+    writer.flush()
+}
+
+private fun JsonReader.peekId(): Long = peekJson().use {
+    it.beginObject()
+    while (it.hasNext()) {
+        if (it.nextName() == "id") return it.nextLong()
+        it.skipValue()
+    }
+    throw JsonDataException("Missing id at $path")
+}
+
+private fun JsonReader.copyValue(writer: JsonWriter) {
+    nextSource().use { source -> writer.valueSink().use { it.writeAll(source) } }
+}
@@ -0,0 +1,148 @@
+package xyz.aprildown.timer.data.repositories
+
+import okio.Buffer
+import okio.BufferedSink
+import okio.BufferedSource
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+import okio.ForwardingSink
+import okio.GzipSink
+import okio.GzipSource
+import okio.IOException
+import okio.buffer
+import xyz.aprildown.timer.data.datas.TimerStampData
+import java.io.Closeable
+
+/**
+ * A backup file is [MAGIC], a [VERSION] byte and then gzip compressed frames.
+ * A frame is a [Frame] tag followed by its content, and [Frame.End] ends the backup.
+ *
+ * Most rows are the same JSON as in a JSON backup, prefixed by the length.
+ * Timer stamps are columns of varints grouped by timer, and each column is stored as the
+ * differences from the previous value, so a stamp usually takes a few bytes.
+ */
+internal object BinaryBackup {
+    val MAGIC: ByteString = "TMDB".encodeUtf8()
+    const val VERSION = 1
+
+    enum class Frame {
+        End, Folder, Timer, Notifier, TimerStamps, Scheduler, Prefs;
+
+        companion object {
+            fun of(tag: Int): Frame {
+                return entries.getOrNull(tag) ?: throw IOException("Unknown frame $tag")
+            }
+        }
+    }
+
+    fun isBinary(source: BufferedSource): Boolean = source.rangeEquals(0, MAGIC)
+}
+
+/**
+ * The gzip stream is finished when this is closed, but [sink] is only flushed.
+ */
+internal class BinaryBackupWriter(sink: BufferedSink) : Closeable {
+
+    private val body: BufferedSink
+
+    init {
+        sink.write(BinaryBackup.MAGIC).writeByte(BinaryBackup.VERSION)
+        body = GzipSink(
+            object : ForwardingSink(sink) {
+                override fun close() = flush()
+            }
+        ).buffer()
+    }
+
+    fun writeJson(frame: BinaryBackup.Frame, write: (BufferedSink) -> Unit) {
+        val json = Buffer().also(write)
+        body.writeByte(frame.ordinal)
+        body.writeVarLong(json.size)
+        body.writeAll(json)
+    }
+
+    /**
+     * Stamps of each timer in [stamps] go to one frame in the order of [stamps].
+     */
+    fun writeTimerStamps(stamps: List<TimerStampData>) {
+        stamps.groupBy { it.timerId }.forEach { (timerId, timerStamps) ->
+            body.writeByte(BinaryBackup.Frame.TimerStamps.ordinal)
+            body.writeVarLong(timerId.toLong().zigZag())
+            body.writeVarLong(timerStamps.size.toLong())
+            var lastId = 0L
+            var lastStart = 0L
+            timerStamps.forEach {
+                body.writeVarLong((it.id - lastId).zigZag())
+                body.writeVarLong((it.start - lastStart).zigZag())
+                body.writeVarLong((it.end - it.start).zigZag())
+                lastId = it.id.toLong()
+                lastStart = it.start
+            }
+        }
+    }
+
+    override fun close() {
+        body.writeByte(BinaryBackup.Frame.End.ordinal)
+        body.close()
+    }
+}
+
+internal class BinaryBackupReader(source: BufferedSource) {
+
+    private val body: BufferedSource
+
+    init {
+        if (!BinaryBackup.isBinary(source)) throw IOException("Not a binary backup")
+        source.skip(BinaryBackup.MAGIC.size.toLong())
+        val version = source.readByte().toInt()
+        if (version > BinaryBackup.VERSION) throw IOException("Unsupported backup version $version")
+        body = GzipSource(source).buffer()
+    }
+
+    fun nextFrame(): BinaryBackup.Frame = BinaryBackup.Frame.of(body.readByte().toInt())
+
+    /**
+     * The content of a frame other than [BinaryBackup.Frame.TimerStamps].
+     */
+    fun readJson(): Buffer = Buffer().also { body.readFully(it, body.readVarLong()) }
+
+    fun readTimerStamps(): List<TimerStampData> {
+        val timerId = body.readVarLong().unZigZag().toInt()
+        val count = body.readVarLong().toInt()
+        var lastId = 0L
+        var lastStart = 0L
+        return List(count) {
+            val id = lastId + body.readVarLong().unZigZag()
+            val start = lastStart + body.readVarLong().unZigZag()
+            val end = start + body.readVarLong().unZigZag()
+            lastId = id
+            lastStart = start
+            TimerStampData(id = id.toInt(), timerId = timerId, start = start, end = end)
+        }
+    }
+}
+
+private fun Long.zigZag(): Long = (this shl 1) xor (this shr 63)
+
+private fun Long.unZigZag(): Long = (this ushr 1) xor -(this and 1)
+
+private fun BufferedSink.writeVarLong(value: Long) {
+    var remaining = value
+    while (remaining and 0x7FL.inv() != 0L) {
+        writeByte(((remaining and 0x7F) or 0x80).toInt())
+        remaining = remaining ushr 7
+    }
+    writeByte(remaining.toInt())
+}
+
+private fun BufferedSource.readVarLong(): Long {
+    var result = 0L
+    var shift = 0
+    while (shift < Long.SIZE_BITS) {
+        val byte = readByte().toInt()
+        result = result or ((byte and 0x7F).toLong() shl shift)
+        if (byte and 0x80 == 0) return result
+        shift += 7
+    }
+    throw IOException("Malformed varint")
+}
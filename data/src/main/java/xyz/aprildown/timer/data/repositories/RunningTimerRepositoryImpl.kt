@@ -0,0 +1,164 @@
+package xyz.aprildown.timer.data.repositories
+
+import android.content.Context
+import android.os.Build
+import android.provider.Settings
+import android.util.AtomicFile
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Moshi
+import com.squareup.moshi.Types
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.withContext
+import xyz.aprildown.timer.data.datas.RunningTimerData
+import xyz.aprildown.timer.data.db.StepConverters
+import xyz.aprildown.timer.data.json.BehaviourDataJsonAdapter
+import xyz.aprildown.timer.data.json.TimerMoreDataJsonAdapter
+import xyz.aprildown.timer.data.mappers.RunningTimerMapper
+import xyz.aprildown.timer.domain.di.IoDispatcher
+import xyz.aprildown.timer.domain.entities.RunningTimerEntity
+import xyz.aprildown.timer.domain.repositories.RunningTimerRepository
+import xyz.aprildown.timer.domain.utils.fireAndForget
+import java.io.File
+import java.io.IOException
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the journal in a file outside backups. Changes are collected in memory and the whole
+ * journal is written once per [WRITE_DELAY].
+ */
+@Singleton
+internal class RunningTimerRepositoryImpl @Inject constructor(
+    @ApplicationContext private val context: Context,
+    @IoDispatcher ioDispatcher: CoroutineDispatcher,
+    private val mapper: RunningTimerMapper,
+) : RunningTimerRepository {
+
+    private val file = AtomicFile(File(context.noBackupFilesDir, FILE_NAME))
+
+    private val jsonAdapter: JsonAdapter<List<RunningTimerData>> = Moshi.Builder()
+        .add(BehaviourDataJsonAdapter())
+        .add(StepConverters.getStepDataJsonAdapter())
+        .add(TimerMoreDataJsonAdapter())
+        .build()
+        .adapter(Types.newParameterizedType(List::class.java, RunningTimerData::class.java))
+
+    /**
+     * [items] is only touched here so reads and writes never overlap.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val fileDispatcher = ioDispatcher.limitedParallelism(1)
+
+    /**
+     * elapsedRealtime restarts with the device, so only snapshots of this boot can be resumed.
+     * Only touched on [fileDispatcher].
+     */
+    private val bootCount: Int? by lazy {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            Settings.Global.getInt(context.contentResolver, Settings.Global.BOOT_COUNT, -1)
+                .takeIf { it >= 0 }
+        } else {
+            null
+        }
+    }
+
+    /**
+     * Null until the file is read.
+     */
+    private var items: MutableMap<Int, RunningTimerEntity>? = null
+
+    private val lock = Any()
+
+    /**
+     * Changes that haven't reached [items]. Null values are removals.
+     */
+    private val pending = LinkedHashMap<Int, RunningTimerEntity?>()
+    private var isWriteScheduled = false
+
+    override suspend fun getAll(): List<RunningTimerEntity> = withContext(fileDispatcher) {
+        applyPending().values.toList()
+    }
+
+    override fun record(item: RunningTimerEntity) {
+        change { pending[item.timer.id] = item }
+    }
+
+    override fun remove(timerId: Int) {
+        change { pending[timerId] = null }
+    }
+
+    private inline fun change(block: () -> Unit) {
+        val shouldScheduleWrite = synchronized(lock) {
+            block()
+            val wasScheduled = isWriteScheduled
+            isWriteScheduled = true
+            !wasScheduled
+        }
+        if (shouldScheduleWrite) {
+            fireAndForget(fileDispatcher) {
+                delay(WRITE_DELAY)
+                write()
+            }
+        }
+    }
+
+    private fun applyPending(): MutableMap<Int, RunningTimerEntity> {
+        val items = items ?: read().also { items = it }
+        synchronized(lock) {
+            pending.forEach { (timerId, item) ->
+                if (item == null) {
+                    items.remove(timerId)
+                } else {
+                    items[timerId] = item
+                }
+            }
+            pending.clear()
+        }
+        return items
+    }
+
+    private fun read(): MutableMap<Int, RunningTimerEntity> {
+        return try {
+            jsonAdapter.fromJson(file.readFully().decodeToString())
+                .orEmpty()
+                .filter { it.bootCount == bootCount }
+                .associateTo(mutableMapOf()) { it.timer.id to mapper.mapFrom(it) }
+        } catch (_: Exception) {
+            // No journal or a broken one. Either way there is nothing to resume.
+            mutableMapOf()
+        }
+    }
+
+    private fun write() {
+        synchronized(lock) {
+            isWriteScheduled = false
+        }
+        val items = applyPending()
+        if (items.isEmpty()) {
+            file.delete()
+            return
+        }
+        val content = jsonAdapter.toJson(
+            mapper.mapTo(items.values.toList()).map { it.copy(bootCount = bootCount) }
+        )
+        val stream = file.startWrite()
+        try {
+            stream.write(content.encodeToByteArray())
+            file.finishWrite(stream)
+        } catch (_: IOException) {
+            file.failWrite(stream)
+        }
+    }
+
+    companion object {
+        private const val FILE_NAME = "running_timers.json"
+
+        /**
+         * Long enough to merge the changes of a step change, short enough to lose little.
+         */
+        private const val WRITE_DELAY = 500L
+    }
+}
@@ -6,7 +6,7 @@ import android.os.Build
 import androidx.core.content.getSystemService
 import dagger.Reusable
 import dagger.hilt.android.qualifiers.ApplicationContext
-import xyz.aprildown.timer.data.job.SchedulerJob
+import xyz.aprildown.timer.data.job.SchedulerAlarms
 import xyz.aprildown.timer.domain.entities.SchedulerEntity
 import xyz.aprildown.timer.domain.repositories.SchedulerExecutor
 import xyz.aprildown.timer.domain.usecases.scheduler.SetSchedulerEnable
@@ -18,28 +18,47 @@ import javax.inject.Inject
  */
 @Reusable
 class SchedulerExecutorImpl @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val schedulerAlarms: SchedulerAlarms
 ) : SchedulerExecutor {
 
-    override fun schedule(scheduler: SchedulerEntity): SetSchedulerEnable.Result {
+    private fun canScheduleExactAlarms(): Boolean {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             val am = context.getSystemService<AlarmManager>()
             // The permission seems to have been granted by default.
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU &&
                 am?.canScheduleExactAlarms() == false
             ) {
-                return SetSchedulerEnable.Result.Failed("No permission to schedule exact alarms")
+                return false
             }
         }
+        return true
+    }
+
+    override fun schedule(scheduler: SchedulerEntity): SetSchedulerEnable.Result {
+        if (!canScheduleExactAlarms()) {
+            return SetSchedulerEnable.Result.Failed("No permission to schedule exact alarms")
+        }
         return when (scheduler.action) {
-            SchedulerEntity.ACTION_START, SchedulerEntity.ACTION_END -> {
-                SetSchedulerEnable.Result.Scheduled(SchedulerJob.scheduleAJob(scheduler))
+            in VALID_ACTIONS -> {
+                SetSchedulerEnable.Result.Scheduled(schedulerAlarms.schedule(scheduler))
             }
             else -> SetSchedulerEnable.Result.Failed("Invalid action")
         }
     }
 
     override fun cancel(scheduler: SchedulerEntity): SetSchedulerEnable.Result {
-        return SetSchedulerEnable.Result.Canceled(SchedulerJob.cancelAJob(context, scheduler.id))
+        return SetSchedulerEnable.Result.Canceled(schedulerAlarms.cancel(scheduler.id))
+    }
+
+    override fun rescheduleAll(schedulers: List<SchedulerEntity>) {
+        if (!canScheduleExactAlarms()) return
+        schedulerAlarms.replaceAll(
+            schedulers.filter { it.enable == 1 && it.action in VALID_ACTIONS }
+        )
+    }
+
+    companion object {
+        private val VALID_ACTIONS = listOf(SchedulerEntity.ACTION_START, SchedulerEntity.ACTION_END)
     }
 }
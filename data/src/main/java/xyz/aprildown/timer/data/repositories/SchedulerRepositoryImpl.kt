@@ -23,6 +23,10 @@ internal class SchedulerRepositoryImpl @Inject constructor(
         }
     }
 
+    override suspend fun itemsWithTimers(ids: List<Int>): List<SchedulerEntity> {
+        return schedulerDao.getSchedulersWithTimers(ids).map { schedulerMapper.mapFrom(it) }
+    }
+
     override suspend fun add(item: SchedulerEntity): Int {
         return schedulerDao.addScheduler(schedulerMapper.mapTo(item)).toInt()
     }
@@ -3,11 +3,19 @@ package xyz.aprildown.timer.data.repositories
 import androidx.collection.ArrayMap
 import androidx.collection.arrayMapOf
 import dagger.Reusable
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.map
 import xyz.aprildown.timer.data.db.TimerStampDao
 import xyz.aprildown.timer.data.mappers.TimerStampMapper
+import xyz.aprildown.timer.data.datas.TimerStampDailyData
+import xyz.aprildown.timer.data.datas.TimerStampSlotData
 import xyz.aprildown.timer.data.mappers.fromWithMapper
+import xyz.aprildown.timer.domain.TimeUtils
+import xyz.aprildown.timer.domain.entities.TimerStampBucketEntity
 import xyz.aprildown.timer.domain.entities.TimerStampEntity
 import xyz.aprildown.timer.domain.repositories.TimerStampRepository
+import java.time.LocalDate
+import java.time.ZoneId
 import javax.inject.Inject
 
 @Reusable
@@ -20,40 +28,147 @@ internal class TimerStampRepositoryImpl @Inject constructor(
         return mapper.mapFrom(dao.getTimerStamps())
     }
 
-    override suspend fun getRecordsGroupedByTimer(
+    override suspend fun getRaw(
         timerIds: List<Int>,
         startTime: Long,
         endTime: Long
-    ): ArrayMap<Int, List<TimerStampEntity>> {
-        val result = arrayMapOf<Int, List<TimerStampEntity>>()
+    ): List<TimerStampEntity> {
+        val result = mutableListOf<TimerStampEntity>()
 
-        timerIds.forEach { timerId ->
-            result[timerId] = dao.getWithTimerIdAndSpan(timerId, startTime, endTime)
+        timerIds.chunked(MAX_TIMER_IDS_PER_QUERY).forEach { ids ->
+            result += dao.getWithTimerIdsAndSpan(ids, startTime, endTime)
                 .fromWithMapper(mapper)
         }
 
         return result
     }
 
-    override suspend fun getRaw(
+    override suspend fun getBuckets(
         timerIds: List<Int>,
         startTime: Long,
-        endTime: Long
-    ): List<TimerStampEntity> {
-        val result = mutableListOf<TimerStampEntity>()
+        endTime: Long,
+        span: TimerStampBucketEntity.Span
+    ): List<TimerStampBucketEntity> {
+        if (span == TimerStampBucketEntity.Span.DAY && isWholeDays(startTime, endTime)) {
+            val zone = ZoneId.systemDefault()
+            dao.rebuildDailyIfZoneChanged(zone)
+            val startDay = TimerStampDailyData.dayOf(startTime, zone)
+            val endDay = TimerStampDailyData.dayOf(endTime, zone)
+            return timerIds.chunked(MAX_TIMER_IDS_PER_QUERY)
+                .flatMap { ids -> dao.getDailyByDay(ids, startDay, endDay) }
+                .groupBy { it.day }
+                .toSortedMap()
+                .map { (day, sums) ->
+                    TimerStampBucketEntity(
+                        timePoint = LocalDate.ofEpochDay(day).atStartOfDay(zone)
+                            .toInstant().toEpochMilli(),
+                        duration = sums.sumOf { it.duration },
+                        count = sums.sumOf { it.count }
+                    )
+                }
+        }
 
-        timerIds.forEach { timerId ->
-            result += dao.getWithTimerIdAndSpan(timerId, startTime, endTime)
-                .fromWithMapper(mapper)
+        val slots = timerIds.chunked(MAX_TIMER_IDS_PER_QUERY)
+            .flatMap { ids -> dao.getSlots(ids, startTime, endTime) }
+            .sortedBy { it.slot }
+
+        val result = mutableListOf<TimerStampBucketEntity>()
+        var bucketEnd = Long.MIN_VALUE
+        slots.forEach { slot ->
+            val slotStart = slot.slot * TimerStampSlotData.SLOT_MILLIS
+            val last = result.lastOrNull()
+            if (last != null && slotStart <= bucketEnd) {
+                result[result.lastIndex] = last.copy(
+                    duration = last.duration + slot.duration,
+                    count = last.count + slot.count
+                )
+            } else {
+                val timePoint: Long
+                when (span) {
+                    TimerStampBucketEntity.Span.HOUR -> {
+                        timePoint = TimeUtils.getHourStart(slotStart)
+                        bucketEnd = TimeUtils.getHourEnd(timePoint)
+                    }
+                    TimerStampBucketEntity.Span.DAY -> {
+                        timePoint = TimeUtils.getDayStart(slotStart)
+                        bucketEnd = TimeUtils.getDayEnd(timePoint)
+                    }
+                }
+                result += TimerStampBucketEntity(
+                    timePoint = timePoint,
+                    duration = slot.duration,
+                    count = slot.count
+                )
+            }
+        }
+
+        return result
+    }
+
+    override suspend fun getTotalsGroupedByTimer(
+        timerIds: List<Int>,
+        startTime: Long,
+        endTime: Long
+    ): ArrayMap<Int, TimerStampBucketEntity> {
+        val wholeDays = isWholeDays(startTime, endTime)
+        val zone = ZoneId.systemDefault()
+        if (wholeDays) {
+            dao.rebuildDailyIfZoneChanged(zone)
         }
+        val startDay = TimerStampDailyData.dayOf(startTime, zone)
+        val endDay = TimerStampDailyData.dayOf(endTime, zone)
 
+        val result = arrayMapOf<Int, TimerStampBucketEntity>()
+        timerIds.chunked(MAX_TIMER_IDS_PER_QUERY).forEach { ids ->
+            val totals = if (wholeDays) {
+                dao.getDailyByTimer(ids, startDay, endDay)
+            } else {
+                dao.getTotalsByTimer(ids, startTime, endTime)
+            }
+            totals.forEach {
+                result[it.timerId] = TimerStampBucketEntity(
+                    timePoint = startTime,
+                    duration = it.duration,
+                    count = it.count
+                )
+            }
+        }
         return result
     }
 
+    /**
+     * [TimerStampDailyData] only answers ranges made of whole local days.
+     */
+    private fun isWholeDays(startTime: Long, endTime: Long): Boolean {
+        return startTime <= endTime &&
+            startTime == TimeUtils.getDayStart(startTime) &&
+            endTime == TimeUtils.getDayEnd(endTime)
+    }
+
     override suspend fun getRecentOne(timerId: Int): TimerStampEntity? {
         return dao.getRecentOne(timerId)?.fromWithMapper(mapper)
     }
 
+    override suspend fun getRecentEndTimes(timerIds: List<Int>): ArrayMap<Int, Long> {
+        val result = arrayMapOf<Int, Long>()
+        timerIds.chunked(MAX_TIMER_IDS_PER_QUERY).forEach { ids ->
+            dao.getRecentEndTimes(ids).forEach {
+                result[it.timerId] = it.end
+            }
+        }
+        return result
+    }
+
+    override fun getRecentEndTimesFlow(folderId: Long): Flow<ArrayMap<Int, Long>> {
+        return dao.getRecentEndTimesFlow(folderId).map { list ->
+            val result = arrayMapOf<Int, Long>()
+            list.forEach {
+                result[it.timerId] = it.end
+            }
+            result
+        }
+    }
+
     override suspend fun getEarliestOne(): TimerStampEntity? {
         return dao.getEarliestOne()?.fromWithMapper(mapper)
     }
@@ -69,4 +184,11 @@ internal class TimerStampRepositoryImpl @Inject constructor(
     override suspend fun delete(id: Int) {
         dao.deleteTimerStamp(id)
     }
+
+    companion object {
+        /**
+         * Keep IN clauses below SQLite's default host parameter limit(999).
+         */
+        private const val MAX_TIMER_IDS_PER_QUERY = 900
+    }
 }
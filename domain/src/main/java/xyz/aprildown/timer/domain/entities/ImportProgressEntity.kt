@@ -0,0 +1,10 @@
+package xyz.aprildown.timer.domain.entities
+
+/**
+ * @param bytesRead Bytes read from the backup so far.
+ * @param rowsInserted Folders, timers, schedulers and timer stamps written so far.
+ */
+data class ImportProgressEntity(
+    val bytesRead: Long,
+    val rowsInserted: Int,
+)
@@ -0,0 +1,20 @@
+package xyz.aprildown.timer.domain.entities
+
+/**
+ * A snapshot of a running or paused timer to resume it after the process dies.
+ *
+ * @param timer A copy of the timer so resuming doesn't depend on the database.
+ * @param index The current step. Encoded by the presentation layer.
+ * @param time The time of the current step at [realtime].
+ * If it counts down and [isRunning], it ends at [realtime] + [time].
+ * @param realtime elapsedRealtime when this snapshot is taken.
+ * @param beginTime The wall clock time when the timer began.
+ */
+data class RunningTimerEntity(
+    val timer: TimerEntity,
+    val index: List<Int>,
+    val isRunning: Boolean,
+    val time: Long,
+    val realtime: Long,
+    val beginTime: Long,
+)
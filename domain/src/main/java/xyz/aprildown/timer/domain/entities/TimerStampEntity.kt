@@ -34,3 +34,16 @@ data class TimerStampEntity(
         }
     }
 }
+
+/**
+ * [TimerStampEntity]s summed up in the local hour or day starting at [timePoint].
+ */
+data class TimerStampBucketEntity(
+    val timePoint: Long,
+    val duration: Long,
+    val count: Int
+) {
+    enum class Span {
+        HOUR, DAY
+    }
+}
@@ -4,7 +4,11 @@ import dagger.BindsOptionalOf
 import dagger.Module
 import dagger.hilt.InstallIn
 import dagger.hilt.components.SingletonComponent
+import okio.BufferedSink
+import okio.Source
 import xyz.aprildown.timer.domain.entities.AppDataEntity
+import xyz.aprildown.timer.domain.entities.ImportProgressEntity
+import xyz.aprildown.timer.domain.entities.StepEntity
 import javax.inject.Qualifier
 
 interface AppDataRepository {
@@ -29,5 +33,62 @@ interface AppDataRepository {
 
     suspend fun unParcelData(data: String): AppDataEntity?
 
+    /**
+     * Write the same JSON as [collectData] to [sink] while paging rows out of the database,
+     * so memory use doesn't grow with the history. Schedulers are written disabled.
+     *
+     * @param binary Write a compressed binary backup instead, which is much smaller and
+     * faster to read, especially with many timer stamps.
+     */
+    suspend fun writeData(
+        sink: BufferedSink,
+        includeTimers: Boolean,
+        includeTimerStamps: Boolean,
+        includeSchedulers: Boolean,
+        notifier: StepEntity.Step?,
+        prefs: Map<String, String>,
+        binary: Boolean,
+    )
+
+    /**
+     * Read a JSON or binary backup written by [writeData] from [source] and add its folders,
+     * timers, schedulers and timer stamps with new ids. Rows are parsed and inserted in small
+     * batches in one transaction, so nothing is written if it fails.
+     * Stamps and schedulers must come after their timers, which [writeData] guarantees.
+     *
+     * @param wipeFirst Delete existing ones in the same transaction.
+     * @return Only [AppDataEntity.notifier] and [AppDataEntity.prefs] of the backup.
+     */
+    suspend fun readData(
+        source: Source,
+        wipeFirst: Boolean,
+        includeTimers: Boolean,
+        includeTimerStamps: Boolean,
+        includeSchedulers: Boolean,
+        onProgress: (ImportProgressEntity) -> Unit,
+    ): AppDataEntity
+
+    /**
+     * Write a backup like [writeData] with everything included, but only with rows and values
+     * that changed since [lastDigests], plus the ids of deleted rows.
+     *
+     * @param lastDigests What [digests] was of the last backup, or null to write everything,
+     * which makes a backup [readData] and [mergeDelta] accept as a base.
+     * @param digests Where the digests of the current rows are written.
+     * @return The number of changed rows and values.
+     */
+    suspend fun writeDelta(
+        sink: BufferedSink,
+        lastDigests: Source?,
+        digests: BufferedSink,
+        notifier: StepEntity.Step?,
+        prefs: Map<String, String>,
+    ): Int
+
+    /**
+     * Write [base] with a [delta] from [writeDelta] applied to [sink].
+     */
+    suspend fun mergeDelta(base: Source, delta: Source, sink: BufferedSink)
+
     suspend fun notifyDataChanged()
 }
@@ -0,0 +1,17 @@
+package xyz.aprildown.timer.domain.repositories
+
+import java.io.File
+
+/**
+ * A remote folder backups are uploaded to. Paths are relative to it and separated by "/".
+ */
+interface BackupStorage {
+    suspend fun upload(file: File, path: String)
+
+    suspend fun download(path: String, file: File)
+
+    /**
+     * Names of files directly in [path], or an empty list if there is none.
+     */
+    suspend fun list(path: String): List<String>
+}
@@ -0,0 +1,21 @@
+package xyz.aprildown.timer.domain.repositories
+
+import xyz.aprildown.timer.domain.entities.RunningTimerEntity
+
+/**
+ * A journal of running timers. Writes return immediately and are saved together later,
+ * so they're cheap enough to call on every step change.
+ */
+interface RunningTimerRepository {
+    /**
+     * Snapshots taken before a reboot are left out where the boot count is available.
+     */
+    suspend fun getAll(): List<RunningTimerEntity>
+
+    /**
+     * Replace the snapshot of [RunningTimerEntity.timer].
+     */
+    fun record(item: RunningTimerEntity)
+
+    fun remove(timerId: Int)
+}
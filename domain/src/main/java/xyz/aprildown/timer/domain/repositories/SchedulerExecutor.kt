@@ -13,4 +13,9 @@ interface SchedulerExecutor {
      * @return canceled job count
      */
     fun cancel(scheduler: SchedulerEntity): SetSchedulerEnable.Result
+
+    /**
+     * Replace all scheduled jobs with the enabled ones in [schedulers].
+     */
+    fun rescheduleAll(schedulers: List<SchedulerEntity>)
 }
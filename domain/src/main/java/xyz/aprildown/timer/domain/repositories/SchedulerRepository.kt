@@ -5,6 +5,11 @@ import xyz.aprildown.timer.domain.entities.SchedulerEntity
 interface SchedulerRepository {
     suspend fun items(): List<SchedulerEntity>
     suspend fun item(id: Int): SchedulerEntity?
+
+    /**
+     * Schedulers in [ids] whose timers exist.
+     */
+    suspend fun itemsWithTimers(ids: List<Int>): List<SchedulerEntity>
     suspend fun add(item: SchedulerEntity): Int
     suspend fun save(item: SchedulerEntity): Boolean
     suspend fun delete(id: Int)
@@ -1,22 +1,51 @@
 package xyz.aprildown.timer.domain.repositories
 
 import androidx.collection.ArrayMap
+import kotlinx.coroutines.flow.Flow
+import xyz.aprildown.timer.domain.entities.TimerStampBucketEntity
 import xyz.aprildown.timer.domain.entities.TimerStampEntity
 
 interface TimerStampRepository {
 
     suspend fun getAll(): List<TimerStampEntity>
 
-    suspend fun getRecordsGroupedByTimer(
+    suspend fun getRaw(timerIds: List<Int>, startTime: Long, endTime: Long): List<TimerStampEntity>
+
+    /**
+     * Sum up stamps whose end time is between [startTime] and [endTime] into local hours or days.
+     *
+     * @return Non-empty buckets ordered by [TimerStampBucketEntity.timePoint]
+     */
+    suspend fun getBuckets(
         timerIds: List<Int>,
         startTime: Long,
-        endTime: Long
-    ): ArrayMap<Int, List<TimerStampEntity>>
+        endTime: Long,
+        span: TimerStampBucketEntity.Span
+    ): List<TimerStampBucketEntity>
 
-    suspend fun getRaw(timerIds: List<Int>, startTime: Long, endTime: Long): List<TimerStampEntity>
+    /**
+     * Sum up stamps whose end time is between [startTime] and [endTime] for each timer.
+     *
+     * @return One bucket starting at [startTime] for each timer that has stamps.
+     */
+    suspend fun getTotalsGroupedByTimer(
+        timerIds: List<Int>,
+        startTime: Long,
+        endTime: Long
+    ): ArrayMap<Int, TimerStampBucketEntity>
 
     suspend fun getRecentOne(timerId: Int): TimerStampEntity?
 
+    /**
+     * @return The latest [TimerStampEntity.end] of each timer that has stamps.
+     */
+    suspend fun getRecentEndTimes(timerIds: List<Int>): ArrayMap<Int, Long>
+
+    /**
+     * [getRecentEndTimes] of timers in the folder, emitted again when stamps change.
+     */
+    fun getRecentEndTimesFlow(folderId: Long): Flow<ArrayMap<Int, Long>>
+
     suspend fun getEarliestOne(): TimerStampEntity?
 
     /**
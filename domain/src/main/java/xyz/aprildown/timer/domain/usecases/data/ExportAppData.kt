@@ -2,15 +2,11 @@ package xyz.aprildown.timer.domain.usecases.data
 
 import dagger.Reusable
 import kotlinx.coroutines.CoroutineDispatcher
+import okio.BufferedSink
 import xyz.aprildown.timer.domain.di.IoDispatcher
-import xyz.aprildown.timer.domain.entities.AppDataEntity
 import xyz.aprildown.timer.domain.repositories.AppDataRepository
 import xyz.aprildown.timer.domain.repositories.AppPreferencesProvider
-import xyz.aprildown.timer.domain.repositories.FolderRepository
 import xyz.aprildown.timer.domain.repositories.NotifierRepository
-import xyz.aprildown.timer.domain.repositories.SchedulerRepository
-import xyz.aprildown.timer.domain.repositories.TimerRepository
-import xyz.aprildown.timer.domain.repositories.TimerStampRepository
 import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
 import javax.inject.Inject
 
@@ -18,19 +14,21 @@ import javax.inject.Inject
 class ExportAppData @Inject constructor(
     @IoDispatcher dispatcher: CoroutineDispatcher,
     private val appDataRepository: AppDataRepository,
-    private val folderRepo: FolderRepository,
-    private val timerRepo: TimerRepository,
     private val notifierRepo: NotifierRepository,
-    private val timerStampRepo: TimerStampRepository,
-    private val schedulerRepo: SchedulerRepository,
     private val appPreferencesProvider: AppPreferencesProvider,
-) : CoroutinesUseCase<ExportAppData.Params, String>(dispatcher) {
+) : CoroutinesUseCase<ExportAppData.Params, Unit>(dispatcher) {
 
+    /**
+     * @param sink Where the backup is written. It's flushed but left open.
+     * @param binary Write a compact binary backup instead of JSON.
+     */
     data class Params(
+        val sink: BufferedSink,
         val exportTimers: Boolean,
         val exportTimerStamps: Boolean,
         val exportSchedulers: Boolean,
         val exportPreferences: Boolean,
+        val binary: Boolean = false,
     ) {
         init {
             require(!(exportTimerStamps && !exportTimers)) {
@@ -42,31 +40,20 @@ class ExportAppData @Inject constructor(
         }
     }
 
-    override suspend fun create(params: Params): String {
+    override suspend fun create(params: Params) {
         val exportTimers = params.exportTimers
-        return appDataRepository.collectData(
-            AppDataEntity(
-                folders = if (exportTimers) folderRepo.getFolders() else emptyList(),
-                timers = if (exportTimers) timerRepo.items() else emptyList(),
-                notifier = if (exportTimers) notifierRepo.get() else null,
-                timerStamps = if (params.exportTimerStamps) {
-                    timerStampRepo.getAll()
-                } else {
-                    emptyList()
-                },
-                schedulers = if (params.exportSchedulers) {
-                    schedulerRepo.items().map {
-                        it.copy(enable = 0)
-                    }
-                } else {
-                    emptyList()
-                },
-                prefs = if (params.exportPreferences) {
-                    appPreferencesProvider.getAppPreferences()
-                } else {
-                    emptyMap()
-                }
-            )
+        appDataRepository.writeData(
+            sink = params.sink,
+            includeTimers = exportTimers,
+            includeTimerStamps = params.exportTimerStamps,
+            includeSchedulers = params.exportSchedulers,
+            notifier = if (exportTimers) notifierRepo.get() else null,
+            prefs = if (params.exportPreferences) {
+                appPreferencesProvider.getAppPreferences()
+            } else {
+                emptyMap()
+            },
+            binary = params.binary
         )
     }
 }
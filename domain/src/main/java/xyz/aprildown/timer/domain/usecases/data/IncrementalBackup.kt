@@ -0,0 +1,177 @@
+package xyz.aprildown.timer.domain.usecases.data
+
+import dagger.Reusable
+import kotlinx.coroutines.CoroutineDispatcher
+import okio.GzipSink
+import okio.buffer
+import okio.sink
+import okio.source
+import xyz.aprildown.timer.domain.di.IoDispatcher
+import xyz.aprildown.timer.domain.repositories.AppDataRepository
+import xyz.aprildown.timer.domain.repositories.AppPreferencesProvider
+import xyz.aprildown.timer.domain.repositories.BackupStorage
+import xyz.aprildown.timer.domain.repositories.NotifierRepository
+import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
+import xyz.aprildown.timer.domain.utils.ensureDirExistence
+import xyz.aprildown.timer.domain.utils.ensureNewFile
+import java.io.File
+import java.util.Properties
+import javax.inject.Inject
+
+/**
+ * Upload a full backup as a base, then deltas of what changed since the last upload.
+ * Both are gzip compressed JSON.
+ * Deltas of a base are numbered files in [deltaFolder] and [ReplayBackup] applies them in order.
+ * Once deltas add up, a new base is uploaded instead.
+ */
+@Reusable
+class IncrementalBackup @Inject constructor(
+    @IoDispatcher dispatcher: CoroutineDispatcher,
+    private val appDataRepository: AppDataRepository,
+    private val notifierRepo: NotifierRepository,
+    private val appPreferencesProvider: AppPreferencesProvider,
+) : CoroutinesUseCase<IncrementalBackup.Params, IncrementalBackup.Result>(dispatcher) {
+
+    /**
+     * @param stateDir Remembers the last upload to [storage]. Use one for each storage.
+     * @param workDir Where files are written before being uploaded.
+     */
+    data class Params(
+        val storage: BackupStorage,
+        val stateDir: File,
+        val workDir: File,
+    )
+
+    sealed interface Result {
+        data object UpToDate : Result
+        data class Base(val path: String, val bytes: Long) : Result
+        data class Delta(val path: String, val bytes: Long) : Result
+    }
+
+    private data class State(
+        val base: String,
+        val deltas: Int,
+        val baseBytes: Long,
+        val deltaBytes: Long,
+    )
+
+    override suspend fun create(params: Params): Result {
+        val stateFile = File(params.stateDir, STATE_FILE_NAME)
+        val digestsFile = File(params.stateDir, DIGESTS_FILE_NAME)
+        val newDigestsFile = File(params.stateDir, NEW_DIGESTS_FILE_NAME)
+        val uploadFile = File(params.workDir, UPLOAD_FILE_NAME)
+        try {
+            val state = if (digestsFile.exists()) readState(stateFile) else null
+            if (state != null && state.deltas < MAX_DELTAS) {
+                val changes = write(uploadFile, lastDigestsFile = digestsFile, newDigestsFile)
+                if (changes == 0) return Result.UpToDate
+
+                val bytes = uploadFile.length()
+                if (state.deltaBytes + bytes <= state.baseBytes / 2) {
+                    val path = "${deltaFolder(state.base)}/${state.deltas + 1}$EXTENSION"
+                    params.storage.upload(uploadFile, path)
+                    commit(
+                        stateFile = stateFile,
+                        state = state.copy(
+                            deltas = state.deltas + 1,
+                            deltaBytes = state.deltaBytes + bytes
+                        ),
+                        digestsFile = digestsFile,
+                        newDigestsFile = newDigestsFile
+                    )
+                    return Result.Delta(path = path, bytes = bytes)
+                }
+            }
+
+            write(uploadFile, lastDigestsFile = null, newDigestsFile)
+            val bytes = uploadFile.length()
+            val path = "${System.currentTimeMillis()}$EXTENSION"
+            params.storage.upload(uploadFile, path)
+            commit(
+                stateFile = stateFile,
+                state = State(base = path, deltas = 0, baseBytes = bytes, deltaBytes = 0),
+                digestsFile = digestsFile,
+                newDigestsFile = newDigestsFile
+            )
+            return Result.Base(path = path, bytes = bytes)
+        } finally {
+            uploadFile.delete()
+            newDigestsFile.delete()
+        }
+    }
+
+    private suspend fun write(file: File, lastDigestsFile: File?, newDigestsFile: File): Int {
+        return GzipSink(file.ensureNewFile().sink()).buffer().use { sink ->
+            newDigestsFile.ensureNewFile().sink().buffer().use { digests ->
+                val lastDigests = lastDigestsFile?.source()
+                try {
+                    appDataRepository.writeDelta(
+                        sink = sink,
+                        lastDigests = lastDigests,
+                        digests = digests,
+                        notifier = notifierRepo.get(),
+                        prefs = appPreferencesProvider.getAppPreferences(),
+                    )
+                } finally {
+                    lastDigests?.close()
+                }
+            }
+        }
+    }
+
+    private fun readState(file: File): State? {
+        if (!file.exists()) return null
+        val properties = Properties()
+        file.inputStream().use { properties.load(it) }
+        return State(
+            base = properties.getProperty(KEY_BASE) ?: return null,
+            deltas = properties.getProperty(KEY_DELTAS)?.toIntOrNull() ?: return null,
+            baseBytes = properties.getProperty(KEY_BASE_BYTES)?.toLongOrNull() ?: return null,
+            deltaBytes = properties.getProperty(KEY_DELTA_BYTES)?.toLongOrNull() ?: return null,
+        )
+    }
+
+    /**
+     * The state goes first. If the digests aren't replaced after it, the next delta is
+     * against older digests and repeats some changes, which is harmless.
+     */
+    private fun commit(stateFile: File, state: State, digestsFile: File, newDigestsFile: File) {
+        val properties = Properties()
+        properties.setProperty(KEY_BASE, state.base)
+        properties.setProperty(KEY_DELTAS, state.deltas.toString())
+        properties.setProperty(KEY_BASE_BYTES, state.baseBytes.toString())
+        properties.setProperty(KEY_DELTA_BYTES, state.deltaBytes.toString())
+        stateFile.parentFile?.ensureDirExistence()
+        stateFile.outputStream().use { properties.store(it, null) }
+
+        digestsFile.delete()
+        check(newDigestsFile.renameTo(digestsFile)) { "Failed to save backup digests" }
+    }
+
+    companion object {
+        /**
+         * A new base is uploaded after this many deltas
+         * or when deltas are larger than half of the base.
+         */
+        private const val MAX_DELTAS = 30
+
+        private const val EXTENSION = ".json.gz"
+
+        private const val STATE_FILE_NAME = "state"
+        private const val DIGESTS_FILE_NAME = "digests"
+        private const val NEW_DIGESTS_FILE_NAME = "digests.new"
+        private const val UPLOAD_FILE_NAME = "backup_upload.json.gz"
+
+        private const val KEY_BASE = "base"
+        private const val KEY_DELTAS = "deltas"
+        private const val KEY_BASE_BYTES = "baseBytes"
+        private const val KEY_DELTA_BYTES = "deltaBytes"
+
+        fun deltaFolder(base: String): String = "deltas/$base"
+
+        /**
+         * The number of a delta from its file name, or null if it isn't one.
+         */
+        fun deltaNumber(name: String): Int? = name.removeSuffix(EXTENSION).toIntOrNull()
+    }
+}
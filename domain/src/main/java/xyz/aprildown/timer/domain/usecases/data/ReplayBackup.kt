@@ -0,0 +1,91 @@
+package xyz.aprildown.timer.domain.usecases.data
+
+import dagger.Reusable
+import kotlinx.coroutines.CoroutineDispatcher
+import okio.ByteString.Companion.decodeHex
+import okio.GzipSource
+import okio.Source
+import okio.buffer
+import okio.sink
+import okio.source
+import xyz.aprildown.timer.domain.di.IoDispatcher
+import xyz.aprildown.timer.domain.repositories.AppDataRepository
+import xyz.aprildown.timer.domain.repositories.BackupStorage
+import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
+import xyz.aprildown.timer.domain.utils.ensureNewFile
+import java.io.File
+import javax.inject.Inject
+
+/**
+ * Download a base uploaded by [IncrementalBackup] and apply its deltas,
+ * so the result can be imported like any other backup.
+ */
+@Reusable
+class ReplayBackup @Inject constructor(
+    @IoDispatcher dispatcher: CoroutineDispatcher,
+    private val appDataRepository: AppDataRepository,
+) : CoroutinesUseCase<ReplayBackup.Params, Unit>(dispatcher) {
+
+    /**
+     * @param base The path of the base in [storage].
+     * @param dest Where the result is written.
+     * @param workDir Where deltas are downloaded.
+     */
+    data class Params(
+        val storage: BackupStorage,
+        val base: String,
+        val dest: File,
+        val workDir: File,
+    )
+
+    override suspend fun create(params: Params) {
+        val storage = params.storage
+        val dest = params.dest
+        val downloadFile = File(params.workDir, DOWNLOAD_FILE_NAME)
+        val mergedFile = File(params.workDir, MERGED_FILE_NAME)
+        try {
+            storage.download(params.base, downloadFile.ensureNewFile())
+            dest.ensureNewFile().sink().buffer().use { sink ->
+                downloadFile.backupSource().use { sink.writeAll(it) }
+            }
+
+            val deltaFolder = IncrementalBackup.deltaFolder(params.base)
+            storage.list(deltaFolder)
+                .mapNotNull { name -> IncrementalBackup.deltaNumber(name)?.let { it to name } }
+                .sortedBy { it.first }
+                .forEach { (_, name) ->
+                    storage.download("$deltaFolder/$name", downloadFile.ensureNewFile())
+                    mergedFile.ensureNewFile().sink().buffer().use { sink ->
+                        dest.source().use { base ->
+                            downloadFile.backupSource().use { delta ->
+                                appDataRepository.mergeDelta(
+                                    base = base,
+                                    delta = delta,
+                                    sink = sink
+                                )
+                            }
+                        }
+                    }
+                    mergedFile.copyTo(dest, overwrite = true)
+                }
+        } finally {
+            downloadFile.delete()
+            mergedFile.delete()
+        }
+    }
+
+    /**
+     * Backups before [IncrementalBackup] aren't compressed.
+     */
+    private fun File.backupSource(): Source {
+        val source = source().buffer()
+        return if (source.rangeEquals(0, GZIP_MAGIC)) GzipSource(source) else source
+    }
+
+    companion object {
+        private const val DOWNLOAD_FILE_NAME = "backup_download"
+        private const val MERGED_FILE_NAME = "backup_merged.json"
+
+        private val GZIP_MAGIC = "1f8b".decodeHex()
+    }
+}
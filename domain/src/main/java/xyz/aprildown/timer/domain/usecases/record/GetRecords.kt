@@ -12,6 +12,7 @@ import kotlinx.coroutines.withContext
 import xyz.aprildown.timer.domain.TimeUtils
 import xyz.aprildown.timer.domain.TimeUtils.toEpochMilli
 import xyz.aprildown.timer.domain.di.IoDispatcher
+import xyz.aprildown.timer.domain.entities.TimerStampBucketEntity
 import xyz.aprildown.timer.domain.entities.TimerStampEntity
 import xyz.aprildown.timer.domain.repositories.TimerStampRepository
 import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
@@ -79,7 +80,7 @@ class GetRecords @Inject constructor(
 
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     internal suspend fun produceOverviewResult(params: Params): OverviewResult {
-        val records = repository.getRecordsGroupedByTimer(
+        val totals = repository.getTotalsGroupedByTimer(
             timerIds = params.timerIds,
             startTime = params.startTime,
             endTime = params.endTime
@@ -88,17 +89,12 @@ class GetRecords @Inject constructor(
         var totalCount = 0
         val timeData = arrayMapOf<Int?, OverviewResult.Entry<Long>>()
         val countData = arrayMapOf<Int?, OverviewResult.Entry<Int>>()
-        records.forEach { pair ->
-            val timerId = pair.key
-            val stamps = pair.value
-            var timerDuration = 0L
-            stamps.forEach {
-                val duration = it.duration
-                totalTime += duration
-                timerDuration += duration
-            }
+        params.timerIds.forEach { timerId ->
+            val total = totals[timerId]
+            val timerDuration = total?.duration ?: 0L
+            totalTime += timerDuration
             timeData[timerId] = OverviewResult.Entry(timerDuration, 0f)
-            val stampCount = stamps.size
+            val stampCount = total?.count ?: 0
             totalCount += stampCount
             countData[timerId] = OverviewResult.Entry(stampCount, 0f)
         }
@@ -196,31 +192,32 @@ class GetRecords @Inject constructor(
         val globalEndTime = TimeUtils.getDayEnd(params.endTime)
 
         val mode: Int
-        val step: Long
+        val span: TimerStampBucketEntity.Span
         val endCalculator: (Long) -> Long
         if ((globalEndTime - globalStartTime).absoluteValue < DateUtils.DAY_IN_MILLIS) {
             mode = TimelineResult.MODE_ONE_DAY
-            step = DateUtils.HOUR_IN_MILLIS
+            span = TimerStampBucketEntity.Span.HOUR
             endCalculator = { TimeUtils.getHourEnd(it) }
         } else {
             mode = TimelineResult.MODE_DAYS
-            step = DateUtils.DAY_IN_MILLIS
+            span = TimerStampBucketEntity.Span.DAY
             endCalculator = { TimeUtils.getDayEnd(it) }
         }
-        for (dayTime in globalStartTime..globalEndTime step step) {
-            val dayEnd = endCalculator.invoke(dayTime)
-            val stamps = repository.getRaw(
-                timerIds = params.timerIds,
-                startTime = dayTime,
-                endTime = dayEnd
-            )
-            val time =
-                stamps.fold(0L) { acc, timerStampEntity -> acc + timerStampEntity.duration }
+        val buckets = repository.getBuckets(
+            timerIds = params.timerIds,
+            startTime = globalStartTime,
+            endTime = globalEndTime,
+            span = span
+        ).associateBy { it.timePoint }
+        var timePoint = globalStartTime
+        while (timePoint <= globalEndTime) {
+            val bucket = buckets[timePoint]
             result += TimelineEvent(
-                timePoint = dayTime,
-                duration = time,
-                count = stamps.size
+                timePoint = timePoint,
+                duration = bucket?.duration ?: 0L,
+                count = bucket?.count ?: 0
             )
+            timePoint = endCalculator.invoke(timePoint) + 1
         }
 
         return TimelineResult(mode = mode, events = result)
@@ -244,14 +241,13 @@ class GetRecords @Inject constructor(
 
         val result = arrayMapOf<Long, Int>()
 
-        val records = repository.getRaw(
+        repository.getBuckets(
             timerIds = params.timerIds,
             startTime = startTime,
-            endTime = endTime
-        )
-        records.forEach { record ->
-            val recordStartTime = TimeUtils.getDayStart(record.start)
-            result[recordStartTime] = result.getOrDefault(recordStartTime, 0) + 1
+            endTime = endTime,
+            span = TimerStampBucketEntity.Span.DAY
+        ).forEach { bucket ->
+            result[bucket.timePoint] = bucket.count
         }
 
         return result
@@ -0,0 +1,41 @@
+package xyz.aprildown.timer.domain.usecases.scheduler
+
+import dagger.Reusable
+import kotlinx.coroutines.CoroutineDispatcher
+import xyz.aprildown.timer.domain.di.IoDispatcher
+import xyz.aprildown.timer.domain.entities.SchedulerEntity
+import xyz.aprildown.timer.domain.entities.SchedulerRepeatMode
+import xyz.aprildown.timer.domain.repositories.AppDataRepository
+import xyz.aprildown.timer.domain.repositories.SchedulerExecutor
+import xyz.aprildown.timer.domain.repositories.SchedulerRepository
+import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
+import javax.inject.Inject
+
+/**
+ * Schedule fired schedulers again or disable them by their repeat modes.
+ * Schedulers firing at the same time are handled together.
+ *
+ * @return Fired schedulers whose timers exist.
+ */
+@Reusable
+class FireSchedulers @Inject constructor(
+    @IoDispatcher dispatcher: CoroutineDispatcher,
+    private val repository: SchedulerRepository,
+    private val executor: SchedulerExecutor,
+    private val appDataRepository: AppDataRepository
+) : CoroutinesUseCase<List<Int>, List<SchedulerEntity>>(dispatcher) {
+    override suspend fun create(params: List<Int>): List<SchedulerEntity> {
+        if (params.isEmpty()) return emptyList()
+        val schedulers = repository.itemsWithTimers(params)
+        schedulers.forEach { scheduler ->
+            val enable = if (scheduler.repeatMode != SchedulerRepeatMode.ONCE) 1 else 0
+            val new = scheduler.copy(enable = enable)
+            if (enable == 1) executor.schedule(new) else executor.cancel(new)
+            repository.setSchedulerEnable(scheduler.id, enable)
+        }
+        if (schedulers.isNotEmpty()) {
+            appDataRepository.notifyDataChanged()
+        }
+        return schedulers
+    }
+}
@@ -0,0 +1,23 @@
+package xyz.aprildown.timer.domain.usecases.scheduler
+
+import dagger.Reusable
+import kotlinx.coroutines.CoroutineDispatcher
+import xyz.aprildown.timer.domain.di.IoDispatcher
+import xyz.aprildown.timer.domain.repositories.SchedulerExecutor
+import xyz.aprildown.timer.domain.repositories.SchedulerRepository
+import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
+import javax.inject.Inject
+
+/**
+ * Schedule enabled schedulers again after a reboot or a clock change.
+ */
+@Reusable
+class RescheduleSchedulers @Inject constructor(
+    @IoDispatcher dispatcher: CoroutineDispatcher,
+    private val repository: SchedulerRepository,
+    private val executor: SchedulerExecutor
+) : CoroutinesUseCase<Unit, Unit>(dispatcher) {
+    override suspend fun create(params: Unit) {
+        executor.rescheduleAll(repository.items().filter { it.enable == 1 })
+    }
+}
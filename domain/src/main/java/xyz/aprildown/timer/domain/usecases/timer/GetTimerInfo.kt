@@ -3,7 +3,6 @@ package xyz.aprildown.timer.domain.usecases.timer
 import dagger.Lazy
 import dagger.Reusable
 import kotlinx.coroutines.CoroutineDispatcher
-import kotlinx.coroutines.runBlocking
 import xyz.aprildown.timer.domain.di.IoDispatcher
 import xyz.aprildown.timer.domain.entities.FolderSortBy
 import xyz.aprildown.timer.domain.entities.TimerInfo
@@ -36,19 +35,25 @@ internal suspend fun List<TimerInfo>.sort(
         FolderSortBy.AddedOldest -> sortedBy { it.id }
         FolderSortBy.AToZ -> sortedBy { it.name }
         FolderSortBy.ZToA -> sortedByDescending { it.name }
-        FolderSortBy.RunNewest -> {
-            sortedByDescending {
-                runBlocking {
-                    timerStampRepository.get().getRecentOne(it.id)?.end ?: 0
-                }
-            }
-        }
-        FolderSortBy.RunOldest -> {
-            sortedBy {
-                runBlocking {
-                    timerStampRepository.get().getRecentOne(it.id)?.end ?: 0
-                }
-            }
+        FolderSortBy.RunNewest, FolderSortBy.RunOldest -> {
+            sortByRecentRun(
+                endTimes = timerStampRepository.get().getRecentEndTimes(map { it.id }),
+                sortBy = sortBy
+            )
         }
     }
 }
+
+/**
+ * @param endTimes The latest stamp end time of each timer.
+ */
+internal fun List<TimerInfo>.sortByRecentRun(
+    endTimes: Map<Int, Long>,
+    sortBy: FolderSortBy
+): List<TimerInfo> {
+    return if (sortBy == FolderSortBy.RunOldest) {
+        sortedBy { endTimes[it.id] ?: 0 }
+    } else {
+        sortedByDescending { endTimes[it.id] ?: 0 }
+    }
+}
@@ -4,6 +4,7 @@ import dagger.Lazy
 import dagger.Reusable
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.flow.map
 import xyz.aprildown.timer.domain.di.IoDispatcher
@@ -20,8 +21,17 @@ class GetTimerInfoFlow @Inject constructor(
     private val timerStampRepository: Lazy<TimerStampRepository>,
 ) {
     fun get(folderId: Long, sortBy: FolderSortBy): Flow<List<TimerInfo>> {
-        return repository.getTimerInfoFlow(folderId)
-            .map { it.sort(timerStampRepository, sortBy) }
-            .flowOn(dispatcher)
+        val timerInfoFlow = repository.getTimerInfoFlow(folderId)
+        return when (sortBy) {
+            FolderSortBy.RunNewest, FolderSortBy.RunOldest -> {
+                // Re-sort when stamps change as well.
+                timerInfoFlow.combine(
+                    timerStampRepository.get().getRecentEndTimesFlow(folderId)
+                ) { timerInfo, endTimes ->
+                    timerInfo.sortByRecentRun(endTimes, sortBy)
+                }
+            }
+            else -> timerInfoFlow.map { it.sort(timerStampRepository, sortBy) }
+        }.flowOn(dispatcher)
     }
 }
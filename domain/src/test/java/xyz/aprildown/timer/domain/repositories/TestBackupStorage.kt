@@ -0,0 +1,27 @@
+package xyz.aprildown.timer.domain.repositories
+
+import java.io.File
+
+/**
+ * Keeps backups in [root] like a remote storage does.
+ */
+class TestBackupStorage(val root: File) : BackupStorage {
+
+    val uploads = mutableListOf<String>()
+
+    var failUploads = false
+
+    override suspend fun upload(file: File, path: String) {
+        if (failUploads) throw IllegalStateException("Upload failed")
+        file.copyTo(File(root, path), overwrite = true)
+        uploads += path
+    }
+
+    override suspend fun download(path: String, file: File) {
+        File(root, path).copyTo(file, overwrite = true)
+    }
+
+    override suspend fun list(path: String): List<String> {
+        return File(root, path).listFiles()?.filter { it.isFile }?.map { it.name }.orEmpty()
+    }
+}
@@ -0,0 +1,162 @@
+package xyz.aprildown.timer.domain.usecases.data
+
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.runTest
+import okio.BufferedSink
+import okio.Source
+import okio.buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import org.mockito.kotlin.wheneverBlocking
+import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.repositories.AppDataRepository
+import xyz.aprildown.timer.domain.repositories.AppPreferencesProvider
+import xyz.aprildown.timer.domain.repositories.NotifierRepository
+import xyz.aprildown.timer.domain.repositories.TestBackupStorage
+import java.io.File
+import kotlin.random.Random
+
+class IncrementalBackupTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val appDataRepository: AppDataRepository = mock()
+    private val notifierRepository: NotifierRepository = mock()
+    private val appPreferencesProvider: AppPreferencesProvider = mock()
+
+    private lateinit var storage: TestBackupStorage
+    private lateinit var stateDir: File
+    private lateinit var workDir: File
+
+    /**
+     * Random text so that gzip doesn't shrink it to nothing.
+     */
+    private val fullContent = randomText(2_000)
+    private var deltaContent = "d"
+    private var changes = 1
+
+    /**
+     * What the repository got as the last digests in each backup.
+     */
+    private val lastDigests = mutableListOf<String?>()
+
+    @Before
+    fun setUp() {
+        storage = TestBackupStorage(folder.newFolder("storage"))
+        stateDir = folder.newFolder("state")
+        workDir = folder.newFolder("work")
+
+        wheneverBlocking { notifierRepository.get() }.thenReturn(TestData.fakeStepA)
+        whenever(appPreferencesProvider.getAppPreferences()).thenReturn(emptyMap())
+        wheneverBlocking {
+            appDataRepository.writeDelta(any(), anyOrNull(), any(), anyOrNull(), any())
+        }.thenAnswer {
+            val last = it.getArgument<Source?>(1)
+            lastDigests += last?.buffer()?.readUtf8()
+            it.getArgument<BufferedSink>(0)
+                .writeUtf8(if (last == null) fullContent else deltaContent)
+            it.getArgument<BufferedSink>(2).writeUtf8("digests${lastDigests.size}")
+            if (last == null) 100 else changes
+        }
+        wheneverBlocking { appDataRepository.mergeDelta(any(), any(), any()) }.thenAnswer {
+            val sink = it.getArgument<BufferedSink>(2)
+            sink.writeAll(it.getArgument<Source>(0))
+            sink.writeAll(it.getArgument<Source>(1))
+        }
+    }
+
+    private suspend fun TestScope.backup(): IncrementalBackup.Result {
+        return IncrementalBackup(
+            StandardTestDispatcher(testScheduler),
+            appDataRepository,
+            notifierRepository,
+            appPreferencesProvider,
+        ).execute(
+            IncrementalBackup.Params(storage = storage, stateDir = stateDir, workDir = workDir)
+        )
+    }
+
+    @Test
+    fun `first backup is a base`() = runTest {
+        val result = backup()
+
+        assertTrue(result is IncrementalBackup.Result.Base)
+        result as IncrementalBackup.Result.Base
+        assertEquals(File(storage.root, result.path).length(), result.bytes)
+        assertTrue(result.bytes < fullContent.length)
+        assertEquals(listOf(result.path), storage.uploads)
+        assertEquals(listOf(null), lastDigests)
+    }
+
+    @Test
+    fun `later backups are deltas`() = runTest {
+        val base = (backup() as IncrementalBackup.Result.Base).path
+
+        assertEquals("deltas/$base/1.json.gz", (backup() as IncrementalBackup.Result.Delta).path)
+        assertEquals("deltas/$base/2.json.gz", (backup() as IncrementalBackup.Result.Delta).path)
+        assertEquals(listOf(null, "digests1", "digests2"), lastDigests)
+    }
+
+    @Test
+    fun `nothing changed`() = runTest {
+        backup()
+        changes = 0
+
+        assertEquals(IncrementalBackup.Result.UpToDate, backup())
+        assertEquals(1, storage.uploads.size)
+    }
+
+    @Test
+    fun `large deltas make a new base`() = runTest {
+        backup()
+        deltaContent = randomText(fullContent.length)
+
+        assertTrue(backup() is IncrementalBackup.Result.Base)
+        assertEquals(listOf(null, "digests1", null), lastDigests)
+    }
+
+    @Test
+    fun `failed uploads are retried as the same delta`() = runTest {
+        val base = (backup() as IncrementalBackup.Result.Base).path
+
+        storage.failUploads = true
+        assertTrue(runCatching { backup() }.isFailure)
+        storage.failUploads = false
+
+        assertEquals("deltas/$base/1.json.gz", (backup() as IncrementalBackup.Result.Delta).path)
+        assertEquals(listOf(null, "digests1", "digests1"), lastDigests)
+    }
+
+    @Test
+    fun `replay deltas in order`() = runTest {
+        val base = (backup() as IncrementalBackup.Result.Base).path
+        repeat(10) {
+            deltaContent = "${it + 1},"
+            backup()
+        }
+
+        val dest = File(workDir, "dest")
+        ReplayBackup(StandardTestDispatcher(testScheduler), appDataRepository).execute(
+            ReplayBackup.Params(storage = storage, base = base, dest = dest, workDir = workDir)
+        )
+
+        assertEquals(fullContent + "1,2,3,4,5,6,7,8,9,10,", dest.readText())
+        assertNull(workDir.listFiles()?.find { it != dest })
+    }
+
+    private fun randomText(length: Int): String {
+        val random = Random(0)
+        return buildString { repeat(length) { append('a' + random.nextInt(16)) } }
+    }
+}
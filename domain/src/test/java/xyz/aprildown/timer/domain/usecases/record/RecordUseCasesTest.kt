@@ -7,8 +7,6 @@ import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
 import org.junit.Test
-import org.mockito.kotlin.any
-import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.verify
 import org.mockito.kotlin.verifyNoMoreInteractions
@@ -16,6 +14,7 @@ import org.mockito.kotlin.whenever
 import xyz.aprildown.timer.domain.TestData
 import xyz.aprildown.timer.domain.TimeUtils
 import xyz.aprildown.timer.domain.TimeUtils.toLocalDateTime
+import xyz.aprildown.timer.domain.entities.TimerStampBucketEntity
 import xyz.aprildown.timer.domain.entities.TimerStampEntity
 import xyz.aprildown.timer.domain.entities.toTimerInfo
 import xyz.aprildown.timer.domain.repositories.AppDataRepository
@@ -43,21 +42,39 @@ class RecordUseCasesTest {
     @Test
     fun `overview test`() = runTest {
         val getRecords = GetRecords(StandardTestDispatcher(testScheduler), timerStampRepository)
-        val records =
-            arrayMapOf<Int, List<TimerStampEntity>>()
-        whenever(timerStampRepository.getRecordsGroupedByTimer(emptyList(), 0L, 0L))
-            .thenReturn(records)
-        getRecords.produceOverviewResult(
+        val timerIds = List(20) { it + 1 }
+        val totals = arrayMapOf<Int, TimerStampBucketEntity>()
+        timerIds.forEach { timerId ->
+            totals[timerId] = TimerStampBucketEntity(
+                timePoint = 0L,
+                duration = timerId * 1_000L,
+                count = timerId
+            )
+        }
+        whenever(timerStampRepository.getTotalsGroupedByTimer(timerIds, 0L, 0L))
+            .thenReturn(totals)
+        val result = getRecords.produceOverviewResult(
             GetRecords.Params(
-                timerIds = emptyList(),
+                timerIds = timerIds,
                 startTime = 0L,
                 endTime = 0L
             )
         )
 
-        // We need some tests here, but they're so complicated to write.
+        val totalTime = timerIds.sumOf { it * 1_000L }
+        val totalCount = timerIds.sum()
+        assertEquals(totalTime, result.timeData.values.sumOf { it.data })
+        assertEquals(totalCount, result.countData.values.sumOf { it.data })
+        result.timeData.forEach { (timerId, entry) ->
+            if (timerId != null) {
+                assertEquals(timerId * 1_000L, entry.data)
+                assertTrue(entry.percent >= 0.01f)
+            }
+        }
+        assertTrue(null in result.timeData.keys)
+        assertTrue(null in result.countData.keys)
 
-        verify(timerStampRepository).getRecordsGroupedByTimer(emptyList(), 0L, 0L)
+        verify(timerStampRepository).getTotalsGroupedByTimer(timerIds, 0L, 0L)
 
         verifyNoMoreInteractions(timerStampRepository)
     }
@@ -90,15 +107,14 @@ class RecordUseCasesTest {
             }
         }
 
-        for (dayTime in TimeUtils.getDayStart(start)..TimeUtils.getDayEnd(now) step DateUtils.DAY_IN_MILLIS) {
-            whenever(
-                timerStampRepository.getRaw(
-                    any(),
-                    eq(dayTime),
-                    eq(TimeUtils.getDayEnd(dayTime))
-                )
-            ).thenReturn(predict[dayTime] ?: emptyList())
-        }
+        whenever(
+            timerStampRepository.getBuckets(
+                emptyList(),
+                TimeUtils.getDayStart(start),
+                TimeUtils.getDayEnd(now),
+                TimerStampBucketEntity.Span.DAY
+            )
+        ).thenReturn(predict.toBuckets())
 
         val result = getRecords.produceTimelineResult(
             GetRecords.Params(
@@ -121,13 +137,12 @@ class RecordUseCasesTest {
             assertEquals(stamps.size, event?.count)
         }
 
-        for (dayTime in TimeUtils.getDayStart(start)..TimeUtils.getDayEnd(now) step DateUtils.DAY_IN_MILLIS) {
-            verify(timerStampRepository).getRaw(
-                any(),
-                eq(dayTime),
-                eq(TimeUtils.getDayEnd(dayTime))
-            )
-        }
+        verify(timerStampRepository).getBuckets(
+            emptyList(),
+            TimeUtils.getDayStart(start),
+            TimeUtils.getDayEnd(now),
+            TimerStampBucketEntity.Span.DAY
+        )
 
         verifyNoMoreInteractions(timerStampRepository)
     }
@@ -157,15 +172,14 @@ class RecordUseCasesTest {
             }
         }
 
-        predict.keys.forEach { hourStart ->
-            whenever(
-                timerStampRepository.getRaw(
-                    any(),
-                    eq(hourStart),
-                    eq(TimeUtils.getHourEnd(hourStart))
-                )
-            ).thenReturn(predict[hourStart])
-        }
+        whenever(
+            timerStampRepository.getBuckets(
+                emptyList(),
+                dayStart,
+                TimeUtils.getDayEnd(now),
+                TimerStampBucketEntity.Span.HOUR
+            )
+        ).thenReturn(predict.toBuckets())
         val result = getRecords.produceTimelineResult(
             GetRecords.Params(
                 timerIds = emptyList(),
@@ -186,13 +200,12 @@ class RecordUseCasesTest {
             assertEquals(stamps.size, event?.count)
         }
 
-        predict.keys.forEach { hourStart ->
-            verify(timerStampRepository).getRaw(
-                any(),
-                eq(hourStart),
-                eq(TimeUtils.getHourEnd(hourStart))
-            )
-        }
+        verify(timerStampRepository).getBuckets(
+            emptyList(),
+            dayStart,
+            TimeUtils.getDayEnd(now),
+            TimerStampBucketEntity.Span.HOUR
+        )
 
         verifyNoMoreInteractions(timerStampRepository)
     }
@@ -206,20 +219,23 @@ class RecordUseCasesTest {
         val monthEnd = TimeUtils.getMonthEnd(now)
 
         val predict = arrayMapOf<Long, Int>()
-        val timerStamps = List(Random.nextInt(500)) {
+        repeat(Random.nextInt(500)) {
             val time = Random.nextLong(monthEnd - monthStart + 1) + monthStart
             val dayStart = TimeUtils.getDayStart(time)
             predict[dayStart] = predict.getOrDefault(dayStart, 0) + 1
-            TimerStampEntity(
-                id = TestData.fakeTimerStampIdA,
-                timerId = TestData.fakeTimerId,
-                start = time,
-                end = time
-            )
+        }
+        val buckets = predict.keys.sorted().map {
+            TimerStampBucketEntity(timePoint = it, duration = 0L, count = predict[it]!!)
         }
 
-        whenever(timerStampRepository.getRaw(emptyList(), monthStart, monthEnd))
-            .thenReturn(timerStamps)
+        whenever(
+            timerStampRepository.getBuckets(
+                emptyList(),
+                monthStart,
+                monthEnd,
+                TimerStampBucketEntity.Span.DAY
+            )
+        ).thenReturn(buckets)
         val result = getRecords.produceCalendarEvents(
             GetRecords.Params(
                 timerIds = emptyList(),
@@ -247,7 +263,12 @@ class RecordUseCasesTest {
             assertEquals(predict[it], result[it])
         }
 
-        verify(timerStampRepository).getRaw(emptyList(), monthStart, monthEnd)
+        verify(timerStampRepository).getBuckets(
+            emptyList(),
+            monthStart,
+            monthEnd,
+            TimerStampBucketEntity.Span.DAY
+        )
 
         verifyNoMoreInteractions(timerStampRepository)
     }
@@ -326,4 +347,15 @@ class RecordUseCasesTest {
         verifyNoMoreInteractions(timerStampRepository)
         verifyNoMoreInteractions(appDataRepository)
     }
+
+    private fun Map<Long, List<TimerStampEntity>>.toBuckets(): List<TimerStampBucketEntity> {
+        return keys.sorted().map { timePoint ->
+            val stamps = getValue(timePoint)
+            TimerStampBucketEntity(
+                timePoint = timePoint,
+                duration = stamps.fold(0L) { acc, timerStampEntity -> acc + timerStampEntity.duration },
+                count = stamps.size
+            )
+        }
+    }
 }
@@ -12,6 +12,7 @@ import org.mockito.kotlin.verifyNoMoreInteractions
 import org.mockito.kotlin.whenever
 import xyz.aprildown.timer.domain.TestData
 import xyz.aprildown.timer.domain.entities.SchedulerEntity
+import xyz.aprildown.timer.domain.entities.SchedulerRepeatMode
 import xyz.aprildown.timer.domain.repositories.AppDataRepository
 import xyz.aprildown.timer.domain.repositories.SchedulerExecutor
 import xyz.aprildown.timer.domain.repositories.SchedulerRepository
@@ -181,4 +182,49 @@ class SchedulerUseCasesTest {
         verifyNoMoreInteractions(schedulerExecutor)
         verifyNoMoreInteractions(appDataRepository)
     }
+
+    @Test
+    fun rescheduleSchedulers() = runTest {
+        val enabled = TestData.fakeSchedulerA.copy(enable = 1)
+        val disabled = TestData.fakeSchedulerB.copy(enable = 0)
+        whenever(schedulerRepository.items()).thenReturn(listOf(enabled, disabled))
+        val useCase = RescheduleSchedulers(
+            StandardTestDispatcher(testScheduler),
+            schedulerRepository,
+            schedulerExecutor
+        )
+
+        useCase()
+        verify(schedulerRepository).items()
+        verify(schedulerExecutor).rescheduleAll(listOf(enabled))
+
+        verifyNoMoreInteractions(schedulerRepository)
+        verifyNoMoreInteractions(schedulerExecutor)
+        verifyNoMoreInteractions(appDataRepository)
+    }
+
+    @Test
+    fun fireSchedulers() = runTest {
+        val once = TestData.fakeSchedulerA.copy(repeatMode = SchedulerRepeatMode.ONCE)
+        whenever(schedulerRepository.itemsWithTimers(listOf(once.id))).thenReturn(listOf(once))
+        val useCase = FireSchedulers(
+            StandardTestDispatcher(testScheduler),
+            schedulerRepository,
+            schedulerExecutor,
+            appDataRepository
+        )
+
+        assertEquals(emptyList<SchedulerEntity>(), useCase(emptyList()))
+        verify(schedulerRepository, never()).itemsWithTimers(emptyList())
+
+        assertEquals(listOf(once), useCase(listOf(once.id)))
+        verify(schedulerRepository).itemsWithTimers(listOf(once.id))
+        verify(schedulerExecutor).cancel(once.copy(enable = 0))
+        verify(schedulerRepository).setSchedulerEnable(once.id, 0)
+        verify(appDataRepository).notifyDataChanged()
+
+        verifyNoMoreInteractions(schedulerRepository)
+        verifyNoMoreInteractions(schedulerExecutor)
+        verifyNoMoreInteractions(appDataRepository)
+    }
 }
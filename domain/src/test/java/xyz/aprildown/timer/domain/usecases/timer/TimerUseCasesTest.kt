@@ -1,5 +1,6 @@
 package xyz.aprildown.timer.domain.usecases.timer
 
+import androidx.collection.arrayMapOf
 import kotlinx.coroutines.test.StandardTestDispatcher
 import kotlinx.coroutines.test.runTest
 import org.junit.Assert.assertEquals
@@ -7,7 +8,6 @@ import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.mockito.kotlin.any
-import org.mockito.kotlin.atLeast
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
 import org.mockito.kotlin.times
@@ -220,13 +220,12 @@ class TimerUseCasesTest {
 
         val timerStampRepo: TimerStampRepository = mock()
 
-        val timerIdWithEndTimeMap = mutableMapOf<Int, Long>()
+        val timerIdWithEndTimeMap = arrayMapOf<Int, Long>()
         timers.map { it.id }.distinct().forEach { timerId ->
-            val end = Random.nextLong()
-            val timerStamp = TestData.fakeTimerStampA.copy(end = end)
-            timerIdWithEndTimeMap[timerId] = end
-            whenever(timerStampRepo.getRecentOne(timerId)).thenReturn(timerStamp)
+            timerIdWithEndTimeMap[timerId] = Random.nextLong()
         }
+        whenever(timerStampRepo.getRecentEndTimes(timerInfo.map { it.id }))
+            .thenReturn(timerIdWithEndTimeMap)
 
         val useCase = GetTimerInfo(
             dispatcher = StandardTestDispatcher(testScheduler),
@@ -241,7 +240,7 @@ class TimerUseCasesTest {
         assertEquals(timerInfo.sortedBy { timerIdWithEndTimeMap[it.id] }, result2)
 
         verify(timerRepository, times(2)).getTimerInfo(folderId)
-        verify(timerStampRepo, atLeast(timers.size * 2)).getRecentOne(any())
+        verify(timerStampRepo, times(2)).getRecentEndTimes(timerInfo.map { it.id })
 
         verifyNoMoreInteractions(folderRepository)
         verifyNoMoreInteractions(timerRepository)
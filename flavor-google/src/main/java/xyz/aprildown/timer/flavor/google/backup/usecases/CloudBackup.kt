@@ -1,7 +1,6 @@
 package xyz.aprildown.timer.flavor.google.backup.usecases
 
 import android.content.Context
-import androidx.core.net.toUri
 import androidx.work.BackoffPolicy
 import androidx.work.Constraints
 import androidx.work.ExistingWorkPolicy
@@ -10,23 +9,20 @@ import androidx.work.OneTimeWorkRequestBuilder
 import androidx.work.WorkManager
 import com.google.firebase.auth.ktx.auth
 import com.google.firebase.ktx.Firebase
-import com.google.firebase.storage.StorageMetadata
 import com.google.firebase.storage.ktx.storage
 import dagger.Reusable
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.CoroutineDispatcher
-import kotlinx.coroutines.tasks.await
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.yield
 import timber.log.Timber
 import xyz.aprildown.timer.domain.di.IoDispatcher
 import xyz.aprildown.timer.domain.usecases.CoroutinesUseCase
 import xyz.aprildown.timer.domain.usecases.Fruit
-import xyz.aprildown.timer.domain.usecases.data.ExportAppData
+import xyz.aprildown.timer.domain.usecases.data.IncrementalBackup
 import xyz.aprildown.timer.domain.utils.AppConfig
 import xyz.aprildown.timer.flavor.google.backup.CloudBackupWorker
 import xyz.aprildown.timer.flavor.google.utils.causeFirstMessage
-import xyz.aprildown.timer.flavor.google.utils.ensureNewFile
 import xyz.aprildown.timer.flavor.google.utils.setUpFirebaseStorage
 import java.io.File
 import java.util.concurrent.TimeUnit
@@ -38,7 +34,7 @@ internal class CloudBackup @Inject constructor(
     @ApplicationContext private val applicationContext: Context,
     private val currentBackupState: CurrentBackupState,
     private val currentBackupStateError: CurrentBackupStateError,
-    private val exportAppData: ExportAppData,
+    private val incrementalBackup: IncrementalBackup,
 ) : CoroutinesUseCase<Unit, Fruit<Unit>>(dispatcher) {
 
     init {
@@ -48,42 +44,25 @@ internal class CloudBackup @Inject constructor(
     override suspend fun create(params: Unit): Fruit<Unit> {
         currentBackupState.set(CloudBackupState.Running)
 
-        var fileToUpload: File? = null
         try {
-            val targetFile = File(applicationContext.cacheDir, "upload.json").ensureNewFile()
-
-            fileToUpload = targetFile
-
-            targetFile.writeText(
-                exportAppData(
-                    ExportAppData.Params(
-                        exportTimers = true,
-                        exportSchedulers = true,
-                        exportTimerStamps = true,
-                        exportPreferences = true,
-                    )
-                )
-            )
-
-            yield()
-
-            val storage = Firebase.storage
             val user = Firebase.auth.currentUser
             requireNotNull(user)
 
             yield()
 
-            storage.reference
-                .child(BACKUP_FOLDER_NAME)
-                .child(user.uid)
-                .child("${System.currentTimeMillis()}.json ")
-                .putFile(
-                    targetFile.toUri(),
-                    StorageMetadata.Builder()
-                        .setContentType("application/json")
-                        .build()
+            val result = incrementalBackup(
+                IncrementalBackup.Params(
+                    storage = FirebaseBackupStorage(
+                        Firebase.storage.reference.child(BACKUP_FOLDER_NAME).child(user.uid)
+                    ),
+                    stateDir = File(
+                        applicationContext.filesDir,
+                        "$BACKUP_STATE_FOLDER_NAME/${user.uid}"
+                    ),
+                    workDir = applicationContext.cacheDir,
                 )
-                .await()
+            )
+            Timber.tag(CLOUD_BACKUP_LOG_TAG).i("Uploaded $result")
 
             currentBackupState.set(CloudBackupState.UpToDate)
 
@@ -92,8 +71,6 @@ internal class CloudBackup @Inject constructor(
             currentBackupStateError.set(e.causeFirstMessage())
             currentBackupState.set(CloudBackupState.Error)
             return Fruit.Rotten(e)
-        } finally {
-            fileToUpload?.delete()
         }
     }
 
@@ -105,6 +82,7 @@ internal class CloudBackup @Inject constructor(
 
     companion object {
         const val BACKUP_FOLDER_NAME = "backup"
+        private const val BACKUP_STATE_FOLDER_NAME = "cloud_backup"
         const val CLOUD_BACKUP_LOG_TAG = "CLOUD_BACKUP"
 
         fun schedule(
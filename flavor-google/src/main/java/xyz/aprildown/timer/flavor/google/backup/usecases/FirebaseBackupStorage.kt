@@ -0,0 +1,30 @@
+package xyz.aprildown.timer.flavor.google.backup.usecases
+
+import androidx.core.net.toUri
+import com.google.firebase.storage.StorageMetadata
+import com.google.firebase.storage.StorageReference
+import kotlinx.coroutines.tasks.await
+import xyz.aprildown.timer.domain.repositories.BackupStorage
+import java.io.File
+
+internal class FirebaseBackupStorage(private val root: StorageReference) : BackupStorage {
+
+    override suspend fun upload(file: File, path: String) {
+        root.child(path)
+            .putFile(
+                file.toUri(),
+                StorageMetadata.Builder()
+                    .setContentType("application/gzip")
+                    .build()
+            )
+            .await()
+    }
+
+    override suspend fun download(path: String, file: File) {
+        root.child(path).getFile(file).await()
+    }
+
+    override suspend fun list(path: String): List<String> {
+        return root.child(path).listAll().await().items.map { it.name }
+    }
+}
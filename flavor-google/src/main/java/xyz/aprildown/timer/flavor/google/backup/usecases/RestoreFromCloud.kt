@@ -5,11 +5,12 @@ import com.google.firebase.storage.StorageReference
 import dagger.Reusable
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.CoroutineDispatcher
-import kotlinx.coroutines.tasks.await
 import kotlinx.coroutines.withContext
+import okio.source
 import xyz.aprildown.timer.domain.di.IoDispatcher
 import xyz.aprildown.timer.domain.usecases.Fruit
 import xyz.aprildown.timer.domain.usecases.data.ImportAppData
+import xyz.aprildown.timer.domain.usecases.data.ReplayBackup
 import xyz.aprildown.timer.flavor.google.utils.ensureNewFile
 import xyz.aprildown.timer.flavor.google.utils.setUpFirebaseStorage
 import java.io.File
@@ -19,6 +20,7 @@ import javax.inject.Inject
 class RestoreFromCloud @Inject constructor(
     @IoDispatcher private val dispatcher: CoroutineDispatcher,
     @ApplicationContext private val applicationContext: Context,
+    private val replayBackup: ReplayBackup,
     private val importAppData: ImportAppData,
 ) {
 
@@ -31,18 +33,27 @@ class RestoreFromCloud @Inject constructor(
             val destFile = File(applicationContext.cacheDir, "file_to_restore.json").ensureNewFile()
 
             try {
-                reference.getFile(destFile).await()
-
-                importAppData(
-                    ImportAppData.Params(
-                        data = destFile.readText(),
-                        wipeFirst = true,
-                        importTimers = true,
-                        importSchedulers = true,
-                        importTimerStamps = true,
-                        importPreferences = true,
+                replayBackup(
+                    ReplayBackup.Params(
+                        storage = FirebaseBackupStorage(checkNotNull(reference.parent)),
+                        base = reference.name,
+                        dest = destFile,
+                        workDir = applicationContext.cacheDir,
                     )
                 )
+
+                destFile.source().use { source ->
+                    importAppData(
+                        ImportAppData.Params(
+                            source = source,
+                            wipeFirst = true,
+                            importTimers = true,
+                            importSchedulers = true,
+                            importTimerStamps = true,
+                            importPreferences = true,
+                        )
+                    )
+                }
             } finally {
                 destFile.delete()
             }
@@ -39,6 +39,8 @@ class MachinePresenterTest {
             AddTimerStamp(dispatcher, mock(), mock(), appDataRepository),
             mock(),
             mock(),
+            mock(),
+            mock(),
         )
         val view = TestView()
         presenter.takeView(view)
@@ -57,6 +59,7 @@ class MachinePresenterTest {
             assertFalse(view.running)
 
             presenter.startTimer(id)
+            presenter.awaitCommands()
             verify(timerRepository).item(id)
             // Start step
             assertTrue(view.running)
@@ -72,11 +75,13 @@ class MachinePresenterTest {
             assertTrue(view.remaining in 54_000..56_000)
 
             presenter.pauseTimer(id)
+            presenter.awaitCommands()
             assertTrue(view.running)
             assertTrue(view.timerIdAndState[id]?.isPaused ?: false)
             assertTrue(view.remaining in 54_000..56_000)
 
             presenter.startTimer(id)
+            presenter.awaitCommands()
             assertTrue(view.running)
             assertTrue(view.timerIdAndState[id]?.isRunning ?: false)
             delay(5_000)
@@ -85,6 +90,7 @@ class MachinePresenterTest {
             // To second step
             presenter.increTimer(id)
             presenter.increTimer(id)
+            presenter.awaitCommands()
             assertTrue(view.running)
             assertTrue(view.timerIdAndState[id]?.isRunning ?: false)
             assertTrue(view.playingMusic)
@@ -96,6 +102,7 @@ class MachinePresenterTest {
 
             // plus one causing go back to the last step
             presenter.adjustAmount(id, 60_000L, true)
+            presenter.awaitCommands()
             assertTrue(view.running)
             assertTrue(view.timerIdAndState[id]?.isRunning ?: false)
             assertFalse(view.playingMusic)
@@ -105,6 +112,7 @@ class MachinePresenterTest {
             assertTrue(view.remaining in 59_800..60_100)
 
             presenter.resetTimer(id)
+            presenter.awaitCommands()
             assertFalse(view.running)
             assertFalse(view.timerIdAndState[id]?.isRunning ?: false)
             assertFalse(view.playingMusic)
@@ -114,6 +122,14 @@ class MachinePresenterTest {
         }
     }
 
+    /**
+     * Commands run on the timing thread later. [MachinePresenter.getTimerStateInfo] waits for
+     * them and delivers their results. A new timer is loaded on the main thread in between.
+     */
+    private fun MachinePresenter.awaitCommands() {
+        repeat(2) { getTimerStateInfo(0) }
+    }
+
     private class TestView : MachineContract.View {
         var running = false
         var timerIdAndState = mutableMapOf<Int, StreamState>()
@@ -133,6 +149,13 @@ class MachinePresenterTest {
             timerIdAndState[id] = StreamState.RESET
         }
 
+        override fun updateTimerNotification(
+            id: Int,
+            time: Long,
+            exactTime: Long,
+            realtime: Long
+        ) = Unit
+
         override fun cancelTimerNotification(id: Int) {
             timerIdAndState.remove(id)
         }
@@ -196,6 +219,10 @@ class MachinePresenterTest {
         override fun formatDuration(duration: Long): CharSequence = ""
         override fun formatTime(time: Long): CharSequence = ""
 
+        override fun prepareSpeech(timer: TimerEntity) = Unit
+
+        override fun prepareMusic(timerId: Int, uri: Uri?) = Unit
+
         override fun stopReading() {
             reading = false
         }
@@ -204,7 +231,7 @@ class MachinePresenterTest {
             beeping = true
         }
 
-        override fun playTone() = Unit
+        override fun playTone(delay: Long) = Unit
 
         override fun disableTone() {
             beeping = false
@@ -90,6 +90,12 @@ class EditViewModel @Inject constructor(
     private val _updatedEvent = MutableLiveData<Int>()
     val updatedEvent: LiveData<Int> = _updatedEvent
 
+    /**
+     * The timer written by [saveTimer].
+     */
+    var savedTimer: TimerEntity? = null
+        private set
+
     private val _timerInfoEvent = MutableLiveData<Event<TimerInfo>>()
     val timerInfoEvent: LiveData<Event<TimerInfo>> = _timerInfoEvent
 
@@ -156,33 +162,23 @@ class EditViewModel @Inject constructor(
         val newLoop: Int = loop.value ?: 0
         val more = more.value ?: TimerMoreEntity()
         return launch {
-            if (isNewTimer || id == TimerEntity.NEW_ID) {
-                addTimer(
-                    TimerEntity(
-                        id = TimerEntity.NEW_ID,
-                        name = newName,
-                        loop = newLoop,
-                        steps = newSteps,
-                        startStep = start,
-                        endStep = end,
-                        more = more,
-                        folderId = folderId
-                    )
-                )
+            val isNew = isNewTimer || id == TimerEntity.NEW_ID
+            val timer = TimerEntity(
+                id = if (isNew) TimerEntity.NEW_ID else id,
+                name = newName,
+                loop = newLoop,
+                steps = newSteps,
+                startStep = start,
+                endStep = end,
+                more = more,
+                folderId = folderId
+            )
+            savedTimer = timer
+            if (isNew) {
+                addTimer(timer)
                 _updatedEvent.value = UPDATE_CREATE
             } else {
-                saveTimer(
-                    TimerEntity(
-                        id = id,
-                        name = newName,
-                        loop = newLoop,
-                        steps = newSteps,
-                        startStep = start,
-                        endStep = end,
-                        more = more,
-                        folderId = folderId
-                    )
-                )
+                saveTimer(timer)
                 _updatedEvent.value = UPDATE_UPDATE
             }
         }
@@ -20,16 +20,13 @@ import xyz.aprildown.timer.presentation.BaseViewModel
 import xyz.aprildown.timer.presentation.R
 import xyz.aprildown.timer.presentation.StreamMachineIntentProvider
 import xyz.aprildown.timer.presentation.stream.MachineContract
+import xyz.aprildown.timer.presentation.stream.StepPlan
 import xyz.aprildown.timer.presentation.stream.StreamState
 import xyz.aprildown.timer.presentation.stream.TimerIndex
 import xyz.aprildown.timer.presentation.stream.TimerMachineListener
 import xyz.aprildown.timer.presentation.stream.getFirstIndex
 import xyz.aprildown.timer.presentation.stream.getLastIndex
-import xyz.aprildown.timer.presentation.stream.getNextIndexWithStep
-import xyz.aprildown.timer.presentation.stream.getPrevIndexWithStep
 import xyz.aprildown.timer.presentation.stream.getStep
-import xyz.aprildown.timer.presentation.stream.getTimeBeforeIndex
-import xyz.aprildown.timer.presentation.stream.getTotalTime
 import javax.inject.Inject
 
 @HiltViewModel
@@ -44,6 +41,7 @@ class OneViewModel @Inject constructor(
 
     private var timerId: Int = TimerEntity.NULL_ID
     private var theFirstIndex: TimerIndex = TimerIndex.Start
+    private var stepPlan: StepPlan? = null
 
     val timer = MutableLiveData<TimerEntity>()
 
@@ -170,17 +168,13 @@ class OneViewModel @Inject constructor(
         }
         val state = timerCurrentState.value ?: return
         if (state.isReset || state.isPaused) {
-            val timer = timer.value ?: return
+            val plan = stepPlan ?: return
             val (index, step) = when (offset) {
-                1 -> getNextIndexWithStep(
-                    timer.steps,
-                    timer.loop,
+                1 -> plan.next(
                     timerCurrentIndex.value ?: theFirstIndex,
-                    timer.getLastIndex()
+                    plan.timer.getLastIndex()
                 )
-                -1 -> getPrevIndexWithStep(
-                    timer.steps,
-                    timer.loop,
+                -1 -> plan.prev(
                     timerCurrentIndex.value ?: theFirstIndex,
                     theFirstIndex
                 )
@@ -267,8 +261,10 @@ class OneViewModel @Inject constructor(
         index: TimerIndex,
         time: Long
     ) {
+        val plan = StepPlan(timerItem)
+        stepPlan = plan
         timer.value = timerItem
-        timerTotalTime = timerItem.getTotalTime()
+        timerTotalTime = plan.totalTime
         theFirstIndex = timerItem.getFirstIndex()
 
         timerCurrentState.value = state
@@ -276,7 +272,7 @@ class OneViewModel @Inject constructor(
         timerCurrentIndex.value = index
 
         timerStepTime = timerItem.getStep(index)?.length ?: 0L
-        elapsedBaseTime = timerItem.getTimeBeforeIndex(index)
+        elapsedBaseTime = plan.timeBefore(index)
         elapsedCurrentTime.value = 0L
     }
 
@@ -300,7 +296,7 @@ class OneViewModel @Inject constructor(
         timerCurrentIndex.value = index
 
         timerStepTime = timer.value?.getStep(index)?.length ?: 0L
-        elapsedBaseTime = timer.value?.getTimeBeforeIndex(index, appTracker) ?: 0L
+        elapsedBaseTime = stepPlan?.timeBefore(index, appTracker) ?: 0L
         elapsedCurrentTime.value = 0L
     }
 
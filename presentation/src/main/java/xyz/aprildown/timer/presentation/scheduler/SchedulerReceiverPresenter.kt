@@ -1,33 +1,24 @@
 package xyz.aprildown.timer.presentation.scheduler
 
-import xyz.aprildown.timer.domain.entities.SchedulerRepeatMode
-import xyz.aprildown.timer.domain.entities.TimerEntity
-import xyz.aprildown.timer.domain.usecases.scheduler.GetScheduler
-import xyz.aprildown.timer.domain.usecases.scheduler.SetSchedulerEnable
-import xyz.aprildown.timer.domain.usecases.timer.FindTimerInfo
+import xyz.aprildown.timer.domain.entities.SchedulerEntity
+import xyz.aprildown.timer.domain.usecases.invoke
+import xyz.aprildown.timer.domain.usecases.scheduler.FireSchedulers
+import xyz.aprildown.timer.domain.usecases.scheduler.RescheduleSchedulers
 import javax.inject.Inject
 
 class SchedulerReceiverPresenter @Inject constructor(
-    private val findTimerInfo: FindTimerInfo,
-    private val getScheduler: GetScheduler,
-    private val setSchedulerEnable: SetSchedulerEnable
+    private val fireSchedulers: FireSchedulers,
+    private val rescheduleSchedulers: RescheduleSchedulers
 ) {
 
-    suspend fun isValidTimerId(timerId: Int): Boolean {
-        return findTimerInfo(timerId) != null
+    /**
+     * @return Fired schedulers whose timers exist.
+     */
+    suspend fun handleFiredSchedulers(schedulerIds: List<Int>): List<SchedulerEntity> {
+        return fireSchedulers(schedulerIds)
     }
 
-    suspend fun handleFiredScheduler(schedulerId: Int): Int {
-        val scheduler = getScheduler(schedulerId)
-        if (scheduler != null) {
-            setSchedulerEnable
-                .execute(
-                    SetSchedulerEnable.Params(
-                        scheduler.id,
-                        if (scheduler.repeatMode != SchedulerRepeatMode.ONCE) 1 else 0
-                    )
-                )
-        }
-        return scheduler?.timerId ?: TimerEntity.NULL_ID
+    suspend fun rescheduleAll() {
+        rescheduleSchedulers()
     }
 }
@@ -30,6 +30,9 @@ interface MachineContract {
     /**
      * Handles [Context] related actions
      * Updates Notifications
+     *
+     * Sounds (tones, music and speech), vibrations, the flashlight and the formatters are called
+     * on the timing thread. Everything else is called on the main thread.
      */
     interface View : TimerMachineListener {
         fun prepareForWork()
@@ -45,6 +48,13 @@ interface MachineContract {
         fun cancelForegroundNotif()
 
         fun createTimerNotification(id: Int, timer: TimerEntity)
+
+        /**
+         * Called before [TimerMachineListener.updated] of [id] with the same [time].
+         * [exactTime] is the unrounded time of the step at [realtime], an elapsedRealtime,
+         * so a chronometer can be based on the real deadline.
+         */
+        fun updateTimerNotification(id: Int, time: Long, exactTime: Long, realtime: Long)
         fun cancelTimerNotification(id: Int)
 
         fun stopForegroundState()
@@ -52,6 +62,12 @@ interface MachineContract {
         fun toForeground(id: Int = -1)
 
         fun playMusic(uri: Uri, loop: Boolean)
+
+        /**
+         * Get [uri] ready for a later [playMusic] of [timerId]. A null [uri] only drops what's
+         * ready for [timerId].
+         */
+        fun prepareMusic(timerId: Int, uri: Uri?)
         fun stopMusic()
 
         fun startVibrating(pattern: LongArray, repeat: Boolean)
@@ -72,10 +88,15 @@ interface MachineContract {
         fun formatDuration(duration: Long): CharSequence
         fun formatTime(time: Long): CharSequence
 
+        /**
+         * Get lines of [timer] ready before they're spoken.
+         */
+        fun prepareSpeech(timer: TimerEntity)
+
         fun stopReading()
 
         fun enableTone(tone: Int, count: Int, respectOtherSound: Boolean)
-        fun playTone()
+        fun playTone(delay: Long)
         fun disableTone()
 
         fun showBehaviourNotification(timer: TimerEntity, index: TimerIndex, duration: Int)
@@ -112,6 +133,14 @@ interface MachineContract {
          */
         fun getTimerStateInfo(id: Int): CurrentTimerInfo?
 
+        /**
+         * Resume timers that were running when the process died and drop the ones that can't
+         * be resumed. Call it once when the service starts, whatever started it.
+         *
+         * @param stopIfNone Stop if nothing is resumed, like when the system only restarted us.
+         */
+        fun restoreTimers(stopIfNone: Boolean)
+
         fun startTimer(timerId: Int, index: TimerIndex? = null)
         fun pauseTimer(timerId: Int)
         fun moveTimer(timerId: Int, index: TimerIndex)
@@ -0,0 +1,118 @@
+package xyz.aprildown.timer.presentation.stream
+
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.Looper
+import android.os.Process
+import android.os.SystemClock
+import xyz.aprildown.timer.presentation.stream.task.TickClock
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+
+/**
+ * The thread [TimerMachine]s run on, so a busy main thread doesn't delay ticks, step changes
+ * and beeps. The main thread only touches machines through [execute] and [call] and only
+ * renders their results posted with [toMain].
+ *
+ * Before [start] and after [quit], everything runs on the calling thread.
+ */
+internal class MachineLooper : TickClock {
+
+    @Volatile
+    private var thread: HandlerThread? = null
+
+    @Volatile
+    private var handler: Handler? = null
+
+    private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+    private val mainActions = ConcurrentLinkedQueue<Runnable>()
+    private val mainActionsRunner = Runnable { runMainActions() }
+
+    val isCurrent: Boolean get() = Thread.currentThread() === thread
+
+    fun start() {
+        if (handler != null) return
+        val newThread = HandlerThread("TimerMachine", Process.THREAD_PRIORITY_URGENT_AUDIO)
+        newThread.start()
+        thread = newThread
+        handler = Handler(newThread.looper)
+    }
+
+    fun quit() {
+        if (handler == null) return
+        handler = null
+        // Keep [thread] so its last actions still go to the main thread.
+        thread?.quitSafely()
+        runMainActions()
+    }
+
+    /**
+     * Run [action] on the timing thread without waiting. It runs right away if we're already
+     * on the timing thread, so commands can call each other.
+     */
+    fun execute(action: () -> Unit) {
+        val handler = handler
+        if (handler == null || isCurrent || !handler.post(action)) {
+            action()
+        }
+    }
+
+    /**
+     * Run [block] on the timing thread and wait for its result. Only use it when a result is
+     * needed because a stalled timing thread also stalls the caller. Results posted with
+     * [toMain] are still delivered later by the main thread's own queue, not inside this call,
+     * so callers like list bindings don't run listeners in the middle of their work.
+     */
+    fun <T> call(block: () -> T): T {
+        val handler = handler
+        if (handler == null || isCurrent) return block()
+        val task = FutureTask(Callable(block))
+        if (!handler.post(task)) return block()
+        return try {
+            task.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    /**
+     * Run [action] on the timing thread later.
+     */
+    fun post(action: () -> Unit) {
+        val handler = handler
+        if (handler == null || !handler.post(action)) {
+            action()
+        }
+    }
+
+    /**
+     * Run [action] on the main thread in the order of calls.
+     */
+    fun toMain(action: () -> Unit) {
+        if (!isCurrent) {
+            action()
+            return
+        }
+        mainActions += Runnable(action)
+        mainHandler.post(mainActionsRunner)
+    }
+
+    private fun runMainActions() {
+        while (true) {
+            val action = mainActions.poll() ?: break
+            action.run()
+        }
+    }
+
+    override fun now(): Long = SystemClock.elapsedRealtime()
+
+    override fun runAt(time: Long, action: Runnable, earliness: Long) {
+        handler?.postDelayed(action, (time - earliness - now()).coerceAtLeast(0L))
+    }
+
+    override fun cancel(action: Runnable) {
+        handler?.removeCallbacks(action)
+    }
+}
@@ -7,12 +7,13 @@ import androidx.collection.arrayMapOf
 import androidx.core.net.toUri
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import xyz.aprildown.timer.domain.di.MainDispatcher
 import xyz.aprildown.timer.domain.entities.BehaviourEntity
 import xyz.aprildown.timer.domain.entities.BehaviourType
 import xyz.aprildown.timer.domain.entities.FolderEntity
 import xyz.aprildown.timer.domain.entities.HalfAction
+import xyz.aprildown.timer.domain.entities.RunningTimerEntity
 import xyz.aprildown.timer.domain.entities.StepType
 import xyz.aprildown.timer.domain.entities.TimerEntity
 import xyz.aprildown.timer.domain.entities.TimerStampEntity
@@ -26,13 +27,16 @@ import xyz.aprildown.timer.domain.entities.toScreenAction
 import xyz.aprildown.timer.domain.entities.toVibrationAction
 import xyz.aprildown.timer.domain.entities.toVoiceAction
 import xyz.aprildown.timer.domain.repositories.PreferencesRepository
+import xyz.aprildown.timer.domain.repositories.RunningTimerRepository
 import xyz.aprildown.timer.domain.repositories.TaskerEventTrigger
+import xyz.aprildown.timer.domain.usecases.home.TipManager
 import xyz.aprildown.timer.domain.usecases.record.AddTimerStamp
 import xyz.aprildown.timer.domain.usecases.timer.GetTimer
 import xyz.aprildown.timer.domain.utils.AppTracker
 import xyz.aprildown.timer.domain.utils.Constants
 import xyz.aprildown.timer.domain.utils.fireAndForget
 import xyz.aprildown.timer.presentation.R
+import xyz.aprildown.timer.presentation.stream.task.SharedTickClock
 import javax.inject.Inject
 
 class MachinePresenter @Inject constructor(
@@ -42,20 +46,56 @@ class MachinePresenter @Inject constructor(
     private val addTimerStamp: AddTimerStamp,
     private val appTracker: AppTracker,
     private val taskerEventTrigger: TaskerEventTrigger,
+    private val runningTimerRepository: RunningTimerRepository,
+    private val tipManager: TipManager,
 ) : MachineContract.Presenter, TimerMachine.Listener {
 
     internal data class TimerMachinePair(val timer: TimerEntity, val machine: TimerMachine)
 
+    @Volatile
     override var view: MachineContract.View? = null
+
+    @Volatile
     override var isInTheForeground: Boolean = false
+
+    @Volatile
     override var currentNotifState: NotifState = NoNotif
 
+    /**
+     * Timers, behaviours and notification states live on [machineLooper]'s thread.
+     * Listeners and rendering live on the main thread.
+     */
+    private val machineLooper = MachineLooper()
+
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     internal val timers: ArrayMap<Int, TimerMachinePair> = arrayMapOf()
 
     private val listeners: ArrayMap<Int, MutableList<TimerMachineListener>> = arrayMapOf()
     private val allListeners: MutableList<TimerMachineListener> = mutableListOf()
 
+    /**
+     * Drives all running timers so they tick together.
+     */
+    private val tickClock = SharedTickClock(machineLooper)
+
+    /**
+     * @param time The whole second [TimerMachineListener.updated] reports.
+     * @param exactTime The unrounded time of the step at [realtime].
+     */
+    private class TimeUpdate(val time: Long, val exactTime: Long, val realtime: Long)
+
+    /**
+     * Times from the current tick batch. They're dispatched together after the batch.
+     */
+    private val pendingUpdates: ArrayMap<Int, TimeUpdate> = arrayMapOf()
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val prefDispatcher = Dispatchers.IO.limitedParallelism(1)
+
+    init {
+        tickClock.addBatchListener(::dispatchPendingUpdates)
+    }
+
     /**
      * Service starts
      */
@@ -67,8 +107,11 @@ class MachinePresenter @Inject constructor(
      * Service down, release all resources
      */
     override fun dropView() {
-        stopAll()
-        require(timers.isEmpty())
+        machineLooper.call {
+            stopAll()
+            require(timers.isEmpty())
+        }
+        machineLooper.quit()
 
         listeners.clear()
         allListeners.clear()
@@ -98,135 +141,227 @@ class MachinePresenter @Inject constructor(
     }
 
     override fun getTimerStateInfo(id: Int): MachineContract.CurrentTimerInfo? {
-        return timers[id]?.let { (timer, machine) ->
-            MachineContract.CurrentTimerInfo(
-                timerEntity = timer,
-                state = machine.currentTaskState,
-                index = machine.currentIndex,
-                time = machine.currentTask?.currentTime ?: 0L,
-            )
+        return machineLooper.call {
+            timers[id]?.let { (timer, machine) ->
+                MachineContract.CurrentTimerInfo(
+                    timerEntity = timer,
+                    state = machine.currentTaskState,
+                    index = machine.currentIndex,
+                    time = machine.currentTask?.currentTime ?: 0L,
+                )
+            }
         }
     }
 
     override fun startTimer(timerId: Int, index: TimerIndex?) {
-        fun TimerMachine.setAndStartWith(timer: TimerEntity) {
-            if (index != null && currentIndex != index && timer.isThisIndexValid(index)) {
-                toIndex(index)
-            }
-            start()
-        }
-
-        if (timers.containsKey(timerId)) {
+        machineLooper.start()
+        machineLooper.execute {
             // This timer has been loaded. Simply start it.
             // Possible situations are paused...
-            timers[timerId]?.let { (timer, machine) ->
-                machine.setAndStartWith(timer)
+            val loaded = timers[timerId]
+            if (loaded != null) {
+                loaded.machine.setAndStartWith(loaded.timer, index)
+            } else {
+                machineLooper.toMain { loadAndStartTimer(timerId, index) }
             }
-        } else {
-            fireAndForget(mainDispatcher) {
-                getTimer.execute(timerId)
-                    ?.takeIf { it.folderId != FolderEntity.FOLDER_TRASH }
-                    ?.let { timer ->
-                        val machine = TimerMachine(timer, this@MachinePresenter)
+        }
+    }
+
+    /**
+     * Loads [timerId] on the main thread and starts its new machine on the timing thread.
+     */
+    private fun loadAndStartTimer(timerId: Int, index: TimerIndex?) {
+        fireAndForget(mainDispatcher) {
+            getTimer.execute(timerId)
+                ?.takeIf { it.folderId != FolderEntity.FOLDER_TRASH }
+                ?.let { timer ->
+                    view?.prepareSpeech(timer)
+                    machineLooper.execute {
+                        // Started again or restored while it was loading.
+                        val loaded = timers[timer.id]
+                        if (loaded != null) {
+                            loaded.machine.setAndStartWith(loaded.timer, index)
+                            return@execute
+                        }
+                        val machine = TimerMachine(timer, this@MachinePresenter, tickClock)
                         // The only place to adding item to timers
                         timers[timer.id] = TimerMachinePair(timer, machine)
-                        machine.setAndStartWith(timer)
+                        machine.setAndStartWith(timer, index)
+                        setHasRunningTimers(true)
+                    }
+                }
+            // repeat(7) {
+            //     addTimerStamp.execute(
+            //         xyz.aprildown.timer.domain.TestData.getRandomDaysTimerStamp(
+            //             timerId = timerId,
+            //             from = System.currentTimeMillis() -
+            //                     java.util.concurrent.ThreadLocalRandom.current().nextLong(7)
+            //                     * 24 * 60 * 60 * 1000
+            //         ).copy(id = 0)
+            //     )
+            // }
+        }
+    }
+
+    private fun TimerMachine.setAndStartWith(timer: TimerEntity, index: TimerIndex?) {
+        if (index != null && currentIndex != index && timer.isThisIndexValid(index)) {
+            toIndex(index)
+        }
+        start()
+    }
+
+    override fun restoreTimers(stopIfNone: Boolean) {
+        machineLooper.start()
+        fireAndForget(prefDispatcher) {
+            // Read before timers of this process flag it because writes queue up here.
+            val hadRunningTimers = prefRepo.getBoolean(Constants.PREF_HAS_RUNNING_TIMERS, false)
+            val items = runningTimerRepository.getAll()
+            machineLooper.execute {
+                val now = tickClock.now()
+                var hasDropped = false
+                items.forEach { item ->
+                    val timerId = item.timer.id
+                    val index = item.index.toTimerIndex()
+                    val passed = now - item.realtime
+                    when {
+                        // Started again before we got here.
+                        timers.containsKey(timerId) -> Unit
+                        // The journal leaves out earlier boots if it knows the boot count.
+                        // Otherwise elapsedRealtime going back tells a reboot.
+                        passed < 0 || index == null || !item.timer.isThisIndexValid(index) -> {
+                            runningTimerRepository.remove(timerId)
+                            hasDropped = true
+                        }
+                        else -> {
+                            val machine = TimerMachine(item.timer, this@MachinePresenter, tickClock)
+                            timers[timerId] = TimerMachinePair(item.timer, machine)
+                            machine.restore(
+                                index = index,
+                                time = item.time,
+                                passed = passed,
+                                isRunning = item.isRunning,
+                                beginTime = item.beginTime,
+                            )
+                            if (!item.isRunning) {
+                                paused(timerId)
+                            }
+                        }
                     }
-                // repeat(7) {
-                //     addTimerStamp.execute(
-                //         xyz.aprildown.timer.domain.TestData.getRandomDaysTimerStamp(
-                //             timerId = timerId,
-                //             from = System.currentTimeMillis() -
-                //                     java.util.concurrent.ThreadLocalRandom.current().nextLong(7)
-                //                     * 24 * 60 * 60 * 1000
-                //         ).copy(id = 0)
-                //     )
-                // }
-                prefRepo.setBoolean(Constants.PREF_HAS_RUNNING_TIMERS, true)
+                }
+                // Running timers that left nothing to resume were missed too.
+                if (hasDropped || (hadRunningTimers && items.isEmpty())) {
+                    fireAndForget(mainDispatcher) {
+                        tipManager.setTip(TipManager.TIP_MISSED_TIMER)
+                    }
+                }
+                if (stopIfNone) {
+                    stopMachineServiceIfNotRunning()
+                } else if (timers.isEmpty()) {
+                    setHasRunningTimers(false)
+                }
             }
         }
     }
 
     override fun pauseTimer(timerId: Int) {
-        timers[timerId]?.machine?.pause()
+        machineLooper.execute {
+            timers[timerId]?.machine?.pause()
+        }
     }
 
     override fun moveTimer(timerId: Int, index: TimerIndex) {
-        timers[timerId]?.machine?.toIndex(index)
+        machineLooper.execute {
+            timers[timerId]?.machine?.toIndex(index)
+            journal(timerId)
+        }
     }
 
     override fun decreTimer(timerId: Int) {
-        timers[timerId]?.run {
-            val current = machine.currentIndex
-            if (current == timer.getFirstIndex()) {
-                resetTimer(timerId)
-            } else {
-                val (index, _) =
-                    getPrevIndexWithStep(timer.steps, timer.loop, machine.currentIndex)
-                moveTimer(timerId, index)
+        machineLooper.execute {
+            timers[timerId]?.run {
+                val current = machine.currentIndex
+                if (current == timer.getFirstIndex()) {
+                    resetTimer(timerId)
+                } else {
+                    val (index, _) = machine.plan.prev(machine.currentIndex)
+                    moveTimer(timerId, index)
+                }
             }
         }
     }
 
     override fun increTimer(timerId: Int) {
-        timers[timerId]?.run {
-            val current = machine.currentIndex
-            if (current == timer.getLastIndex()) {
-                resetTimer(timerId)
-            } else {
-                val (index, _) =
-                    getNextIndexWithStep(timer.steps, timer.loop, machine.currentIndex)
-                moveTimer(timerId, index)
+        machineLooper.execute {
+            timers[timerId]?.run {
+                val current = machine.currentIndex
+                if (current == timer.getLastIndex()) {
+                    resetTimer(timerId)
+                } else {
+                    val (index, _) = machine.plan.next(machine.currentIndex)
+                    moveTimer(timerId, index)
+                }
             }
         }
     }
 
     override fun resetTimer(timerId: Int) {
-        if (timers.containsKey(timerId)) {
-            timers[timerId]?.machine?.stop()
-            require(!timers.keys.contains(timerId))
+        machineLooper.execute {
+            if (timers.containsKey(timerId)) {
+                timers[timerId]?.machine?.stop()
+                require(!timers.keys.contains(timerId))
+            }
+            stopBehaviours()
+            view?.prepareMusic(timerId, null)
+            stopMachineServiceIfNotRunning()
         }
-        stopBehaviours()
-        stopMachineServiceIfNotRunning()
     }
 
     override fun adjustAmount(timerId: Int, amount: Long, goBackOnNotifier: Boolean) {
-        timers[timerId]?.let { (timer, machine) ->
-            if (goBackOnNotifier && amount > 0 &&
-                timer.getStep(machine.currentIndex)?.type == StepType.NOTIFIER
-            ) {
-                decreTimer(timerId)
-                if (machine.currentTaskState.isRunning) {
-                    machine.to1Minute()
+        machineLooper.execute {
+            timers[timerId]?.let { (timer, machine) ->
+                if (goBackOnNotifier && amount > 0 &&
+                    timer.getStep(machine.currentIndex)?.type == StepType.NOTIFIER
+                ) {
+                    decreTimer(timerId)
+                    if (machine.currentTaskState.isRunning) {
+                        machine.to1Minute()
+                    }
+                } else {
+                    machine.adjust(amount)
                 }
-            } else {
-                machine.adjust(amount)
+                journal(timerId)
             }
         }
     }
 
     override fun startAll() {
-        timers.values.forEach { (_, machine) ->
-            if (machine.currentTaskState.isPaused) {
-                machine.start()
+        machineLooper.execute {
+            timers.values.forEach { (_, machine) ->
+                if (machine.currentTaskState.isPaused) {
+                    machine.start()
+                }
             }
         }
     }
 
     override fun pauseAll(): List<Int> {
-        val pausedTimerIds = mutableListOf<Int>()
-        timers.values.forEach { (timer, machine) ->
-            if (machine.currentTaskState.isRunning) {
-                pausedTimerIds += timer.id
-                machine.pause()
+        return machineLooper.call {
+            val pausedTimerIds = mutableListOf<Int>()
+            timers.values.forEach { (timer, machine) ->
+                if (machine.currentTaskState.isRunning) {
+                    pausedTimerIds += timer.id
+                    machine.pause()
+                }
             }
+            pausedTimerIds
         }
-        return pausedTimerIds
     }
 
     override fun stopAll() {
-        timers.keys.map { it }.forEach {
-            resetTimer(it)
+        machineLooper.execute {
+            timers.keys.map { it }.forEach {
+                resetTimer(it)
+            }
         }
     }
 
@@ -235,33 +370,63 @@ class MachinePresenter @Inject constructor(
     }
 
     override fun scheduleEnd(timerId: Int) {
-        if (timers.containsKey(timerId)) {
-            timers[timerId]?.let { (timer, _) ->
-                if (timer.endStep != null) {
-                    moveTimer(timerId, TimerIndex.End)
-                } else {
-                    resetTimer(timerId)
+        machineLooper.execute {
+            if (timers.containsKey(timerId)) {
+                timers[timerId]?.let { (timer, _) ->
+                    if (timer.endStep != null) {
+                        moveTimer(timerId, TimerIndex.End)
+                    } else {
+                        resetTimer(timerId)
+                    }
                 }
             }
+            stopMachineServiceIfNotRunning()
         }
-        stopMachineServiceIfNotRunning()
+    }
+
+    /**
+     * Saves where [timerId] is so it can be resumed if the process dies.
+     * Times between calls follow from the deadline, so ticks aren't saved.
+     */
+    private fun journal(timerId: Int) {
+        val (timer, machine) = timers[timerId] ?: return
+        val task = machine.currentTask ?: return
+        runningTimerRepository.record(
+            RunningTimerEntity(
+                timer = timer,
+                index = machine.currentIndex.toPath(),
+                isRunning = task.taskState.isRunning,
+                time = task.currentTime,
+                realtime = tickClock.now(),
+                beginTime = machine.beginTime,
+            )
+        )
+    }
+
+    /**
+     * Runs [action] on the main thread for things that aren't timing sensitive.
+     */
+    private fun render(action: MachineContract.View.() -> Unit) {
+        machineLooper.toMain { view?.action() }
     }
 
     private fun stopBehaviours() {
         view?.run {
             stopMusic()
-            stopVibrating()
-            closeScreen()
             stopReading()
+            stopVibrating()
             disableTone()
-            dismissBehaviourNotification()
             toggleFlashlight(null)
         }
+        render {
+            closeScreen()
+            dismissBehaviourNotification()
+        }
     }
 
     private fun startBehaviours(id: Int, index: TimerIndex) {
         stopBehaviours()
-        timers[id]?.let { (timer, _) ->
+        timers[id]?.let { (timer, machine) ->
             timer.getStep(index)?.let { currentStep ->
                 val stepBehaviours = currentStep.behaviour
                 stepBehaviours.forEach { behavior ->
@@ -269,7 +434,7 @@ class MachinePresenter @Inject constructor(
                         // Handle screen first. This may help priority.
                         BehaviourType.SCREEN -> {
                             val action = behavior.toScreenAction()
-                            view?.showScreen(timer, currentStep.label, action.fullScreen)
+                            render { showScreen(timer, currentStep.label, action.fullScreen) }
                         }
                         BehaviourType.VIBRATION -> {
                             val action = behavior.toVibrationAction()
@@ -299,7 +464,7 @@ class MachinePresenter @Inject constructor(
                         }
                         BehaviourType.NOTIFICATION -> {
                             val action = behavior.toNotificationAction()
-                            view?.showBehaviourNotification(timer, index, action.duration)
+                            render { showBehaviourNotification(timer, index, action.duration) }
                         }
                         BehaviourType.FLASHLIGHT -> {
                             view?.toggleFlashlight(
@@ -323,25 +488,26 @@ class MachinePresenter @Inject constructor(
                     }
                     if (voiceMaybe != null) {
                         stepBehaviours.find { it.type == BehaviourType.MUSIC }.let { musicMaybe ->
-                            view?.beginReading(
-                                content = voiceMaybe.toVoiceAction()
-                                    .generateVoiceContent(
-                                        timer = timer,
-                                        currentStep = currentStep,
-                                        index = index,
-                                        timeFormatter = object : TimeFormatter {
-                                            override fun formatDuration(duration: Long): CharSequence {
-                                                return view?.formatDuration(duration) ?: ""
-                                            }
-
-                                            override fun formatTime(time: Long): CharSequence {
-                                                return view?.formatTime(time) ?: ""
-                                            }
+                            val content = voiceMaybe.toVoiceAction()
+                                .generateVoiceContent(
+                                    plan = machine.plan,
+                                    currentStep = currentStep,
+                                    index = index,
+                                    timeFormatter = object : TimeFormatter {
+                                        override fun formatDuration(duration: Long): CharSequence {
+                                            return view?.formatDuration(duration) ?: ""
+                                        }
+
+                                        override fun formatTime(time: Long): CharSequence {
+                                            return view?.formatTime(time) ?: ""
                                         }
-                                    ),
+                                    }
+                                )
+                            view?.beginReading(
+                                content = content,
                                 sayMore = false,
                                 afterDone = if (musicMaybe != null) {
-                                    { musicMaybe.playMusic() }
+                                    { machineLooper.post { musicMaybe.playMusic() } }
                                 } else {
                                     null
                                 }
@@ -353,6 +519,11 @@ class MachinePresenter @Inject constructor(
                     }
                 }
             }
+            // Prepare the music of the next step while this one runs.
+            val nextMusic = machine.plan.next(index).second?.behaviour
+                ?.find { it.type == BehaviourType.MUSIC }
+                ?.toMusicAction()
+            view?.prepareMusic(id, nextMusic?.uri?.takeIf { it.isNotBlank() }?.toUri())
         }
     }
 
@@ -372,16 +543,16 @@ class MachinePresenter @Inject constructor(
         when (currentNotifState) {
             is NoNotif -> {
                 isInTheForeground = true
-                view?.prepareForWork()
+                render { prepareForWork() }
                 if (thisShowsNotif) {
                     currentNotifState = SingleTimer
-                    view?.run {
+                    render {
                         createTimerNotification(id, timer)
                         toForeground(id)
                     }
                 } else {
                     currentNotifState = ForeNotif
-                    view?.run {
+                    render {
                         createForegroundNotif()
                         toForeground()
                     }
@@ -389,7 +560,7 @@ class MachinePresenter @Inject constructor(
             }
             is SingleTimer -> {
                 currentNotifState = ForeNotif
-                view?.run {
+                render {
                     createForegroundNotif()
                     toForeground()
                     if (thisShowsNotif) {
@@ -400,7 +571,7 @@ class MachinePresenter @Inject constructor(
             is ForeNotif -> {
                 currentNotifState = ForeNotif
                 if (thisShowsNotif) {
-                    view?.createTimerNotification(id, timer)
+                    render { createTimerNotification(id, timer) }
                 }
                 updateForeNotifIfPossible()
             }
@@ -429,7 +600,7 @@ class MachinePresenter @Inject constructor(
         fun updateForeNotifSelf() {
             currentNotifState = ForeNotif
             if (thisShowsNotif) {
-                view?.cancelTimerNotification(id)
+                render { cancelTimerNotification(id) }
             }
             shouldUpdateForeNotif = true
         }
@@ -444,7 +615,7 @@ class MachinePresenter @Inject constructor(
                 // require(!thisShowsNotif)
                 if (noShowCount == 1) {
                     currentNotifState = NoNotif
-                    view?.run {
+                    render {
                         cancelForegroundNotif()
                         stopForegroundState()
                     }
@@ -458,7 +629,7 @@ class MachinePresenter @Inject constructor(
                         // (1, 0)
                         // require(thisShowsNotif)
                         currentNotifState = NoNotif
-                        view?.run {
+                        render {
                             cancelTimerNotification(id)
                             stopForegroundState()
                         }
@@ -470,7 +641,7 @@ class MachinePresenter @Inject constructor(
                         } else {
                             currentNotifState = SingleTimer
                             val anotherTimer = findAnotherTimer()
-                            view?.run {
+                            render {
                                 toForeground(anotherTimer.id)
                                 cancelForegroundNotif()
                             }
@@ -486,7 +657,7 @@ class MachinePresenter @Inject constructor(
                 // require(thisShowsNotif)
                 currentNotifState = SingleTimer
                 val anotherTimer = findAnotherTimer()
-                view?.run {
+                render {
                     toForeground(anotherTimer.id)
                     cancelTimerNotification(id)
                     cancelForegroundNotif()
@@ -504,15 +675,19 @@ class MachinePresenter @Inject constructor(
     fun updateForeNotifIfPossible() {
         if (currentNotifState === ForeNotif) {
             val totalTimersCount = timers.size
-            view?.updateForegroundNotif(
-                totalTimersCount = totalTimersCount,
-                pausedTimersCount = timers.count { it.value.machine.currentTaskState.isPaused },
-                theOnlyTimerName = if (totalTimersCount == 1) {
-                    timers.valueAt(0).timer.name
-                } else {
-                    null
-                }
-            )
+            val pausedTimersCount = timers.count { it.value.machine.currentTaskState.isPaused }
+            val theOnlyTimerName = if (totalTimersCount == 1) {
+                timers.valueAt(0).timer.name
+            } else {
+                null
+            }
+            render {
+                updateForegroundNotif(
+                    totalTimersCount = totalTimersCount,
+                    pausedTimersCount = pausedTimersCount,
+                    theOnlyTimerName = theOnlyTimerName
+                )
+            }
         }
     }
 
@@ -520,52 +695,110 @@ class MachinePresenter @Inject constructor(
     fun stopMachineServiceIfNotRunning() {
         if (timers.isEmpty()) {
             isInTheForeground = false
-            view?.run {
+            render {
                 cleanUpWorkArea()
                 finish()
             }
-            runBlocking { prefRepo.setBoolean(Constants.PREF_HAS_RUNNING_TIMERS, false) }
+            setHasRunningTimers(false)
+        }
+    }
+
+    /**
+     * Written in the order of calls without blocking the timing thread.
+     */
+    private fun setHasRunningTimers(value: Boolean) {
+        fireAndForget(prefDispatcher) {
+            prefRepo.setBoolean(Constants.PREF_HAS_RUNNING_TIMERS, value)
+        }
+    }
+
+    /**
+     * Listeners are called on the main thread.
+     */
+    private fun dispatchUpdated(timerId: Int, update: TimeUpdate) {
+        view?.updateTimerNotification(
+            id = timerId,
+            time = update.time,
+            exactTime = update.exactTime,
+            realtime = update.realtime
+        )
+        listeners[timerId]?.forEach { it.updated(0, update.time) }
+        allListeners.forEach { it.updated(timerId, update.time) }
+    }
+
+    /**
+     * Also called before other events so listeners never receive outdated times.
+     */
+    private fun dispatchPendingUpdates() {
+        if (pendingUpdates.isEmpty()) return
+        val updates = ArrayMap(pendingUpdates)
+        pendingUpdates.clear()
+        machineLooper.toMain {
+            updates.forEach { (timerId, update) -> dispatchUpdated(timerId, update) }
         }
     }
 
     override fun begin(timerId: Int) {
+        dispatchPendingUpdates()
         timerBeginsAction(timerId)
 
         taskerEventTrigger.timerStart(timerId)
 
-        listeners[timerId]?.forEach { it.begin(0) }
-        allListeners.forEach { it.begin(timerId) }
+        machineLooper.toMain {
+            listeners[timerId]?.forEach { it.begin(0) }
+            allListeners.forEach { it.begin(timerId) }
+        }
     }
 
     override fun started(timerId: Int, index: TimerIndex) {
+        dispatchPendingUpdates()
+        journal(timerId)
         updateForeNotifIfPossible()
         startBehaviours(timerId, index)
 
-        listeners[timerId]?.forEach { it.started(0, index) }
-        allListeners.forEach { it.started(timerId, index) }
+        machineLooper.toMain {
+            listeners[timerId]?.forEach { it.started(0, index) }
+            allListeners.forEach { it.started(timerId, index) }
+        }
     }
 
     override fun paused(timerId: Int) {
+        dispatchPendingUpdates()
+        journal(timerId)
         updateForeNotifIfPossible()
         stopBehaviours()
 
-        listeners[timerId]?.forEach { it.paused(0) }
-        allListeners.forEach { it.paused(timerId) }
+        machineLooper.toMain {
+            listeners[timerId]?.forEach { it.paused(0) }
+            allListeners.forEach { it.paused(timerId) }
+        }
     }
 
     override fun updated(timerId: Int, time: Long) {
-        listeners[timerId]?.forEach { it.updated(0, time) }
-        allListeners.forEach { it.updated(timerId, time) }
+        val update = TimeUpdate(
+            time = time,
+            exactTime = timers[timerId]?.machine?.currentTask?.currentTime ?: time,
+            realtime = tickClock.now()
+        )
+        if (tickClock.isInBatch) {
+            pendingUpdates[timerId] = update
+        } else {
+            machineLooper.toMain { dispatchUpdated(timerId, update) }
+        }
     }
 
     override fun finished(timerId: Int) {
+        dispatchPendingUpdates()
         stopBehaviours()
 
-        listeners[timerId]?.forEach { it.finished(0) }
-        allListeners.forEach { it.finished(timerId) }
+        machineLooper.toMain {
+            listeners[timerId]?.forEach { it.finished(0) }
+            allListeners.forEach { it.finished(timerId) }
+        }
     }
 
     override fun end(timerId: Int, forced: Boolean) {
+        dispatchPendingUpdates()
         if (!timers.containsKey(timerId)) {
             appTracker.trackError(
                 IllegalStateException("Missing timer for end"),
@@ -576,6 +809,7 @@ class MachinePresenter @Inject constructor(
         val shouldUpdateForeNotif = timerEndsAction(timerId)
 
         val timer = timers.remove(timerId)
+        runningTimerRepository.remove(timerId)
         // Update foreNotif with updated timers count
         if (shouldUpdateForeNotif) {
             updateForeNotifIfPossible()
@@ -599,9 +833,11 @@ class MachinePresenter @Inject constructor(
 
         taskerEventTrigger.timerEnd(timerId)
 
-        // toList avoids ConcurrentModificationException.
-        listeners[timerId]?.toList()?.forEach { it.end(0, forced) }
-        allListeners.toList().forEach { it.end(timerId, forced) }
+        machineLooper.toMain {
+            // toList avoids ConcurrentModificationException.
+            listeners[timerId]?.toList()?.forEach { it.end(0, forced) }
+            allListeners.toList().forEach { it.end(timerId, forced) }
+        }
 
         val triggerId = timer?.timer?.more?.triggerTimerId
         if (triggerId != null && !forced && triggerId != TimerEntity.NULL_ID) {
@@ -611,20 +847,18 @@ class MachinePresenter @Inject constructor(
         }
     }
 
-    override fun beep() {
-        view?.playTone()
+    override fun beep(delay: Long) {
+        view?.playTone(delay)
     }
 
     override fun notifyHalf(halfOption: Int) {
-        view?.run {
-            when (halfOption) {
-                HalfAction.OPTION_VOICE ->
-                    beginReading(contentRes = R.string.half_content, sayMore = false)
-                HalfAction.OPTION_MUSIC ->
-                    playMusic(Uri.EMPTY, loop = false)
-                HalfAction.OPTION_VIBRATION ->
-                    startVibrating(VibrationAction.VibrationPattern.Normal().twicePattern, false)
-            }
+        when (halfOption) {
+            HalfAction.OPTION_VOICE ->
+                view?.beginReading(contentRes = R.string.half_content, sayMore = false)
+            HalfAction.OPTION_MUSIC ->
+                view?.playMusic(Uri.EMPTY, loop = false)
+            HalfAction.OPTION_VIBRATION ->
+                view?.startVibrating(VibrationAction.VibrationPattern.Normal().twicePattern, false)
         }
     }
 
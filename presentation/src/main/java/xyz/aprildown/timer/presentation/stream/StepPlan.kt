@@ -0,0 +1,225 @@
+package xyz.aprildown.timer.presentation.stream
+
+import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.domain.entities.TimerEntity
+import xyz.aprildown.timer.domain.utils.AppTracker
+
+/**
+ * One loop of [timer]'s steps with groups expanded into a flat array, so moving between steps
+ * and time queries are lookups instead of walks through the nested steps.
+ * Build it once per [TimerEntity] and keep it as long as the timer.
+ *
+ * Indices this plan doesn't know fall back to [getNextIndexWithStep] and friends.
+ */
+internal class StepPlan(val timer: TimerEntity) {
+
+    /**
+     * Positions of one loop. Each position is a step. Positions of a group repeat for every
+     * group loop.
+     */
+    val size: Int
+
+    private val stepIndices: IntArray
+    private val groupLoopIndices: IntArray
+    private val groupStepIndices: IntArray
+    private val steps: Array<StepEntity.Step>
+
+    /**
+     * The time from the start of a loop to each position.
+     */
+    private val offsets: LongArray
+
+    /**
+     * The first position and the whole time of each item in [TimerEntity.steps].
+     */
+    private val firstPositions: IntArray
+    private val itemTimes: LongArray
+
+    /**
+     * The time of one loop.
+     */
+    val loopTime: Long
+
+    /**
+     * The time of the whole timer, including the start and end step.
+     */
+    val totalTime: Long
+
+    private val startTime: Long = timer.startStep?.length ?: 0L
+
+    init {
+        val items = timer.steps
+        size = items.sumOf {
+            when (it) {
+                is StepEntity.Step -> 1
+                is StepEntity.Group -> it.steps.size * it.loop.coerceAtLeast(0)
+            }
+        }
+        stepIndices = IntArray(size)
+        groupLoopIndices = IntArray(size)
+        groupStepIndices = IntArray(size)
+        offsets = LongArray(size)
+        firstPositions = IntArray(items.size)
+        itemTimes = LongArray(items.size)
+
+        val planSteps = ArrayList<StepEntity.Step>(size)
+        var time = 0L
+        items.forEachIndexed { stepIndex, item ->
+            firstPositions[stepIndex] = planSteps.size
+            val itemStartTime = time
+            fun add(step: StepEntity.Step, groupLoopIndex: Int, groupStepIndex: Int) {
+                val position = planSteps.size
+                stepIndices[position] = stepIndex
+                groupLoopIndices[position] = groupLoopIndex
+                groupStepIndices[position] = groupStepIndex
+                offsets[position] = time
+                planSteps += step
+                time += step.length
+            }
+            when (item) {
+                is StepEntity.Step -> add(item, groupLoopIndex = -1, groupStepIndex = -1)
+                is StepEntity.Group -> {
+                    repeat(item.loop.coerceAtLeast(0)) { groupLoopIndex ->
+                        item.steps.forEachIndexed { groupStepIndex, groupStep ->
+                            add(groupStep as StepEntity.Step, groupLoopIndex, groupStepIndex)
+                        }
+                    }
+                }
+            }
+            itemTimes[stepIndex] = time - itemStartTime
+        }
+        steps = planSteps.toTypedArray()
+        loopTime = time
+        totalTime = loopTime * timer.loop + startTime + (timer.endStep?.length ?: 0L)
+    }
+
+    /**
+     * @return null if there is no more step
+     * @see getNextIndexWithStep
+     */
+    fun next(
+        index: TimerIndex,
+        defaultLast: TimerIndex = TimerIndex.End
+    ): Pair<TimerIndex, StepEntity.Step?> {
+        return when (index) {
+            is TimerIndex.Start -> if (size > 0) at(0, 0) else defaultLast to null
+            is TimerIndex.End -> defaultLast to null
+            else -> {
+                val position = positionOf(index)
+                    ?: return getNextIndexWithStep(timer.steps, timer.loop, index, defaultLast)
+                val loopIndex = timer.getTimerLoop(index)
+                when {
+                    position + 1 < size -> at(loopIndex, position + 1)
+                    loopIndex + 1 < timer.loop -> at(loopIndex + 1, 0)
+                    else -> defaultLast to null
+                }
+            }
+        }
+    }
+
+    /**
+     * @see getPrevIndexWithStep
+     */
+    fun prev(
+        index: TimerIndex,
+        defaultFirst: TimerIndex = TimerIndex.Start
+    ): Pair<TimerIndex, StepEntity.Step?> {
+        return when (index) {
+            is TimerIndex.Start -> defaultFirst to null
+            is TimerIndex.End -> {
+                if (size > 0) at(timer.loop - 1, size - 1) else defaultFirst to null
+            }
+            else -> {
+                val position = positionOf(index)
+                    ?: return getPrevIndexWithStep(timer.steps, timer.loop, index, defaultFirst)
+                val loopIndex = timer.getTimerLoop(index)
+                when {
+                    position > 0 -> at(loopIndex, position - 1)
+                    loopIndex > 0 -> at(loopIndex - 1, size - 1)
+                    else -> defaultFirst to null
+                }
+            }
+        }
+    }
+
+    /**
+     * @see getTimeBeforeIndex
+     */
+    fun timeBefore(index: TimerIndex, appTracker: AppTracker? = null): Long = when (index) {
+        is TimerIndex.Start -> 0L
+        is TimerIndex.End -> totalTime - (timer.endStep?.length ?: 0L)
+        else -> {
+            val position = positionOf(index)
+            if (position != null) {
+                startTime + loopTime * timer.getTimerLoop(index) + offsets[position]
+            } else {
+                timer.getTimeBeforeIndex(index, appTracker)
+            }
+        }
+    }
+
+    /**
+     * The whole time of the group of [index], including its loops.
+     * @return null if [index] isn't in a group.
+     */
+    fun groupTime(index: TimerIndex): Long? {
+        if (index !is TimerIndex.Group || positionOf(index) == null) return null
+        return itemTimes[index.stepIndex]
+    }
+
+    /**
+     * The time from the start of the group of [index] to [index].
+     * @return null if [index] isn't in a group.
+     */
+    fun groupTimeBefore(index: TimerIndex): Long? {
+        if (index !is TimerIndex.Group) return null
+        val position = positionOf(index) ?: return null
+        return offsets[position] - offsets[firstPositions[index.stepIndex]]
+    }
+
+    /**
+     * @return null if [index] doesn't point to a step of this plan.
+     */
+    private fun positionOf(index: TimerIndex): Int? {
+        val items = timer.steps
+        return when (index) {
+            is TimerIndex.Step -> {
+                if (index.loopIndex !in 0 until timer.loop) return null
+                val stepIndex = index.stepIndex
+                if (stepIndex !in items.indices || items[stepIndex] !is StepEntity.Step) return null
+                firstPositions[stepIndex]
+            }
+            is TimerIndex.Group -> {
+                if (index.loopIndex !in 0 until timer.loop) return null
+                val stepIndex = index.stepIndex
+                val group = items.getOrNull(stepIndex) as? StepEntity.Group ?: return null
+                val (groupLoopIndex, groupStepIndex) = index.groupStepIndex
+                if (groupLoopIndex !in 0 until group.loop ||
+                    groupStepIndex !in group.steps.indices
+                ) {
+                    return null
+                }
+                firstPositions[stepIndex] + groupLoopIndex * group.steps.size + groupStepIndex
+            }
+            else -> null
+        }
+    }
+
+    private fun at(loopIndex: Int, position: Int): Pair<TimerIndex, StepEntity.Step> {
+        val stepIndex = stepIndices[position]
+        val groupLoopIndex = groupLoopIndices[position]
+        val index = if (groupLoopIndex < 0) {
+            TimerIndex.Step(loopIndex = loopIndex, stepIndex = stepIndex)
+        } else {
+            TimerIndex.Group(
+                loopIndex = loopIndex,
+                stepIndex = stepIndex,
+                groupStepIndex = TimerIndex.Step(
+                    loopIndex = groupLoopIndex,
+                    stepIndex = groupStepIndices[position]
+                )
+            )
+        }
+        return index to steps[position]
+    }
+}
@@ -73,6 +73,36 @@ fun Intent.putTimerIndex(index: TimerIndex?): Intent = apply {
     }
 }
 
+/**
+ * A compact form for [xyz.aprildown.timer.domain.entities.RunningTimerEntity.index].
+ */
+fun TimerIndex.toPath(): List<Int> = when (this) {
+    is TimerIndex.Start -> emptyList()
+    is TimerIndex.Step -> listOf(loopIndex, stepIndex)
+    is TimerIndex.Group -> listOf(
+        loopIndex,
+        stepIndex,
+        groupStepIndex.loopIndex,
+        groupStepIndex.stepIndex
+    )
+    is TimerIndex.End -> listOf(-1)
+}
+
+/**
+ * @see toPath
+ */
+fun List<Int>.toTimerIndex(): TimerIndex? = when (size) {
+    0 -> TimerIndex.Start
+    1 -> if (this[0] == -1) TimerIndex.End else null
+    2 -> TimerIndex.Step(loopIndex = this[0], stepIndex = this[1])
+    4 -> TimerIndex.Group(
+        loopIndex = this[0],
+        stepIndex = this[1],
+        groupStepIndex = TimerIndex.Step(loopIndex = this[2], stepIndex = this[3])
+    )
+    else -> null
+}
+
 fun TimerIndex?.getNiceLoopString(max: Int = 1): String {
     return "%d/%d".format(this?.getLoop(max) ?: 0, max)
 }
@@ -6,14 +6,17 @@ import xyz.aprildown.timer.domain.entities.TimerEntity
 import xyz.aprildown.timer.domain.entities.toCountAction
 import xyz.aprildown.timer.domain.entities.toHalfAction
 import xyz.aprildown.timer.presentation.stream.task.CountDownTimerTask
+import xyz.aprildown.timer.presentation.stream.task.MainTickClock
 import xyz.aprildown.timer.presentation.stream.task.StopwatchTask
 import xyz.aprildown.timer.presentation.stream.task.Task
 import xyz.aprildown.timer.presentation.stream.task.TaskManager
+import xyz.aprildown.timer.presentation.stream.task.TickClock
 import xyz.aprildown.timer.presentation.stream.task.TickListener
 
 internal class TimerMachine(
     private val timer: TimerEntity,
-    private val listener: Listener
+    private val listener: Listener,
+    private val clock: TickClock = MainTickClock,
 ) : TaskManager() {
 
     interface Listener {
@@ -29,12 +32,16 @@ internal class TimerMachine(
         fun finished(timerId: Int)
         fun end(timerId: Int, forced: Boolean)
 
-        fun beep()
+        /**
+         * @param delay How long to wait before the beep lands on its second.
+         */
+        fun beep(delay: Long)
         fun notifyHalf(halfOption: Int)
         fun countRead(content: String)
     }
 
     private val timerId = timer.id
+    val plan = StepPlan(timer)
     private val theLastIndex: TimerIndex = timer.getLastIndex()
 
     var currentIndex: TimerIndex = timer.getFirstIndex()
@@ -58,6 +65,40 @@ internal class TimerMachine(
         currentTask?.adjust(60_000L, add = false)
     }
 
+    /**
+     * Continue from a snapshot of [index] at [time] saved [passed] milliseconds ago.
+     * Steps that ended meanwhile are skipped without their behaviours. A step that waits for
+     * the user keeps counting up, and a timer that should have ended ends right after the start.
+     */
+    fun restore(index: TimerIndex, time: Long, passed: Long, isRunning: Boolean, beginTime: Long) {
+        begin(beginTime)
+        var stepIndex = index
+        var stepTime = time
+        if (isRunning) {
+            var left = passed
+            while (true) {
+                if (timer.getStep(stepIndex)?.isHalting() == true) {
+                    stepTime += left
+                    break
+                }
+                if (left < stepTime || stepIndex == theLastIndex) {
+                    stepTime = (stepTime - left).coerceAtLeast(0L)
+                    break
+                }
+                left -= stepTime
+                val (nextIndex, nextStep) = plan.next(stepIndex)
+                val step = nextStep ?: timer.getStep(nextIndex) ?: break
+                stepIndex = nextIndex
+                stepTime = if (step.isHalting()) 0L else step.length
+            }
+        }
+        toIndex(stepIndex)
+        currentTask?.adjust(stepTime, add = false) ?: return
+        if (isRunning) {
+            start()
+        }
+    }
+
     // endregion Custom Actions
 
     override fun onManagerBegin() {
@@ -90,11 +131,7 @@ internal class TimerMachine(
 
     override fun provideFirstTask(): Task? {
         val firstIndex = timer.getFirstIndex()
-        val (_, nextStepAfterNext) = getNextIndexWithStep(
-            timer.steps,
-            timer.loop,
-            firstIndex
-        )
+        val (_, nextStepAfterNext) = plan.next(firstIndex)
         return timer.getStep(firstIndex)?.toTask(
             useTtsNextStep = nextStepAfterNext?.behaviour?.any { it.useTts() } == true
         )
@@ -102,17 +139,8 @@ internal class TimerMachine(
 
     override fun provideNextTask(): Task? {
         if (currentIndex == theLastIndex) return null
-        val (nextIndex, _) = getNextIndexWithStep(
-            timer.steps,
-            timer.loop,
-            currentIndex
-        )
-
-        val (_, nextStepAfterNext) = getNextIndexWithStep(
-            timer.steps,
-            timer.loop,
-            nextIndex
-        )
+        val (nextIndex, _) = plan.next(currentIndex)
+        val (_, nextStepAfterNext) = plan.next(nextIndex)
 
         currentIndex = nextIndex
         return timer.getStep(nextIndex)?.toTask(
@@ -120,10 +148,13 @@ internal class TimerMachine(
         )
     }
 
+    private fun StepEntity.Step.isHalting(): Boolean =
+        behaviour.any { it.type == BehaviourType.HALT }
+
     private fun StepEntity.Step.toTask(useTtsNextStep: Boolean = false): Task {
         val behaviour = behaviour
-        return if (behaviour.find { it.type == BehaviourType.HALT } != null) {
-            StopwatchTask(this@TimerMachine).apply {
+        return if (isHalting()) {
+            StopwatchTask(this@TimerMachine, clock).apply {
                 behaviour.forEach {
                     when (it.type) {
                         BehaviourType.BEEP -> {
@@ -136,7 +167,8 @@ internal class TimerMachine(
         } else {
             CountDownTimerTask(
                 this@TimerMachine,
-                length
+                length,
+                clock,
             ).apply {
                 behaviour.forEach { behaviour ->
                     when (behaviour.type) {
@@ -157,13 +189,13 @@ internal class TimerMachine(
                                 CountTickListener(
                                     times = action.times,
                                     count = if (action.beep) {
-                                        {
-                                            if (it.isNotBlank()) {
-                                                listener.beep()
+                                        { content, delay ->
+                                            if (content.isNotBlank()) {
+                                                listener.beep(delay)
                                             }
                                         }
                                     } else {
-                                        { listener.countRead(it) }
+                                        { content, _ -> listener.countRead(content) }
                                     },
                                 )
                             )
@@ -179,9 +211,9 @@ internal class TimerMachine(
         }
     }
 
-    private class BeepTickListener(private val beep: () -> Unit) : TickListener {
-        override fun onNewTime(newTime: Long) {
-            beep()
+    private class BeepTickListener(private val beep: (delay: Long) -> Unit) : TickListener {
+        override fun onNewTime(newTime: Long, delay: Long) {
+            beep(delay)
         }
     }
 
@@ -197,7 +229,7 @@ internal class TimerMachine(
 
         private var isNotified = false
 
-        override fun onNewTime(newTime: Long) {
+        override fun onNewTime(newTime: Long, delay: Long) {
             if (!isNotified && newTime < notifyTime) {
                 isNotified = true
                 half()
@@ -207,21 +239,21 @@ internal class TimerMachine(
 
     private class CountTickListener(
         private var times: Int,
-        private val count: (String) -> Unit,
+        private val count: (content: String, delay: Long) -> Unit,
     ) : TickListener {
 
         private val warmUpTime = times + 1
         private var isWarmedUp = false
 
-        override fun onNewTime(newTime: Long) {
+        override fun onNewTime(newTime: Long, delay: Long) {
             val remainingSeconds = newTime / 1000
             if (!isWarmedUp && remainingSeconds <= warmUpTime) {
                 isWarmedUp = true
-                count("")
+                count("", 0L)
             }
             if (remainingSeconds <= times && times > 0) {
                 times--
-                count(remainingSeconds.toInt().toString())
+                count(remainingSeconds.toInt().toString(), delay)
             }
         }
     }
@@ -230,7 +262,7 @@ internal class TimerMachine(
 
         private var isWarmedUp = false
 
-        override fun onNewTime(newTime: Long) {
+        override fun onNewTime(newTime: Long, delay: Long) {
             if (isWarmedUp) return
             val remainingSeconds = newTime / 1000
             if (remainingSeconds <= 20) {
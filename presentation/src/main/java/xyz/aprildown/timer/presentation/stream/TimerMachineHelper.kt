@@ -1,14 +1,14 @@
 package xyz.aprildown.timer.presentation.stream
 
-import android.text.SpannableString
-import android.text.SpannableStringBuilder
 import xyz.aprildown.timer.domain.entities.BehaviourEntity
 import xyz.aprildown.timer.domain.entities.BehaviourType
 import xyz.aprildown.timer.domain.entities.HalfAction
 import xyz.aprildown.timer.domain.entities.StepEntity
 import xyz.aprildown.timer.domain.entities.TimerEntity
 import xyz.aprildown.timer.domain.entities.VoiceAction
+import xyz.aprildown.timer.domain.entities.toCountAction
 import xyz.aprildown.timer.domain.entities.toHalfAction
+import xyz.aprildown.timer.domain.entities.toVoiceAction
 import xyz.aprildown.timer.domain.utils.AppTracker
 
 /**
@@ -488,409 +488,86 @@ internal interface TimeFormatter {
 }
 
 internal fun VoiceAction.generateVoiceContent(
-    timer: TimerEntity,
+    plan: StepPlan,
     currentStep: StepEntity.Step,
     index: TimerIndex,
     timeFormatter: TimeFormatter
 ): CharSequence {
-    if (content2.isNotBlank()) {
-        return generateVoiceContent(content2, timer, currentStep, index, timeFormatter)
+    val template = when {
+        content2.isNotBlank() -> VoiceTemplate.of(content2)
+        content.isNotBlank() -> VoiceTemplate.ofLegacy(content)
+        else -> return currentStep.label
     }
-
-    var original = content
-    if (original.isBlank()) {
-        return currentStep.label
-    }
-
-    fun replaceVariable(variable: String, getContent: () -> CharSequence) {
-        if (variable in original) {
-            original = original.replace(variable, getContent.invoke().toString())
-        }
-    }
-
-    fun replaceVariable(vararg variables: String, getContent: () -> String) {
-        variables.forEach { replaceVariable(it, getContent) }
-    }
-
-    replaceVariable(
-        variable = VoiceAction.REPLACER_LOOP,
-        getContent = {
-            when (index) {
-                is TimerIndex.Start -> 1
-                is TimerIndex.Step -> index.loopIndex + 1
-                is TimerIndex.Group -> index.groupStepIndex.loopIndex + 1
-                is TimerIndex.End -> timer.loop
-            }.toString()
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_TOTAL_LOOP,
-        getContent = {
-            if (index !is TimerIndex.Group) {
-                timer.loop
-            } else {
-                (timer.steps.getOrNull(index.stepIndex) as? StepEntity.Group)?.loop
-            }.toString()
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_STEP_NAME,
-        getContent = {
-            currentStep.label
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_STEP_DURATION,
-        getContent = {
-            timeFormatter.formatDuration(currentStep.length)
-        }
-    )
-
-    // Long variable first.
-
-    // region Elapsed
-
-    replaceVariable(
-        variable = VoiceAction.REPLACER_ELAPSED_TIME_PERCENT_GROUP,
-        getContent = {
-            if (index !is TimerIndex.Group) {
-                produceElapsedTimePercent(timer, index)
-            } else {
-                produceElapsedTimePercent(
-                    timer = createGroupTimerEntity(timer, index) ?: return@replaceVariable "",
-                    index = index.groupStepIndex
-                )
-            }
-        }
-    )
-
-    replaceVariable(
-        variable = VoiceAction.REPLACER_ELAPSED_TIME_GROUP,
-        getContent = {
-            timeFormatter.formatDuration(
-                if (index !is TimerIndex.Group) {
-                    timer.getTimeBeforeIndex(index)
-                } else {
-                    createGroupTimerEntity(timer, index)
-                        ?.getTimeBeforeIndex(index.groupStepIndex) ?: 0
-                }
-            )
-        }
-    )
-
-    replaceVariable(
-        VoiceAction.REPLACER_ELAPSED_TIME_PERCENT,
-        VoiceAction.REPLACER_ELAPSED_TIME_PERCENT_OLD,
-        getContent = {
-            produceElapsedTimePercent(timer, index)
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_ELAPSED_TIME,
-        getContent = {
-            timeFormatter.formatDuration(timer.getTimeBeforeIndex(index))
-        }
-    )
-
-    // endregion Elapsed
-
-    // region Remaining
-
-    replaceVariable(
-        variable = VoiceAction.REPLACER_REMAINING_TIME_PERCENT_GROUP,
-        getContent = {
-            if (index !is TimerIndex.Group) {
-                produceRemainingTimePercent(timer, index)
-            } else {
-                produceRemainingTimePercent(
-                    timer = createGroupTimerEntity(timer, index) ?: return@replaceVariable "",
-                    index = index.groupStepIndex
-                )
-            }
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_REMAINING_TIME_GROUP,
-        getContent = {
-            if (index !is TimerIndex.Group) {
-                timeFormatter.formatDuration(timer.getTotalTime() - timer.getTimeBeforeIndex(index))
-            } else {
-                val groupTimer = createGroupTimerEntity(timer, index) ?: return@replaceVariable ""
-                timeFormatter.formatDuration(
-                    groupTimer.getTotalTime() - groupTimer.getTimeBeforeIndex(index.groupStepIndex)
-                )
-            }
-        }
-    )
-
-    replaceVariable(
-        VoiceAction.REPLACER_REMAINING_TIME_PERCENT,
-        VoiceAction.REPLACER_REMAINING_TIME_PERCENT_OLD,
-        getContent = {
-            produceRemainingTimePercent(timer, index)
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_REMAINING_TIME,
-        getContent = {
-            timeFormatter.formatDuration(timer.getTotalTime() - timer.getTimeBeforeIndex(index))
-        }
-    )
-
-    // endregion Remaining
-
-    replaceVariable(
-        variable = VoiceAction.REPLACER_STEP_END_TIME,
-        getContent = {
-            timeFormatter.formatTime(System.currentTimeMillis() + currentStep.length)
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_TIMER_END_TIME,
-        getContent = {
-            timeFormatter.formatTime(
-                System.currentTimeMillis() +
-                    timer.getTotalTime() -
-                    timer.getTimeBeforeIndex(index)
-            )
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_GROUP_END_TIME,
-        getContent = {
-            if (index !is TimerIndex.Group) {
-                timeFormatter.formatTime(
-                    System.currentTimeMillis() +
-                        timer.getTotalTime() -
-                        timer.getTimeBeforeIndex(index)
-                )
-            } else {
-                val groupTimer = createGroupTimerEntity(timer, index) ?: return@replaceVariable ""
-                timeFormatter.formatTime(
-                    System.currentTimeMillis() +
-                        groupTimer.getTotalTime() -
-                        groupTimer.getTimeBeforeIndex(index.groupStepIndex)
-                )
-            }
-        }
-    )
-    replaceVariable(
-        variable = VoiceAction.REPLACER_CURRENT_TIME,
-        getContent = {
-            timeFormatter.formatTime(System.currentTimeMillis())
-        }
-    )
-
-    return original
-}
-
-private fun createGroupTimerEntity(timer: TimerEntity, index: TimerIndex.Group): TimerEntity? {
-    val groupStep = (timer.steps.getOrNull(index.stepIndex) as? StepEntity.Group)
-        ?: return null
-    return timer.copy(
-        name = groupStep.name,
-        loop = groupStep.loop,
-        steps = groupStep.steps,
-        startStep = null,
-        endStep = null
-    )
-}
-
-private fun produceElapsedTimePercent(timer: TimerEntity, index: TimerIndex): String {
-    val timeBeforeIndex = timer.getTimeBeforeIndex(index)
-    val totalTime = timer.getTotalTime()
-    return ((timeBeforeIndex.toFloat() / totalTime.toFloat()) * 100).toInt().toString() + "%"
-}
-
-private fun produceRemainingTimePercent(timer: TimerEntity, index: TimerIndex): String {
-    val total = timer.getTotalTime().toFloat()
-    val timeBeforeIndex = timer.getTimeBeforeIndex(index)
-    return (((total - timeBeforeIndex.toFloat()) / total) * 100).toInt().toString() + "%"
+    return template.generate(plan, currentStep, index, timeFormatter)
 }
 
-private fun generateVoiceContent(
-    content: String,
-    timer: TimerEntity,
-    step: StepEntity.Step,
-    index: TimerIndex,
-    timeFormatter: TimeFormatter
-): CharSequence {
-    val builder = SpannableStringBuilder()
-
-    fun variableToValue(variable: String): CharSequence? = when (variable) {
-        VoiceAction.VOICE_VARIABLE_STEP_NAME,
-        VoiceAction.VARIABLE_STEP_NAME -> step.label
-        VoiceAction.VOICE_VARIABLE_STEP_NAME_NEXT -> {
-            if (index is TimerIndex.End) {
-                null
-            } else {
-                timer.getStep(
-                    getNextIndexWithStep(
-                        steps = timer.steps,
-                        totalLoop = timer.loop,
-                        currentIndex = index,
-                    ).first
-                )
-            }?.label.toString()
-        }
-        VoiceAction.VOICE_VARIABLE_STEP_DURATION,
-        VoiceAction.VARIABLE_STEP_DURATION -> timeFormatter.formatDuration(step.length)
-        VoiceAction.VOICE_VARIABLE_STEP_END_TIME,
-        VoiceAction.VARIABLE_STEP_END_TIME ->
-            timeFormatter.formatTime(System.currentTimeMillis() + step.length)
-
-        VoiceAction.VOICE_VARIABLE_TIMER_NAME,
-        VoiceAction.VARIABLE_TIMER_NAME -> timer.name
-        VoiceAction.VOICE_VARIABLE_TIMER_LOOP,
-        VoiceAction.VARIABLE_TIMER_LOOP -> when (index) {
-            is TimerIndex.Start -> 1
-            is TimerIndex.Step -> index.loopIndex + 1
-            is TimerIndex.Group -> index.loopIndex + 1
-            is TimerIndex.End -> timer.loop
-        }.toString()
-        VoiceAction.VOICE_VARIABLE_TIMER_TOTAL_LOOP,
-        VoiceAction.VARIABLE_TIMER_TOTAL_LOOP -> timer.loop.toString()
-        VoiceAction.VOICE_VARIABLE_TIMER_DURATION,
-        VoiceAction.VARIABLE_TIMER_DURATION ->
-            timeFormatter.formatDuration(timer.getTotalTime())
-        VoiceAction.VOICE_VARIABLE_TIMER_ELAPSED,
-        VoiceAction.VARIABLE_TIMER_ELAPSED ->
-            timeFormatter.formatDuration(timer.getTimeBeforeIndex(index))
-        VoiceAction.VOICE_VARIABLE_TIMER_ELAPSED_PERCENT,
-        VoiceAction.VARIABLE_TIMER_ELAPSED_PERCENT -> produceElapsedTimePercent(timer, index)
-        VoiceAction.VOICE_VARIABLE_TIMER_REMAINING,
-        VoiceAction.VARIABLE_TIMER_REMAINING ->
-            timeFormatter.formatDuration(timer.getTotalTime() - timer.getTimeBeforeIndex(index))
-        VoiceAction.VOICE_VARIABLE_TIMER_REMAINING_PERCENT,
-        VoiceAction.VARIABLE_TIMER_REMAINING_PERCENT ->
-            produceRemainingTimePercent(timer, index)
-        VoiceAction.VOICE_VARIABLE_TIMER_END_TIME,
-        VoiceAction.VARIABLE_TIMER_END_TIME -> timeFormatter.formatTime(
-            System.currentTimeMillis() +
-                timer.getTotalTime() -
-                timer.getTimeBeforeIndex(index)
-        )
-
-        VoiceAction.VOICE_VARIABLE_GROUP_NAME,
-        VoiceAction.VARIABLE_GROUP_NAME -> if (index is TimerIndex.Group) {
-            (timer.steps.getOrNull(index.stepIndex) as? StepEntity.Group)?.name.toString()
-        } else {
-            timer.name
-        }
-        VoiceAction.VOICE_VARIABLE_GROUP_LOOP,
-        VoiceAction.VARIABLE_GROUP_LOOP -> when (index) {
-            is TimerIndex.Start -> 1
-            is TimerIndex.Step -> index.loopIndex + 1
-            is TimerIndex.Group -> index.groupStepIndex.loopIndex + 1
-            is TimerIndex.End -> timer.loop
-        }.toString()
-        VoiceAction.VOICE_VARIABLE_GROUP_TOTAL_LOOP,
-        VoiceAction.VARIABLE_GROUP_TOTAL_LOOP -> if (index is TimerIndex.Group) {
-            (timer.steps.getOrNull(index.stepIndex) as? StepEntity.Group)?.loop.toString()
-        } else {
-            timer.loop.toString()
-        }
-        VoiceAction.VOICE_VARIABLE_GROUP_DURATION,
-        VoiceAction.VARIABLE_GROUP_DURATION -> timeFormatter.formatDuration(
-            if (index is TimerIndex.Group) {
-                createGroupTimerEntity(timer, index) ?: timer
-            } else {
-                timer
-            }.getTotalTime()
-        )
-        VoiceAction.VOICE_VARIABLE_GROUP_ELAPSED,
-        VoiceAction.VARIABLE_GROUP_ELAPSED -> timeFormatter.formatDuration(
-            if (index !is TimerIndex.Group) {
-                timer.getTimeBeforeIndex(index)
-            } else {
-                createGroupTimerEntity(timer, index)
-                    ?.getTimeBeforeIndex(index.groupStepIndex) ?: 0
-            }
-        )
-        VoiceAction.VOICE_VARIABLE_GROUP_ELAPSED_PERCENT,
-        VoiceAction.VARIABLE_GROUP_ELAPSED_PERCENT -> if (index !is TimerIndex.Group) {
-            produceElapsedTimePercent(timer, index)
-        } else {
-            produceElapsedTimePercent(
-                timer = createGroupTimerEntity(timer, index) ?: timer,
-                index = index.groupStepIndex
-            )
-        }
-        VoiceAction.VOICE_VARIABLE_GROUP_REMAINING,
-        VoiceAction.VARIABLE_GROUP_REMAINING -> if (index !is TimerIndex.Group) {
-            timeFormatter.formatDuration(timer.getTotalTime() - timer.getTimeBeforeIndex(index))
-        } else {
-            val groupTimer = createGroupTimerEntity(timer, index) ?: timer
-            timeFormatter.formatDuration(
-                groupTimer.getTotalTime() - groupTimer.getTimeBeforeIndex(index.groupStepIndex)
-            )
-        }
-        VoiceAction.VOICE_VARIABLE_GROUP_REMAINING_PERCENT,
-        VoiceAction.VARIABLE_GROUP_REMAINING_PERCENT -> if (index !is TimerIndex.Group) {
-            produceRemainingTimePercent(timer, index)
-        } else {
-            produceRemainingTimePercent(
-                timer = createGroupTimerEntity(timer, index) ?: timer,
-                index = index.groupStepIndex
-            )
-        }
-        VoiceAction.VOICE_VARIABLE_GROUP_END_TIME,
-        VoiceAction.VARIABLE_GROUP_END_TIME -> if (index !is TimerIndex.Group) {
-            timeFormatter.formatTime(
-                System.currentTimeMillis() +
-                    timer.getTotalTime() -
-                    timer.getTimeBeforeIndex(index)
-            )
-        } else {
-            val groupTimer = createGroupTimerEntity(timer, index) ?: timer
-            timeFormatter.formatTime(
-                System.currentTimeMillis() +
-                    groupTimer.getTotalTime() -
-                    groupTimer.getTimeBeforeIndex(index.groupStepIndex)
-            )
-        }
-
-        VoiceAction.VOICE_VARIABLE_OTHER_CLOCK_TIME,
-        VoiceAction.VARIABLE_CLOCK_TIME -> timeFormatter.formatTime(System.currentTimeMillis())
-
-        else -> null
+/**
+ * Lines a run of this timer may speak, so they can be synthesized before it starts.
+ * Lines reading the clock are left out because they change every run.
+ *
+ * @param halfContent What [HalfAction.OPTION_VOICE] says.
+ */
+fun TimerEntity.collectVoiceLines(
+    durationFormatter: (Long) -> CharSequence,
+    halfContent: String,
+): Set<String> {
+    val plan = StepPlan(this)
+    val timeFormatter = object : TimeFormatter {
+        override fun formatDuration(duration: Long): CharSequence = durationFormatter(duration)
+        override fun formatTime(time: Long): CharSequence = ""
+    }
+    val lines = LinkedHashSet<String>()
+    fun add(line: CharSequence) {
+        if (line.isNotBlank()) lines += line.toString()
     }
 
-    var currentVariable = ""
-    var isCollectingVariable = false
-
-    for (char in content) {
-        when {
-            char == "}".single() && isCollectingVariable -> {
-                currentVariable += char
-                builder.append(variableToValue(currentVariable) ?: currentVariable)
-                isCollectingVariable = false
-                currentVariable = ""
-            }
-            char == "{".single() -> {
-                if (currentVariable.isNotBlank()) {
-                    builder.append(currentVariable)
+    var index: TimerIndex = TimerIndex.Start
+    while (lines.size < MAX_VOICE_LINES) {
+        getStep(index)?.let { step ->
+            step.behaviour.forEach { behaviour ->
+                when (behaviour.type) {
+                    BehaviourType.VOICE -> {
+                        val action = behaviour.toVoiceAction()
+                        val template = when {
+                            action.content2.isNotBlank() -> VoiceTemplate.of(action.content2)
+                            action.content.isNotBlank() -> VoiceTemplate.ofLegacy(action.content)
+                            else -> null
+                        }
+                        when {
+                            template == null -> add(step.label)
+                            !template.readsClock ->
+                                add(template.generate(plan, step, index, timeFormatter))
+                        }
+                    }
+                    BehaviourType.COUNT -> {
+                        val action = behaviour.toCountAction()
+                        if (!action.beep) {
+                            val times = minOf(action.times.toLong(), step.length / 1_000L)
+                            for (count in times downTo 0) {
+                                add(count.toString())
+                            }
+                        }
+                    }
+                    BehaviourType.HALF -> {
+                        if (behaviour.toHalfAction().option == HalfAction.OPTION_VOICE) {
+                            add(halfContent)
+                        }
+                    }
+                    else -> Unit
                 }
-
-                isCollectingVariable = true
-                currentVariable = ""
-                currentVariable += char
-            }
-            isCollectingVariable -> {
-                currentVariable += char
-            }
-            else -> {
-                builder.append(char)
             }
         }
+        if (index == TimerIndex.End) break
+        index = plan.next(index).first
     }
-    if (currentVariable.isNotBlank()) {
-        builder.append(currentVariable)
-    }
-
-    return SpannableString(builder)
+    return lines
 }
 
+/**
+ * A loop variable makes a new line every loop. Long timers only get their first lines ready.
+ */
+private const val MAX_VOICE_LINES = 256
+
 fun BehaviourEntity.useTts(): Boolean {
     when (type) {
         BehaviourType.VOICE,
@@ -0,0 +1,372 @@
+package xyz.aprildown.timer.presentation.stream
+
+import android.text.SpannableString
+import android.text.SpannableStringBuilder
+import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.domain.entities.VoiceAction
+
+/**
+ * A voice content split into text and variables. It's parsed once per content and
+ * every step only walks the tokens, so reading a step doesn't scan the content again.
+ */
+internal class VoiceTemplate private constructor(
+    val tokens: List<Token>,
+    private val isLegacy: Boolean,
+) {
+    sealed class Token {
+        data class Text(val text: String) : Token()
+        data class Value(val variable: Variable) : Token()
+    }
+
+    enum class Variable {
+        StepName, StepNameNext, StepDuration, StepEndTime,
+        TimerName, TimerLoop, TimerTotalLoop, TimerDuration,
+        TimerElapsed, TimerElapsedPercent, TimerRemaining, TimerRemainingPercent, TimerEndTime,
+        GroupName, GroupLoop, GroupTotalLoop, GroupDuration,
+        GroupElapsed, GroupElapsedPercent, GroupRemaining, GroupRemainingPercent, GroupEndTime,
+        ClockTime,
+    }
+
+    /**
+     * Whether the content reads the clock, which makes it different every time.
+     */
+    val readsClock: Boolean = tokens.any {
+        it is Token.Value && it.variable in CLOCK_VARIABLES
+    }
+
+    fun generate(
+        plan: StepPlan,
+        step: StepEntity.Step,
+        index: TimerIndex,
+        timeFormatter: TimeFormatter
+    ): CharSequence {
+        (tokens.singleOrNull() as? Token.Text)?.let { return it.text }
+        val values = Values(plan, step, index, timeFormatter, isLegacy)
+        // The legacy content is plain text, while variables may carry TtsSpans.
+        return if (isLegacy) {
+            buildString { appendTo(this, values) }
+        } else {
+            SpannableString(SpannableStringBuilder().also { appendTo(it, values) })
+        }
+    }
+
+    private fun appendTo(builder: Appendable, values: Values) {
+        tokens.forEach { token ->
+            when (token) {
+                is Token.Text -> builder.append(token.text)
+                is Token.Value -> builder.append(values[token.variable])
+            }
+        }
+    }
+
+    private class Values(
+        private val plan: StepPlan,
+        private val step: StepEntity.Step,
+        private val index: TimerIndex,
+        private val timeFormatter: TimeFormatter,
+        private val isLegacy: Boolean,
+    ) {
+        private val timer = plan.timer
+        private val now = System.currentTimeMillis()
+
+        private var timerProgressCache: Progress? = null
+        private val timerProgress: Progress
+            get() = timerProgressCache
+                ?: plan.timerProgress(index).also { timerProgressCache = it }
+
+        private var isGroupProgressLoaded = false
+        private var groupProgressCache: Progress? = null
+
+        /**
+         * The legacy content says nothing for a missing group.
+         */
+        private val groupProgress: Progress?
+            get() {
+                if (!isGroupProgressLoaded) {
+                    groupProgressCache = plan.groupProgress(index)
+                        ?: if (isLegacy) null else timerProgress
+                    isGroupProgressLoaded = true
+                }
+                return groupProgressCache
+            }
+
+        private val group: StepEntity.Group?
+            get() = (index as? TimerIndex.Group)?.let {
+                timer.steps.getOrNull(it.stepIndex) as? StepEntity.Group
+            }
+
+        operator fun get(variable: Variable): CharSequence = when (variable) {
+            Variable.StepName -> step.label
+            Variable.StepNameNext -> {
+                val next =
+                    if (index is TimerIndex.End) null else timer.getStep(plan.next(index).first)
+                next?.label.toString()
+            }
+            Variable.StepDuration -> timeFormatter.formatDuration(step.length)
+            Variable.StepEndTime -> timeFormatter.formatTime(now + step.length)
+
+            Variable.TimerName -> timer.name
+            Variable.TimerLoop -> when (index) {
+                is TimerIndex.Start -> 1
+                is TimerIndex.Step -> index.loopIndex + 1
+                is TimerIndex.Group -> index.loopIndex + 1
+                is TimerIndex.End -> timer.loop
+            }.toString()
+            Variable.TimerTotalLoop -> timer.loop.toString()
+            Variable.TimerDuration -> timeFormatter.formatDuration(plan.totalTime)
+            Variable.TimerElapsed -> timeFormatter.formatDuration(timerProgress.elapsed)
+            Variable.TimerElapsedPercent -> timerProgress.elapsedPercent()
+            Variable.TimerRemaining -> timeFormatter.formatDuration(timerProgress.remaining)
+            Variable.TimerRemainingPercent -> timerProgress.remainingPercent()
+            Variable.TimerEndTime -> timeFormatter.formatTime(now + timerProgress.remaining)
+
+            Variable.GroupName -> if (index is TimerIndex.Group) {
+                group?.name.toString()
+            } else {
+                timer.name
+            }
+            Variable.GroupLoop -> when (index) {
+                is TimerIndex.Start -> 1
+                is TimerIndex.Step -> index.loopIndex + 1
+                is TimerIndex.Group -> index.groupStepIndex.loopIndex + 1
+                is TimerIndex.End -> timer.loop
+            }.toString()
+            Variable.GroupTotalLoop -> if (index is TimerIndex.Group) {
+                group?.loop.toString()
+            } else {
+                timer.loop.toString()
+            }
+            Variable.GroupDuration ->
+                groupProgress?.let { timeFormatter.formatDuration(it.total) } ?: ""
+            Variable.GroupElapsed -> timeFormatter.formatDuration(groupProgress?.elapsed ?: 0L)
+            Variable.GroupElapsedPercent -> groupProgress?.elapsedPercent() ?: ""
+            Variable.GroupRemaining ->
+                groupProgress?.let { timeFormatter.formatDuration(it.remaining) } ?: ""
+            Variable.GroupRemainingPercent -> groupProgress?.remainingPercent() ?: ""
+            Variable.GroupEndTime ->
+                groupProgress?.let { timeFormatter.formatTime(now + it.remaining) } ?: ""
+
+            Variable.ClockTime -> timeFormatter.formatTime(now)
+        }
+    }
+
+    /**
+     * Keeps the latest templates. Contents rarely change, so a small one is enough.
+     */
+    private class Cache(private val parse: (String) -> VoiceTemplate) {
+        private val templates =
+            object : LinkedHashMap<String, VoiceTemplate>(CACHE_SIZE, 0.75f, true) {
+                override fun removeEldestEntry(
+                    eldest: MutableMap.MutableEntry<String, VoiceTemplate>?
+                ): Boolean = size > CACHE_SIZE
+            }
+
+        @Synchronized
+        operator fun get(content: String): VoiceTemplate =
+            templates.getOrPut(content) { parse(content) }
+    }
+
+    companion object {
+        private const val CACHE_SIZE = 32
+
+        private val CLOCK_VARIABLES = setOf(
+            Variable.StepEndTime,
+            Variable.TimerEndTime,
+            Variable.GroupEndTime,
+            Variable.ClockTime,
+        )
+
+        private val VARIABLES: Map<String, Variable> = mapOf(
+            VoiceAction.VARIABLE_STEP_NAME to Variable.StepName,
+            VoiceAction.VOICE_VARIABLE_STEP_NAME to Variable.StepName,
+            VoiceAction.VOICE_VARIABLE_STEP_NAME_NEXT to Variable.StepNameNext,
+            VoiceAction.VARIABLE_STEP_DURATION to Variable.StepDuration,
+            VoiceAction.VOICE_VARIABLE_STEP_DURATION to Variable.StepDuration,
+            VoiceAction.VARIABLE_STEP_END_TIME to Variable.StepEndTime,
+            VoiceAction.VOICE_VARIABLE_STEP_END_TIME to Variable.StepEndTime,
+
+            VoiceAction.VARIABLE_TIMER_NAME to Variable.TimerName,
+            VoiceAction.VOICE_VARIABLE_TIMER_NAME to Variable.TimerName,
+            VoiceAction.VARIABLE_TIMER_LOOP to Variable.TimerLoop,
+            VoiceAction.VOICE_VARIABLE_TIMER_LOOP to Variable.TimerLoop,
+            VoiceAction.VARIABLE_TIMER_TOTAL_LOOP to Variable.TimerTotalLoop,
+            VoiceAction.VOICE_VARIABLE_TIMER_TOTAL_LOOP to Variable.TimerTotalLoop,
+            VoiceAction.VARIABLE_TIMER_DURATION to Variable.TimerDuration,
+            VoiceAction.VOICE_VARIABLE_TIMER_DURATION to Variable.TimerDuration,
+            VoiceAction.VARIABLE_TIMER_ELAPSED to Variable.TimerElapsed,
+            VoiceAction.VOICE_VARIABLE_TIMER_ELAPSED to Variable.TimerElapsed,
+            VoiceAction.VARIABLE_TIMER_ELAPSED_PERCENT to Variable.TimerElapsedPercent,
+            VoiceAction.VOICE_VARIABLE_TIMER_ELAPSED_PERCENT to Variable.TimerElapsedPercent,
+            VoiceAction.VARIABLE_TIMER_REMAINING to Variable.TimerRemaining,
+            VoiceAction.VOICE_VARIABLE_TIMER_REMAINING to Variable.TimerRemaining,
+            VoiceAction.VARIABLE_TIMER_REMAINING_PERCENT to Variable.TimerRemainingPercent,
+            VoiceAction.VOICE_VARIABLE_TIMER_REMAINING_PERCENT to Variable.TimerRemainingPercent,
+            VoiceAction.VARIABLE_TIMER_END_TIME to Variable.TimerEndTime,
+            VoiceAction.VOICE_VARIABLE_TIMER_END_TIME to Variable.TimerEndTime,
+
+            VoiceAction.VARIABLE_GROUP_NAME to Variable.GroupName,
+            VoiceAction.VOICE_VARIABLE_GROUP_NAME to Variable.GroupName,
+            VoiceAction.VARIABLE_GROUP_LOOP to Variable.GroupLoop,
+            VoiceAction.VOICE_VARIABLE_GROUP_LOOP to Variable.GroupLoop,
+            VoiceAction.VARIABLE_GROUP_TOTAL_LOOP to Variable.GroupTotalLoop,
+            VoiceAction.VOICE_VARIABLE_GROUP_TOTAL_LOOP to Variable.GroupTotalLoop,
+            VoiceAction.VARIABLE_GROUP_DURATION to Variable.GroupDuration,
+            VoiceAction.VOICE_VARIABLE_GROUP_DURATION to Variable.GroupDuration,
+            VoiceAction.VARIABLE_GROUP_ELAPSED to Variable.GroupElapsed,
+            VoiceAction.VOICE_VARIABLE_GROUP_ELAPSED to Variable.GroupElapsed,
+            VoiceAction.VARIABLE_GROUP_ELAPSED_PERCENT to Variable.GroupElapsedPercent,
+            VoiceAction.VOICE_VARIABLE_GROUP_ELAPSED_PERCENT to Variable.GroupElapsedPercent,
+            VoiceAction.VARIABLE_GROUP_REMAINING to Variable.GroupRemaining,
+            VoiceAction.VOICE_VARIABLE_GROUP_REMAINING to Variable.GroupRemaining,
+            VoiceAction.VARIABLE_GROUP_REMAINING_PERCENT to Variable.GroupRemainingPercent,
+            VoiceAction.VOICE_VARIABLE_GROUP_REMAINING_PERCENT to Variable.GroupRemainingPercent,
+            VoiceAction.VARIABLE_GROUP_END_TIME to Variable.GroupEndTime,
+            VoiceAction.VOICE_VARIABLE_GROUP_END_TIME to Variable.GroupEndTime,
+
+            VoiceAction.VARIABLE_CLOCK_TIME to Variable.ClockTime,
+            VoiceAction.VOICE_VARIABLE_OTHER_CLOCK_TIME to Variable.ClockTime,
+        )
+
+        /**
+         * Sorted from long to short so "$elapsed%_group" isn't read as "$elapsed".
+         */
+        private val LEGACY_VARIABLES: List<Pair<String, Variable>> = listOf(
+            VoiceAction.REPLACER_LOOP to Variable.GroupLoop,
+            VoiceAction.REPLACER_TOTAL_LOOP to Variable.GroupTotalLoop,
+            VoiceAction.REPLACER_STEP_NAME to Variable.StepName,
+            VoiceAction.REPLACER_STEP_DURATION to Variable.StepDuration,
+            VoiceAction.REPLACER_ELAPSED_TIME to Variable.TimerElapsed,
+            VoiceAction.REPLACER_ELAPSED_TIME_GROUP to Variable.GroupElapsed,
+            VoiceAction.REPLACER_ELAPSED_TIME_PERCENT_OLD to Variable.TimerElapsedPercent,
+            VoiceAction.REPLACER_ELAPSED_TIME_PERCENT to Variable.TimerElapsedPercent,
+            VoiceAction.REPLACER_ELAPSED_TIME_PERCENT_GROUP to Variable.GroupElapsedPercent,
+            VoiceAction.REPLACER_REMAINING_TIME to Variable.TimerRemaining,
+            VoiceAction.REPLACER_REMAINING_TIME_GROUP to Variable.GroupRemaining,
+            VoiceAction.REPLACER_REMAINING_TIME_PERCENT_OLD to Variable.TimerRemainingPercent,
+            VoiceAction.REPLACER_REMAINING_TIME_PERCENT to Variable.TimerRemainingPercent,
+            VoiceAction.REPLACER_REMAINING_TIME_PERCENT_GROUP to Variable.GroupRemainingPercent,
+            VoiceAction.REPLACER_CURRENT_TIME to Variable.ClockTime,
+            VoiceAction.REPLACER_STEP_END_TIME to Variable.StepEndTime,
+            VoiceAction.REPLACER_TIMER_END_TIME to Variable.TimerEndTime,
+            VoiceAction.REPLACER_GROUP_END_TIME to Variable.GroupEndTime,
+        ).sortedByDescending { it.first.length }
+
+        private val cache = Cache(::parse)
+        private val legacyCache = Cache(::parseLegacy)
+
+        /**
+         * @param content [VoiceAction.content2] with variables like "{SName}".
+         */
+        fun of(content: String): VoiceTemplate = cache[content]
+
+        /**
+         * @param content [VoiceAction.content] with variables like "$step_name".
+         */
+        fun ofLegacy(content: String): VoiceTemplate = legacyCache[content]
+
+        /**
+         * Unknown variables and an unclosed "{" are read as they are.
+         */
+        fun parse(content: String): VoiceTemplate {
+            val tokens = Tokens()
+            var variableStart = -1
+            content.forEachIndexed { i, char ->
+                when {
+                    char == '}' && variableStart >= 0 -> {
+                        tokens.add(content.substring(variableStart, i + 1), VARIABLES)
+                        variableStart = -1
+                    }
+                    char == '{' -> {
+                        if (variableStart >= 0) {
+                            tokens.text.append(content, variableStart, i)
+                        }
+                        variableStart = i
+                    }
+                    variableStart < 0 -> tokens.text.append(char)
+                }
+            }
+            if (variableStart >= 0) {
+                tokens.text.append(content, variableStart, content.length)
+            }
+            return VoiceTemplate(tokens.finish(), isLegacy = false)
+        }
+
+        fun parseLegacy(content: String): VoiceTemplate {
+            val tokens = Tokens()
+            var i = 0
+            while (i < content.length) {
+                val match = if (content[i] == '$') {
+                    LEGACY_VARIABLES.find { content.startsWith(it.first, i) }
+                } else {
+                    null
+                }
+                if (match == null) {
+                    tokens.text.append(content[i])
+                    ++i
+                } else {
+                    tokens.add(match.second)
+                    i += match.first.length
+                }
+            }
+            return VoiceTemplate(tokens.finish(), isLegacy = true)
+        }
+    }
+
+    private class Tokens {
+        private val tokens = mutableListOf<Token>()
+        val text = StringBuilder()
+
+        fun add(name: String, variables: Map<String, Variable>) {
+            val variable = variables[name]
+            if (variable == null) {
+                text.append(name)
+            } else {
+                add(variable)
+            }
+        }
+
+        fun add(variable: Variable) {
+            flushText()
+            tokens += Token.Value(variable)
+        }
+
+        fun finish(): List<Token> {
+            flushText()
+            return tokens
+        }
+
+        private fun flushText() {
+            if (text.isNotEmpty()) {
+                tokens += Token.Text(text.toString())
+                text.clear()
+            }
+        }
+    }
+}
+
+/**
+ * Time spent before a step and the total time of the timer or group that contains the step.
+ */
+private class Progress(val elapsed: Long, val total: Long) {
+    val remaining: Long get() = total - elapsed
+
+    fun elapsedPercent(): String = percent(elapsed)
+
+    fun remainingPercent(): String = percent(remaining)
+
+    private fun percent(time: Long): String =
+        ((time.toFloat() / total.toFloat()) * 100).toInt().toString() + "%"
+}
+
+private fun StepPlan.timerProgress(index: TimerIndex): Progress =
+    Progress(elapsed = timeBefore(index), total = totalTime)
+
+/**
+ * Falls back to [timerProgress] if [index] isn't in a group.
+ * @return null if [index] points to a missing group.
+ */
+private fun StepPlan.groupProgress(index: TimerIndex): Progress? {
+    if (index !is TimerIndex.Group) return timerProgress(index)
+    val total = groupTime(index) ?: return null
+    return Progress(elapsed = groupTimeBefore(index) ?: 0L, total = total)
+}
@@ -1,18 +1,30 @@
 package xyz.aprildown.timer.presentation.stream.task
 
-import android.os.CountDownTimer
-import com.github.deweyreed.tools.helper.HandlerHelper
 import xyz.aprildown.timer.presentation.stream.StreamState
 
-internal class CountDownTimerTask(master: TaskMaster, countDownTime: Long) : Task(master) {
+internal class CountDownTimerTask(
+    master: TaskMaster,
+    countDownTime: Long,
+    clock: TickClock = MainTickClock,
+) : Task(master) {
 
-    // We place tickListeners before timer because MyTimer will onTick in the init
     private val tickListeners = mutableListOf<TickListener>()
 
-    private var timer = MyTimer(countDownTime)
-    private var millisLeft = countDownTime
+    private val ticker = TaskTicker(
+        clock = clock,
+        countDown = true,
+        initialTime = countDownTime,
+        onTick = ::onTick,
+        onFinish = ::onFinish,
+        tickEarliness = ::tickEarliness,
+    )
+
+    init {
+        // Posted so listeners added right after the construction get the initial time.
+        ticker.notifyTime()
+    }
 
-    override val currentTime: Long get() = millisLeft
+    override val currentTime: Long get() = ticker.time
 
     fun addTickListener(listener: TickListener) {
         tickListeners.add(listener)
@@ -20,26 +32,23 @@ internal class CountDownTimerTask(master: TaskMaster, countDownTime: Long) : Tas
 
     override fun start() {
         super.start()
-        timer.start()
+        ticker.start()
     }
 
     override fun pause() {
         super.pause()
-        timer.cancel()
-        timer = MyTimer(millisLeft)
+        ticker.pause()
     }
 
     override fun forceStop() {
         super.forceStop()
-        timer.cancel()
+        ticker.stop()
     }
 
     override fun adjust(amount: Long, add: Boolean) {
-        val newTime = if (add) millisLeft + amount else amount
-        timer.cancel()
-        timer = MyTimer(newTime)
-        if (taskState.isRunning) {
-            timer.start()
+        ticker.set(if (add) ticker.time + amount else amount)
+        if (!taskState.isRunning) {
+            ticker.notifyTime()
         }
     }
 
@@ -49,32 +58,18 @@ internal class CountDownTimerTask(master: TaskMaster, countDownTime: Long) : Tas
     }
 
     private fun onTick(millisUntilFinished: Long) {
-        millisLeft = millisUntilFinished
         master.onTick(this, millisUntilFinished)
-        tickListeners.forEach { it.onNewTime(millisUntilFinished) }
+        val delay = (ticker.time - millisUntilFinished).coerceAtLeast(0L)
+        tickListeners.forEach { it.onNewTime(millisUntilFinished, delay) }
     }
 
-    private inner class MyTimer(countDownTime: Long) : CountDownTimer(countDownTime, 1_000L) {
-
-        private var remainingTime = countDownTime
-
-        init {
-            HandlerHelper.runOnUiThread {
-                this@CountDownTimerTask.onTick(remainingTime)
-            }
-        }
-
-        override fun onFinish() {
-            HandlerHelper.runOnUiThread {
-                this@CountDownTimerTask.onFinish()
-            }
-        }
-
-        override fun onTick(millisUntilFinished: Long) {
-            HandlerHelper.runOnUiThread {
-                this@CountDownTimerTask.onTick(remainingTime)
-                remainingTime -= 1_000L
-            }
+    /**
+     * Sounds should be on time while the UI can share a wakeup with other timers.
+     */
+    private fun tickEarliness(): Long =
+        if (tickListeners.isEmpty()) {
+            TaskTicker.UI_TICK_EARLINESS
+        } else {
+            TaskTicker.SOUND_TICK_EARLINESS
         }
-    }
 }
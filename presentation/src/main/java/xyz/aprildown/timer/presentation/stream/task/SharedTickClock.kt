@@ -0,0 +1,83 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+/**
+ * Runs the ticks of all tasks from a single wakeup of [source]. Each wakeup also runs every
+ * action that is allowed to run early, so running timers only wake [source] about once a second.
+ * Ticks driving sounds wake [source] early by themselves, so sounds can be scheduled ahead.
+ */
+internal class SharedTickClock(private val source: TickClock) : TickClock {
+
+    private class Entry(val time: Long, val earliest: Long, val action: Runnable) {
+        /**
+         * UI ticks wait for a wakeup to share instead of waking [source] earlier.
+         */
+        val wakeup: Long
+            get() = if (time - earliest <= TaskTicker.SOUND_TICK_EARLINESS) earliest else time
+    }
+
+    private val entries = mutableListOf<Entry>()
+    private val batchListeners = mutableListOf<() -> Unit>()
+
+    /**
+     * The time of the wakeup posted to [source], [Long.MAX_VALUE] if there isn't one.
+     */
+    private var wakeupTime = Long.MAX_VALUE
+    private val wakeupAction = Runnable { wakeUp() }
+
+    /**
+     * True while running actions of a wakeup.
+     */
+    var isInBatch: Boolean = false
+        private set
+
+    override fun now(): Long = source.now()
+
+    override fun runAt(time: Long, action: Runnable, earliness: Long) {
+        entries += Entry(time, time - earliness.coerceAtLeast(0L), action)
+        if (!isInBatch) {
+            scheduleWakeup()
+        }
+    }
+
+    override fun cancel(action: Runnable) {
+        entries.removeAll { it.action === action }
+        if (!isInBatch) {
+            scheduleWakeup()
+        }
+    }
+
+    /**
+     * [listener] is called after all actions of a wakeup have run.
+     */
+    fun addBatchListener(listener: () -> Unit) {
+        batchListeners += listener
+    }
+
+    private fun scheduleWakeup() {
+        val time = entries.minOfOrNull { it.wakeup } ?: Long.MAX_VALUE
+        if (time == wakeupTime) return
+        source.cancel(wakeupAction)
+        wakeupTime = time
+        if (time != Long.MAX_VALUE) {
+            source.runAt(time, wakeupAction)
+        }
+    }
+
+    private fun wakeUp() {
+        wakeupTime = Long.MAX_VALUE
+        isInBatch = true
+        try {
+            // Actions may add due actions, like the first tick of the next step.
+            while (true) {
+                val now = source.now()
+                val entry = entries.filter { it.earliest <= now }.minByOrNull { it.time } ?: break
+                entries.remove(entry)
+                entry.action.run()
+            }
+            batchListeners.forEach { it() }
+        } finally {
+            isInBatch = false
+        }
+        scheduleWakeup()
+    }
+}
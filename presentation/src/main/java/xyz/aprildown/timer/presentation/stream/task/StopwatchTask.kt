@@ -1,78 +1,67 @@
 package xyz.aprildown.timer.presentation.stream.task
 
-import android.os.Handler
-import android.os.Looper
-import android.os.SystemClock
-
 /**
  * You must call [TaskManager.interfere] to move on.
  */
-internal class StopwatchTask(master: TaskMaster) : Task(master) {
+internal class StopwatchTask(
+    master: TaskMaster,
+    clock: TickClock = MainTickClock,
+) : Task(master) {
 
     private val tickListeners = mutableListOf<TickListener>()
 
-    private val handler = Handler(Looper.getMainLooper())
-    private var currentStartTime = 0L
-    private var baseElapsedTime = 0L
-    private var currentElapsedTime = 0L
+    private val ticker = TaskTicker(
+        clock = clock,
+        countDown = false,
+        initialTime = 0L,
+        onTick = ::onTick,
+        tickEarliness = ::tickEarliness,
+    )
 
-    override val currentTime: Long get() = currentElapsedTime + baseElapsedTime
+    override val currentTime: Long get() = ticker.time
 
     override fun start() {
         super.start()
-        currentStartTime = SystemClock.elapsedRealtime()
-        currentElapsedTime = 0
-        handler.post(TickRunnable())
+        ticker.start()
     }
 
     override fun pause() {
         super.pause()
-        handler.removeCallbacksAndMessages(null)
-        baseElapsedTime += currentElapsedTime
-        currentElapsedTime = 0
+        ticker.pause()
     }
 
     override fun forceStop() {
         super.forceStop()
-        handler.removeCallbacksAndMessages(null)
+        ticker.stop()
     }
 
     override fun adjust(amount: Long, add: Boolean) {
-        handler.removeCallbacksAndMessages(null)
-        baseElapsedTime += if (add) currentElapsedTime + amount else amount
-        currentElapsedTime = 0
-        if (taskState.isRunning) {
-            start()
-        } else {
+        ticker.set(if (add) ticker.time + amount else amount)
+        if (!taskState.isRunning) {
             master.onTick(this, currentTime)
         }
     }
 
     /**
-     * newElapsedTime pattern: 26, 1026, 2026, 3026...
-     * So the result is 0, 1, 2, 3
+     * Ticks land on whole seconds: 0, 1000, 2000, 3000...
      */
-    private fun onTick(newElapsedTime: Long) {
-        currentElapsedTime = newElapsedTime
-        val time = currentTime
-        master.onTick(this, time)
-        tickListeners.forEach { it.onNewTime(time) }
+    private fun onTick(elapsedTime: Long) {
+        master.onTick(this, elapsedTime)
+        val delay = (elapsedTime - ticker.time).coerceAtLeast(0L)
+        tickListeners.forEach { it.onNewTime(elapsedTime, delay) }
     }
 
     fun addTickListener(listener: TickListener) {
         tickListeners.add(listener)
     }
 
-    private inner class TickRunnable : Runnable {
-        override fun run() {
-            val tickStartTime = SystemClock.elapsedRealtime()
-
-            val newElapsedTime = tickStartTime - currentStartTime
-            onTick(newElapsedTime)
-
-            val tickEndTime = SystemClock.elapsedRealtime()
-            val consume = tickEndTime - tickStartTime
-            handler.postDelayed(this, 1_000L - (consume % 1_000L))
+    /**
+     * Only beeps need exact ticks.
+     */
+    private fun tickEarliness(): Long =
+        if (tickListeners.isEmpty()) {
+            TaskTicker.UI_TICK_EARLINESS
+        } else {
+            TaskTicker.SOUND_TICK_EARLINESS
         }
-    }
 }
@@ -28,12 +28,18 @@ internal abstract class TaskManager : TaskMaster {
     open fun onManagerNoMore() {}
     open fun onManagerStopped() {}
 
+    /**
+     * Begin without starting a task, as if it began at [time]. [start] calls this if needed.
+     */
+    fun begin(time: Long = System.currentTimeMillis()) {
+        if (beginTime != 0L) return
+        beginTime = time
+        onManagerBegin()
+    }
+
     fun start() {
         val current = currentTask
-        if (beginTime == 0L) {
-            beginTime = System.currentTimeMillis()
-            onManagerBegin()
-        }
+        begin()
         if (current != null) {
             if (!current.taskState.isRunning) {
                 current.start()
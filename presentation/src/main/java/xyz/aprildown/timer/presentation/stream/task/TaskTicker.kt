@@ -0,0 +1,157 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Derives a [Task]'s time from a [TickClock] deadline instead of counting ticks,
+ * so the time doesn't drift however late ticks arrive or how often the task pauses.
+ * Ticks after the first one land on whole seconds of the task time.
+ *
+ * @param countDown True to count [time] down and finish at 0. False to count up forever.
+ * @param tickEarliness How early a tick may arrive. Ticks that drive sounds come a little early
+ * to schedule them while ticks that only update the UI can share a wakeup with other tasks.
+ */
+internal class TaskTicker(
+    private val clock: TickClock,
+    private val countDown: Boolean,
+    initialTime: Long,
+    private val onTick: (Long) -> Unit,
+    private val onFinish: () -> Unit = {},
+    private val tickEarliness: () -> Long = { 0L },
+) {
+
+    /**
+     * The task time at [anchor] if running, or the current task time if not.
+     */
+    private var baseTime: Long = initialTime
+    private var anchor: Long = 0L
+
+    /**
+     * The task time of the next tick.
+     */
+    private var nextTickTime: Long = initialTime
+    private var nextTickEarliness: Long = 0L
+
+    var isRunning: Boolean = false
+        private set
+
+    /**
+     * Changes whenever the ticker starts or stops to detect changes made in [onTick].
+     */
+    private var generation = 0
+
+    val time: Long
+        get() {
+            if (!isRunning) return baseTime
+            val passed = clock.now() - anchor
+            return if (countDown) baseTime - passed else baseTime + passed
+        }
+
+    private val tickAction = Runnable { tick() }
+    private val notifyAction = Runnable { onTick(time) }
+
+    fun start() {
+        if (isRunning) return
+        clock.cancel(notifyAction)
+        anchor = clock.now()
+        isRunning = true
+        ++generation
+        nextTickTime = baseTime
+        // Show the time right away.
+        nextTickEarliness = 0L
+        scheduleTick()
+    }
+
+    fun pause() {
+        if (!isRunning) return
+        baseTime = time
+        isRunning = false
+        ++generation
+        clock.cancel(tickAction)
+    }
+
+    fun stop() {
+        pause()
+        clock.cancel(notifyAction)
+    }
+
+    /**
+     * Jump to [newTime] and keep the running state.
+     */
+    fun set(newTime: Long) {
+        val wasRunning = isRunning
+        stop()
+        baseTime = newTime
+        if (wasRunning) {
+            start()
+        }
+    }
+
+    /**
+     * Post a tick with the current time without starting.
+     */
+    fun notifyTime() {
+        clock.cancel(notifyAction)
+        clock.runAt(clock.now(), notifyAction)
+    }
+
+    private fun scheduleTick() {
+        val passed = if (countDown) baseTime - nextTickTime else nextTickTime - baseTime
+        clock.runAt(anchor + passed, tickAction, nextTickEarliness)
+    }
+
+    private fun tick() {
+        if (!isRunning) return
+        val current = time
+        val early = if (countDown) current - nextTickTime else nextTickTime - current
+        if (early > nextTickEarliness) {
+            scheduleTick()
+            return
+        }
+        val reported: Long
+        if (countDown) {
+            if (current <= 0L) {
+                baseTime = 0L
+                isRunning = false
+                ++generation
+                onFinish()
+                return
+            }
+            // Report the second we just crossed. Skip seconds if we're more than one second late.
+            reported = min(nextTickTime, ceilSecond(current))
+            nextTickTime = floorSecond(reported - 1)
+        } else {
+            reported = max(nextTickTime, floorSecond(current))
+            nextTickTime = floorSecond(reported) + TICK_INTERVAL
+        }
+        // Never finish early.
+        nextTickEarliness = if (countDown && nextTickTime <= 0L) 0L else tickEarliness()
+        val tickGeneration = generation
+        onTick(reported)
+        // onTick may have paused or restarted us.
+        if (tickGeneration == generation) {
+            scheduleTick()
+        }
+    }
+
+    companion object {
+        const val TICK_INTERVAL = 1_000L
+
+        /**
+         * Lets UI-only ticks of all tasks share one wakeup per second.
+         */
+        const val UI_TICK_EARLINESS = TICK_INTERVAL - 1
+
+        /**
+         * Lets ticks driving sounds come early enough to cover the wakeup and audio latency.
+         * The sounds wait for the rest with [TickListener]'s delay.
+         */
+        const val SOUND_TICK_EARLINESS = 50L
+
+        private fun floorSecond(time: Long): Long =
+            Math.floorDiv(time, TICK_INTERVAL) * TICK_INTERVAL
+
+        private fun ceilSecond(time: Long): Long = -floorSecond(-time)
+    }
+}
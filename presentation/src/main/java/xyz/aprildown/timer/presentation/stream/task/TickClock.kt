@@ -0,0 +1,39 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+
+/**
+ * The time source and scheduler of [TaskTicker].
+ */
+internal interface TickClock {
+    /**
+     * Monotonic milliseconds which keep counting in deep sleep.
+     */
+    fun now(): Long
+
+    /**
+     * Run [action] once [now] reaches [time]. It may run late.
+     *
+     * @param earliness How early [action] may run if that saves a wakeup.
+     */
+    fun runAt(time: Long, action: Runnable, earliness: Long = 0L)
+
+    fun cancel(action: Runnable)
+}
+
+internal object MainTickClock : TickClock {
+
+    private val handler by lazy { Handler(Looper.getMainLooper()) }
+
+    override fun now(): Long = SystemClock.elapsedRealtime()
+
+    override fun runAt(time: Long, action: Runnable, earliness: Long) {
+        handler.postDelayed(action, (time - now()).coerceAtLeast(0L))
+    }
+
+    override fun cancel(action: Runnable) {
+        handler.removeCallbacks(action)
+    }
+}
@@ -3,6 +3,9 @@ package xyz.aprildown.timer.presentation.stream.task
 internal interface TickListener {
     /**
      * Don't use newTime as counter. It may tick twice in one second.
+     *
+     * @param delay How long until the task actually reaches [newTime]. Ticks with listeners
+     * come a bit early so sounds can be scheduled on the exact second.
      */
-    fun onNewTime(newTime: Long)
+    fun onNewTime(newTime: Long, delay: Long)
 }
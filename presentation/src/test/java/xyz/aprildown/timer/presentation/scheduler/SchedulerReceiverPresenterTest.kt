@@ -15,14 +15,11 @@ import xyz.aprildown.timer.domain.entities.SchedulerRepeatMode
 import xyz.aprildown.timer.domain.repositories.AppDataRepository
 import xyz.aprildown.timer.domain.repositories.SchedulerExecutor
 import xyz.aprildown.timer.domain.repositories.SchedulerRepository
-import xyz.aprildown.timer.domain.repositories.TimerRepository
-import xyz.aprildown.timer.domain.usecases.scheduler.GetScheduler
-import xyz.aprildown.timer.domain.usecases.scheduler.SetSchedulerEnable
-import xyz.aprildown.timer.domain.usecases.timer.FindTimerInfo
+import xyz.aprildown.timer.domain.usecases.scheduler.FireSchedulers
+import xyz.aprildown.timer.domain.usecases.scheduler.RescheduleSchedulers
 
 class SchedulerReceiverPresenterTest {
 
-    private val timerRepository: TimerRepository = mock()
     private val schedulerRepository: SchedulerRepository = mock()
     private val schedulerExecutor: SchedulerExecutor = mock()
     private val appDataRepository: AppDataRepository = mock()
@@ -30,14 +27,13 @@ class SchedulerReceiverPresenterTest {
     private fun TestScope.getPresenter(): SchedulerReceiverPresenter {
         val dispatcher = StandardTestDispatcher(testScheduler)
         return SchedulerReceiverPresenter(
-            FindTimerInfo(dispatcher, timerRepository),
-            GetScheduler(dispatcher, schedulerRepository),
-            SetSchedulerEnable(
+            FireSchedulers(
                 dispatcher,
                 schedulerRepository,
                 schedulerExecutor,
                 appDataRepository
-            )
+            ),
+            RescheduleSchedulers(dispatcher, schedulerRepository, schedulerExecutor)
         )
     }
 
@@ -45,23 +41,43 @@ class SchedulerReceiverPresenterTest {
     fun handleFiredScheduler_once_and_no_more() = runTest {
         val presenter = getPresenter()
         val scheduler = TestData.fakeSchedulerA.copy(repeatMode = SchedulerRepeatMode.ONCE)
-        whenever(schedulerRepository.item(scheduler.id)).thenReturn(scheduler)
-        val result = presenter.handleFiredScheduler(scheduler.id)
-        assertEquals(scheduler.timerId, result)
+        whenever(schedulerRepository.itemsWithTimers(listOf(scheduler.id)))
+            .thenReturn(listOf(scheduler))
+        val result = presenter.handleFiredSchedulers(listOf(scheduler.id))
+        assertEquals(listOf(scheduler), result)
         verify(schedulerRepository).setSchedulerEnable(scheduler.id, 0)
         verify(schedulerExecutor, never()).schedule(any())
         verify(schedulerExecutor).cancel(scheduler.copy(enable = 0))
+        verify(appDataRepository).notifyDataChanged()
     }
 
     @Test
     fun handleFiredScheduler_repeat() = runTest {
         val presenter = getPresenter()
         val scheduler = TestData.fakeSchedulerA.copy(repeatMode = SchedulerRepeatMode.EVERY_DAYS)
-        whenever(schedulerRepository.item(scheduler.id)).thenReturn(scheduler)
-        val result = presenter.handleFiredScheduler(scheduler.id)
-        assertEquals(scheduler.timerId, result)
+        whenever(schedulerRepository.itemsWithTimers(listOf(scheduler.id)))
+            .thenReturn(listOf(scheduler))
+        val result = presenter.handleFiredSchedulers(listOf(scheduler.id))
+        assertEquals(listOf(scheduler), result)
         verify(schedulerRepository).setSchedulerEnable(scheduler.id, 1)
         verify(schedulerExecutor).schedule(scheduler.copy(enable = 1))
         verify(schedulerExecutor, never()).cancel(any())
     }
+
+    @Test
+    fun handleFiredSchedulers_together() = runTest {
+        val presenter = getPresenter()
+        val once = TestData.fakeSchedulerA.copy(id = 1, repeatMode = SchedulerRepeatMode.ONCE)
+        val repeat =
+            TestData.fakeSchedulerB.copy(id = 2, repeatMode = SchedulerRepeatMode.EVERY_DAYS)
+        // The third one's timer is gone.
+        whenever(schedulerRepository.itemsWithTimers(listOf(1, 2, 3)))
+            .thenReturn(listOf(once, repeat))
+        val result = presenter.handleFiredSchedulers(listOf(1, 2, 3))
+        assertEquals(listOf(once, repeat), result)
+        verify(schedulerRepository).setSchedulerEnable(1, 0)
+        verify(schedulerRepository).setSchedulerEnable(2, 1)
+        verify(schedulerRepository, never()).setSchedulerEnable(3, 0)
+        verify(appDataRepository).notifyDataChanged()
+    }
 }
@@ -38,6 +38,8 @@ class MachinePresenterUnitTest {
             AddTimerStamp(dispatcher, mock(), mock(), mock()),
             mock(),
             mock(),
+            mock(),
+            mock(),
         )
         machine.takeView(MachineTestView())
         return machine
@@ -874,6 +876,15 @@ class MachinePresenterUnitTest {
             createdTimerId = id
         }
 
+        override fun updateTimerNotification(
+            id: Int,
+            time: Long,
+            exactTime: Long,
+            realtime: Long
+        ) {
+            throw IllegalAccessException("Nope")
+        }
+
         override fun cancelTimerNotification(id: Int) {
             canceledTimerId = id
         }
@@ -930,6 +941,10 @@ class MachinePresenterUnitTest {
             throw IllegalAccessException("Nope")
         }
 
+        override fun prepareSpeech(timer: TimerEntity) = Unit
+
+        override fun prepareMusic(timerId: Int, uri: Uri?) = Unit
+
         override fun stopReading() {
             throw IllegalAccessException("Nope")
         }
@@ -938,7 +953,7 @@ class MachinePresenterUnitTest {
             throw IllegalAccessException("Nope")
         }
 
-        override fun playTone() {
+        override fun playTone(delay: Long) {
             throw IllegalAccessException("Nope")
         }
 
@@ -0,0 +1,84 @@
+package xyz.aprildown.timer.presentation.stream
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.domain.entities.TimerEntity
+
+class StepPlanTest {
+
+    private val timers = listOf(
+        TestData.fakeTimerSimpleA,
+        TestData.fakeTimerSimpleB,
+        TestData.fakeTimerAdvanced,
+    )
+
+    @Test
+    fun `next matches the nested walk`() {
+        timers.forEach { timer ->
+            val plan = StepPlan(timer)
+            var index: TimerIndex = TimerIndex.Start
+            while (index != TimerIndex.End) {
+                val expected = getNextIndexWithStep(timer.steps, timer.loop, index)
+                assertEquals(expected, plan.next(index))
+                index = expected.first
+            }
+        }
+    }
+
+    @Test
+    fun `prev matches the nested walk`() {
+        timers.forEach { timer ->
+            val plan = StepPlan(timer)
+            var index: TimerIndex = TimerIndex.End
+            while (index != TimerIndex.Start) {
+                val expected = getPrevIndexWithStep(timer.steps, timer.loop, index)
+                assertEquals(expected, plan.prev(index))
+                index = expected.first
+            }
+        }
+    }
+
+    @Test
+    fun `time before matches the nested sum`() {
+        timers.forEach { timer ->
+            val plan = StepPlan(timer)
+            assertEquals(timer.getTotalTime(), plan.totalTime)
+            timer.allIndices().forEach { index ->
+                assertEquals(timer.getTimeBeforeIndex(index), plan.timeBefore(index))
+            }
+        }
+    }
+
+    @Test
+    fun `group time`() {
+        val timer = TestData.fakeTimerAdvanced
+        val plan = StepPlan(timer)
+        val group = timer.steps[1] as StepEntity.Group
+        val groupStepsTime = group.steps.sumOf { (it as StepEntity.Step).length }
+
+        val index = TimerIndex.Group(
+            loopIndex = 1,
+            stepIndex = 1,
+            groupStepIndex = TimerIndex.Step(loopIndex = 1, stepIndex = 1)
+        )
+        assertEquals(groupStepsTime * group.loop, plan.groupTime(index))
+        assertEquals(
+            groupStepsTime + (group.steps[0] as StepEntity.Step).length,
+            plan.groupTimeBefore(index)
+        )
+        assertNull(plan.groupTime(TimerIndex.Step(loopIndex = 0, stepIndex = 0)))
+    }
+
+    private fun TimerEntity.allIndices(): List<TimerIndex> {
+        val result = mutableListOf<TimerIndex>(TimerIndex.Start)
+        var index: TimerIndex = TimerIndex.Start
+        while (index != TimerIndex.End) {
+            index = getNextIndexWithStep(steps, loop, index).first
+            result += index
+        }
+        return result
+    }
+}
@@ -0,0 +1,30 @@
+package xyz.aprildown.timer.presentation.stream
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class TimerIndexTest {
+
+    @Test
+    fun `path round trip`() {
+        listOf(
+            TimerIndex.Start,
+            TimerIndex.Step(loopIndex = 2, stepIndex = 3),
+            TimerIndex.Group(
+                loopIndex = 1,
+                stepIndex = 4,
+                groupStepIndex = TimerIndex.Step(loopIndex = 5, stepIndex = 0)
+            ),
+            TimerIndex.End,
+        ).forEach { index ->
+            assertEquals(index, index.toPath().toTimerIndex())
+        }
+    }
+
+    @Test
+    fun `broken path`() {
+        assertNull(listOf(1).toTimerIndex())
+        assertNull(listOf(1, 2, 3).toTimerIndex())
+    }
+}
@@ -4,7 +4,11 @@ import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNull
 import org.junit.Test
 import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.entities.CountAction
+import xyz.aprildown.timer.domain.entities.HalfAction
 import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.domain.entities.TimerEntity
+import xyz.aprildown.timer.domain.entities.VoiceAction
 
 class TimerMachineHelperKtTest {
 
@@ -642,6 +646,37 @@ class TimerMachineHelperKtTest {
             timer.getTimeBeforeIndex(TimerIndex.End)
         )
     }
+
+    @Test
+    fun `collect voice lines`() {
+        val timer = TimerEntity(
+            id = 1,
+            name = "timer",
+            loop = 2,
+            steps = listOf(
+                StepEntity.Step(
+                    "a",
+                    3_000L,
+                    listOf(
+                        VoiceAction(content = "\$step_name \$loop").toBehaviourEntity(),
+                        CountAction(times = 5).toBehaviourEntity(),
+                    )
+                ),
+                StepEntity.Step(
+                    "b",
+                    10_000L,
+                    listOf(
+                        VoiceAction(content = "\$time").toBehaviourEntity(),
+                        HalfAction(HalfAction.OPTION_VOICE).toBehaviourEntity(),
+                    )
+                ),
+            )
+        )
+        assertEquals(
+            setOf("a 1", "3", "2", "1", "0", "half", "a 2"),
+            timer.collectVoiceLines(durationFormatter = { "" }, halfContent = "half")
+        )
+    }
 }
 
 private val step1 = StepEntity.Step("step1", 0L, listOf())
@@ -0,0 +1,81 @@
+package xyz.aprildown.timer.presentation.stream
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mockito.kotlin.mock
+import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.domain.entities.TimerEntity
+import xyz.aprildown.timer.presentation.stream.task.TestTickClock
+
+class TimerMachineTest {
+
+    private val timer = TimerEntity(
+        id = 1,
+        name = "Timer",
+        loop = 2,
+        steps = listOf(
+            StepEntity.Step("A", 60_000L),
+            StepEntity.Step("B", 5_000L),
+        ),
+    )
+
+    private fun restore(index: TimerIndex, time: Long, passed: Long, isRunning: Boolean = true) =
+        TimerMachine(timer, mock(), TestTickClock()).apply {
+            restore(
+                index = index,
+                time = time,
+                passed = passed,
+                isRunning = isRunning,
+                beginTime = 1L,
+            )
+        }
+
+    @Test
+    fun `restore shortens the current step`() {
+        val machine = restore(TimerIndex.Step(0, 0), time = 10_000L, passed = 4_000L)
+
+        assertEquals(TimerIndex.Step(0, 0), machine.currentIndex)
+        assertEquals(6_000L, machine.currentTask?.currentTime)
+    }
+
+    @Test
+    fun `restore skips steps that ended meanwhile`() {
+        val machine = restore(TimerIndex.Step(0, 0), time = 10_000L, passed = 12_000L)
+
+        assertEquals(TimerIndex.Step(0, 1), machine.currentIndex)
+        assertEquals(3_000L, machine.currentTask?.currentTime)
+    }
+
+    @Test
+    fun `restore crosses loops`() {
+        val machine = restore(
+            TimerIndex.Step(0, 0),
+            time = 10_000L,
+            passed = 10_000L + 5_000L + 20_000L,
+        )
+
+        assertEquals(TimerIndex.Step(1, 0), machine.currentIndex)
+        assertEquals(40_000L, machine.currentTask?.currentTime)
+    }
+
+    @Test
+    fun `restore stops at the last step`() {
+        val machine = restore(TimerIndex.Step(0, 1), time = 5_000L, passed = 1_000_000L)
+
+        assertEquals(TimerIndex.Step(1, 1), machine.currentIndex)
+        assertEquals(0L, machine.currentTask?.currentTime)
+    }
+
+    @Test
+    fun `restore keeps a paused step`() {
+        val machine = restore(
+            TimerIndex.Step(0, 0),
+            time = 10_000L,
+            passed = 12_000L,
+            isRunning = false,
+        )
+
+        assertEquals(TimerIndex.Step(0, 0), machine.currentIndex)
+        assertEquals(10_000L, machine.currentTask?.currentTime)
+    }
+}
@@ -0,0 +1,80 @@
+package xyz.aprildown.timer.presentation.stream
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import xyz.aprildown.timer.domain.TestData
+import xyz.aprildown.timer.domain.entities.StepEntity
+import xyz.aprildown.timer.presentation.stream.VoiceTemplate.Token
+import xyz.aprildown.timer.presentation.stream.VoiceTemplate.Variable
+
+class VoiceTemplateTest {
+
+    @Test
+    fun `parse variables`() {
+        assertEquals(
+            listOf(
+                Token.Value(Variable.StepName),
+                Token.Text(" in "),
+                Token.Value(Variable.GroupName),
+                Token.Text(", "),
+                Token.Value(Variable.TimerRemainingPercent),
+            ),
+            VoiceTemplate.parse("{SName} in {group_name}, {TRemaining%}").tokens
+        )
+    }
+
+    @Test
+    fun `parse unknown and unclosed variables as text`() {
+        assertEquals(
+            listOf(
+                Token.Text("{unknown} a} {"),
+                Token.Value(Variable.ClockTime),
+                Token.Text(" {b"),
+            ),
+            VoiceTemplate.parse("{unknown} a} {{OClockTime} {b").tokens
+        )
+    }
+
+    @Test
+    fun `parse legacy variables from long to short`() {
+        assertEquals(
+            listOf(
+                Token.Value(Variable.GroupElapsedPercent),
+                Token.Text(" "),
+                Token.Value(Variable.TimerElapsedPercent),
+                Token.Text(" "),
+                Token.Value(Variable.TimerEndTime),
+                Token.Text(" "),
+                Token.Value(Variable.ClockTime),
+                Token.Text(" \$unknown"),
+            ),
+            VoiceTemplate.parseLegacy(
+                "\$elapsed%_group \$elapsed% \$timer_end_time \$time \$unknown"
+            ).tokens
+        )
+    }
+
+    @Test
+    fun `cache parsed templates`() {
+        val content = "{SName} {TLoop}"
+        assertSame(VoiceTemplate.of(content), VoiceTemplate.of(content))
+    }
+
+    @Test
+    fun `generate legacy content`() {
+        val timer = TestData.fakeTimerSimpleA
+        val step = timer.steps.first() as StepEntity.Step
+        val content = VoiceTemplate.ofLegacy("\$step_name \$loop/\$total_loop \$step_duration")
+            .generate(
+                plan = StepPlan(timer),
+                step = step,
+                index = TimerIndex.Step(loopIndex = 0, stepIndex = 0),
+                timeFormatter = object : TimeFormatter {
+                    override fun formatDuration(duration: Long): CharSequence = "${duration}ms"
+                    override fun formatTime(time: Long): CharSequence = time.toString()
+                }
+            )
+        assertEquals("${step.label} 1/${timer.loop} ${step.length}ms", content)
+    }
+}
@@ -0,0 +1,70 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class SharedTickClockTest {
+
+    @Test
+    fun `ui ticks share wakeups`() {
+        val source = TestTickClock()
+        val clock = SharedTickClock(source)
+        val batches = mutableListOf<Long>()
+        clock.addBatchListener { batches += source.now() }
+        val ticksA = mutableListOf<Long>()
+        val ticksB = mutableListOf<Long>()
+        val finishes = mutableListOf<Long>()
+        fun ticker(ticks: MutableList<Long>) = TaskTicker(
+            clock = clock,
+            countDown = true,
+            initialTime = 5_000L,
+            onTick = { ticks += it },
+            onFinish = { finishes += source.now() },
+            tickEarliness = { TaskTicker.UI_TICK_EARLINESS },
+        )
+        val tickerA = ticker(ticksA)
+        val tickerB = ticker(ticksB)
+
+        tickerA.start()
+        source.advanceBy(300L)
+        tickerB.start()
+        source.advanceBy(5_000L)
+
+        assertEquals(listOf(5_000L, 4_000L, 3_000L, 2_000L, 1_000L), ticksA)
+        assertEquals(listOf(5_000L, 4_000L, 3_000L, 2_000L, 1_000L), ticksB)
+        // Finishes are never early.
+        assertEquals(listOf(5_000L, 5_300L), finishes)
+        assertEquals(listOf(0L, 300L, 1_300L, 2_300L, 3_300L, 4_300L, 5_000L, 5_300L), batches)
+        assertEquals(batches.size, source.wakeups)
+    }
+
+    @Test
+    fun `exact ticks stay exact`() {
+        val source = TestTickClock()
+        val clock = SharedTickClock(source)
+        val exactTicks = mutableListOf<Pair<Long, Long>>()
+        val uiTicks = mutableListOf<Pair<Long, Long>>()
+        val exact = TaskTicker(
+            clock = clock,
+            countDown = true,
+            initialTime = 3_000L,
+            onTick = { exactTicks += source.now() to it },
+        )
+        val ui = TaskTicker(
+            clock = clock,
+            countDown = true,
+            initialTime = 3_000L,
+            onTick = { uiTicks += source.now() to it },
+            tickEarliness = { TaskTicker.UI_TICK_EARLINESS },
+        )
+
+        exact.start()
+        source.advanceBy(400L)
+        ui.start()
+        source.advanceBy(2_000L)
+
+        assertEquals(listOf(0L to 3_000L, 1_000L to 2_000L, 2_000L to 1_000L), exactTicks)
+        assertEquals(listOf(400L to 3_000L, 1_000L to 2_000L, 2_000L to 1_000L), uiTicks)
+        assertEquals(4, source.wakeups)
+    }
+}
@@ -0,0 +1,113 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class TaskTickerTest {
+
+    @Test
+    fun `count down ticks on whole seconds`() {
+        val clock = TestTickClock()
+        val ticks = mutableListOf<Long>()
+        var finished = false
+        val ticker = TaskTicker(
+            clock = clock,
+            countDown = true,
+            initialTime = 3_500L,
+            onTick = { ticks += it },
+            onFinish = { finished = true },
+        )
+
+        ticker.start()
+        clock.advanceBy(3_499L)
+        assertEquals(listOf(3_500L, 3_000L, 2_000L, 1_000L), ticks)
+        assertTrue(!finished)
+        clock.advanceBy(1L)
+        assertTrue(finished)
+        assertEquals(0L, ticker.time)
+    }
+
+    @Test
+    fun `count down survives pauses`() {
+        val clock = TestTickClock()
+        val ticks = mutableListOf<Long>()
+        var finishedAt = -1L
+        val ticker = TaskTicker(
+            clock = clock,
+            countDown = true,
+            initialTime = 10_000L,
+            onTick = { ticks += it },
+            onFinish = { finishedAt = clock.now() },
+        )
+
+        ticker.start()
+        clock.advanceBy(2_300L)
+        ticker.pause()
+        assertEquals(7_700L, ticker.time)
+        clock.advanceBy(60_000L)
+        assertEquals(7_700L, ticker.time)
+        ticker.start()
+        clock.advanceBy(7_700L)
+
+        assertEquals(2_300L + 60_000L + 7_700L, finishedAt)
+        assertEquals(
+            listOf(10_000L, 9_000L, 8_000L, 7_700L, 7_000L, 6_000L, 5_000L) +
+                listOf(4_000L, 3_000L, 2_000L, 1_000L),
+            ticks
+        )
+    }
+
+    @Test
+    fun `long count down stays on the wall clock with late ticks`() {
+        val maxLateness = 300L
+        val clock = TestTickClock(lateness = { Random.nextLong(maxLateness) })
+        val total = 3 * 60 * 60 * 1_000L
+        var lastTick = Long.MAX_VALUE
+        var finishedAt = -1L
+        lateinit var ticker: TaskTicker
+        ticker = TaskTicker(
+            clock = clock,
+            countDown = true,
+            initialTime = total,
+            onTick = {
+                // Every tick reports a crossed second and never goes backwards.
+                assertTrue(it < lastTick)
+                assertTrue(it - ticker.time in 0L until maxLateness)
+                lastTick = it
+            },
+            onFinish = { finishedAt = clock.now() },
+        )
+
+        ticker.start()
+        clock.advanceBy(total + maxLateness)
+
+        assertEquals(1_000L, lastTick)
+        assertTrue(finishedAt - total in 0L until maxLateness)
+    }
+
+    @Test
+    fun `stopwatch ticks on whole seconds`() {
+        val clock = TestTickClock(lateness = { 7L })
+        val ticks = mutableListOf<Long>()
+        val ticker = TaskTicker(
+            clock = clock,
+            countDown = false,
+            initialTime = 0L,
+            onTick = { ticks += it },
+        )
+
+        ticker.start()
+        clock.advanceBy(3_500L)
+        ticker.pause()
+        assertEquals(3_500L, ticker.time)
+        clock.advanceBy(10_000L)
+        ticker.set(5_000L)
+        ticker.start()
+        clock.advanceBy(1_007L)
+
+        assertEquals(listOf(0L, 1_000L, 2_000L, 3_000L, 5_000L, 6_000L), ticks)
+        assertEquals(6_007L, ticker.time)
+    }
+}
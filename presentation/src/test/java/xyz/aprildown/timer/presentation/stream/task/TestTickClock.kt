@@ -0,0 +1,44 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+/**
+ * A [TickClock] whose time only moves with [advanceBy].
+ *
+ * @param lateness How late each action runs after its time, like a busy main thread.
+ */
+internal class TestTickClock(
+    private val lateness: () -> Long = { 0L },
+) : TickClock {
+
+    private class Entry(val time: Long, val action: Runnable)
+
+    private var now = 0L
+    private val entries = mutableListOf<Entry>()
+
+    /**
+     * How many actions have run.
+     */
+    var wakeups: Int = 0
+        private set
+
+    override fun now(): Long = now
+
+    override fun runAt(time: Long, action: Runnable, earliness: Long) {
+        entries += Entry(time + lateness(), action)
+    }
+
+    override fun cancel(action: Runnable) {
+        entries.removeAll { it.action === action }
+    }
+
+    fun advanceBy(duration: Long) {
+        val target = now + duration
+        while (true) {
+            val next = entries.filter { it.time <= target }.minByOrNull { it.time } ?: break
+            entries.remove(next)
+            now = maxOf(now, next.time)
+            ++wakeups
+            next.action.run()
+        }
+        now = target
+    }
+}
@@ -0,0 +1,104 @@
+package xyz.aprildown.timer.presentation.stream.task
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class TickListenerDelayTest {
+
+    private val master = object : TaskMaster {
+        override fun onTick(task: Task, time: Long) = Unit
+        override fun onTaskDone(task: Task) = Unit
+    }
+
+    private class RecordingListener : TickListener {
+        val times = mutableListOf<Long>()
+        val delays = mutableListOf<Long>()
+
+        override fun onNewTime(newTime: Long, delay: Long) {
+            times += newTime
+            delays += delay
+        }
+    }
+
+    /**
+     * The source only runs actions on time, so ticks are early because [SharedTickClock]
+     * wakes it early for them.
+     */
+    @Test
+    fun `count down reports how early its ticks are`() {
+        val source = TestTickClock()
+        val clock = SharedTickClock(source)
+        val listener = RecordingListener()
+        val task = CountDownTimerTask(master, 3_000L, clock)
+        task.addTickListener(listener)
+
+        task.start()
+        source.advanceBy(3_000L)
+
+        assertEquals(listOf(3_000L, 2_000L, 1_000L), listener.times)
+        val early = TaskTicker.SOUND_TICK_EARLINESS
+        assertEquals(listOf(0L, early, early), listener.delays)
+    }
+
+    @Test
+    fun `count down reports what's left of the earliness`() {
+        val source = TestTickClock(lateness = { 20L })
+        val clock = SharedTickClock(source)
+        val listener = RecordingListener()
+        val task = CountDownTimerTask(master, 3_000L, clock)
+        task.addTickListener(listener)
+
+        task.start()
+        source.advanceBy(3_000L)
+
+        assertEquals(listOf(3_000L, 2_000L, 1_000L), listener.times)
+        val left = TaskTicker.SOUND_TICK_EARLINESS - 20L
+        assertEquals(listOf(0L, left, left), listener.delays)
+    }
+
+    @Test
+    fun `late count down ticks have no delay`() {
+        val source = TestTickClock(lateness = { 80L })
+        val clock = SharedTickClock(source)
+        val listener = RecordingListener()
+        val task = CountDownTimerTask(master, 3_000L, clock)
+        task.addTickListener(listener)
+
+        task.start()
+        source.advanceBy(3_000L)
+
+        assertEquals(listOf(3_000L, 2_000L, 1_000L), listener.times)
+        assertEquals(listOf(0L, 0L, 0L), listener.delays)
+    }
+
+    @Test
+    fun `stopwatch reports how early its ticks are`() {
+        val source = TestTickClock()
+        val clock = SharedTickClock(source)
+        val listener = RecordingListener()
+        val task = StopwatchTask(master, clock)
+        task.addTickListener(listener)
+
+        task.start()
+        source.advanceBy(2_000L)
+
+        assertEquals(listOf(0L, 1_000L, 2_000L), listener.times)
+        val early = TaskTicker.SOUND_TICK_EARLINESS
+        assertEquals(listOf(0L, early, early), listener.delays)
+    }
+
+    @Test
+    fun `late stopwatch ticks have no delay`() {
+        val source = TestTickClock(lateness = { 80L })
+        val clock = SharedTickClock(source)
+        val listener = RecordingListener()
+        val task = StopwatchTask(master, clock)
+        task.addTickListener(listener)
+
+        task.start()
+        source.advanceBy(2_100L)
+
+        assertEquals(listOf(0L, 1_000L, 2_000L), listener.times)
+        assertEquals(listOf(0L, 0L, 0L), listener.delays)
+    }
+}